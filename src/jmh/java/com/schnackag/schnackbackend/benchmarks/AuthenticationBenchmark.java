@@ -0,0 +1,110 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import com.schnackag.schnackbackend.requests.RegisterRequest;
+import com.schnackag.schnackbackend.services.AuthenticationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/* Benchmarks mit der vollständigen Anwendung und H2 anstelle von MySQL:
+ * - loadUserCached: CachedUserDetailsService mit Treffer im Cache.
+ * - findByEmail: UserRepository.findByEmail, also eine Abfrage an H2.
+ * - login: POST /api/v1/authentication/login über MockMvc, inklusive Filterkette und BCrypt.
+ * - authenticatedRequest: GET /api/v1/threads mit Access-Token über MockMvc. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthenticationBenchmark {
+	private static final String EMAIL = "benchmark@schnack.local";
+	private static final String LOGIN = "{\"email\":\"" + EMAIL + "\",\"password\":\"benchmark\"}";
+
+	private ConfigurableApplicationContext context;
+	private UserDetailsService userDetailsService;
+	private UserRepository userRepository;
+	private MockMvc mockMvc;
+	private String token;
+
+	@Setup
+	public void setup() throws Exception {
+		context = BenchmarkApplication.start(Map.of());
+		userDetailsService = context.getBean(UserDetailsService.class);
+		userRepository = context.getBean(UserRepository.class);
+		mockMvc = MockMvcBuilders
+				.webAppContextSetup((WebApplicationContext) context)
+				.apply(springSecurity())
+				.build();
+
+		RegisterRequest request = RegisterRequest
+				.builder()
+				.username(EMAIL)
+				.email(EMAIL)
+				.password("benchmark")
+				.build();
+		token = context.getBean(AuthenticationService.class).register(request).getToken();
+
+		// Ein Benchmark, der nur abgelehnte Anfragen misst, wäre wertlos.
+		for (MvcResult result : new MvcResult[]{login(), authenticatedRequest()}) {
+			if (result.getResponse().getStatus() != 200) {
+				throw new IllegalStateException(result.getRequest().getRequestURI() + " returned " + result.getResponse().getStatus() + ".");
+			}
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public UserDetails loadUserCached() {
+		return userDetailsService.loadUserByUsername(EMAIL);
+	}
+
+	@Benchmark
+	public Optional<User> findByEmail() {
+		return userRepository.findByEmail(EMAIL);
+	}
+
+	@Benchmark
+	public MvcResult login() throws Exception {
+		return mockMvc
+				.perform(post("/api/v1/authentication/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN))
+				.andReturn();
+	}
+
+	@Benchmark
+	public MvcResult authenticatedRequest() throws Exception {
+		return mockMvc
+				.perform(get("/api/v1/threads").header("Authorization", "Bearer " + token))
+				.andReturn();
+	}
+}
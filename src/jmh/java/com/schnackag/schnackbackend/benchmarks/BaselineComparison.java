@@ -0,0 +1,99 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Vergleicht das JSON-Ergebnis von JMH mit einer gespeicherten Baseline (ebenfalls ein JSON-Ergebnis von JMH).
+ * Benchmarks werden über ihren Namen und ihre Parameter zugeordnet. Im Modus thrpt ist ein höherer Wert besser, in
+ * allen anderen Modi ein niedrigerer. Im Modus sample wird das 99. Perzentil verglichen, sonst der Mittelwert.
+ *
+ * Die Baseline hängt von der Hardware ab und muss deshalb auf der Maschine erstellt werden, auf der verglichen wird:
+ * target/jmh-result.json eines Laufs nach src/jmh/baseline.json kopieren. Sie wird deshalb nicht eingecheckt.
+ * Ohne Baseline wird der Vergleich mit einer Warnung übersprungen, ist sie gefordert (z.B. auf einem Build-Server mit
+ * fester Hardware), schlägt der Build fehl.
+ *
+ * Aufruf: BaselineComparison <Ergebnis> <Baseline> <Schwellwert> <Baseline gefordert>, z.B. 0.10 für 10 %. */
+public final class BaselineComparison {
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private BaselineComparison() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path resultFile = Path.of(args[0]);
+		Path baselineFile = Path.of(args[1]);
+		double threshold = Double.parseDouble(args[2]);
+		boolean baselineRequired = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+		if (!Files.exists(resultFile)) {
+			System.out.println("No benchmark result found at " + resultFile + ".");
+			return;
+		}
+		if (!Files.exists(baselineFile)) {
+			if (baselineRequired) {
+				System.out.println("No baseline found at " + baselineFile + ", but jmh.baseline-required is set.");
+				System.exit(1);
+			}
+			System.out.println("WARNING     Skipping the baseline comparison, no baseline found at " + baselineFile + ".");
+			System.out.println("            Copy " + resultFile + " there to create one.");
+			return;
+		}
+
+		Map<String, JsonNode> baseline = read(baselineFile);
+		int regressions = 0;
+
+		for (Map.Entry<String, JsonNode> entry : read(resultFile).entrySet()) {
+			JsonNode previous = baseline.get(entry.getKey());
+			if (previous == null) {
+				System.out.printf("NEW         %s%n", entry.getKey());
+				continue;
+			}
+
+			JsonNode current = entry.getValue();
+			boolean higherIsBetter = "thrpt".equals(current.path("mode").asText());
+			double currentScore = score(current);
+			double previousScore = score(previous);
+			double change = previousScore == 0 ? 0 : (currentScore - previousScore) / previousScore;
+			double regression = higherIsBetter ? -change : change;
+
+			String status = regression > threshold ? "REGRESSION" : "OK";
+			if (regression > threshold) {
+				regressions++;
+			}
+			System.out.printf("%-11s %s: %.3f -> %.3f %s (%+.1f %%)%n",
+					status, entry.getKey(), previousScore, currentScore,
+					current.path("primaryMetric").path("scoreUnit").asText(), change * 100);
+		}
+
+		if (regressions > 0) {
+			System.out.printf("%d benchmark(s) regressed by more than %.0f %%.%n", regressions, threshold * 100);
+			System.exit(1);
+		}
+	}
+
+	private static Map<String, JsonNode> read(Path file) throws IOException {
+		Map<String, JsonNode> results = new LinkedHashMap<>();
+		for (JsonNode result : OBJECT_MAPPER.readTree(file.toFile())) {
+			String key = result.path("benchmark").asText();
+			if (result.has("params")) {
+				key += result.get("params").toString();
+			}
+			results.put(key, result);
+		}
+		return results;
+	}
+
+	private static double score(JsonNode result) {
+		JsonNode metric = result.path("primaryMetric");
+		if ("sample".equals(result.path("mode").asText()) && metric.path("scorePercentiles").has("99.0")) {
+			return metric.path("scorePercentiles").path("99.0").asDouble();
+		}
+		return metric.path("score").asDouble();
+	}
+}
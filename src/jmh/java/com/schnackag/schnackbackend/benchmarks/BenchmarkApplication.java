@@ -0,0 +1,37 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.SchnackBackendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/* Startet die Anwendung für Benchmarks mit dem Spring-Profil h2, jeweils mit einer eigenen In-Memory-Datenbank und
+ * einem zufälligen Port. Die Begrenzung der Logins ist deaktiviert, da ein Benchmark tausende Logins pro Sekunde
+ * mit derselben E-Mail-Adresse ausführt. */
+final class BenchmarkApplication {
+
+	private BenchmarkApplication() {
+	}
+
+	static ConfigurableApplicationContext start(Map<String, Object> properties) {
+		// Der Restart-Mechanismus der DevTools funktioniert nur beim Start aus einer main-Methode.
+		System.setProperty("spring.devtools.restart.enabled", "false");
+
+		Map<String, Object> defaults = new HashMap<>();
+		defaults.put("spring.datasource.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_ON_EXIT=FALSE");
+		defaults.put("server.port", 0);
+		defaults.put("logging.level.root", "warn");
+		defaults.put("schnack.search.directory", System.getProperty("java.io.tmpdir") + "/schnack-benchmark-search-" + UUID.randomUUID());
+		defaults.put("schnack.security.rate-limit.address.capacity", Long.MAX_VALUE / 2);
+		defaults.put("schnack.security.rate-limit.email.capacity", Long.MAX_VALUE / 2);
+		defaults.putAll(properties);
+
+		return new SpringApplicationBuilder(SchnackBackendApplication.class)
+				.profiles("h2")
+				.properties(defaults)
+				.run();
+	}
+}
@@ -0,0 +1,127 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.entities.Role;
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.filters.JwtAuthenticationFilter;
+import com.schnackag.schnackbackend.repositories.RevokedTokenRepository;
+import com.schnackag.schnackbackend.services.AuthenticationMetrics;
+import com.schnackag.schnackbackend.services.JwtService;
+import com.schnackag.schnackbackend.services.RoleAuthorizationManager;
+import com.schnackag.schnackbackend.services.TokenRevocationService;
+import com.schnackag.schnackbackend.services.UserCredentials;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.method.SecuredAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.util.SimpleMethodInvocation;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/* Eine authentifizierte Anfrage durch den JwtAuthenticationFilter, mit Servlet-Objekten von spring-test und einem
+ * UserDetailsService ohne Datenbank. Mit claimsPrincipal=true wird der Benutzer aus den Claims des Tokens erstellt.
+ * doFilterAndAuthorize prüft danach zusätzlich eine Methode mit @Secured, wie der Interceptor der Method Security.
+ * Die Allokationen pro Anfrage zeigt der Profiler gc: -Djmh.args="JwtAuthenticationFilterBenchmark -prof gc". */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+	@Param({"false", "true"})
+	public boolean claimsPrincipal;
+
+	private JwtAuthenticationFilter filter;
+	private MockHttpServletRequest request;
+	private MockHttpServletResponse response;
+	private FilterChain filterChain;
+	private SecuredAuthorizationManager authorizationManager;
+	private SimpleMethodInvocation invocation;
+
+	@Setup
+	public void setup() {
+		JwtService jwtService = JwtServiceBenchmark.createJwtService(10_000);
+		User user = JwtServiceBenchmark.createUser();
+		user.setRole(Role.MODERATOR);
+		UserCredentials credentials = UserCredentials.of(user);
+		UserDetailsService userDetailsService = username -> credentials;
+		TokenRevocationService tokenRevocationService = new TokenRevocationService(
+				Mockito.mock(RevokedTokenRepository.class),
+				Mockito.mock(PlatformTransactionManager.class),
+				100_000,
+				Duration.ofSeconds(30));
+
+		filter = new JwtAuthenticationFilter(
+				jwtService,
+				userDetailsService,
+				tokenRevocationService,
+				new AuthenticationMetrics(new SimpleMeterRegistry(), true));
+		ReflectionTestUtils.setField(filter, "claimsPrincipalEnabled", claimsPrincipal);
+
+		String token = jwtService.generateToken(
+				Map.of(JwtService.ROLE_CLAIM, user.getRole(), JwtService.USER_ID_CLAIM, user.getId().toString(), JwtService.USERNAME_CLAIM, user.getUsername()),
+				credentials);
+		request = new MockHttpServletRequest("GET", "/api/v1/threads");
+		request.addHeader("Authorization", "Bearer " + token);
+		response = new MockHttpServletResponse();
+		filterChain = (servletRequest, servletResponse) -> { };
+
+		authorizationManager = new SecuredAuthorizationManager();
+		authorizationManager.setAuthoritiesAuthorizationManager(new RoleAuthorizationManager());
+		try {
+			invocation = new SimpleMethodInvocation(new Moderation(), Moderation.class.getMethod("submit"));
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Benchmark
+	public Authentication doFilter() throws ServletException, IOException {
+		SecurityContextHolder.clearContext();
+		request.clearAttributes();
+		filter.doFilter(request, response, filterChain);
+		return SecurityContextHolder.getContext().getAuthentication();
+	}
+
+	@Benchmark
+	public AuthorizationDecision doFilterAndAuthorize() throws ServletException, IOException {
+		SecurityContextHolder.clearContext();
+		request.clearAttributes();
+		filter.doFilter(request, response, filterChain);
+		AuthorizationDecision decision = authorizationManager.check(SecurityContextHolder.getContext()::getAuthentication, invocation);
+		if (!decision.isGranted()) {
+			throw new IllegalStateException("Access denied.");
+		}
+		return decision;
+	}
+
+	public static class Moderation {
+		@Secured({"MODERATOR", "ADMINISTRATOR"})
+		public void submit() {
+		}
+	}
+}
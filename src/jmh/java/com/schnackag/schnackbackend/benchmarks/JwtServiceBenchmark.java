@@ -0,0 +1,99 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.configurations.JwtProperties;
+import com.schnackag.schnackbackend.entities.Role;
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.services.AuthenticationMetrics;
+import com.schnackag.schnackbackend.services.JwtKeyRing;
+import com.schnackag.schnackbackend.services.JwtService;
+import com.schnackag.schnackbackend.services.UserCredentials;
+import com.schnackag.schnackbackend.services.VerifiedToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/* Signieren und Prüfen von JWTs mit dem JwtKeyRing. verifyUncached prüft bei jedem Aufruf die Signatur
+ * (Token-Cache der Größe 0), verifyCached liefert das Ergebnis aus dem Token-Cache. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+	private JwtService cachedJwtService;
+	private JwtService uncachedJwtService;
+	private UserCredentials user;
+	private Map<String, Object> extraClaims;
+	private String token;
+
+	@Setup
+	public void setup() {
+		cachedJwtService = createJwtService(10_000);
+		uncachedJwtService = createJwtService(0);
+		User entity = createUser();
+		user = UserCredentials.of(entity);
+		extraClaims = Map.of(JwtService.ROLE_CLAIM, entity.getRole(), JwtService.USER_ID_CLAIM, entity.getId().toString(), JwtService.USERNAME_CLAIM, entity.getUsername());
+		token = cachedJwtService.generateToken(extraClaims, user);
+		cachedJwtService.verifyToken(token);
+	}
+
+	@Benchmark
+	public String sign() {
+		return cachedJwtService.generateToken(extraClaims, user);
+	}
+
+	@Benchmark
+	public VerifiedToken verifyUncached() {
+		return uncachedJwtService.verifyToken(token);
+	}
+
+	@Benchmark
+	public VerifiedToken verifyCached() {
+		return cachedJwtService.verifyToken(token);
+	}
+
+	static JwtService createJwtService(long cacheMaximumSize) {
+		JwtProperties.Key key = new JwtProperties.Key();
+		key.setId("k1");
+		key.setSecret("ad7646d529b1c1a8a90850522750a3c8d797f557a6de45c1c3c16ff3418cc8df");
+
+		JwtProperties properties = new JwtProperties();
+		properties.setActiveKeyId("k1");
+		properties.setKeys(List.of(key));
+
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		return new JwtService(
+				new JwtKeyRing(properties),
+				new AuthenticationMetrics(meterRegistry, true),
+				meterRegistry,
+				cacheMaximumSize,
+				Duration.ofMinutes(15),
+				Duration.ofDays(14));
+	}
+
+	static User createUser() {
+		return User
+				.builder()
+				.id(UUID.randomUUID())
+				.username("benchmark")
+				.email("benchmark@schnack.local")
+				.password("unused")
+				.role(Role.USER)
+				.build();
+	}
+}
@@ -0,0 +1,178 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/* Lasttest für den Vergleich von Plattform-Threads und virtuellen Threads. Die Anwendung läuft mit dem Spring-Profil
+ * h2 in einer eigenen JVM, damit Client und Server sich nicht dieselben Kerne und denselben Heap teilen. Die Threads
+ * von JMH (-t, Standard 64) sind die gleichzeitigen Verbindungen. Gemessen werden Durchsatz und Latenz-Perzentile:
+ * - authenticated: GET /api/v1/authentication/authenticated mit Access-Token, also JWT-Prüfung ohne BCrypt.
+ * - login: POST /api/v1/authentication/login, also BCrypt auf dem begrenzten Pool des BoundedPasswordEncoder. Ist
+ *   dessen Warteschlange voll, antwortet die Anwendung sofort mit 503. Diese Antworten zählen als Operation und werden
+ *   am Ende ausgegeben.
+ *
+ * Plattform-Threads: -P h2,jmh verify -Djmh.args="LoadBenchmark"
+ * Virtuelle Threads (Java 21): -P h2,jmh,virtual-threads verify -Djmh.args="LoadBenchmark -p virtualThreads=true" */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Threads(64)
+@Fork(1)
+public class LoadBenchmark {
+	private static final Path DIRECTORY = Path.of("target", "load-benchmark");
+	private static final String MAIN_CLASS = "com.schnackag.schnackbackend.SchnackBackendApplication";
+	private static final String EMAIL = "load@schnack.local";
+	private static final String CREDENTIALS = "{\"email\":\"" + EMAIL + "\",\"password\":\"benchmark\"}";
+	private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+	private static final long TIMEOUT = TimeUnit.MINUTES.toNanos(2);
+
+	@Param({"false"})
+	public boolean virtualThreads;
+
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+	private final AtomicLong logins = new AtomicLong();
+	private final AtomicLong rejectedLogins = new AtomicLong();
+	private Process process;
+	private HttpRequest authenticatedRequest;
+	private HttpRequest loginRequest;
+
+	@Setup
+	public void setup() throws IOException, InterruptedException {
+		if (virtualThreads && Runtime.version().feature() < 21) {
+			throw new IllegalStateException("Virtual threads need Java 21, this JVM is " + Runtime.version() + ".");
+		}
+
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		FileSystemUtils.deleteRecursively(DIRECTORY);
+		Files.createDirectories(DIRECTORY);
+		process = start(port);
+
+		String base = "http://localhost:" + port + "/api/v1/authentication/";
+		String body = "{\"email\":\"" + EMAIL + "\",\"username\":\"load\",\"password\":\"benchmark\"}";
+		HttpResponse<String> register = send(post(base + "register", body), System.nanoTime() + TIMEOUT);
+		Matcher token = TOKEN.matcher(register.body());
+		if (register.statusCode() != 200 || !token.find()) {
+			throw new IllegalStateException("Registration returned " + register.statusCode() + ".");
+		}
+
+		authenticatedRequest = HttpRequest
+				.newBuilder(URI.create(base + "authenticated"))
+				.header("Authorization", "Bearer " + token.group(1))
+				.build();
+		loginRequest = post(base + "login", CREDENTIALS);
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		if (logins.get() > 0) {
+			System.out.println(rejectedLogins.get() + " of " + logins.get() + " logins were rejected with 503.");
+		}
+		process.destroy();
+		if (!process.waitFor(30, TimeUnit.SECONDS)) {
+			process.destroyForcibly().waitFor();
+		}
+		FileSystemUtils.deleteRecursively(DIRECTORY.toFile());
+	}
+
+	@Benchmark
+	public int authenticated() throws IOException, InterruptedException {
+		return check(client.send(authenticatedRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+	}
+
+	@Benchmark
+	public int login() throws IOException, InterruptedException {
+		int status = client.send(loginRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+		logins.incrementAndGet();
+		if (status == 503) {
+			rejectedLogins.incrementAndGet();
+			return status;
+		}
+		return check(status);
+	}
+
+	/* Ein Benchmark, der nur abgelehnte Anfragen misst, wäre wertlos. */
+	private static int check(int status) {
+		if (status != 200) {
+			throw new IllegalStateException("Request returned " + status + ".");
+		}
+		return status;
+	}
+
+	private static HttpRequest post(String uri, String body) {
+		return HttpRequest
+				.newBuilder(URI.create(uri))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+	}
+
+	/* Wiederholt die Anfrage, bis der Port geöffnet ist. */
+	private HttpResponse<String> send(HttpRequest request, long deadline) throws IOException, InterruptedException {
+		while (true) {
+			try {
+				return client.send(request, HttpResponse.BodyHandlers.ofString());
+			} catch (ConnectException e) {
+				if (!process.isAlive() || System.nanoTime() > deadline) {
+					throw new IllegalStateException("Application did not start, see " + DIRECTORY.resolve("application.log") + ".", e);
+				}
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	/* Startet die Anwendung mit dem Klassenpfad des Benchmarks, der H2 enthält. Die Begrenzung der Logins ist
+	 * deaktiviert, da der Benchmark tausende Logins pro Sekunde mit derselben E-Mail-Adresse ausführt. */
+	private Process start(int port) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(List.of(
+				"-Dspring.devtools.restart.enabled=false",
+				"-cp", System.getProperty("java.class.path"),
+				MAIN_CLASS,
+				virtualThreads ? "--spring.profiles.active=h2,virtual-threads" : "--spring.profiles.active=h2",
+				"--server.port=" + port,
+				"--logging.level.root=warn",
+				"--schnack.search.directory=" + DIRECTORY.toAbsolutePath().resolve("search"),
+				"--schnack.timeline.snapshot=" + DIRECTORY.toAbsolutePath().resolve("timelines.bin"),
+				"--schnack.security.rate-limit.address.capacity=" + Long.MAX_VALUE / 2,
+				"--schnack.security.rate-limit.email.capacity=" + Long.MAX_VALUE / 2));
+
+		return new ProcessBuilder(command)
+				.redirectErrorStream(true)
+				.redirectOutput(DIRECTORY.resolve("application.log").toFile())
+				.start();
+	}
+}
@@ -0,0 +1,99 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.entities.Post;
+import com.schnackag.schnackbackend.entities.Role;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import com.schnackag.schnackbackend.services.AuthenticatedUser;
+import com.schnackag.schnackbackend.services.PostIngestionService;
+import com.schnackag.schnackbackend.services.ThreadService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/* Posts pro Sekunde bei 32 gleichzeitigen Schreibern in denselben Thread:
+ * - BATCHED: PostIngestionService, der Aufruf wartet bis zum Commit seines Batches.
+ * - SINGLE_SAVE: Ein PostRepository.save je Post in einer eigenen Transaktion, als Vergleich ohne Batching.
+ * BATCHED veröffentlicht zusätzlich das PostsCreatedEvent für Zähler, Suche, Timelines und SSE, der Vergleich ist
+ * also zu Ungunsten des Batchings. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class PostIngestionBenchmark {
+	public enum Ingestion {
+		BATCHED,
+		SINGLE_SAVE
+	}
+
+	private static final UUID AUTHOR_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+	@Param({"BATCHED", "SINGLE_SAVE"})
+	public Ingestion ingestion;
+
+	private ConfigurableApplicationContext context;
+	private PostIngestionService postIngestionService;
+	private PostRepository postRepository;
+	private UserRepository userRepository;
+	private ThreadRepository threadRepository;
+	private TransactionTemplate transactionTemplate;
+	private AuthenticatedUser author;
+	private UUID threadId;
+
+	@Setup
+	public void setup() {
+		context = BenchmarkApplication.start(Map.of());
+		postIngestionService = context.getBean(PostIngestionService.class);
+		postRepository = context.getBean(PostRepository.class);
+		userRepository = context.getBean(UserRepository.class);
+		threadRepository = context.getBean(ThreadRepository.class);
+		transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+		context.getBean(JdbcTemplate.class).update("""
+				insert into user (id, email, password, username, role)
+				values (?, 'author@schnack.local', 'unused', 'author', 'USER')""", AUTHOR_ID);
+		author = new AuthenticatedUser(AUTHOR_ID, "author", Role.USER);
+		threadId = context.getBean(ThreadService.class).createThread(author, "Ingestion").getId();
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public UUID createPost() throws ExecutionException, InterruptedException {
+		return switch (ingestion) {
+			case BATCHED -> postIngestionService.submit(threadId, author, "Post").get().getId();
+			case SINGLE_SAVE -> transactionTemplate.execute(status -> postRepository.save(new Post(
+					null,
+					"Post",
+					null,
+					userRepository.getReferenceById(AUTHOR_ID),
+					threadRepository.getReferenceById(threadId))).getId());
+		};
+	}
+}
@@ -0,0 +1,89 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.services.KeysetCursor;
+import com.schnackag.schnackbackend.services.ThreadService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/* Lädt eine Seite der Posts eines Threads mit PAGES * PAGE_SIZE Posts. Mit Keyset-Pagination springt jede Seite über
+ * den Index (thread_id, created_at, id) direkt zu ihrem Cursor, Seite 10.000 sollte also nicht langsamer sein als
+ * Seite 1. Der Cursor jeder Seite wird vorab aus dem Post davor berechnet. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostPageBenchmark {
+	private static final int PAGES = 10_000;
+	private static final int PAGE_SIZE = 50;
+	private static final String THREAD_ID = "00000000-0000-0000-0000-000000000002";
+
+	@Param({"1", "100", "10000"})
+	public int page;
+
+	private ConfigurableApplicationContext context;
+	private ThreadService threadService;
+	private String cursor;
+
+	@Setup
+	public void setup() {
+		context = BenchmarkApplication.start(Map.of());
+		threadService = context.getBean(ThreadService.class);
+
+		JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+		jdbcTemplate.update("""
+				insert into user (id, email, password, username, role)
+				values ('00000000-0000-0000-0000-000000000001', 'author@schnack.local', 'unused', 'author', 'USER')""");
+		jdbcTemplate.update("""
+				insert into thread (id, title, created_at, owner_id)
+				values (?, 'Thread', TIMESTAMP '2026-01-01 00:00:00', '00000000-0000-0000-0000-000000000001')""", THREAD_ID);
+		jdbcTemplate.update("""
+				insert into post (id, content, created_at, author_id, thread_id)
+				select RANDOM_UUID(), 'Post ' || "X", DATEADD('MILLISECOND', "X", TIMESTAMP '2026-01-01 00:00:00'), '00000000-0000-0000-0000-000000000001', ?
+				from SYSTEM_RANGE(1, ?)""", THREAD_ID, PAGES * PAGE_SIZE);
+
+		if (page > 1) {
+			// Der letzte Post der vorherigen Seite.
+			cursor = jdbcTemplate.queryForObject(
+					"select created_at, id from post where thread_id = ? order by created_at, id limit 1 offset ?",
+					(row, number) -> new KeysetCursor(row.getObject(1, Timestamp.class).toInstant(), row.getObject(2, UUID.class)).encode(),
+					THREAD_ID,
+					(page - 1) * PAGE_SIZE - 1);
+		}
+		PageResponse<PostResponse> posts = getPage();
+		String first = "Post " + ((page - 1) * PAGE_SIZE + 1);
+		if (posts.getItems().size() != PAGE_SIZE || !posts.getItems().get(0).getContent().equals(first)) {
+			throw new IllegalStateException("Page " + page + " does not start with " + first + ".");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public PageResponse<PostResponse> getPage() {
+		return threadService.getPosts(UUID.fromString(THREAD_ID), cursor, PAGE_SIZE);
+	}
+}
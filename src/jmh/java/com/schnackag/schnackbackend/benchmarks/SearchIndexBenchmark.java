@@ -0,0 +1,167 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+import com.schnackag.schnackbackend.services.SearchIndex;
+import com.schnackag.schnackbackend.services.SearchTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/* Indexierungsrate und Antwortzeiten der Suche auf einem synthetischen Korpus. Die Wörter der Posts folgen einer
+ * Zipf-Verteilung wie natürliche Sprache. Der vollständige Korpus mit 5 Millionen Posts wird mit
+ * -Djmh.args="SearchIndexBenchmark -p documents=5000000" erstellt und benötigt entsprechend Zeit und Speicherplatz.
+ * search läuft im Modus SampleTime, das JSON-Ergebnis enthält also das 99. Perzentil. */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchIndexBenchmark {
+	private static final int VOCABULARY_SIZE = 50_000;
+	private static final int WORDS_PER_POST = 30;
+	private static final int FLUSH_THRESHOLD = 10_000;
+	private static final int MERGE_FACTOR = 8;
+	private static final long MAXIMUM_SEGMENT_SIZE = 1L << 30;
+
+	/* Ein Index mit documents Posts, auf dem gesucht wird. */
+	@State(Scope.Benchmark)
+	public static class Corpus {
+		@Param({"100000"})
+		public int documents;
+
+		private Path directory;
+		private SearchIndex index;
+		private List<String>[] queries;
+
+		@Setup
+		@SuppressWarnings("unchecked")
+		public void setup() throws IOException {
+			directory = Files.createTempDirectory("schnack-benchmark-search");
+			index = new SearchIndex(directory, FLUSH_THRESHOLD, MERGE_FACTOR, MAXIMUM_SEGMENT_SIZE);
+
+			TextGenerator generator = new TextGenerator(42);
+			UUID threadId = UUID.randomUUID();
+			for (int i = 0; i < documents; i++) {
+				if (i % 1000 == 0) {
+					threadId = UUID.randomUUID();
+				}
+				index.add(SearchHitResponse.Type.POST, UUID.randomUUID(), threadId, generator.post());
+				if (i % FLUSH_THRESHOLD == 0) {
+					index.merge();
+				}
+			}
+			index.flush();
+			index.merge();
+
+			/* Suchen aus zwei Wörtern mittlerer Häufigkeit. Sehr häufige Wörter treffen fast jeden Post,
+			 * sehr seltene fast keinen. */
+			Random random = new Random(7);
+			queries = new List[1024];
+			for (int i = 0; i < queries.length; i++) {
+				queries[i] = SearchTokenizer.tokenize(TextGenerator.word(10 + random.nextInt(1000)) + " " + TextGenerator.word(10 + random.nextInt(5000)));
+			}
+		}
+
+		@TearDown
+		public void tearDown() {
+			FileSystemUtils.deleteRecursively(directory.toFile());
+		}
+	}
+
+	/* Ein leerer Index pro Iteration, in den Posts geschrieben werden. */
+	@State(Scope.Thread)
+	public static class EmptyIndex {
+		private final TextGenerator generator = new TextGenerator(43);
+		private final UUID threadId = UUID.randomUUID();
+		private Path directory;
+		private SearchIndex index;
+
+		@Setup(Level.Iteration)
+		public void setup() throws IOException {
+			directory = Files.createTempDirectory("schnack-benchmark-index");
+			index = new SearchIndex(directory, FLUSH_THRESHOLD, MERGE_FACTOR, MAXIMUM_SEGMENT_SIZE);
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown() {
+			FileSystemUtils.deleteRecursively(directory.toFile());
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class QueryCursor {
+		private int next;
+	}
+
+	@Benchmark
+	public List<SearchHitResponse> search(Corpus corpus, QueryCursor cursor) {
+		List<String> terms = corpus.queries[cursor.next++ & (corpus.queries.length - 1)];
+		return corpus.index.search(terms, 20);
+	}
+
+	/* Ein Aufruf indexiert einen Post, der Durchsatz in Operationen pro Sekunde ist also die Indexierungsrate. */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void index(EmptyIndex state) throws IOException {
+		state.index.add(SearchHitResponse.Type.POST, UUID.randomUUID(), state.threadId, state.generator.post());
+	}
+
+	/* Erzeugt Posts aus einem künstlichen Vokabular, dessen Wörter einer Zipf-Verteilung folgen. */
+	private static class TextGenerator {
+		private static final double[] CUMULATIVE = cumulativeZipf();
+
+		private final Random random;
+		private final StringBuilder text = new StringBuilder();
+
+		private TextGenerator(long seed) {
+			this.random = new Random(seed);
+		}
+
+		private String post() {
+			text.setLength(0);
+			for (int i = 0; i < WORDS_PER_POST; i++) {
+				int rank = Arrays.binarySearch(CUMULATIVE, random.nextDouble());
+				text.append(word(rank < 0 ? -rank - 1 : rank)).append(' ');
+			}
+			return text.toString();
+		}
+
+		private static String word(int rank) {
+			return "w" + Integer.toString(rank, 36);
+		}
+
+		private static double[] cumulativeZipf() {
+			double[] cumulative = new double[VOCABULARY_SIZE];
+			double sum = 0;
+			for (int i = 0; i < VOCABULARY_SIZE; i++) {
+				sum += 1.0 / (i + 1);
+				cumulative[i] = sum;
+			}
+			for (int i = 0; i < VOCABULARY_SIZE; i++) {
+				cumulative[i] /= sum;
+			}
+			return cumulative;
+		}
+	}
+}
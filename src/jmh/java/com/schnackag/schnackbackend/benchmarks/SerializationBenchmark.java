@@ -0,0 +1,118 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/* Serialisierung einer Seite von Posts als JSON, CBOR und Smile, wie sie GET /api/v1/threads/{id}/posts liefert:
+ * - serialize: schreibt die Seite direkt in einen OutputStream, wie die HttpMessageConverter.
+ * - serializeGzip: zusätzlich mit gzip, wie server.compression.
+ * Die Größe einer Seite in Bytes (roh und mit gzip) wird in setup() ausgegeben. Die Allokationen pro Seite zeigt
+ * -Djmh.args="SerializationBenchmark -prof gc" als gc.alloc.rate.norm. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+	@Param({"JSON", "CBOR", "SMILE"})
+	public String format;
+
+	@Param({"50"})
+	public int pageSize;
+
+	private ObjectWriter writer;
+	private PageResponse<PostResponse> page;
+
+	@Setup
+	public void setup() throws IOException {
+		// Wie die Anwendung: Zeitpunkte als ISO-Strings, CBOR und Smile mit denselben Einstellungen wie JSON.
+		Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder
+				.json()
+				.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		ObjectMapper objectMapper = switch (format) {
+			case "CBOR" -> builder.factory(new CBORFactory()).build();
+			case "SMILE" -> builder.factory(new SmileFactory()).build();
+			default -> builder.build();
+		};
+		writer = objectMapper.writerFor(PageResponse.class);
+
+		Random random = new Random(42);
+		UUID threadId = UUID.randomUUID();
+		List<PostResponse> posts = new ArrayList<>(pageSize);
+		for (int i = 0; i < pageSize; i++) {
+			posts.add(PostResponse
+					.builder()
+					.id(UUID.randomUUID())
+					.threadId(threadId)
+					.content(content(random))
+					.author("benutzer" + random.nextInt(20))
+					.createdAt(Instant.ofEpochSecond(1_700_000_000L + i * 60L))
+					.build());
+		}
+		page = PageResponse.<PostResponse>builder().items(posts).nextCursor(UUID.randomUUID().toString()).build();
+
+		ByteArrayOutputStream raw = new ByteArrayOutputStream();
+		writer.writeValue(raw, page);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (OutputStream output = new GZIPOutputStream(compressed)) {
+			writer.writeValue(output, page);
+		}
+		System.out.printf("%n%s: %d bytes per page, %d bytes with gzip%n", format, raw.size(), compressed.size());
+	}
+
+	@Benchmark
+	public OutputStream serialize() throws IOException {
+		OutputStream output = OutputStream.nullOutputStream();
+		writer.writeValue(output, page);
+		return output;
+	}
+
+	@Benchmark
+	public OutputStream serializeGzip() throws IOException {
+		OutputStream output = new GZIPOutputStream(OutputStream.nullOutputStream());
+		writer.writeValue(output, page);
+		return output;
+	}
+
+	private static String content(Random random) {
+		String[] words = {"Hallo", "zusammen", "ich", "habe", "eine", "Frage", "zum", "Thema", "Server", "Datenbank", "heute", "wieder"};
+		StringBuilder content = new StringBuilder();
+		int length = 10 + random.nextInt(60);
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				content.append(' ');
+			}
+			content.append(words[random.nextInt(words.length)]);
+		}
+		return content.toString();
+	}
+}
@@ -0,0 +1,82 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import com.schnackag.schnackbackend.services.ShardRing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/* Kosten der Zuordnung eines Threads zu seinem Shard, die vor jedem Zugriff auf ein Repository anfällt. Beim Aufbau
+ * wird außerdem ausgegeben, wie gleichmäßig eine Million UUIDv7 auf die Shards verteilt werden und welcher Anteil
+ * beim Hinzufügen eines weiteren Shards verschoben werden muss (ideal 1/(n+1)). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardRingBenchmark {
+	private static final int IDS = 1 << 20;
+
+	@Param({"2", "8", "32"})
+	public int shards;
+
+	@Param({"128"})
+	public int virtualNodes;
+
+	private ShardRing ring;
+	private UUID[] ids;
+	private int next;
+
+	@Setup
+	public void setup() {
+		ring = new ShardRing(names(shards), virtualNodes);
+		ids = new UUID[IDS];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = UuidV7Generator.generate();
+		}
+
+		ShardRing grown = new ShardRing(names(shards + 1), virtualNodes);
+		Map<String, Integer> counts = new HashMap<>();
+		int moved = 0;
+		for (UUID id : ids) {
+			String shard = ring.shardOf(id);
+			counts.merge(shard, 1, Integer::sum);
+			if (!shard.equals(grown.shardOf(id))) {
+				moved++;
+			}
+		}
+		int minimum = counts.values().stream().mapToInt(Integer::intValue).min().orElse(0);
+		int maximum = counts.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+		System.out.printf("%n%d shards: smallest %.1f%%, largest %.1f%% of threads, %.1f%% moved to shard %d%n",
+				shards, 100.0 * minimum / IDS, 100.0 * maximum / IDS, 100.0 * moved / IDS, shards + 1);
+	}
+
+	@Benchmark
+	public String shardOf() {
+		return ring.shardOf(ids[next++ & (IDS - 1)]);
+	}
+
+	private static List<String> names(int count) {
+		List<String> names = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			names.add("shard-" + i);
+		}
+		return names;
+	}
+}
@@ -0,0 +1,193 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipFile;
+
+/* Zeit vom Start der JVM bis zur ersten erfolgreichen Anfrage an /api/v1/authentication/authenticated. Jede Messung
+ * startet das JAR aus target in einer neuen JVM mit H2 und registriert einen Benutzer, dessen Token dann verwendet
+ * wird:
+ * - DEFAULT: Spring-Profil h2, Hibernate passt das Schema an (ddl-auto=update).
+ * - PRODUCTION: zusätzlich Spring-Profil production (Flyway, keine Metadaten beim Start, deferred Repositories).
+ * - PRODUCTION_AOT_CDS: zusätzlich mit Spring AOT und einem CDS-Archiv, das in setup() erstellt wird.
+ *
+ * Das JAR und target/lib müssen mit dem Maven-Profil production gebaut sein: -P production,jmh verify
+ * -Djmh.args="StartupBenchmark". H2 wird aus dem Klassenpfad des Benchmarks hinter dem JAR angehängt, das
+ * CDS-Archiv passt deshalb nur zu diesem Klassenpfad. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+	public enum Configuration {
+		DEFAULT,
+		PRODUCTION,
+		PRODUCTION_AOT_CDS
+	}
+
+	private static final Path TARGET = Path.of("target");
+	private static final Path DIRECTORY = TARGET.resolve("startup-benchmark");
+	private static final Path ARCHIVE = DIRECTORY.resolve("application.jsa");
+	private static final String MAIN_CLASS = "com.schnackag.schnackbackend.SchnackBackendApplication";
+	private static final String AOT_INITIALIZER = "com/schnackag/schnackbackend/SchnackBackendApplication__ApplicationContextInitializer.class";
+	private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+	private static final long TIMEOUT = TimeUnit.MINUTES.toNanos(2);
+
+	@Param({"DEFAULT", "PRODUCTION", "PRODUCTION_AOT_CDS"})
+	public Configuration configuration;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private String classPath;
+	private Process process;
+
+	@Setup
+	public void setup() throws IOException, InterruptedException {
+		Path jar;
+		try (var files = Files.list(TARGET)) {
+			jar = files
+					.filter(file -> file.getFileName().toString().matches("Schnack-Backend-[^-]*(-SNAPSHOT)?\\.jar"))
+					.findFirst()
+					.orElseThrow(() -> new IllegalStateException("No jar found in " + TARGET + ", build it with -P production,jmh verify."));
+		}
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			if (zip.getEntry(AOT_INITIALIZER) == null || !Files.isDirectory(TARGET.resolve("lib"))) {
+				throw new IllegalStateException(jar + " was not built for production, build it with -P production,jmh verify.");
+			}
+		}
+
+		Path h2 = Arrays
+				.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+				.map(Path::of)
+				.filter(file -> file.getFileName().toString().matches("h2-.*\\.jar"))
+				.findFirst()
+				.orElseThrow(() -> new IllegalStateException("H2 is not on the class path."));
+		classPath = jar.toAbsolutePath() + File.pathSeparator + h2.toAbsolutePath();
+
+		FileSystemUtils.deleteRecursively(DIRECTORY);
+		Files.createDirectories(DIRECTORY);
+
+		if (configuration == Configuration.PRODUCTION_AOT_CDS) {
+			// Trainingslauf: Die Anwendung endet nach dem Aufbau des Kontexts, die geladenen Klassen landen im Archiv.
+			Process training = start(List.of("-XX:ArchiveClassesAtExit=" + ARCHIVE.toAbsolutePath(), "-Dspring.context.exit=onRefresh"), 0);
+			if (training.waitFor() != 0 || !Files.exists(ARCHIVE)) {
+				throw new IllegalStateException("Training run for the CDS archive failed.");
+			}
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void stop() throws InterruptedException {
+		if (process != null) {
+			process.destroy();
+			if (!process.waitFor(30, TimeUnit.SECONDS)) {
+				process.destroyForcibly().waitFor();
+			}
+			process = null;
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		FileSystemUtils.deleteRecursively(DIRECTORY.toFile());
+	}
+
+	@Benchmark
+	public int firstAuthenticatedRequest() throws IOException, InterruptedException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+
+		long deadline = System.nanoTime() + TIMEOUT;
+		List<String> options = configuration == Configuration.PRODUCTION_AOT_CDS
+				? List.of("-XX:SharedArchiveFile=" + ARCHIVE.toAbsolutePath())
+				: List.of();
+		process = start(options, port);
+
+		String body = "{\"email\":\"startup@schnack.local\",\"username\":\"startup@schnack.local\",\"password\":\"benchmark\"}";
+		HttpResponse<String> register = send(HttpRequest
+				.newBuilder(URI.create("http://localhost:" + port + "/api/v1/authentication/register"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build(), deadline);
+		Matcher token = TOKEN.matcher(register.body());
+		if (register.statusCode() != 200 || !token.find()) {
+			throw new IllegalStateException("Registration returned " + register.statusCode() + ".");
+		}
+
+		HttpResponse<String> authenticated = send(HttpRequest
+				.newBuilder(URI.create("http://localhost:" + port + "/api/v1/authentication/authenticated"))
+				.header("Authorization", "Bearer " + token.group(1))
+				.build(), deadline);
+		if (authenticated.statusCode() != 200) {
+			throw new IllegalStateException("/authenticated returned " + authenticated.statusCode() + ".");
+		}
+		return authenticated.statusCode();
+	}
+
+	/* Wiederholt die Anfrage, bis der Port geöffnet ist. */
+	private HttpResponse<String> send(HttpRequest request, long deadline) throws IOException, InterruptedException {
+		while (true) {
+			try {
+				return client.send(request, HttpResponse.BodyHandlers.ofString());
+			} catch (ConnectException e) {
+				if (!process.isAlive() || System.nanoTime() > deadline) {
+					throw new IllegalStateException("Application did not start.", e);
+				}
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	private Process start(List<String> options, int port) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(options);
+		if (configuration == Configuration.PRODUCTION_AOT_CDS) {
+			command.add("-Dspring.aot.enabled=true");
+		}
+		command.addAll(List.of("-cp", classPath, MAIN_CLASS));
+		command.add(configuration == Configuration.DEFAULT ? "--spring.profiles.active=h2" : "--spring.profiles.active=production,h2");
+		command.addAll(Arrays.asList(
+				"--server.port=" + port,
+				"--logging.level.root=warn",
+				"--schnack.search.directory=" + DIRECTORY.toAbsolutePath().resolve("search-" + UUID.randomUUID())));
+
+		return new ProcessBuilder(command)
+				.redirectErrorStream(true)
+				.redirectOutput(DIRECTORY.resolve("application.log").toFile())
+				.start();
+	}
+}
@@ -0,0 +1,73 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import com.schnackag.schnackbackend.services.PostCounterService;
+import com.schnackag.schnackbackend.services.ThreadService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/* Lädt die erste Seite der Thread-Liste mit der Anzahl der Posts und dem letzten Post jedes Threads. Da diese Werte
+ * denormalisiert am Thread stehen, sollte die Zeit unabhängig von postsPerThread sein. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadListBenchmark {
+	private static final int THREADS = 50;
+
+	@Param({"10", "10000"})
+	public int postsPerThread;
+
+	private ConfigurableApplicationContext context;
+	private ThreadService threadService;
+
+	@Setup
+	public void setup() {
+		context = BenchmarkApplication.start(Map.of());
+		threadService = context.getBean(ThreadService.class);
+
+		JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+		jdbcTemplate.update("""
+				insert into user (id, email, password, username, role)
+				values ('00000000-0000-0000-0000-000000000001', 'author@schnack.local', 'unused', 'author', 'USER')""");
+		jdbcTemplate.update("""
+				insert into thread (id, title, created_at, owner_id)
+				select RANDOM_UUID(), 'Thread ' || "X", DATEADD('SECOND', "X", TIMESTAMP '2026-01-01 00:00:00'), '00000000-0000-0000-0000-000000000001'
+				from SYSTEM_RANGE(1, ?)""", THREADS);
+		jdbcTemplate.update("""
+				insert into post (id, content, created_at, author_id, thread_id)
+				select RANDOM_UUID(), 'Post ' || "X", DATEADD('MILLISECOND', "X", TIMESTAMP '2026-01-01 00:00:00'), '00000000-0000-0000-0000-000000000001', t.id
+				from thread t cross join SYSTEM_RANGE(1, ?)""", postsPerThread);
+
+		// Berechnet die Zähler der eingefügten Posts, wie es der Abgleich im Betrieb tut.
+		context.getBean(PostCounterService.class).reconcile();
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public PageResponse<ThreadResponse> firstPage() {
+		return threadService.getThreads(null, THREADS);
+	}
+}
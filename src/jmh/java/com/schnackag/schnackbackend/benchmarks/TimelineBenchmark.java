@@ -0,0 +1,71 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.services.Timeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/* Eine volle Timeline mit capacity Einträgen:
+ * - add: neue Aktivität in einem zufälligen Thread der Timeline, wie beim Fan-out eines Posts.
+ * - readFirstPage / readMiddlePage: eine Seite von pageSize Einträgen, ohne Cursor bzw. mit einem Cursor in der Mitte.
+ * Die Lesezeit sollte von pageSize abhängen, nicht von capacity. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimelineBenchmark {
+	@Param({"200", "2000"})
+	public int capacity;
+
+	@Param({"50"})
+	public int pageSize;
+
+	private final Random random = new Random(42);
+	private Timeline timeline;
+	private UUID[] threads;
+	private long activity;
+	private Timeline.Entry middle;
+
+	@Setup
+	public void setup() {
+		timeline = new Timeline(capacity, 32, System.currentTimeMillis());
+		threads = new UUID[capacity];
+		for (int i = 0; i < capacity; i++) {
+			threads[i] = UUID.randomUUID();
+			timeline.add(threads[i], ++activity);
+		}
+		List<Timeline.Entry> entries = timeline.read(Long.MAX_VALUE, new UUID(Long.MAX_VALUE, Long.MAX_VALUE), capacity);
+		middle = entries.get(capacity / 2);
+	}
+
+	@Benchmark
+	public Timeline add() {
+		timeline.add(threads[random.nextInt(capacity)], ++activity);
+		return timeline;
+	}
+
+	@Benchmark
+	public List<Timeline.Entry> readFirstPage() {
+		return timeline.read(Long.MAX_VALUE, new UUID(Long.MAX_VALUE, Long.MAX_VALUE), pageSize);
+	}
+
+	@Benchmark
+	public List<Timeline.Entry> readMiddlePage() {
+		return timeline.read(middle.getActivity(), middle.getThreadId(), pageSize);
+	}
+}
@@ -0,0 +1,102 @@
+package com.schnackag.schnackbackend.benchmarks;
+
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/* Eingefügte Zeilen pro Sekunde in eine Tabelle mit UUID-Primärschlüssel, die bereits existingRows Zeilen enthält:
+ * - V4: Die Tabelle und die neuen Zeilen haben zufällige UUIDs, neue Zeilen landen auf beliebigen Seiten des Index.
+ * - V7: Die Tabelle und die neuen Zeilen haben UUIDs vom UuidV7Generator, neue Zeilen landen am Ende des Index.
+ * - V7_AFTER_V4: Die Tabelle enthält UUIDv4 aus der Zeit vor der Umstellung, neue Zeilen haben UUIDv7. Sie landen
+ *   gesammelt an einer Stelle mitten im Index, hinter ihnen liegen noch die größeren UUIDv4.
+ * Die Datenbank ist H2 als Datei unter target, nicht InnoDB. Die Richtung sollte übertragbar sein, die Abstände nicht.
+ * Jeder Aufruf schreibt BATCH_SIZE Zeilen in einer Transaktion. Die Tabelle wird vorab per JDBC-Batch gefüllt, für die
+ * Größenordnung aus der Anfrage: -Djmh.args="UuidInsertBenchmark -p existingRows=10000000" */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UuidInsertBenchmark {
+	public enum Keys {
+		V4,
+		V7,
+		V7_AFTER_V4
+	}
+
+	private static final Path DIRECTORY = Path.of("target", "uuid-insert-benchmark");
+	private static final int BATCH_SIZE = 1000;
+	private static final String INSERT = "insert into post (id, content) values (?, ?)";
+	private static final String CONTENT = "Ein Post mit ungefähr der durchschnittlichen Länge eines Posts. ".repeat(3);
+
+	@Param({"V4", "V7", "V7_AFTER_V4"})
+	public Keys keys;
+
+	@Param({"1000000"})
+	public int existingRows;
+
+	private Connection connection;
+	private PreparedStatement insert;
+
+	@Setup
+	public void setup() throws IOException, SQLException {
+		FileSystemUtils.deleteRecursively(DIRECTORY);
+		connection = DriverManager.getConnection("jdbc:h2:file:" + DIRECTORY.toAbsolutePath().resolve("benchmark"), "sa", "");
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("create table post (id uuid primary key, content varchar(255) not null)");
+		}
+		connection.setAutoCommit(false);
+		insert = connection.prepareStatement(INSERT);
+
+		boolean legacy = keys != Keys.V7;
+		for (int i = 0; i < existingRows; i += BATCH_SIZE) {
+			insert(legacy ? UUID::randomUUID : UuidV7Generator::generate, Math.min(BATCH_SIZE, existingRows - i));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException, IOException {
+		connection.close();
+		FileSystemUtils.deleteRecursively(DIRECTORY);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public void insertBatch() throws SQLException {
+		insert(keys == Keys.V4 ? UUID::randomUUID : UuidV7Generator::generate, BATCH_SIZE);
+	}
+
+	private void insert(Supplier<UUID> ids, int rows) throws SQLException {
+		for (int i = 0; i < rows; i++) {
+			insert.setObject(1, ids.get());
+			insert.setString(2, CONTENT);
+			insert.addBatch();
+		}
+		insert.executeBatch();
+		connection.commit();
+	}
+}
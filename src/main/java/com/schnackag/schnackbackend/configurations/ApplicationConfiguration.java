@@ -1,6 +1,5 @@
 package com.schnackag.schnackbackend.configurations;
 
-import com.schnackag.schnackbackend.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,35 +7,30 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @Configuration
 @RequiredArgsConstructor
 public class ApplicationConfiguration {
-	private final UserRepository userRepository;
+	/* Der UserDetailsService ist der CachedUserDetailsService, der geladene Benutzer zwischenspeichert. */
+	private final UserDetailsService userDetailsService;
 
-	@Bean
-	UserDetailsService userDetailsService() {
-		return username -> userRepository.findByEmail(username)
-				.orElseThrow(() -> new UsernameNotFoundException("User not found."));
-	}
+	/* Der PasswordEncoder ist der BoundedPasswordEncoder, der BCrypt in einem eigenen, begrenzten Thread-Pool ausführt.
+	 * Der UserDetailsPasswordService speichert Passwörter, die beim Login mit einem neuen Kostenfaktor gehasht wurden. */
+	private final PasswordEncoder passwordEncoder;
+	private final UserDetailsPasswordService userDetailsPasswordService;
 
 	@Bean
 	public AuthenticationProvider authenticationProvider() {
 		DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
-		authProvider.setUserDetailsService(userDetailsService());
-		authProvider.setPasswordEncoder(passwordEncoder());
+		authProvider.setUserDetailsService(userDetailsService);
+		authProvider.setPasswordEncoder(passwordEncoder);
+		authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
 		return authProvider;
 	}
 
-	@Bean
-	public PasswordEncoder passwordEncoder() {
-		return new BCryptPasswordEncoder();
-	}
-
 	@Bean
 	public AuthenticationManager authenticationManager(AuthenticationConfiguration configuration) throws Exception {
 		return configuration.getAuthenticationManager();
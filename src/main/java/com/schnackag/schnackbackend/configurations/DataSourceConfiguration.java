@@ -0,0 +1,73 @@
+package com.schnackag.schnackbackend.configurations;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Ersetzt die DataSource von Spring Boot, sobald mindestens ein Replikat konfiguriert ist.
+ *
+ * Die DataSource der Anwendung ist ein LazyConnectionDataSourceProxy. Er holt die echte Verbindung erst bei der
+ * ersten Anweisung, also nachdem die Transaktion die Verbindung als read-only markiert hat. Read-only Transaktionen
+ * (@Transactional(readOnly = true) und die lesenden Methoden der Repositories) erhalten ihre Verbindung von der
+ * ReplicaRoutingDataSource, alle anderen vom Primärsystem. Schema-Updates und Abfragen ohne Transaktion laufen
+ * deshalb immer auf dem Primärsystem. */
+@Configuration
+@ConditionalOnProperty(name = "schnack.datasource.replicas[0].url")
+public class DataSourceConfiguration {
+
+	/* Der Pool des Primärsystems, konfiguriert wie sonst von Spring Boot über spring.datasource.*. */
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		dataSource.setPoolName("primary");
+		return dataSource;
+	}
+
+	@Bean
+	public ReplicaRoutingDataSource replicaRoutingDataSource(
+			HikariDataSource primaryDataSource,
+			DataSourceProperties properties,
+			ReplicaProperties replicaProperties,
+			MeterRegistry meterRegistry) {
+		List<HikariDataSource> replicas = new ArrayList<>();
+		for (ReplicaProperties.Replica replica : replicaProperties.getReplicas()) {
+			HikariDataSource dataSource = new HikariDataSource();
+			dataSource.setPoolName("replica-" + replicas.size());
+			dataSource.setJdbcUrl(replica.getUrl());
+			dataSource.setUsername(replica.getUsername());
+			dataSource.setPassword(replica.getPassword());
+			dataSource.setDriverClassName(properties.determineDriverClassName());
+			dataSource.setMaximumPoolSize(replicaProperties.getMaximumPoolSize());
+			dataSource.setConnectionTimeout(replicaProperties.getConnectionTimeout().toMillis());
+			dataSource.setReadOnly(true);
+			dataSource.setMetricRegistry(meterRegistry);
+			replicas.add(dataSource);
+		}
+
+		return new ReplicaRoutingDataSource(
+				primaryDataSource,
+				replicas,
+				replicaProperties.getMaximumLag(),
+				replicaProperties.getLagQuery(),
+				replicaProperties.getLagColumn());
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaRoutingDataSource) {
+		LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+		dataSource.setReadOnlyDataSource(replicaRoutingDataSource);
+		return dataSource;
+	}
+}
@@ -0,0 +1,27 @@
+package com.schnackag.schnackbackend.configurations;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/* Binäre Alternativen zu JSON. Mit Accept: application/cbor bzw. application/x-jackson-smile antworten alle
+ * Controller in CBOR bzw. Smile, ohne Accept-Header weiterhin in JSON. Beide Formate verwenden den von Spring Boot
+ * konfigurierten Jackson2ObjectMapperBuilder, serialisieren also dieselben Felder wie JSON. Wie bei JSON wird direkt
+ * in den OutputStream der Antwort geschrieben, ohne den ganzen Inhalt vorher in einem Puffer aufzubauen. */
+@Configuration
+public class EncodingConfiguration {
+
+	@Bean
+	public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2CborHttpMessageConverter(builder.createXmlMapper(false).factory(new CBORFactory()).build());
+	}
+
+	@Bean
+	public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+		return new MappingJackson2SmileHttpMessageConverter(builder.createXmlMapper(false).factory(new SmileFactory()).build());
+	}
+}
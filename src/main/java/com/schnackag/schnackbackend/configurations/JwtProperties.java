@@ -0,0 +1,27 @@
+package com.schnackag.schnackbackend.configurations;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* Konfiguration der Schlüssel, mit denen JWTs signiert und geprüft werden.
+ * Signiert wird immer mit dem Schlüssel active-key-id. Geprüft wird mit dem Schlüssel, dessen ID im Header (kid)
+ * des Tokens steht. Bei einer Schlüsselrotation wird der neue Schlüssel hinzugefügt und aktiviert, der alte bleibt
+ * so lange in der Liste, bis alle mit ihm signierten Tokens abgelaufen sind. */
+@Data
+@ConfigurationProperties(prefix = "schnack.jwt")
+public class JwtProperties {
+	private String activeKeyId;
+
+	private List<Key> keys = new ArrayList<>();
+
+	@Data
+	public static class Key {
+		private String id;
+
+		// Der Schlüssel als Base64-String, mindestens 256 Bit.
+		private String secret;
+	}
+}
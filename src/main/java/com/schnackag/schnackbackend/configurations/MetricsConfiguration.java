@@ -0,0 +1,18 @@
+package com.schnackag.schnackbackend.configurations;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/* Registriert den QueryCountInspector bei Hibernate, sofern die Metriken aktiviert sind. */
+@Configuration
+@ConditionalOnProperty(name = "schnack.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class MetricsConfiguration {
+
+	@Bean
+	public HibernatePropertiesCustomizer queryCountCustomizer() {
+		return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountInspector());
+	}
+}
@@ -0,0 +1,25 @@
+package com.schnackag.schnackbackend.configurations;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/* Zählt die SQL-Anweisungen, die Hibernate auf dem aktuellen Thread vorbereitet. Der QueryCountFilter setzt den Zähler
+ * zu Beginn einer Anfrage zurück und liest ihn am Ende. Das ist günstiger als hibernate.generate_statistics, das für
+ * jede Abfrage Statistiken in gemeinsamen Maps sammelt. Abfragen auf anderen Threads (z.B. beim gesammelten
+ * Speichern von Posts) werden der Anfrage nicht zugerechnet. */
+public class QueryCountInspector implements StatementInspector {
+	private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+	@Override
+	public String inspect(String sql) {
+		COUNT.get()[0]++;
+		return sql;
+	}
+
+	public static void reset() {
+		COUNT.get()[0] = 0;
+	}
+
+	public static int getCount() {
+		return COUNT.get()[0];
+	}
+}
@@ -0,0 +1,37 @@
+package com.schnackag.schnackbackend.configurations;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Konfiguration der Lese-Replikate. Ohne Replikate arbeitet die Anwendung wie bisher nur mit spring.datasource.
+ * Die Verzögerung eines Replikats wird mit lag-query gemessen, das Ergebnis steht in der Spalte lag-column
+ * (in Sekunden). Für MySQL ist das Seconds_Behind_Source aus SHOW REPLICA STATUS. Ist ein Replikat nicht erreichbar,
+ * wird nach connection-timeout vom Primärsystem gelesen. */
+@Data
+@ConfigurationProperties(prefix = "schnack.datasource")
+public class ReplicaProperties {
+	private List<Replica> replicas = new ArrayList<>();
+
+	private Duration maximumLag = Duration.ofSeconds(5);
+
+	private String lagQuery = "SHOW REPLICA STATUS";
+
+	private String lagColumn = "Seconds_Behind_Source";
+
+	private int maximumPoolSize = 10;
+
+	private Duration connectionTimeout = Duration.ofSeconds(2);
+
+	@Data
+	public static class Replica {
+		private String url;
+
+		private String username;
+
+		private String password;
+	}
+}
@@ -0,0 +1,162 @@
+package com.schnackag.schnackbackend.configurations;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/* Verteilt lesende Verbindungen reihum auf die Replikate. Der LazyConnectionDataSourceProxy (siehe
+ * DataSourceConfiguration) fragt nur dann hier nach einer Verbindung, wenn die Transaktion read-only ist.
+ *
+ * Alle check-interval wird die Verzögerung jedes Replikats gemessen. Replikate, die mehr als maximum-lag
+ * hinterherhängen, deren Replikation steht oder die nicht erreichbar sind, werden bis zur nächsten erfolgreichen
+ * Messung übersprungen. Ist kein Replikat verfügbar oder schlägt der Verbindungsaufbau fehl, wird die Verbindung
+ * vom Primärsystem geholt.
+ *
+ * Mit onPrimary() wird ein Lesezugriff unabhängig von der Transaktion auf das Primärsystem gelenkt, z.B. direkt
+ * nach dem Schreiben (siehe ReplicaRouting). */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+	private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+	private final DataSource primary;
+	private final List<Replica> replicas;
+	private final Duration maximumLag;
+	private final String lagQuery;
+	private final String lagColumn;
+	private final AtomicInteger next = new AtomicInteger();
+
+	private volatile List<Replica> available = List.of();
+
+	public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas, Duration maximumLag, String lagQuery, String lagColumn) {
+		this.primary = primary;
+		this.replicas = replicas.stream().map(Replica::new).toList();
+		this.maximumLag = maximumLag;
+		this.lagQuery = lagQuery;
+		this.lagColumn = lagColumn;
+		checkLag();
+	}
+
+	/* Führt loader mit Verbindungen des Primärsystems aus. Muss außerhalb einer bestehenden Transaktion aufgerufen
+	 * werden, deren Verbindung bereits geholt wurde. */
+	public static <T> T onPrimary(Supplier<T> loader) {
+		if (Boolean.TRUE.equals(PRIMARY_REQUIRED.get())) {
+			return loader.get();
+		}
+
+		PRIMARY_REQUIRED.set(true);
+		try {
+			return loader.get();
+		} finally {
+			PRIMARY_REQUIRED.remove();
+		}
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		Replica replica = select();
+		if (replica != null) {
+			try {
+				return replica.dataSource.getConnection();
+			} catch (SQLException | RuntimeException e) {
+				log.warn("Could not connect to replica {}, reading from the primary.", replica.dataSource.getPoolName(), e);
+				markUnavailable(replica);
+			}
+		}
+		return primary.getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return getConnection();
+	}
+
+	/* Misst die Verzögerung aller Replikate und legt fest, welche für Lesezugriffe verwendet werden. */
+	@Scheduled(fixedDelayString = "${schnack.datasource.check-interval:PT5S}")
+	public void checkLag() {
+		available = replicas.stream().filter(this::isAvailable).toList();
+	}
+
+	/* Die Namen der Pools der Replikate, die gerade für Lesezugriffe verwendet werden. */
+	public List<String> getAvailableReplicas() {
+		return available.stream().map(replica -> replica.dataSource.getPoolName()).toList();
+	}
+
+	@Override
+	public void close() {
+		replicas.forEach(replica -> replica.dataSource.close());
+	}
+
+	private Replica select() {
+		if (Boolean.TRUE.equals(PRIMARY_REQUIRED.get())) {
+			return null;
+		}
+
+		List<Replica> candidates = available;
+		if (candidates.isEmpty()) {
+			return null;
+		}
+		return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+	}
+
+	private boolean isAvailable(Replica replica) {
+		String name = replica.dataSource.getPoolName();
+		try (Connection connection = replica.dataSource.getConnection();
+			 Statement statement = connection.createStatement();
+			 ResultSet result = statement.executeQuery(lagQuery)) {
+			if (!result.next()) {
+				return update(replica, false, "Replica {} reports no replication status, reading from the primary.", name);
+			}
+
+			long lag = result.getLong(lagColumn);
+			if (result.wasNull()) {
+				return update(replica, false, "Replication of replica {} is stopped, reading from the primary.", name);
+			}
+			if (lag > maximumLag.toSeconds()) {
+				return update(replica, false, "Replica {} is {}s behind, reading from the primary.", name, lag);
+			}
+			return update(replica, true, "Replica {} is available for reads.", name);
+		} catch (SQLException | RuntimeException e) {
+			return update(replica, false, "Could not check the lag of replica {}, reading from the primary: {}", name, e.getMessage());
+		}
+	}
+
+	/* Protokolliert nur Wechsel des Zustands, damit ein dauerhaft hinterherhängendes Replikat nicht alle
+	 * check-interval eine Meldung erzeugt. */
+	private boolean update(Replica replica, boolean available, String message, Object... arguments) {
+		if (!Boolean.valueOf(available).equals(replica.available)) {
+			if (available) {
+				log.info(message, arguments);
+			} else {
+				log.warn(message, arguments);
+			}
+			replica.available = available;
+		}
+		return available;
+	}
+
+	private synchronized void markUnavailable(Replica replica) {
+		replica.available = false;
+		available = available.stream().filter(candidate -> candidate != replica).toList();
+	}
+
+	private static class Replica {
+		private final HikariDataSource dataSource;
+		private volatile Boolean available;
+
+		private Replica(HikariDataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.schnackag.schnackbackend.configurations;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/* Aktiviert die Ausführung von Methoden mit @Scheduled, z.B. den Heartbeat des ThreadEventHub. */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
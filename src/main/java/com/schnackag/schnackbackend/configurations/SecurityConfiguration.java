@@ -1,19 +1,35 @@
 package com.schnackag.schnackbackend.configurations;
 
+import com.schnackag.schnackbackend.entities.Role;
 import com.schnackag.schnackbackend.filters.JwtAuthenticationFilter;
+import com.schnackag.schnackbackend.filters.RateLimitingFilter;
+import com.schnackag.schnackbackend.services.RoleAuthorizationManager;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.aop.Advisor;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationManagers;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.authorization.method.Jsr250AuthorizationManager;
+import org.springframework.security.authorization.method.SecuredAuthorizationManager;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
@@ -22,11 +38,16 @@ import java.util.List;
 
 @Configuration
 @EnableWebSecurity
-@EnableMethodSecurity(jsr250Enabled = true, securedEnabled = true)
+@EnableMethodSecurity
 @RequiredArgsConstructor
 public class SecurityConfiguration {
 	private final AuthenticationProvider authenticationProvider;
 	private final JwtAuthenticationFilter jwtAuthenticationFilter;
+	private final RateLimitingFilter rateLimitingFilter;
+
+	/* Adressbereiche (CIDR), aus denen /actuator/prometheus ohne Anmeldung abgefragt werden darf, z.B. der Prometheus-Server. */
+	@Value("${schnack.metrics.allowed-addresses:127.0.0.1/32,::1/128}")
+	private List<String> metricsAllowedAddresses;
 
 	/* CORS (Cross-Origin Resource Sharing).
 	 * Die Klasse CorsFilter ist eine konkrete Implementierung von OncePerRequestFilter.
@@ -80,6 +101,22 @@ public class SecurityConfiguration {
 						.requestMatchers("/api/v1/authentication/login").permitAll()
 						.requestMatchers("/api/v1/authentication/register").permitAll()
 
+						// Refresh und Logout werden über das Refresh-Token im Body autorisiert,
+						// das Access-Token darf dabei bereits abgelaufen sein.
+						.requestMatchers("/api/v1/authentication/refresh").permitAll()
+						.requestMatchers("/api/v1/authentication/logout").permitAll()
+
+						// Der Health-Check gibt nur den Status zurück und ist für Load Balancer frei zugänglich.
+						// Die Metriken sind nur für erlaubte Adressen oder Administratoren sichtbar.
+						.requestMatchers("/actuator/health").permitAll()
+						.requestMatchers("/actuator/prometheus").access(metricsAuthorizationManager())
+
+						// Erlaube die Weiterleitung an die Fehlerseite, damit der Statuscode eines Fehlers
+						// (z.B. 503 bei überlastetem Passwort-Hashing) nicht durch 403 ersetzt wird.
+						// Asynchrone Antworten (z.B. beim Erstellen von Posts) gehören zu einem Request,
+						// der bereits beim ersten Durchlauf der Filterkette autorisiert wurde.
+						.dispatcherTypeMatchers(DispatcherType.ERROR, DispatcherType.ASYNC).permitAll()
+
 						// Jeder andere Request muss authentifiziert sein.
 						.anyRequest().authenticated())
 
@@ -92,8 +129,39 @@ public class SecurityConfiguration {
 
 				// Legt einen benutzerdefinierten Filter fest,
 				// der vor der Benutzer-Passwortauthentifizierung ausgeführt wird.
-				.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+				.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+
+				// Die Begrenzung der Login- und Registrierungsanfragen läuft noch vor dem JWT Filter.
+				.addFilterBefore(rateLimitingFilter, JwtAuthenticationFilter.class);
 
 		return httpSecurity.build();
 	}
+
+	/* @Secured und @RolesAllowed werden nicht über securedEnabled bzw. jsr250Enabled aktiviert, sondern mit eigenen
+	 * Interceptoren, die die Berechtigungen mit dem RoleAuthorizationManager prüfen. Die Berechtigungen haben kein
+	 * Präfix ROLE_, @RolesAllowed("MODERATOR") prüft also wie @Secured("MODERATOR") die Rolle MODERATOR. */
+	@Bean
+	@org.springframework.context.annotation.Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+	static Advisor securedAuthorizationMethodInterceptor() {
+		SecuredAuthorizationManager authorizationManager = new SecuredAuthorizationManager();
+		authorizationManager.setAuthoritiesAuthorizationManager(new RoleAuthorizationManager());
+		return AuthorizationManagerBeforeMethodInterceptor.secured(authorizationManager);
+	}
+
+	@Bean
+	@org.springframework.context.annotation.Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+	static Advisor jsr250AuthorizationMethodInterceptor() {
+		Jsr250AuthorizationManager authorizationManager = new Jsr250AuthorizationManager();
+		authorizationManager.setAuthoritiesAuthorizationManager(new RoleAuthorizationManager());
+		authorizationManager.setRolePrefix("");
+		return AuthorizationManagerBeforeMethodInterceptor.jsr250(authorizationManager);
+	}
+
+	private AuthorizationManager<RequestAuthorizationContext> metricsAuthorizationManager() {
+		List<IpAddressMatcher> matchers = metricsAllowedAddresses.stream().map(IpAddressMatcher::new).toList();
+		AuthorizationManager<RequestAuthorizationContext> allowedAddress = (authentication, context) ->
+				new AuthorizationDecision(matchers.stream().anyMatch(matcher -> matcher.matches(context.getRequest())));
+
+		return AuthorizationManagers.anyOf(allowedAddress, AuthorityAuthorizationManager.hasAuthority(Role.ADMINISTRATOR.name()));
+	}
 }
@@ -0,0 +1,96 @@
+package com.schnackag.schnackbackend.configurations;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/* Wählt die Verbindung des Shards, auf den der aktuelle Aufruf gelenkt wurde. Der LazyConnectionDataSourceProxy
+ * (siehe ShardingConfiguration) holt die Verbindung erst bei der ersten Anweisung, der Shard kann also auch noch
+ * nach dem Beginn der Transaktion festgelegt werden.
+ *
+ * Der erste Shard innerhalb einer Transaktion wird an die Transaktion gebunden. Alle weiteren Anweisungen der
+ * Transaktion, auch das Flush beim Commit, laufen auf diesem Shard. Ein Zugriff auf einen anderen Shard in derselben
+ * Transaktion ist ein Fehler, eine Transaktion über mehrere Datenbanken gibt es nicht. Ohne Shard wird die globale
+ * Datenbank (spring.datasource) verwendet. */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+	public static final String GLOBAL = "global";
+
+	private static final ThreadLocal<String> CURRENT_SHARD = new ThreadLocal<>();
+	private static final Object TRANSACTION_SHARD = new Object();
+
+	/* Führt loader auf shard aus. Innerhalb einer Transaktion muss shard der Shard der Transaktion sein. */
+	public static <T> T onShard(String shard, Supplier<T> loader) {
+		String previous = bind(shard);
+		try {
+			return loader.get();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	/* Der Shard, auf den der aktuelle Aufruf mit onShard gelenkt wurde, sonst null. */
+	public static String getCurrentShard() {
+		return CURRENT_SHARD.get();
+	}
+
+	/* Der Shard, an den die laufende Transaktion gebunden ist, sonst null. */
+	public static String getTransactionShard() {
+		return (String) TransactionSynchronizationManager.getResource(TRANSACTION_SHARD);
+	}
+
+	static String bind(String shard) {
+		bindTransaction(shard);
+		String previous = CURRENT_SHARD.get();
+		CURRENT_SHARD.set(shard);
+		return previous;
+	}
+
+	static void restore(String previous) {
+		if (previous == null) {
+			CURRENT_SHARD.remove();
+		} else {
+			CURRENT_SHARD.set(previous);
+		}
+	}
+
+	/* Die Bindung wird beim Aussetzen der Transaktion (z.B. REQUIRES_NEW) gelöst und danach wiederhergestellt. */
+	private static void bindTransaction(String shard) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+
+		String bound = getTransactionShard();
+		if (bound == null) {
+			TransactionSynchronizationManager.bindResource(TRANSACTION_SHARD, shard);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void suspend() {
+					TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_SHARD);
+				}
+
+				@Override
+				public void resume() {
+					TransactionSynchronizationManager.bindResource(TRANSACTION_SHARD, shard);
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_SHARD);
+				}
+			});
+		} else if (!bound.equals(shard)) {
+			throw new IllegalStateException("The transaction is bound to shard " + bound + " and cannot access shard " + shard + ".");
+		}
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		String shard = CURRENT_SHARD.get();
+		if (shard == null) {
+			shard = getTransactionShard();
+		}
+		return shard == null ? GLOBAL : shard;
+	}
+}
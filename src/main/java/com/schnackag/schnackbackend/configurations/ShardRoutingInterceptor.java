@@ -0,0 +1,139 @@
+package com.schnackag.schnackbackend.configurations;
+
+import com.schnackag.schnackbackend.entities.Post;
+import com.schnackag.schnackbackend.entities.Thread;
+import com.schnackag.schnackbackend.repositories.ShardKey;
+import com.schnackag.schnackbackend.services.ShardRouting;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/* Lenkt die Aufrufe eines Repositorys auf einen Shard (siehe ShardingConfiguration).
+ *
+ * - Wurde der Aufruf mit ShardRouting.onShard einem Shard zugeordnet, bleibt es dabei. So werden z.B. die Kopien der
+ *   Benutzer auf einem Shard geschrieben oder alle Shards nacheinander gelesen.
+ * - Ist die Transaktion bereits an einen Shard gebunden, laufen Aufrufe ohne Schlüssel und Aufrufe der globalen
+ *   Repositories (z.B. die Zähler der Benutzer) auf diesem Shard. Ein Schlüssel eines anderen Shards ist ein Fehler.
+ * - Sonst bestimmt bei ThreadRepository und PostRepository die ID des Threads den Shard: ein mit @ShardKey
+ *   gekennzeichneter Parameter, die ID bei den geerbten Methoden des ThreadRepository oder der Thread der
+ *   gespeicherten Entität. Ohne Schlüssel wird der Aufruf abgelehnt. Alle anderen Repositories verwenden die globale
+ *   Datenbank.
+ *
+ * getReferenceById führt keine Anweisung aus und wird deshalb nicht gelenkt. */
+class ShardRoutingInterceptor implements MethodInterceptor {
+	private static final Set<String> THREAD_ID_METHODS = Set.of("findById", "existsById", "deleteById");
+	private static final Function<Object[], UUID> NO_KEY = arguments -> null;
+
+	private final Class<?> domainType;
+	private final boolean sharded;
+	private final ObjectProvider<ShardRouting> shardRouting;
+	private final Map<Method, Function<Object[], UUID>> keys = new ConcurrentHashMap<>();
+
+	ShardRoutingInterceptor(Class<?> domainType, ObjectProvider<ShardRouting> shardRouting) {
+		this.domainType = domainType;
+		this.sharded = domainType == Thread.class || domainType == Post.class;
+		this.shardRouting = shardRouting;
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		Method method = invocation.getMethod();
+		if (method.getDeclaringClass() == Object.class
+				|| method.getName().equals("getReferenceById")
+				|| ShardRoutingDataSource.getCurrentShard() != null) {
+			return invocation.proceed();
+		}
+
+		String shard;
+		if (sharded) {
+			UUID threadId = keys.computeIfAbsent(method, this::keyOf).apply(invocation.getArguments());
+			if (threadId != null) {
+				shard = shardRouting.getObject().shardOf(threadId);
+			} else if (ShardRoutingDataSource.getTransactionShard() != null) {
+				return invocation.proceed();
+			} else if (isEmptyIterable(invocation.getArguments())) {
+				return invocation.proceed();
+			} else {
+				throw new IllegalStateException(method.getDeclaringClass().getSimpleName() + "." + method.getName()
+						+ " has no shard key, run it with ShardRouting.onShard or ShardRouting.scatter.");
+			}
+		} else {
+			String transactionShard = ShardRoutingDataSource.getTransactionShard();
+			shard = transactionShard != null ? transactionShard : ShardRoutingDataSource.GLOBAL;
+		}
+
+		String previous = ShardRoutingDataSource.bind(shard);
+		try {
+			return invocation.proceed();
+		} finally {
+			ShardRoutingDataSource.restore(previous);
+		}
+	}
+
+	private Function<Object[], UUID> keyOf(Method method) {
+		Annotation[][] annotations = method.getParameterAnnotations();
+		for (int i = 0; i < annotations.length; i++) {
+			for (Annotation annotation : annotations[i]) {
+				if (annotation instanceof ShardKey) {
+					int index = i;
+					return arguments -> (UUID) arguments[index];
+				}
+			}
+		}
+
+		if (method.getParameterCount() == 1) {
+			if (domainType == Thread.class && THREAD_ID_METHODS.contains(method.getName())) {
+				return arguments -> (UUID) arguments[0];
+			}
+			if (Iterable.class.isAssignableFrom(method.getParameterTypes()[0])) {
+				return arguments -> threadIdOf((Iterable<?>) arguments[0]);
+			}
+			if (method.getParameterTypes()[0].isAssignableFrom(domainType)) {
+				return arguments -> threadIdOf(arguments[0]);
+			}
+		}
+		return NO_KEY;
+	}
+
+	/* Alle Entitäten müssen auf demselben Shard liegen. */
+	private UUID threadIdOf(Iterable<?> entities) {
+		UUID first = null;
+		String shard = null;
+		for (Object entity : entities) {
+			UUID threadId = threadIdOf(entity);
+			if (threadId == null) {
+				return null;
+			}
+			String entityShard = shardRouting.getObject().shardOf(threadId);
+			if (shard == null) {
+				first = threadId;
+				shard = entityShard;
+			} else if (!shard.equals(entityShard)) {
+				throw new IllegalStateException("Entities of shards " + shard + " and " + entityShard + " cannot be written in one call.");
+			}
+		}
+		return first;
+	}
+
+	private static UUID threadIdOf(Object entity) {
+		if (entity instanceof Thread thread) {
+			return thread.getId();
+		}
+		if (entity instanceof Post post && post.getThread() != null) {
+			return post.getThread().getId();
+		}
+		return null;
+	}
+
+	private static boolean isEmptyIterable(Object[] arguments) {
+		return arguments.length == 1 && arguments[0] instanceof Iterable<?> iterable && !iterable.iterator().hasNext();
+	}
+}
@@ -0,0 +1,104 @@
+package com.schnackag.schnackbackend.configurations;
+
+import com.schnackag.schnackbackend.services.ShardRouting;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Ersetzt die DataSource von Spring Boot, sobald mindestens ein Shard konfiguriert ist.
+ *
+ * Threads und ihre Posts liegen dann auf den Shards, verteilt über einen Hash-Ring nach der ID des Threads (siehe
+ * ShardRouting). Benutzer, widerrufene Tokens und alle anderen Tabellen bleiben in der globalen Datenbank
+ * (spring.datasource). Damit Joins auf den Benutzernamen und die Fremdschlüssel auf einem Shard funktionieren, hält
+ * jeder Shard eine Kopie (ID und Benutzername) der Benutzer, die dort geschrieben haben.
+ *
+ * Die DataSource der Anwendung ist ein LazyConnectionDataSourceProxy vor der ShardRoutingDataSource, die Repositories
+ * werden vom ShardRoutingInterceptor auf den richtigen Shard gelenkt. Die Schemas der Shards legt Flyway aus
+ * spring.flyway.locations an, unabhängig von spring.flyway.enabled und ddl-auto, die nur die globale Datenbank
+ * betreffen. Sharding und Lese-Replikate (schnack.datasource.replicas) schließen sich aus. */
+@Configuration
+@ConditionalOnProperty(name = "schnack.sharding.shards[0].url")
+public class ShardingConfiguration {
+
+	/* Der Pool der globalen Datenbank, konfiguriert wie sonst von Spring Boot über spring.datasource.*. */
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource globalDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		dataSource.setPoolName(ShardRoutingDataSource.GLOBAL);
+		return dataSource;
+	}
+
+	@Bean
+	public ShardRoutingDataSource shardRoutingDataSource(
+			HikariDataSource globalDataSource,
+			DataSourceProperties properties,
+			ShardingProperties shardingProperties,
+			MeterRegistry meterRegistry,
+			@Value("${spring.flyway.locations:classpath:db/migration}") String[] locations) {
+		Map<Object, Object> dataSources = new HashMap<>();
+		dataSources.put(ShardRoutingDataSource.GLOBAL, globalDataSource);
+
+		for (ShardingProperties.Shard shard : shardingProperties.getShards()) {
+			if (shard.getName() == null || dataSources.containsKey(shard.getName())) {
+				throw new IllegalStateException("Every shard needs a unique name other than " + ShardRoutingDataSource.GLOBAL + ".");
+			}
+
+			HikariDataSource dataSource = new HikariDataSource();
+			dataSource.setPoolName("shard-" + shard.getName());
+			dataSource.setJdbcUrl(shard.getUrl());
+			dataSource.setUsername(shard.getUsername());
+			dataSource.setPassword(shard.getPassword());
+			dataSource.setDriverClassName(properties.determineDriverClassName());
+			dataSource.setMaximumPoolSize(shardingProperties.getMaximumPoolSize());
+			dataSource.setMetricRegistry(meterRegistry);
+			Flyway.configure().dataSource(dataSource).locations(locations).load().migrate();
+			dataSources.put(shard.getName(), dataSource);
+		}
+
+		ShardRoutingDataSource dataSource = new ShardRoutingDataSource();
+		dataSource.setTargetDataSources(dataSources);
+		dataSource.setDefaultTargetDataSource(globalDataSource);
+		// Ein unbekannter Shard ist ein Fehler und darf nicht still auf der globalen Datenbank landen.
+		dataSource.setLenientFallback(false);
+		return dataSource;
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+	}
+
+	/* Fügt jedem Repository den ShardRoutingInterceptor hinzu. Er läuft innerhalb der Transaktion des Repositorys,
+	 * deren Verbindung damit erst nach der Wahl des Shards geholt wird. */
+	@Bean
+	public static BeanPostProcessor shardRoutingRepositoryPostProcessor(ObjectProvider<ShardRouting> shardRouting) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+					factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+							(proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(
+									new ShardRoutingInterceptor(repositoryInformation.getDomainType(), shardRouting))));
+				}
+				return bean;
+			}
+		};
+	}
+}
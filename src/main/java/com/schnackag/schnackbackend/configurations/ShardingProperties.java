@@ -0,0 +1,36 @@
+package com.schnackag.schnackbackend.configurations;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* Konfiguration der Shards für Threads und Posts. Ohne Shards arbeitet die Anwendung wie bisher nur mit
+ * spring.datasource. Die aktiven Shards bilden den Hash-Ring, auf den neue Threads verteilt werden. Inaktive Shards
+ * werden nur noch gelesen, bis das Rebalancing ihre Threads verschoben hat. previous-shards ist der Ring vor der
+ * letzten Änderung, solange das Rebalancing noch nicht abgeschlossen ist. */
+@Data
+@ConfigurationProperties(prefix = "schnack.sharding")
+public class ShardingProperties {
+	private List<Shard> shards = new ArrayList<>();
+
+	private List<String> previousShards = new ArrayList<>();
+
+	private int virtualNodes = 128;
+
+	private int maximumPoolSize = 10;
+
+	@Data
+	public static class Shard {
+		private String name;
+
+		private String url;
+
+		private String username;
+
+		private String password;
+
+		private boolean active = true;
+	}
+}
@@ -1,10 +1,12 @@
 package com.schnackag.schnackbackend.controllers;
 
 import com.schnackag.schnackbackend.requests.AuthenticationRequest;
+import com.schnackag.schnackbackend.requests.RefreshTokenRequest;
 import com.schnackag.schnackbackend.requests.RegisterRequest;
 import com.schnackag.schnackbackend.responses.AuthenticationResponse;
 import com.schnackag.schnackbackend.services.AuthenticationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.web.bind.annotation.*;
@@ -25,6 +27,19 @@ public class AuthenticationController {
 		return ResponseEntity.ok(authenticationService.authenticate(request));
 	}
 
+	@PostMapping("/refresh")
+	public ResponseEntity<AuthenticationResponse> refresh(@RequestBody RefreshTokenRequest request) {
+		return ResponseEntity.ok(authenticationService.refresh(request));
+	}
+
+	@PostMapping("/logout")
+	public ResponseEntity<Void> logout(
+			@RequestBody RefreshTokenRequest request,
+			@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+		authenticationService.logout(request, authorization);
+		return ResponseEntity.noContent().build();
+	}
+
 	@GetMapping("/authenticated")
 	public ResponseEntity<Boolean> isAuthenticated() {
 		return ResponseEntity.ok(true);
@@ -0,0 +1,82 @@
+package com.schnackag.schnackbackend.controllers;
+
+import com.schnackag.schnackbackend.services.ExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/* Exporte werden direkt in den OutputStream der Antwort geschrieben. Sendet der Client Accept-Encoding: gzip,
+ * wird dabei komprimiert. Controller und ExportService werden für den Start nicht benötigt und deshalb erst bei der
+ * ersten Anfrage erstellt (@Lazy). */
+@Lazy
+@RestController
+@RequestMapping("/api/v1/export")
+@RequiredArgsConstructor
+@Secured("ADMINISTRATOR")
+public class ExportController {
+	private final ExportService exportService;
+
+	@GetMapping("/threads/{threadId}/posts")
+	public void exportThreadPosts(
+			@PathVariable UUID threadId,
+			@RequestParam(defaultValue = "NDJSON") ExportService.Format format,
+			HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		exportService.checkThread(threadId);
+		try (OutputStream output = open(request, response, format, "thread-" + threadId + "-posts")) {
+			exportService.exportThreadPosts(threadId, format, output);
+		}
+	}
+
+	@GetMapping("/users/{userId}/posts")
+	public void exportUserPosts(
+			@PathVariable UUID userId,
+			@RequestParam(defaultValue = "NDJSON") ExportService.Format format,
+			HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		exportService.checkUser(userId);
+		try (OutputStream output = open(request, response, format, "user-" + userId + "-posts")) {
+			exportService.exportUserPosts(userId, format, output);
+		}
+	}
+
+	@GetMapping("/users/{userId}/threads")
+	public void exportUserThreads(
+			@PathVariable UUID userId,
+			@RequestParam(defaultValue = "NDJSON") ExportService.Format format,
+			HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		exportService.checkUser(userId);
+		try (OutputStream output = open(request, response, format, "user-" + userId + "-threads")) {
+			exportService.exportUserThreads(userId, format, output);
+		}
+	}
+
+	private static OutputStream open(HttpServletRequest request, HttpServletResponse response, ExportService.Format format, String name) throws IOException {
+		response.setContentType(format.getContentType());
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition
+				.attachment()
+				.filename(name + "." + format.getExtension())
+				.build()
+				.toString());
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+		String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			return new GZIPOutputStream(response.getOutputStream(), 8192);
+		}
+		return response.getOutputStream();
+	}
+}
@@ -0,0 +1,40 @@
+package com.schnackag.schnackbackend.controllers;
+
+import com.schnackag.schnackbackend.requests.ModerationRequest;
+import com.schnackag.schnackbackend.responses.ModerationJobResponse;
+import com.schnackag.schnackbackend.services.AuthenticatedUser;
+import com.schnackag.schnackbackend.services.ModerationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@Lazy
+@RestController
+@RequestMapping("/api/v1/moderation")
+@RequiredArgsConstructor
+@Secured({"MODERATOR", "ADMINISTRATOR"})
+public class ModerationController {
+	private final ModerationService moderationService;
+
+	/* Die Operation läuft im Hintergrund, der Fortschritt kann über die zurückgegebene ID abgefragt werden. */
+	@PostMapping("/jobs")
+	public ResponseEntity<ModerationJobResponse> submit(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody ModerationRequest request) {
+		return ResponseEntity.status(HttpStatus.ACCEPTED).body(moderationService.submit(request, user));
+	}
+
+	@GetMapping("/jobs/{jobId}")
+	public ResponseEntity<ModerationJobResponse> getJob(@PathVariable UUID jobId) {
+		return ResponseEntity.ok(moderationService.getJob(jobId));
+	}
+
+	@DeleteMapping("/jobs/{jobId}")
+	public ResponseEntity<ModerationJobResponse> cancel(@PathVariable UUID jobId) {
+		return ResponseEntity.ok(moderationService.cancel(jobId));
+	}
+}
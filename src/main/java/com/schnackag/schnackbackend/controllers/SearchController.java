@@ -0,0 +1,24 @@
+package com.schnackag.schnackbackend.controllers;
+
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+import com.schnackag.schnackbackend.services.SearchService;
+import com.schnackag.schnackbackend.services.ThreadService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/search")
+@RequiredArgsConstructor
+public class SearchController {
+	private final SearchService searchService;
+
+	@GetMapping
+	public ResponseEntity<PageResponse<SearchHitResponse>> search(
+			@RequestParam("q") String query,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "" + ThreadService.DEFAULT_PAGE_SIZE) int size) {
+		return ResponseEntity.ok(searchService.search(query, cursor, size));
+	}
+}
@@ -0,0 +1,37 @@
+package com.schnackag.schnackbackend.controllers;
+
+import com.schnackag.schnackbackend.responses.RebalancingResponse;
+import com.schnackag.schnackbackend.services.AuthenticatedUser;
+import com.schnackag.schnackbackend.services.ShardRebalancingService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@Lazy
+@RestController
+@RequestMapping("/api/v1/sharding")
+@RequiredArgsConstructor
+@Secured("ADMINISTRATOR")
+public class ShardingController {
+	private final ShardRebalancingService shardRebalancingService;
+
+	/* Das Rebalancing läuft im Hintergrund. Läuft bereits eines, wird dessen Fortschritt zurückgegeben. */
+	@PostMapping("/rebalancing")
+	public ResponseEntity<RebalancingResponse> start(@AuthenticationPrincipal AuthenticatedUser user) {
+		return ResponseEntity.status(HttpStatus.ACCEPTED).body(shardRebalancingService.start(user));
+	}
+
+	@GetMapping("/rebalancing")
+	public ResponseEntity<RebalancingResponse> getStatus() {
+		return ResponseEntity.ok(shardRebalancingService.getStatus());
+	}
+
+	@DeleteMapping("/rebalancing")
+	public ResponseEntity<RebalancingResponse> cancel() {
+		return ResponseEntity.ok(shardRebalancingService.cancel());
+	}
+}
@@ -0,0 +1,93 @@
+package com.schnackag.schnackbackend.controllers;
+
+import com.schnackag.schnackbackend.requests.CreatePostRequest;
+import com.schnackag.schnackbackend.requests.CreateThreadRequest;
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import com.schnackag.schnackbackend.services.AuthenticatedUser;
+import com.schnackag.schnackbackend.services.PostIngestionService;
+import com.schnackag.schnackbackend.services.ThreadCache;
+import com.schnackag.schnackbackend.services.ThreadEventHub;
+import com.schnackag.schnackbackend.services.ThreadService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/v1/threads")
+@RequiredArgsConstructor
+public class ThreadController {
+	private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+	private final ThreadService threadService;
+	private final ThreadCache threadCache;
+	private final PostIngestionService postIngestionService;
+	private final ThreadEventHub threadEventHub;
+
+	@GetMapping
+	public ResponseEntity<PageResponse<ThreadResponse>> getThreads(
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "" + ThreadService.DEFAULT_PAGE_SIZE) int size) {
+		return ResponseEntity.ok(threadService.getThreads(cursor, size));
+	}
+
+	@PostMapping
+	public ResponseEntity<ThreadResponse> createThread(@AuthenticationPrincipal AuthenticatedUser user, @RequestBody CreateThreadRequest request) {
+		return ResponseEntity.status(HttpStatus.CREATED).body(threadService.createThread(user, request.getTitle()));
+	}
+
+	/* Thread und Seiten werden mit dem ETag aus dem ThreadCache beantwortet. Passt If-None-Match, antwortet Spring
+	 * ohne Inhalt mit 304. Mit no-cache dürfen Clients die Antwort speichern, müssen sie aber vor jeder Verwendung
+	 * per If-None-Match prüfen lassen. Da der Inhalt als JSON, CBOR oder Smile gesendet wird, hängt die Antwort
+	 * vom Accept-Header ab. */
+	@GetMapping("/{threadId}")
+	public ResponseEntity<ThreadResponse> getThread(@PathVariable UUID threadId) {
+		return conditional(threadCache.getThreadEntry(threadId));
+	}
+
+	@GetMapping("/{threadId}/posts")
+	public ResponseEntity<PageResponse<PostResponse>> getPosts(
+			@PathVariable UUID threadId,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "" + ThreadService.DEFAULT_PAGE_SIZE) int size) {
+		return conditional(threadCache.getPostsEntry(threadId, cursor, size));
+	}
+
+	/* Der Post wird an den PostIngestionService übergeben. Die Antwort wird erst gesendet,
+	 * wenn der Batch mit diesem Post in der Datenbank gespeichert wurde. */
+	@PostMapping("/{threadId}/posts")
+	public CompletableFuture<ResponseEntity<PostResponse>> createPost(
+			@AuthenticationPrincipal AuthenticatedUser user,
+			@PathVariable UUID threadId,
+			@RequestBody CreatePostRequest request) {
+		return postIngestionService
+				.submit(threadId, user, request.getContent())
+				.thenApply(post -> ResponseEntity.status(HttpStatus.CREATED).body(post));
+	}
+
+	private static <T> ResponseEntity<T> conditional(ThreadCache.Entry<T> entry) {
+		return ResponseEntity
+				.ok()
+				.cacheControl(REVALIDATE)
+				.varyBy(HttpHeaders.ACCEPT)
+				.eTag(entry.getETag())
+				.body(entry.getValue());
+	}
+
+	/* Öffnet einen Server-Sent-Events-Kanal, über den neue Posts des Threads sofort gesendet werden. */
+	@GetMapping(path = "/{threadId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter subscribe(@PathVariable UUID threadId) {
+		threadCache.getThread(threadId);
+		return threadEventHub.subscribe(threadId);
+	}
+}
@@ -0,0 +1,26 @@
+package com.schnackag.schnackbackend.controllers;
+
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import com.schnackag.schnackbackend.services.AuthenticatedUser;
+import com.schnackag.schnackbackend.services.ThreadService;
+import com.schnackag.schnackbackend.services.TimelineService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/timeline")
+@RequiredArgsConstructor
+public class TimelineController {
+	private final TimelineService timelineService;
+
+	@GetMapping
+	public ResponseEntity<PageResponse<ThreadResponse>> getTimeline(
+			@AuthenticationPrincipal AuthenticatedUser user,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "" + ThreadService.DEFAULT_PAGE_SIZE) int size) {
+		return ResponseEntity.ok(timelineService.getTimeline(user.getId(), cursor, size));
+	}
+}
@@ -0,0 +1,23 @@
+package com.schnackag.schnackbackend.entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/* Ein BootstrapFlag markiert einen einmaligen Schritt beim Einrichten der Anwendung, z.B. dass der erste Benutzer
+ * bereits zum Administrator ernannt wurde. Da der Name des Flags der Primärschlüssel ist, kann jedes Flag nur
+ * ein einziges Mal gesetzt werden, auch wenn mehrere Anfragen oder Instanzen gleichzeitig versuchen, es zu setzen. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+public class BootstrapFlag {
+    @Id
+    private String name;
+
+    private Instant claimedAt;
+}
@@ -4,23 +4,36 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
 
+import java.time.Instant;
 import java.util.UUID;
 
+/* Der Index über (thread_id, created_at, id) wird für die Keyset-Pagination der Posts eines Threads verwendet.
+ * Damit kann jede Seite direkt über den Index angesprungen werden, unabhängig davon, wie weit hinten sie liegt.
+ * Über den Index (author_id, created_at) findet der PostCounterService den letzten Post eines Benutzers. */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_post_thread_created_at_id", columnList = "thread_id, created_at, id"),
+        @Index(name = "idx_post_author_created_at", columnList = "author_id, created_at")
+})
 public class Post {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
 
     private String content;
 
-    @ManyToOne
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     private User author;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Thread thread;
 }
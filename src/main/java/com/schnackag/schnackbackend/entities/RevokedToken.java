@@ -0,0 +1,27 @@
+package com.schnackag.schnackbackend.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/* Ein RevokedToken ist ein widerrufenes JWT, z.B. ein Refresh-Token nach dem Logout oder nach dessen Verwendung.
+ * Gespeichert wird nur die ID des Tokens (jti). Nach expires_at ist das Token ohnehin ungültig und die Zeile kann
+ * gelöscht werden. Über den Index auf revoked_at lesen alle Instanzen regelmäßig nur die neuen Widerrufe. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = @Index(name = "idx_revoked_token_revoked_at", columnList = "revoked_at"))
+public class RevokedToken {
+    @Id
+    private String id;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+}
@@ -1,7 +1,20 @@
 package com.schnackag.schnackbackend.entities;
 
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+/* Jede Rolle hat genau eine Berechtigung mit ihrem Namen (ohne Präfix ROLE_). Die Liste wird einmal erstellt und von
+ * allen Principals geteilt, getAuthorities() erzeugt also bei keiner Anfrage neue Objekte. */
 public enum Role {
 	USER,
 	MODERATOR,
-	ADMINISTRATOR
+	ADMINISTRATOR;
+
+	private final List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(name()));
+
+	public List<GrantedAuthority> getAuthorities() {
+		return authorities;
+	}
 }
@@ -4,24 +4,45 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
+/* Der Index über (created_at, id) wird für die Keyset-Pagination der Thread-Liste verwendet.
+ * postCount, lastPostAt und lastPostAuthor sind denormalisiert und werden nur vom PostCounterService per
+ * UPDATE geschrieben, nie beim Speichern der Entität. So überschreibt eine veraltete Entität keine Zähler. */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(indexes = @Index(name = "idx_thread_created_at_id", columnList = "created_at, id"))
 public class Thread {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
 
     private String title;
 
-    @ManyToOne
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     private User owner;
 
+    @ColumnDefault("0")
+    @Column(name = "post_count", nullable = false, insertable = false, updatable = false)
+    private long postCount;
+
+    @Column(name = "last_post_at", insertable = false, updatable = false)
+    private Instant lastPostAt;
+
+    @Column(name = "last_post_author", insertable = false, updatable = false)
+    private String lastPostAuthor;
+
     @OneToMany(mappedBy = "thread")
     private List<Post> posts;
 }
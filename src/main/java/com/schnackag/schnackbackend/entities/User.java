@@ -4,11 +4,14 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -18,9 +21,10 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners(UserCacheInvalidationListener.class)
 public class User implements UserDetails {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
 
     private String email;
@@ -32,15 +36,30 @@ public class User implements UserDetails {
     @Enumerated(EnumType.STRING)
     private Role role;
 
+    /* Denormalisierte Zähler, die nur vom PostCounterService per UPDATE geschrieben werden. */
+    @ColumnDefault("0")
+    @Column(name = "post_count", nullable = false, insertable = false, updatable = false)
+    private long postCount;
+
+    @Column(name = "last_post_at", insertable = false, updatable = false)
+    private Instant lastPostAt;
+
     @OneToMany(mappedBy = "owner")
     private List<Thread> threads;
 
     @OneToMany(mappedBy = "author")
     private List<Post> posts;
 
+    /* Die E-Mail-Adresse beim Laden, damit der UserCacheInvalidationListener nach einer Änderung auch den Eintrag
+     * unter der alten Adresse entfernen kann. */
+    @Transient
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private String loadedEmail;
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of(new SimpleGrantedAuthority(role.name()));
+        return role.getAuthorities();
     }
 
     @Override
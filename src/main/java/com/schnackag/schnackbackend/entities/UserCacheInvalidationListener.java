@@ -0,0 +1,34 @@
+package com.schnackag.schnackbackend.entities;
+
+import com.schnackag.schnackbackend.services.CachedUserDetailsService;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/* Dieser EntityListener entfernt einen Benutzer aus dem Cache des CachedUserDetailsService, sobald er gespeichert,
+ * geändert oder gelöscht wird. So führen Änderungen an Rolle oder Passwort sofort zu einem neuen Laden des Benutzers.
+ * Beim Laden merkt er sich die E-Mail-Adresse, damit nach ihrer Änderung auch der alte Eintrag entfernt wird.
+ * Der Service wird über einen ObjectProvider bezogen, da Hibernate diesen Listener bereits beim Aufbau der
+ * EntityManagerFactory erstellt. */
+@Component
+@RequiredArgsConstructor
+public class UserCacheInvalidationListener {
+    private final ObjectProvider<CachedUserDetailsService> userDetailsService;
+
+    @PostLoad
+    public void remember(User user) {
+        user.setLoadedEmail(user.getEmail());
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        userDetailsService.ifAvailable(service -> service.evict(user));
+        user.setLoadedEmail(user.getEmail());
+    }
+}
@@ -0,0 +1,16 @@
+package com.schnackag.schnackbackend.entities;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/* Mit dieser Annotation wird die ID einer Entität vom UuidV7Generator erzeugt.
+ * Die IDs sind zeitlich sortiert, neue Zeilen landen also nahe beieinander im Primärschlüssel-Index. */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface UuidV7 {
+}
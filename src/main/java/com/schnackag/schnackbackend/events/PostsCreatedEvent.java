@@ -0,0 +1,15 @@
+package com.schnackag.schnackbackend.events;
+
+import com.schnackag.schnackbackend.responses.PostResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/* Dieses Event wird vom PostIngestionService veröffentlicht, nachdem ein Batch neuer Posts
+ * erfolgreich in der Datenbank gespeichert wurde. */
+@Getter
+@AllArgsConstructor
+public class PostsCreatedEvent {
+	private final List<PostResponse> posts;
+}
@@ -0,0 +1,17 @@
+package com.schnackag.schnackbackend.events;
+
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/* Dieses Event wird vom ThreadService beim Erstellen eines Threads veröffentlicht.
+ * Listener sollten es erst nach dem Commit der Transaktion verarbeiten. */
+@Getter
+@AllArgsConstructor
+public class ThreadCreatedEvent {
+	private final ThreadResponse thread;
+
+	private final UUID ownerId;
+}
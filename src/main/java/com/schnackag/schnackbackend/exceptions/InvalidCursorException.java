@@ -0,0 +1,12 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn ein Cursor für die Pagination nicht gelesen werden kann. */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends RuntimeException {
+	public InvalidCursorException(Throwable cause) {
+		super("Invalid cursor.", cause);
+	}
+}
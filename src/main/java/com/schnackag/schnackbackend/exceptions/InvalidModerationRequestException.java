@@ -0,0 +1,12 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn einer Massenoperation der Moderation Angaben fehlen. */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidModerationRequestException extends RuntimeException {
+	public InvalidModerationRequestException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,12 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn die Datenbank einen Post ablehnt, z.B. weil der Inhalt zu lang ist. */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidPostException extends RuntimeException {
+	public InvalidPostException() {
+		super("Post was rejected by the database.");
+	}
+}
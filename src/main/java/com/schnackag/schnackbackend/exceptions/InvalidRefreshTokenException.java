@@ -0,0 +1,13 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn ein Refresh-Token ungültig, abgelaufen oder bereits widerrufen ist.
+ * Der Client muss sich dann erneut mit E-Mail und Passwort anmelden. */
+@ResponseStatus(HttpStatus.UNAUTHORIZED)
+public class InvalidRefreshTokenException extends RuntimeException {
+	public InvalidRefreshTokenException() {
+		super("Invalid refresh token.");
+	}
+}
@@ -0,0 +1,12 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn eine Massenoperation nicht existiert oder bereits entfernt wurde. */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ModerationJobNotFoundException extends RuntimeException {
+	public ModerationJobNotFoundException() {
+		super("Moderation job not found.");
+	}
+}
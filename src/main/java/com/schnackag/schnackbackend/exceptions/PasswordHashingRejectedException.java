@@ -0,0 +1,14 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn die Warteschlange des Passwort-Hashing-Pools voll ist.
+ * Die Anfrage wird dann sofort mit 503 (Service Unavailable) beantwortet, anstatt einen weiteren
+ * Request-Thread mit dem Warten auf BCrypt zu blockieren. */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PasswordHashingRejectedException extends RuntimeException {
+	public PasswordHashingRejectedException() {
+		super("Password hashing capacity exceeded.");
+	}
+}
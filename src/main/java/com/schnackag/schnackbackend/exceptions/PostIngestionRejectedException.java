@@ -0,0 +1,13 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn die Warteschlange des PostIngestionService voll ist und ein neuer Post
+ * nicht innerhalb der konfigurierten Wartezeit angenommen werden kann. Der Client soll es später erneut versuchen. */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PostIngestionRejectedException extends RuntimeException {
+	public PostIngestionRejectedException() {
+		super("Post ingestion queue is full.");
+	}
+}
@@ -0,0 +1,13 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn für eine E-Mail-Adresse zu viele Login- oder Registrierungsversuche
+ * in kurzer Zeit unternommen wurden. */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class RateLimitExceededException extends RuntimeException {
+	public RateLimitExceededException() {
+		super("Too many requests.");
+	}
+}
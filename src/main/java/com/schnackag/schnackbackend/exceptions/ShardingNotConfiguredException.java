@@ -0,0 +1,12 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn ein Rebalancing ohne konfigurierte Shards gestartet wird. */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class ShardingNotConfiguredException extends RuntimeException {
+	public ShardingNotConfiguredException() {
+		super("Sharding is not configured.");
+	}
+}
@@ -0,0 +1,12 @@
+package com.schnackag.schnackbackend.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/* Diese Exception wird geworfen, wenn ein angefragter Thread nicht existiert. */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ThreadNotFoundException extends RuntimeException {
+	public ThreadNotFoundException() {
+		super("Thread not found.");
+	}
+}
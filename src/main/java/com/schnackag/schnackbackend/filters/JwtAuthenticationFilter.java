@@ -1,16 +1,25 @@
 package com.schnackag.schnackbackend.filters;
 
+import com.schnackag.schnackbackend.services.AuthenticatedUser;
+import com.schnackag.schnackbackend.services.AuthenticationMetrics;
+import com.schnackag.schnackbackend.services.JwtAuthentication;
 import com.schnackag.schnackbackend.services.JwtService;
+import com.schnackag.schnackbackend.services.TokenRevocationService;
+import com.schnackag.schnackbackend.services.UserCredentials;
+import com.schnackag.schnackbackend.services.VerifiedToken;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -25,6 +34,15 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 	private final JwtService jwtService;
 	private final UserDetailsService userDetailsService;
+	private final TokenRevocationService tokenRevocationService;
+	private final AuthenticationMetrics authenticationMetrics;
+
+	/* Ist dieser Modus aktiviert, wird der Benutzer direkt aus den Claims des JWT (id, name, role) erstellt,
+	 * ohne den UserDetailsService und damit die Datenbank zu verwenden. */
+	@Value("${schnack.security.claims-principal.enabled:false}")
+	private boolean claimsPrincipalEnabled;
+
+	private final WebAuthenticationDetailsSource authenticationDetailsSource = new WebAuthenticationDetailsSource();
 
 	@Override
 	protected void doFilterInternal(HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
@@ -33,7 +51,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 		 * Beispiel für den Inhalt: "Bearer xxxxxxxxxxxxxxxxxxxxx.xxxxxxxxxxxxxxxxx.xxxxxxxxxxxxxxx" */
 		final String authHeader = request.getHeader("Authorization");
 		final String jwt;
-		final String userEmail;
 
 		/* Wenn authHeader keinen Inhalt hat oder der String nicht mit "Bearer " beginnt,
 		 * wird die Anfrage ohne weitere Aktion weitergegeben. */
@@ -45,35 +62,94 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 		// Das JWT beginnt an der 8. Stelle im String.
 		jwt = authHeader.substring(7);
 
-		// Mit dem JWT extrahieren wir die E-Mail des Benutzers.
-		userEmail = jwtService.extractUsername(jwt);
+		/* Gemessen wird nur die Arbeit dieses Filters, nicht die restliche Filterkette. */
+		long start = authenticationMetrics.start();
+		try {
+			authenticate(request, jwt);
+		} finally {
+			authenticationMetrics.stop(AuthenticationMetrics.Operation.FILTER, start);
+		}
+
+		filterChain.doFilter(request, response);
+	}
+
+	/* Authentifiziert die Anfrage, wenn das JWT gültig ist. Andernfalls wird nur der Grund gezählt und die Anfrage
+	 * ohne Authentifizierung weitergegeben. */
+	private void authenticate(HttpServletRequest request, String jwt) {
+		final VerifiedToken verifiedToken;
+		final String userEmail;
+
+		/* Das JWT wird genau einmal geprüft. Bereits geprüfte Tokens liefert der JwtService aus seinem Cache.
+		 * Ist das Token ungültig oder abgelaufen, wird die Anfrage ohne Authentifizierung weitergegeben. */
+		try {
+			verifiedToken = jwtService.verifyToken(jwt);
+		} catch (ExpiredJwtException e) {
+			authenticationMetrics.failure(AuthenticationMetrics.Failure.EXPIRED_TOKEN);
+			return;
+		} catch (JwtException | IllegalArgumentException e) {
+			authenticationMetrics.failure(AuthenticationMetrics.Failure.MALFORMED_TOKEN);
+			return;
+		}
+
+		/* Refresh-Tokens und widerrufene Tokens authentifizieren keine Anfragen. Die Prüfung auf Widerruf
+		 * verwendet nur den Speicher des TokenRevocationService, nicht die Datenbank. */
+		if (!verifiedToken.isAccessToken()) {
+			authenticationMetrics.failure(AuthenticationMetrics.Failure.WRONG_TOKEN_TYPE);
+			return;
+		}
+		if (tokenRevocationService.isRevoked(verifiedToken.getId())) {
+			authenticationMetrics.failure(AuthenticationMetrics.Failure.REVOKED_TOKEN);
+			return;
+		}
 
-		/* Wenn ein gültiger Benutzername im JWT gefunden wurde und aktuell keine Authentifizierung
+		// Mit dem geprüften JWT extrahieren wir die E-Mail des Benutzers.
+		userEmail = verifiedToken.getSubject();
+
+		/* Wenn eine E-Mail-Adresse (Subject) im JWT gefunden wurde und aktuell keine Authentifizierung
 		 * im SecurityContextHolder vorhanden ist, d.h. der Benutzer noch nicht authentifiziert ist,
-		 * wird mithilfe des UserDetailsService das UserDetails Objekt geladen,
-		 * was die Benutzerinformationen wie Benutzername, Passwort und Berechtigungen beinhaltet.
-		 * Dann wird überprüft, ob das Token gültig ist. Ist dies der Fall, wird ein UsernamePasswordAuthenticationToken
-		 * erstellt, der das UserDetails Objekt, die Anmeldedaten (die auf null gesetzt sind, da sie nicht benötigt werden,
-		 * nachdem das Token bestätigt wurde) und die Berechtigungen des Benutzers erhält.
+		 * wird der Benutzer als unveränderlicher AuthenticatedUser geladen, der nur ID, Benutzername und Rolle enthält.
+		 * Dann wird überprüft, ob das Token gültig ist. Ist dies der Fall, wird eine JwtAuthentication erstellt,
+		 * die den AuthenticatedUser und die vorab erstellten Berechtigungen seiner Rolle erhält, aber keine Anmeldedaten,
+		 * da sie nicht benötigt werden, nachdem das Token bestätigt wurde.
 		 * Zusätzliche Authentifizierungsdetails werden von der Anfrage erstellt und zum Token hinzugefügt.
 		 * Schließlich wird das Token im SecurityContextHolder gesetzt
 		 * und die Anforderung wird durch die Filterkette weitergeleitet. */
 		if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-			UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+			AuthenticatedUser user;
+			try {
+				user = loadUser(verifiedToken);
+			} catch (UsernameNotFoundException e) {
+				// Der Benutzer wurde gelöscht, das Token ist aber noch nicht abgelaufen.
+				authenticationMetrics.failure(AuthenticationMetrics.Failure.UNKNOWN_USER);
+				return;
+			}
 
-			if (jwtService.isTokenValid(jwt, userDetails)) {
-				UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-						userDetails,
-						null,
-						userDetails.getAuthorities()
-				);
-				authToken.setDetails(
-						new WebAuthenticationDetailsSource().buildDetails(request)
+			if (jwtService.isTokenValid(verifiedToken, user)) {
+				JwtAuthentication authentication = new JwtAuthentication(
+						user,
+						authenticationDetailsSource.buildDetails(request)
 				);
-				SecurityContextHolder.getContext().setAuthentication(authToken);
+				SecurityContextHolder.getContext().setAuthentication(authentication);
 			}
+		}
+	}
 
-			filterChain.doFilter(request, response);
+	/* Lädt den Benutzer des Tokens. Im Claims-Modus wird der Principal aus den Claims verwendet, sofern das Token
+	 * die Claims id und role enthält. Er wird im VerifiedToken zwischengespeichert, weitere Anfragen mit demselben
+	 * Token erzeugen also keinen neuen Principal. Andernfalls wird der Principal des (zwischengespeicherten)
+	 * UserDetailsService verwendet. */
+	private AuthenticatedUser loadUser(VerifiedToken verifiedToken) {
+		if (claimsPrincipalEnabled) {
+			AuthenticatedUser user = verifiedToken.getClaimsPrincipal();
+			if (user != null) {
+				return user;
+			}
+		}
+
+		UserDetails userDetails = userDetailsService.loadUserByUsername(verifiedToken.getSubject());
+		if (!(userDetails instanceof UserCredentials credentials)) {
+			throw new IllegalStateException("Unexpected principal type " + userDetails.getClass().getName() + ".");
 		}
+		return credentials.getPrincipal();
 	}
 }
@@ -0,0 +1,51 @@
+package com.schnackag.schnackbackend.filters;
+
+import com.schnackag.schnackbackend.configurations.QueryCountInspector;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/* Misst, wie viele SQL-Anweisungen eine Anfrage ausführt. Ein Anstieg zeigt z.B. N+1-Abfragen oder einen Cache,
+ * der nicht mehr trifft. Der Filter läuft vor allen anderen, damit auch die Abfragen der Security-Filter zählen. */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryCountFilter extends OncePerRequestFilter {
+	private final boolean enabled;
+	private final DistributionSummary queries;
+
+	public QueryCountFilter(MeterRegistry meterRegistry, @Value("${schnack.metrics.enabled:true}") boolean enabled) {
+		this.enabled = enabled;
+		this.queries = DistributionSummary
+				.builder("schnack.http.queries")
+				.description("SQL statements executed per request")
+				.baseUnit("statements")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+	}
+
+	@Override
+	protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+		return !enabled;
+	}
+
+	@Override
+	protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+		QueryCountInspector.reset();
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			queries.record(QueryCountInspector.getCount());
+		}
+	}
+}
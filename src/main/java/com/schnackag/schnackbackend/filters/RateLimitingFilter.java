@@ -0,0 +1,40 @@
+package com.schnackag.schnackbackend.filters;
+
+import com.schnackag.schnackbackend.services.RateLimitService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/* Dieser Filter begrenzt die Login- und Registrierungsanfragen pro IP-Adresse. Er läuft vor dem
+ * JwtAuthenticationFilter und beantwortet zu viele Anfragen sofort mit 429 (Too Many Requests),
+ * ohne dass BCrypt oder die Datenbank verwendet werden. Die Begrenzung pro E-Mail-Adresse erfolgt im
+ * AuthenticationService, da die E-Mail-Adresse erst im Body der Anfrage steht. */
+@Component
+@RequiredArgsConstructor
+public class RateLimitingFilter extends OncePerRequestFilter {
+	private final RateLimitService rateLimitService;
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		String path = request.getServletPath();
+		return !path.equals("/api/v1/authentication/login") && !path.equals("/api/v1/authentication/register");
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+		if (!rateLimitService.tryAddress(request.getRemoteAddr())) {
+			response.sendError(HttpStatus.TOO_MANY_REQUESTS.value());
+			return;
+		}
+
+		filterChain.doFilter(request, response);
+	}
+}
@@ -0,0 +1,19 @@
+package com.schnackag.schnackbackend.repositories;
+
+import com.schnackag.schnackbackend.entities.BootstrapFlag;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+
+/* Repository für die BootstrapFlags. */
+public interface BootstrapFlagRepository extends JpaRepository<BootstrapFlag, String> {
+	/* Setzt das Flag, falls es noch nicht existiert, und gibt 1 zurück, wenn es gesetzt wurde. Setzt eine andere
+	*  Transaktion dasselbe Flag, wartet die Datenbank auf deren Ende: nach einem Commit wird 0 zurückgegeben, nach
+	*  einem Rollback wird das Flag gesetzt. Anders als bei save() gibt es dabei keine Exception, die Transaktion
+	*  kann also weiterverwendet werden. */
+	@Modifying
+	@Query(value = "insert ignore into bootstrap_flag (name, claimed_at) values (:name, :claimedAt)", nativeQuery = true)
+	int insertIfAbsent(String name, Instant claimedAt);
+}
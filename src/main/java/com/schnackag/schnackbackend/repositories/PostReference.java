@@ -0,0 +1,21 @@
+package com.schnackag.schnackbackend.repositories;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/* Verweis auf einen Post mit seinem Thread, Autor und Zeitpunkt. Wird als DTO-Projektion für Massenoperationen
+ * verwendet, damit weder der Inhalt noch die Entität geladen werden. */
+@Getter
+@AllArgsConstructor
+public class PostReference {
+	private final UUID id;
+
+	private final UUID threadId;
+
+	private final UUID authorId;
+
+	private final Instant createdAt;
+}
@@ -0,0 +1,124 @@
+package com.schnackag.schnackbackend.repositories;
+
+import com.schnackag.schnackbackend.entities.Post;
+import com.schnackag.schnackbackend.entities.Thread;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/* Repository für Posts. Die Posts eines Threads werden per Keyset-Pagination über (createdAt, id) aufsteigend gelesen.
+*  Anders als bei OFFSET muss die Datenbank dabei keine übersprungenen Zeilen lesen, jede Seite kostet also gleich viel,
+*  egal wie weit hinten sie im Thread liegt. Der Benutzername des Autors wird per Join in derselben Abfrage gelesen.
+*  Mit Sharding liegen die Posts auf dem Shard ihres Threads, siehe ThreadRepository. */
+public interface PostRepository extends JpaRepository<Post, UUID> {
+	String EXPORT_FETCH_SIZE = "1000";
+
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.PostResponse(p.id, p.thread.id, p.content, a.username, p.createdAt, a.id)
+			from Post p left join p.author a
+			where p.thread.id = :threadId
+			order by p.createdAt, p.id""")
+	List<PostResponse> findByThread(@ShardKey UUID threadId, Limit limit);
+
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.PostResponse(p.id, p.thread.id, p.content, a.username, p.createdAt, a.id)
+			from Post p left join p.author a
+			where p.thread.id = :threadId
+			and (p.createdAt > :createdAt or (p.createdAt = :createdAt and p.id > :id))
+			order by p.createdAt, p.id""")
+	List<PostResponse> findByThreadAfter(@ShardKey UUID threadId, Instant createdAt, UUID id, Limit limit);
+
+	/* Liest alle Posts seitenweise in der Reihenfolge des Primärschlüssels, z.B. für den Aufbau des Suchindex. */
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.PostResponse(p.id, p.thread.id, p.content, a.username, p.createdAt, a.id)
+			from Post p left join p.author a
+			where p.id > :id
+			order by p.id""")
+	List<PostResponse> findAllAfter(UUID id, Limit limit);
+
+	/* Liefern alle Posts eines Threads bzw. Autors als Stream für den Export. Die Zeilen werden in Blöcken von
+	*  EXPORT_FETCH_SIZE vom Server geholt (bei MySQL mit useCursorFetch=true), statt das ganze Ergebnis zu laden.
+	*  Der Stream muss innerhalb einer Transaktion gelesen und geschlossen werden. */
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+			@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")})
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.PostResponse(p.id, p.thread.id, p.content, a.username, p.createdAt, a.id)
+			from Post p left join p.author a
+			where p.thread.id = :threadId
+			order by p.createdAt, p.id""")
+	Stream<PostResponse> streamByThread(@ShardKey UUID threadId);
+
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+			@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")})
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.PostResponse(p.id, p.thread.id, p.content, a.username, p.createdAt, a.id)
+			from Post p join p.author a
+			where a.id = :authorId
+			order by p.createdAt, p.id""")
+	Stream<PostResponse> streamByAuthor(UUID authorId);
+
+	/* Die Autoren eines Threads, für das Fan-out der Timelines. */
+	@Query("select distinct p.author.id from Post p where p.thread.id = :threadId")
+	List<UUID> findAuthorIdsByThread(@ShardKey UUID threadId, Limit limit);
+
+	/* Die folgenden Methoden werden von Massenoperationen der Moderation verwendet. Sie lesen nur die IDs über die
+	*  Indizes (author_id, ...) bzw. (thread_id, ...) und ändern die Posts per DML, ohne Entitäten zu laden. */
+	@Query("select new com.schnackag.schnackbackend.repositories.PostReference(p.id, p.thread.id, p.author.id, p.createdAt) from Post p where p.author.id = :authorId")
+	List<PostReference> findReferencesByAuthor(UUID authorId, Limit limit);
+
+	@Query("select new com.schnackag.schnackbackend.repositories.PostReference(p.id, p.thread.id, p.author.id, p.createdAt) from Post p where p.thread.id = :threadId")
+	List<PostReference> findReferencesByThread(@ShardKey UUID threadId, Limit limit);
+
+	@Query("select new com.schnackag.schnackbackend.repositories.PostReference(p.id, p.thread.id, p.author.id, p.createdAt) from Post p where p.thread.id = :threadId and p.author.id = :authorId")
+	List<PostReference> findReferencesByThreadAndAuthor(@ShardKey UUID threadId, UUID authorId, Limit limit);
+
+	@Query("select count(p) from Post p where p.author.id = :authorId")
+	long countByAuthor(UUID authorId);
+
+	@Query("select count(p) from Post p where p.thread.id = :threadId")
+	long countByThread(@ShardKey UUID threadId);
+
+	@Query("select count(p) from Post p where p.thread.id = :threadId and p.author.id = :authorId")
+	long countByThreadAndAuthor(@ShardKey UUID threadId, UUID authorId);
+
+	@Modifying
+	@Query("delete from Post p where p.id in :ids")
+	int deleteAllByIds(Collection<UUID> ids);
+
+	@Modifying
+	@Query("update Post p set p.thread = :thread where p.id in :ids")
+	int moveAllByIds(Collection<UUID> ids, Thread thread);
+
+	/* Die folgenden Methoden kopieren Posts zwischen Shards (Rebalancing und Verschieben in einen Thread auf einem
+	*  anderen Shard). Die Kopie behält ID und Zeitpunkt, sie wird deshalb per INSERT statt über die Entität geschrieben. */
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.PostResponse(p.id, p.thread.id, p.content, a.username, p.createdAt, a.id)
+			from Post p left join p.author a
+			where p.id in :ids
+			order by p.createdAt, p.id""")
+	List<PostResponse> findResponsesByIds(Collection<UUID> ids);
+
+	@Query("select p.id from Post p where p.id in :ids")
+	List<UUID> findExistingIds(Collection<UUID> ids);
+
+	@Modifying
+	@Query(value = "insert into post (id, content, created_at, author_id, thread_id) values (:id, :content, :createdAt, :authorId, :threadId)", nativeQuery = true)
+	int insertPost(UUID id, String content, Instant createdAt, UUID authorId, UUID threadId);
+
+	@Modifying
+	@Query("delete from Post p where p.thread.id = :threadId")
+	int deleteAllByThread(@ShardKey UUID threadId);
+}
@@ -0,0 +1,21 @@
+package com.schnackag.schnackbackend.repositories;
+
+import com.schnackag.schnackbackend.entities.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+/* Repository für die widerrufenen Tokens. */
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+	/* Liest alle Widerrufe seit dem angegebenen Zeitpunkt, deren Token noch nicht abgelaufen ist. */
+	List<RevokedToken> findByRevokedAtGreaterThanEqualAndExpiresAtAfter(Instant revokedAt, Instant expiresAt);
+
+	/* Löscht alle Widerrufe, deren Token bereits abgelaufen ist, mit einer einzigen DELETE-Anweisung. */
+	@Modifying
+	@Query("delete from RevokedToken t where t.expiresAt < :now")
+	int deleteExpired(Instant now);
+}
@@ -0,0 +1,15 @@
+package com.schnackag.schnackbackend.repositories;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/* Kennzeichnet den Parameter einer Methode von ThreadRepository oder PostRepository, der die ID des Threads enthält.
+ * Mit Sharding wird der Aufruf auf den Shard dieses Threads gelenkt (siehe ShardingConfiguration). Methoden ohne
+ * Schlüssel laufen auf dem Shard der laufenden Transaktion oder müssen über ShardRouting einem Shard zugeordnet
+ * werden. */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+}
@@ -0,0 +1,17 @@
+package com.schnackag.schnackbackend.repositories;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/* Ein Thread mit dem Zeitpunkt seiner letzten Aktivität (letzter Post oder Erstellung). Wird als DTO-Projektion für
+ * den Aufbau einer Timeline verwendet. */
+@Getter
+@AllArgsConstructor
+public class ThreadActivity {
+	private final UUID id;
+
+	private final Instant activity;
+}
@@ -0,0 +1,122 @@
+package com.schnackag.schnackbackend.repositories;
+
+import com.schnackag.schnackbackend.entities.Thread;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/* Repository für Threads. Die Lesemethoden geben direkt ThreadResponse-Projektionen zurück. Der Benutzername des
+*  Erstellers wird per Join in derselben Abfrage gelesen, es werden also keine User-Entitäten nachgeladen (kein N+1).
+*  Die Thread-Liste wird per Keyset-Pagination über (createdAt, id) absteigend gelesen, d.h. die neuesten zuerst.
+*  Mit Sharding liegt ein Thread auf dem Shard seiner ID (@ShardKey). Methoden ohne Schlüssel lesen nur einen Shard
+*  und werden über ShardRouting für jeden Shard aufgerufen. */
+public interface ThreadRepository extends JpaRepository<Thread, UUID> {
+
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.ThreadResponse(t.id, t.title, o.username, t.createdAt, t.postCount, t.lastPostAt, t.lastPostAuthor)
+			from Thread t left join t.owner o
+			where t.id = :id""")
+	Optional<ThreadResponse> findResponseById(@ShardKey UUID id);
+
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.ThreadResponse(t.id, t.title, o.username, t.createdAt, t.postCount, t.lastPostAt, t.lastPostAuthor)
+			from Thread t left join t.owner o
+			order by t.createdAt desc, t.id desc""")
+	List<ThreadResponse> findLatest(Limit limit);
+
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.ThreadResponse(t.id, t.title, o.username, t.createdAt, t.postCount, t.lastPostAt, t.lastPostAuthor)
+			from Thread t left join t.owner o
+			where t.createdAt < :createdAt or (t.createdAt = :createdAt and t.id < :id)
+			order by t.createdAt desc, t.id desc""")
+	List<ThreadResponse> findLatestBefore(Instant createdAt, UUID id, Limit limit);
+
+	/* Liest alle Threads seitenweise in der Reihenfolge des Primärschlüssels, z.B. für den Aufbau des Suchindex. */
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.ThreadResponse(t.id, t.title, o.username, t.createdAt, t.postCount, t.lastPostAt, t.lastPostAuthor)
+			from Thread t left join t.owner o
+			where t.id > :id
+			order by t.id""")
+	List<ThreadResponse> findAllAfter(UUID id, Limit limit);
+
+	/* Liefert alle Threads eines Benutzers als Stream für den Export, siehe PostRepository.streamByThread. */
+	@QueryHints({
+			@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = PostRepository.EXPORT_FETCH_SIZE),
+			@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")})
+	@Query("""
+			select new com.schnackag.schnackbackend.responses.ThreadResponse(t.id, t.title, o.username, t.createdAt, t.postCount, t.lastPostAt, t.lastPostAuthor)
+			from Thread t join t.owner o
+			where o.id = :ownerId
+			order by t.createdAt, t.id""")
+	Stream<ThreadResponse> streamByOwner(UUID ownerId);
+
+	/* Die zuletzt aktiven Threads, die ein Benutzer erstellt oder in denen er geschrieben hat, für die Timeline. */
+	@Query("""
+			select new com.schnackag.schnackbackend.repositories.ThreadActivity(t.id, coalesce(t.lastPostAt, t.createdAt))
+			from Thread t
+			where t.owner.id = :userId or t.id in (select p.thread.id from Post p where p.author.id = :userId)
+			order by coalesce(t.lastPostAt, t.createdAt) desc, t.id desc""")
+	List<ThreadActivity> findActivityByParticipant(UUID userId, Limit limit);
+
+	@Query("select t.owner.id from Thread t where t.id = :id")
+	Optional<UUID> findOwnerId(@ShardKey UUID id);
+
+	@Query("select t.id from Thread t where t.id > :id order by t.id")
+	List<UUID> findIdsAfter(UUID id, Limit limit);
+
+	/* Erhöht die Anzahl der Posts aller Threads in ids um delta. Der letzte Post wird per Unterabfrage über den Index
+	*  (thread_id, created_at, id) bestimmt, die Posts müssen also nicht geladen werden. */
+	@Modifying
+	@Query("""
+			update Thread t set
+				t.postCount = t.postCount + :delta,
+				t.lastPostAt = (select max(p.createdAt) from Post p where p.thread = t),
+				t.lastPostAuthor = (select max(a.username) from Post p join p.author a
+					where p.thread = t and p.createdAt = (select max(p2.createdAt) from Post p2 where p2.thread = t))
+			where t.id in :ids""")
+	int incrementPostCounts(Collection<UUID> ids, long delta);
+
+	/* Berechnet die Zähler der Threads in ids aus ihren Posts neu. Noch nicht geschriebene Erhöhungen zieht der
+	*  PostCounterService in derselben Transaktion ab. */
+	@Modifying
+	@Query("""
+			update Thread t set
+				t.postCount = (select count(p) from Post p where p.thread = t),
+				t.lastPostAt = (select max(p.createdAt) from Post p where p.thread = t),
+				t.lastPostAuthor = (select max(a.username) from Post p join p.author a
+					where p.thread = t and p.createdAt = (select max(p2.createdAt) from Post p2 where p2.thread = t))
+			where t.id in :ids""")
+	int reconcilePostCounts(Collection<UUID> ids);
+
+	/* Sperrt einen Thread bis zum Ende der Transaktion (SELECT ... FOR UPDATE). Unter InnoDB prüft ein neuer Post
+	*  seinen Fremdschlüssel mit einer geteilten Sperre auf dieser Zeile und wartet deshalb bis zum Commit. */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("select t from Thread t where t.id = :id")
+	Optional<Thread> lockById(@ShardKey UUID id);
+
+	/* Löscht einen Thread ohne ihn zu laden. Die Posts müssen vorher gelöscht worden sein. */
+	@Modifying
+	@Query("delete from Thread t where t.id = :id")
+	int deleteThread(@ShardKey UUID id);
+
+	/* Legt einen Thread mit vorher bestimmter ID an, ohne die Entität zu speichern. Die ID muss vor dem Schreiben
+	*  feststehen, sie bestimmt den Shard. Die Zähler beginnen mit dem Standardwert der Spalten. Natives SQL, da
+	*  Hibernate ein INSERT ... VALUES mit den Generatoren für ID und Zeitpunkt nicht übersetzen kann. */
+	@Modifying
+	@Query(value = "insert into thread (id, title, created_at, owner_id) values (:id, :title, :createdAt, :ownerId)", nativeQuery = true)
+	int insertThread(@ShardKey UUID id, String title, Instant createdAt, UUID ownerId);
+}
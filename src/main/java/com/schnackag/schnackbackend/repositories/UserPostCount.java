@@ -0,0 +1,19 @@
+package com.schnackag.schnackbackend.repositories;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/* Die Zähler der Posts eines Benutzers. Wird als DTO-Projektion verwendet, um mit Sharding die Zähler der Shards
+ * zusammenzufassen. */
+@Getter
+@AllArgsConstructor
+public class UserPostCount {
+	private final UUID id;
+
+	private final long postCount;
+
+	private final Instant lastPostAt;
+}
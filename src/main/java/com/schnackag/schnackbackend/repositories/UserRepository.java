@@ -1,8 +1,14 @@
 package com.schnackag.schnackbackend.repositories;
 
 import com.schnackag.schnackbackend.entities.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,4 +21,41 @@ public interface UserRepository extends JpaRepository<User, UUID> {
 	/* Spring generiert zur Laufzeit automatisch die Implementierung für die Methode findByEmail(String email).
 	*  https://docs.spring.io/spring-data/jpa/reference/jpa/query-methods.html#jpa.query-methods.query-creation */
 	Optional<User> findByEmail(String email);
+
+	/* Prüft, ob mindestens ein Benutzer existiert. Spring begrenzt die Abfrage auf ein Ergebnis,
+	*  die Kosten sind also unabhängig von der Anzahl der Benutzer. */
+	boolean existsByIdNotNull();
+
+	@Query("select u.id from User u where u.id > :id order by u.id")
+	List<UUID> findIdsAfter(UUID id, Limit limit);
+
+	/* Erhöht die Anzahl der Posts aller Benutzer in ids um delta, siehe ThreadRepository.incrementPostCounts. */
+	@Modifying
+	@Query("""
+			update User u set
+				u.postCount = u.postCount + :delta,
+				u.lastPostAt = (select max(p.createdAt) from Post p where p.author = u)
+			where u.id in :ids""")
+	int incrementPostCounts(Collection<UUID> ids, long delta);
+
+	@Modifying
+	@Query("""
+			update User u set
+				u.postCount = (select count(p) from Post p where p.author = u),
+				u.lastPostAt = (select max(p.createdAt) from Post p where p.author = u)
+			where u.id in :ids""")
+	int reconcilePostCounts(Collection<UUID> ids);
+
+	/* Mit Sharding hält jeder Shard eine Kopie der Benutzer, die dort geschrieben haben, mit ID, Benutzername und den
+	*  Zählern der Posts dieses Shards. Die Zähler in der globalen Datenbank sind die Summe über alle Shards. */
+	@Modifying
+	@Query(value = "insert into user (id, username) values (:id, :username)", nativeQuery = true)
+	int insertReplica(UUID id, String username);
+
+	@Query("select new com.schnackag.schnackbackend.repositories.UserPostCount(u.id, u.postCount, u.lastPostAt) from User u where u.id in :ids")
+	List<UserPostCount> findPostCounts(Collection<UUID> ids);
+
+	@Modifying
+	@Query("update User u set u.postCount = :postCount, u.lastPostAt = :lastPostAt where u.id = :id")
+	int updatePostCounts(UUID id, long postCount, Instant lastPostAt);
 }
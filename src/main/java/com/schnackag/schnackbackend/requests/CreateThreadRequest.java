@@ -0,0 +1,14 @@
+package com.schnackag.schnackbackend.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateThreadRequest {
+	private String title;
+}
@@ -0,0 +1,32 @@
+package com.schnackag.schnackbackend.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/* Eine Massenoperation der Moderation.
+ * DELETE_POSTS löscht alle Posts eines Autors (authorId), eines Threads (threadId) oder eines Autors in einem Thread.
+ * MOVE_POSTS verschiebt die Posts eines Threads (threadId, optional nur die eines Autors) nach targetThreadId.
+ * DELETE_THREAD löscht einen Thread mit allen Posts. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ModerationRequest {
+	public enum Type {
+		DELETE_POSTS,
+		MOVE_POSTS,
+		DELETE_THREAD
+	}
+
+	private Type type;
+
+	private UUID authorId;
+
+	private UUID threadId;
+
+	private UUID targetThreadId;
+}
@@ -0,0 +1,45 @@
+package com.schnackag.schnackbackend.responses;
+
+import com.schnackag.schnackbackend.requests.ModerationRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/* Der Fortschritt einer Massenoperation. total ist die Anzahl der betroffenen Posts beim Start, processed die Anzahl
+ * der bereits gelöschten oder verschobenen. Kommen während der Operation Posts hinzu, kann processed größer als
+ * total werden. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ModerationJobResponse {
+	public enum Status {
+		QUEUED,
+		RUNNING,
+		COMPLETED,
+		CANCELLED,
+		FAILED
+	}
+
+	private UUID id;
+
+	private ModerationRequest request;
+
+	private String requestedBy;
+
+	private Status status;
+
+	private long total;
+
+	private long processed;
+
+	private Instant createdAt;
+
+	private Instant finishedAt;
+
+	private String error;
+}
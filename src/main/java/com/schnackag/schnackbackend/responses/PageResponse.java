@@ -0,0 +1,20 @@
+package com.schnackag.schnackbackend.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/* Eine Seite einer Keyset-Pagination. Mit dem nextCursor kann die nächste Seite abgefragt werden.
+ * Ist nextCursor null, gibt es keine weiteren Einträge. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageResponse<T> {
+	private List<T> items;
+
+	private String nextCursor;
+}
@@ -0,0 +1,32 @@
+package com.schnackag.schnackbackend.responses;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/* Diese Klasse wird auch als DTO-Projektion im PostRepository verwendet. Der Benutzername des Autors
+ * wird dabei in derselben Abfrage gelesen, ohne das User-Objekt zu laden. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PostResponse {
+	private UUID id;
+
+	private UUID threadId;
+
+	private String content;
+
+	private String author;
+
+	private Instant createdAt;
+
+	/* Wird nur intern verwendet, z.B. für die Zähler der Benutzer, und nicht an Clients gesendet. */
+	@JsonIgnore
+	private UUID authorId;
+}
@@ -0,0 +1,40 @@
+package com.schnackag.schnackbackend.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/* Der Fortschritt des Rebalancings der Shards. scanned ist die Anzahl der geprüften Threads, moved die Anzahl der
+ * auf ihren Shard verschobenen und failed die Anzahl der Threads, die beim nächsten Lauf erneut versucht werden. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RebalancingResponse {
+	public enum Status {
+		IDLE,
+		RUNNING,
+		COMPLETED,
+		CANCELLED,
+		FAILED
+	}
+
+	private Status status;
+
+	private String requestedBy;
+
+	private long scanned;
+
+	private long moved;
+
+	private long failed;
+
+	private Instant startedAt;
+
+	private Instant finishedAt;
+
+	private String error;
+}
@@ -0,0 +1,29 @@
+package com.schnackag.schnackbackend.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/* Ein Treffer der Suche. Bei einem Thread sind id und threadId gleich, bei einem Post zeigt threadId auf
+ * den Thread, in dem der Post steht. Die Treffer sind absteigend nach score sortiert. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchHitResponse {
+	public enum Type {
+		THREAD,
+		POST
+	}
+
+	private Type type;
+
+	private UUID id;
+
+	private UUID threadId;
+
+	private float score;
+}
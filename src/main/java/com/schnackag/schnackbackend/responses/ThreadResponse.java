@@ -0,0 +1,32 @@
+package com.schnackag.schnackbackend.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/* Diese Klasse wird auch als DTO-Projektion im ThreadRepository verwendet. Der Benutzername des Erstellers
+ * wird dabei in derselben Abfrage gelesen, ohne das User-Objekt zu laden. Die Anzahl der Posts und der letzte Post
+ * stammen aus den denormalisierten Spalten des Threads, es wird also nicht über die Posts gezählt. */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ThreadResponse {
+	private UUID id;
+
+	private String title;
+
+	private String owner;
+
+	private Instant createdAt;
+
+	private long postCount;
+
+	private Instant lastPostAt;
+
+	private String lastPostAuthor;
+}
@@ -0,0 +1,63 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.Role;
+import com.schnackag.schnackbackend.entities.User;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/* Der Principal einer mit JWT authentifizierten Anfrage. Er enthält nur die ID, den Benutzernamen (Claim name)
+ * und die Rolle, aber weder das Passwort noch die Listen threads und posts der User-Entität. Er ist unveränderlich und
+ * kann deshalb im VerifiedToken zwischengespeichert und von allen Anfragen mit demselben Token geteilt werden. Die
+ * Berechtigungen sind die vorab erstellten der Rolle. */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public final class AuthenticatedUser implements UserDetails {
+	private final UUID id;
+
+	private final String username;
+
+	private final Role role;
+
+	public static AuthenticatedUser of(User user) {
+		return new AuthenticatedUser(user.getId(), user.getUsername(), user.getRole());
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return role.getAuthorities();
+	}
+
+	@Override
+	public String getPassword() {
+		return null;
+	}
+
+	@Override
+	public boolean isAccountNonExpired() {
+		return true;
+	}
+
+	@Override
+	public boolean isAccountNonLocked() {
+		return true;
+	}
+
+	@Override
+	public boolean isCredentialsNonExpired() {
+		return true;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+}
@@ -0,0 +1,83 @@
+package com.schnackag.schnackbackend.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/* Zeiten und Fehlerzähler für den Authentifizierungspfad (JwtAuthenticationFilter, JwtService, AuthenticationService).
+ * Alle Timer und Zähler werden beim Start einmal registriert und pro Operation bzw. Grund in einer EnumMap gehalten,
+ * pro Anfrage wird also weder ein String gebaut noch ein Meter gesucht. Gemessen wird mit System.nanoTime() statt
+ * mit Timer.Sample, es entsteht also auch kein Objekt pro Messung. Ist schnack.metrics.enabled=false, liefert start()
+ * 0 und alle Aufrufe kehren sofort zurück. */
+@Service
+public class AuthenticationMetrics {
+	public enum Operation {
+		FILTER,
+		TOKEN_VERIFICATION,
+		TOKEN_SIGNING,
+		LOGIN,
+		REGISTRATION,
+		REFRESH
+	}
+
+	public enum Failure {
+		MALFORMED_TOKEN,
+		EXPIRED_TOKEN,
+		WRONG_TOKEN_TYPE,
+		REVOKED_TOKEN,
+		UNKNOWN_USER,
+		BAD_CREDENTIALS,
+		RATE_LIMITED,
+		INVALID_REFRESH_TOKEN
+	}
+
+	private final boolean enabled;
+	private final Map<Operation, Timer> timers = new EnumMap<>(Operation.class);
+	private final Map<Failure, Counter> failures = new EnumMap<>(Failure.class);
+
+	public AuthenticationMetrics(
+			MeterRegistry meterRegistry,
+			@Value("${schnack.metrics.enabled:true}") boolean enabled) {
+		this.enabled = enabled;
+
+		for (Operation operation : Operation.values()) {
+			timers.put(operation, Timer
+					.builder("schnack.authentication")
+					.description("Time spent in one step of the authentication path")
+					.tag("operation", operation.name().toLowerCase(Locale.ROOT))
+					.publishPercentileHistogram()
+					.register(meterRegistry));
+		}
+		for (Failure failure : Failure.values()) {
+			failures.put(failure, Counter
+					.builder("schnack.authentication.failures")
+					.description("Rejected tokens and failed logins by reason")
+					.tag("reason", failure.name().toLowerCase(Locale.ROOT))
+					.register(meterRegistry));
+		}
+	}
+
+	/* Gibt den Startzeitpunkt für stop() zurück. */
+	public long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	public void stop(Operation operation, long start) {
+		if (enabled) {
+			timers.get(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	public void failure(Failure failure) {
+		if (enabled) {
+			failures.get(failure).increment();
+		}
+	}
+}
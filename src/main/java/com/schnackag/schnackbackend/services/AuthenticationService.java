@@ -1,92 +1,181 @@
 package com.schnackag.schnackbackend.services;
 
-import com.schnackag.schnackbackend.entities.Role;
 import com.schnackag.schnackbackend.entities.User;
-import com.schnackag.schnackbackend.repositories.UserRepository;
+import com.schnackag.schnackbackend.exceptions.InvalidRefreshTokenException;
 import com.schnackag.schnackbackend.requests.AuthenticationRequest;
+import com.schnackag.schnackbackend.requests.RefreshTokenRequest;
 import com.schnackag.schnackbackend.requests.RegisterRequest;
 import com.schnackag.schnackbackend.responses.AuthenticationResponse;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.Map;
 
 
 @Service
 @RequiredArgsConstructor
 public class AuthenticationService {
 	private final AuthenticationManager authenticationManager;
+	private final BootstrapService bootstrapService;
+	private final RateLimitService rateLimitService;
 	private final JwtService jwtService;
+	private final TokenRevocationService tokenRevocationService;
+	private final UserDetailsService userDetailsService;
 	private final PasswordEncoder passwordEncoder;
-	private final UserRepository repository;
+	private final AuthenticationMetrics authenticationMetrics;
 
 	/* Diese Methode authentifiziert den Benutzer. Sie nimmt eine Authentifizierungsanforderung entgegen
 	 * und gibt bei erfolgreicher Authentifizierung ein JWT zurück. */
 	public AuthenticationResponse authenticate(AuthenticationRequest request) {
 
-		/* Aus der E-Mail und dem Passwort wird ein UsernamePasswordAuthenticationToken erstellt, das dann mittels
-		 * der Methode authenticate() des AuthenticationManagers überprüft wird. */
-		authenticationManager.authenticate(
-				new UsernamePasswordAuthenticationToken(
-						request.getEmail(),
-						request.getPassword()
-				)
-		);
-
-		/* Nachdem der Benutzer authentifiziert wurde, wird er aus der Datenbank geladen. */
-		var user = repository.findByEmail(request.getEmail())
-				.orElseThrow();
-
-		/* Hier werden die zusätzlichen Claims erstellt die dem JWT hinzugefügt werden. */
-		var extraClaims = new HashMap<String, Object>();
-		extraClaims.put("role", user.getRole());
-
-		/* An den JwtService werden der Benutzer und die zusätzlichen Claims übergeben und ein JWT erstellt. */
-		var jwtToken = jwtService.generateToken(extraClaims, user);
-
-		/* Das JWT wird in eine AuthenticationResponse übertragen und zurückgegeben. */
-		return AuthenticationResponse
-				.builder()
-				.token(jwtToken)
-				.build();
+		long start = authenticationMetrics.start();
+		try {
+			/* Bevor das Passwort geprüft wird, wird die Anzahl der Versuche für diese E-Mail-Adresse begrenzt. */
+			rateLimitService.checkEmail(request.getEmail());
+
+			/* Aus der E-Mail und dem Passwort wird ein UsernamePasswordAuthenticationToken erstellt, das dann mittels
+			 * der Methode authenticate() des AuthenticationManagers überprüft wird. */
+			Authentication authentication;
+			try {
+				authentication = authenticationManager.authenticate(
+						new UsernamePasswordAuthenticationToken(
+								request.getEmail(),
+								request.getPassword()
+						)
+				);
+			} catch (AuthenticationException e) {
+				authenticationMetrics.failure(AuthenticationMetrics.Failure.BAD_CREDENTIALS);
+				throw e;
+			}
+
+			/* Der authentifizierte Benutzer ist der vom UserDetailsService geladene. Er wird nicht ein zweites Mal
+			 * gelesen, ein Replikat kennt einen gerade registrierten Benutzer eventuell noch nicht. */
+			var user = (UserCredentials) authentication.getPrincipal();
+
+			/* Für den Benutzer wird ein Tokenpaar erstellt und in einer AuthenticationResponse zurückgegeben. */
+			return generateTokens(user);
+		} finally {
+			authenticationMetrics.stop(AuthenticationMetrics.Operation.LOGIN, start);
+		}
 	}
 
 	/* Diese Methode ist für die Registrierung neuer Benutzer zuständig. Sie nimmt eine Registrierungsanforderung
 	 * entgegen und gibt nach erfolgreicher Registrierung ein JWT zurück. */
 	public AuthenticationResponse register(RegisterRequest request) {
-		Role role;
-
-		/* Wenn in der Benutzerdatenbank noch kein Benutzer vorhanden ist, weise dem ersten Benutzer die Rolle
-		 * Administrator zu, jeden weiteren die Rolle User. */
-		if ((long) repository.findAll().size() == 0) {
-			role = Role.ADMINISTRATOR;
-		} else {
-			role = Role.USER;
+		long start = authenticationMetrics.start();
+		try {
+			/* Bevor das Passwort gehasht wird, wird die Anzahl der Versuche für diese E-Mail-Adresse begrenzt. */
+			rateLimitService.checkEmail(request.getEmail());
+
+			/* Hier wird ein neuer Benutzer mit den Daten aus der Anforderung erstellt. Das Passwort wird mit
+			 * dem PasswordEncoder verschlüsselt. */
+			var user = User
+					.builder()
+					.username(request.getUsername())
+					.email(request.getEmail())
+					.password(passwordEncoder.encode(request.getPassword()))
+					.build();
+
+			/* Der BootstrapService weist dem ersten Benutzer die Rolle Administrator zu, jedem weiteren die Rolle
+			 * User, und speichert ihn in derselben Transaktion in der Datenbank. Er stellt sicher, dass auch bei
+			 * gleichzeitigen Registrierungen nur ein Benutzer Administrator wird. */
+			bootstrapService.register(user);
+
+			/* Mit den Daten des Benutzers wird ein Tokenpaar erstellt und zurückgegeben. */
+			return generateTokens(UserCredentials.of(user));
+		} finally {
+			authenticationMetrics.stop(AuthenticationMetrics.Operation.REGISTRATION, start);
 		}
+	}
 
-		/* Hier wird ein neuer Benutzer mit den Daten aus der Anforderung erstellt. Das Passwort wird mit
-		 * dem PasswordEncoder verschlüsselt und dem Benutzer wird eine Rolle hinzugefügt. */
-		var user = User
-				.builder()
-				.username(request.getUsername())
-				.email(request.getEmail())
-				.password(passwordEncoder.encode(request.getPassword()))
-				.role(role)
-				.build();
+	/* Diese Methode tauscht ein Refresh-Token gegen ein neues Tokenpaar. Dafür wird weder das Passwort gehasht
+	 * noch die Datenbank gelesen, sofern der Benutzer im Cache des UserDetailsService liegt. Das verwendete
+	 * Refresh-Token wird widerrufen (Rotation). Wird es ein zweites Mal verwendet, wird die Anfrage abgelehnt. */
+	public AuthenticationResponse refresh(RefreshTokenRequest request) {
+		long start = authenticationMetrics.start();
+		try {
+			var refreshToken = verifyRefreshToken(request.getRefreshToken());
+
+			/* Der Benutzer wird über die E-Mail-Adresse (Subject) neu geladen, damit eine geänderte Rolle in das neue
+			 * Access-Token übernommen wird. Erst danach wird das Refresh-Token widerrufen, damit ein fehlgeschlagenes
+			 * Laden das Token nicht verbraucht. */
+			UserCredentials user;
+			try {
+				if (!(userDetailsService.loadUserByUsername(refreshToken.getSubject()) instanceof UserCredentials loaded)
+						|| !loaded.getPrincipal().getId().toString().equals(refreshToken.getUserId())) {
+					throw new InvalidRefreshTokenException();
+				}
+				user = loaded;
+			} catch (UsernameNotFoundException e) {
+				// Der Benutzer wurde inzwischen gelöscht.
+				throw new InvalidRefreshTokenException();
+			}
+
+			if (!tokenRevocationService.revoke(refreshToken)) {
+				throw new InvalidRefreshTokenException();
+			}
+			return generateTokens(user);
+		} catch (InvalidRefreshTokenException e) {
+			authenticationMetrics.failure(AuthenticationMetrics.Failure.INVALID_REFRESH_TOKEN);
+			throw e;
+		} finally {
+			authenticationMetrics.stop(AuthenticationMetrics.Operation.REFRESH, start);
+		}
+	}
 
-		/* Der Benutzer wird mittels des UserRepository in der Datenbank gespeichert. */
-		repository.save(user);
+	/* Diese Methode widerruft das Refresh-Token und, falls mitgesendet, das aktuelle Access-Token. */
+	public void logout(RefreshTokenRequest request, String authorization) {
+		tokenRevocationService.revoke(verifyRefreshToken(request.getRefreshToken()));
 
-		/* Mit den Daten des Benutzers wird mit dem JwtService eine JWT generiert. */
-		var jwtToken = jwtService.generateToken(user);
+		if (authorization != null && authorization.startsWith("Bearer ")) {
+			try {
+				tokenRevocationService.revoke(jwtService.verifyToken(authorization.substring(7)));
+			} catch (JwtException | IllegalArgumentException e) {
+				// Ein abgelaufenes Access-Token muss nicht widerrufen werden.
+			}
+		}
+	}
+
+	private VerifiedToken verifyRefreshToken(String token) {
+		try {
+			var verifiedToken = jwtService.verifyToken(token);
+			if (verifiedToken.isRefreshToken()) {
+				return verifiedToken;
+			}
+		} catch (JwtException | IllegalArgumentException e) {
+			// Ungültige Signatur, abgelaufen oder kein JWT.
+		}
+		throw new InvalidRefreshTokenException();
+	}
+
+	/* Erstellt ein kurzlebiges Access-Token und ein langlebiges Refresh-Token für den Benutzer. */
+	private AuthenticationResponse generateTokens(UserCredentials user) {
+		var extraClaims = extraClaims(user);
 
-		/* Das Token wird in eine Authentifizierungsantwort eingefügt und zurückgegeben. */
 		return AuthenticationResponse
 				.builder()
-				.token(jwtToken)
+				.token(jwtService.generateToken(extraClaims, user))
+				.refreshToken(jwtService.generateRefreshToken(extraClaims, user))
 				.build();
 	}
+
+	/* Hier werden die zusätzlichen Claims erstellt die dem JWT hinzugefügt werden.
+	 * Mit der ID, dem Benutzernamen und der Rolle kann der JwtAuthenticationFilter den Benutzer auch ohne Datenbankzugriff
+	 * aus dem Token erstellen. */
+	private Map<String, Object> extraClaims(UserCredentials user) {
+		var extraClaims = new HashMap<String, Object>();
+		extraClaims.put(JwtService.ROLE_CLAIM, user.getPrincipal().getRole());
+		extraClaims.put(JwtService.USER_ID_CLAIM, user.getPrincipal().getId().toString());
+		extraClaims.put(JwtService.USERNAME_CLAIM, user.getPrincipal().getUsername());
+		return extraClaims;
+	}
 }
@@ -0,0 +1,73 @@
+package com.schnackag.schnackbackend.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* Ein einfacher Bloom-Filter für Strings. mightContain() gibt für jeden hinzugefügten Wert true zurück und für
+ * andere Werte nur mit der gewählten Fehlerwahrscheinlichkeit. Werte können nicht entfernt werden, der Filter muss
+ * dafür neu aufgebaut werden. Das Lesen ist ohne Locks threadsicher. */
+public class BloomFilter {
+	private final AtomicLongArray bits;
+	private final int bitCount;
+	private final int hashCount;
+	private final int expectedInsertions;
+
+	public BloomFilter(int expectedInsertions, double falsePositiveProbability) {
+		int insertions = Math.max(expectedInsertions, 1);
+		long optimalBits = (long) Math.ceil(-insertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+
+		this.bitCount = (int) Math.min(Math.max(optimalBits, Long.SIZE), Integer.MAX_VALUE - Long.SIZE);
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / insertions * Math.log(2)));
+		this.bits = new AtomicLongArray((bitCount + Long.SIZE - 1) / Long.SIZE);
+		this.expectedInsertions = insertions;
+	}
+
+	public void put(String value) {
+		long hash = hash(value);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+
+		for (int i = 0; i < hashCount; i++) {
+			int index = bitIndex(hash1 + i * hash2);
+			long mask = 1L << index;
+			bits.getAndAccumulate(index >>> 6, mask, (current, bit) -> current | bit);
+		}
+	}
+
+	public boolean mightContain(String value) {
+		long hash = hash(value);
+		int hash1 = (int) hash;
+		int hash2 = (int) (hash >>> 32);
+
+		for (int i = 0; i < hashCount; i++) {
+			int index = bitIndex(hash1 + i * hash2);
+			if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getExpectedInsertions() {
+		return expectedInsertions;
+	}
+
+	private int bitIndex(int combinedHash) {
+		return (combinedHash & Integer.MAX_VALUE) % bitCount;
+	}
+
+	/* 64-Bit Hash (FNV-1a mit dem Finalizer von MurmurHash3), aus dem beide Hashfunktionen abgeleitet werden. */
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b;
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,72 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.Role;
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.repositories.BootstrapFlagRepository;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+
+/* Dieser Service speichert neu registrierte Benutzer und entscheidet, ob ein Benutzer der erste ist und damit
+ * Administrator wird. Anstatt alle Benutzer zu laden, wird ein BootstrapFlag gesetzt. Da der Name des Flags der
+ * Primärschlüssel ist, gelingt das Setzen nur genau einer Transaktion, auch wenn mehrere Registrierungen gleichzeitig
+ * auf eine leere Tabelle treffen. Alle anderen werden normale Benutzer. Flag und Benutzer werden in derselben
+ * Transaktion geschrieben: Schlägt das Speichern des Benutzers fehl, wird auch das Flag zurückgerollt und der nächste
+ * Benutzer wird Administrator. */
+@Service
+public class BootstrapService {
+	private static final String ADMINISTRATOR_FLAG = "ADMINISTRATOR";
+
+	private final BootstrapFlagRepository bootstrapFlagRepository;
+	private final UserRepository userRepository;
+	private final TransactionTemplate transactionTemplate;
+
+	/* Sobald das Flag einmal gesetzt und committet wurde, muss die Datenbank nicht mehr gefragt werden. */
+	private volatile boolean administratorClaimed;
+
+	public BootstrapService(BootstrapFlagRepository bootstrapFlagRepository, UserRepository userRepository, PlatformTransactionManager transactionManager) {
+		this.bootstrapFlagRepository = bootstrapFlagRepository;
+		this.userRepository = userRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/* Weist dem Benutzer die Rolle Administrator zu, wenn er der erste Benutzer ist, sonst die Rolle User,
+	 * und speichert ihn. Das Passwort muss bereits gehasht sein, damit die Transaktion kurz bleibt. */
+	public User register(User user) {
+		return transactionTemplate.execute(status -> {
+			user.setRole(claimAdministrator() ? Role.ADMINISTRATOR : Role.USER);
+			return userRepository.save(user);
+		});
+	}
+
+	/* Gibt genau einmal true zurück, nämlich für den ersten Benutzer, dessen Transaktion committet wird.
+	 * Existieren bereits Benutzer aus der Zeit vor diesem Flag, wird das Flag nur gesetzt und false zurückgegeben. */
+	private boolean claimAdministrator() {
+		if (administratorClaimed) {
+			return false;
+		}
+		if (bootstrapFlagRepository.existsById(ADMINISTRATOR_FLAG)) {
+			administratorClaimed = true;
+			return false;
+		}
+
+		boolean usersExist = userRepository.existsByIdNotNull();
+		if (bootstrapFlagRepository.insertIfAbsent(ADMINISTRATOR_FLAG, Instant.now()) == 0) {
+			// Eine andere Registrierung hat das Flag gesetzt und committet.
+			administratorClaimed = true;
+			return false;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				administratorClaimed = true;
+			}
+		});
+		return !usersExist;
+	}
+}
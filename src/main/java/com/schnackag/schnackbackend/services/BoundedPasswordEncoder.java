@@ -0,0 +1,125 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.exceptions.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/* Dieser PasswordEncoder führt BCrypt nicht auf den Request-Threads von Tomcat aus, sondern in einem eigenen,
+ * begrenzten Thread-Pool. Damit kann eine Welle von Logins nur so viele Kerne belegen, wie der Pool Threads hat.
+ * Der Request-Thread wartet dabei blockiert auf das Ergebnis, es sind also bis zu threads + queue-capacity
+ * Request-Threads durch Logins belegt. Die übrigen Threads von Tomcat (server.tomcat.threads.max) bleiben nur frei,
+ * solange queue-capacity deutlich kleiner ist. Ist die Warteschlange voll, wird die Anfrage deshalb sofort mit einer
+ * PasswordHashingRejectedException (503) abgelehnt, statt einen weiteren Request-Thread warten zu lassen.
+ *
+ * Über upgradeEncoding() erkennt der DaoAuthenticationProvider Passwörter, deren BCrypt-Kostenfaktor vom
+ * konfigurierten Wert abweicht. Diese werden nach einem erfolgreichen Login automatisch neu gehasht. */
+@Service
+public class BoundedPasswordEncoder implements PasswordEncoder {
+	private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+
+	private final int strength;
+	private final BCryptPasswordEncoder delegate;
+	private final ThreadPoolExecutor executor;
+	private final Timer hashingTimer;
+	private final Counter rejections;
+
+	public BoundedPasswordEncoder(
+			MeterRegistry meterRegistry,
+			@Value("${schnack.security.password-hashing.strength:10}") int strength,
+			@Value("${schnack.security.password-hashing.threads:0}") int threads,
+			@Value("${schnack.security.password-hashing.queue-capacity:16}") int queueCapacity) {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		AtomicInteger threadNumber = new AtomicInteger();
+
+		this.strength = strength;
+		this.delegate = new BCryptPasswordEncoder(strength);
+		this.executor = new ThreadPoolExecutor(
+				poolSize,
+				poolSize,
+				0L,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				runnable -> {
+					Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.AbortPolicy());
+
+		Gauge
+				.builder("schnack.password.hashing.queue", executor, pool -> pool.getQueue().size())
+				.description("Number of password hashing tasks waiting for a thread")
+				.register(meterRegistry);
+		this.hashingTimer = Timer
+				.builder("schnack.password.hashing")
+				.description("Time spent hashing or verifying a password")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		this.rejections = Counter
+				.builder("schnack.password.hashing.rejections")
+				.description("Password hashing tasks rejected because the queue was full")
+				.register(meterRegistry);
+	}
+
+	@Override
+	public String encode(CharSequence rawPassword) {
+		return execute(() -> delegate.encode(rawPassword));
+	}
+
+	@Override
+	public boolean matches(CharSequence rawPassword, String encodedPassword) {
+		return execute(() -> delegate.matches(rawPassword, encodedPassword));
+	}
+
+	/* Gibt true zurück, wenn der Kostenfaktor des gespeicherten Hashes nicht dem konfigurierten entspricht. */
+	@Override
+	public boolean upgradeEncoding(String encodedPassword) {
+		if (encodedPassword == null) {
+			return false;
+		}
+
+		Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+		return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+	}
+
+	/* Führt die Aufgabe im Pool aus und wartet auf das Ergebnis. Die gemessene Zeit enthält nur das Hashing selbst,
+	 * nicht die Wartezeit in der Warteschlange. */
+	private <T> T execute(Callable<T> task) {
+		try {
+			return executor.submit(() -> hashingTimer.recordCallable(task)).get();
+		} catch (RejectedExecutionException e) {
+			rejections.increment();
+			throw new PasswordHashingRejectedException();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for password hashing.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,98 @@
+package com.schnackag.schnackbackend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/* Dieser UserDetailsService hält bereits geladene Benutzer in einem Cache, damit nicht jede authentifizierte
+ * Anfrage eine Datenbankabfrage über das UserRepository auslöst. Die Einträge verfallen nach einer festen Zeit (TTL)
+ * und der Cache ist in seiner Größe beschränkt. Unbekannte E-Mail-Adressen werden ebenfalls zwischengespeichert
+ * (negatives Caching), allerdings mit einer kürzeren Lebensdauer. Ein gerade gespeicherter Benutzer wird über
+ * ReplicaRouting vom Primärsystem geladen, da ihn die Replikate eventuell noch nicht kennen.
+ *
+ * Gespeichert wird nicht die User-Entität, sondern ein unveränderlicher Auszug (UserCredentials). Der
+ * UserCacheInvalidationListener entfernt einen Benutzer nur aus dem Cache dieser Instanz. Auf anderen Instanzen
+ * bleiben eine geänderte Rolle oder ein neues Passwort deshalb bis zu time-to-live unsichtbar. */
+@Service
+public class CachedUserDetailsService implements UserDetailsService {
+	private final UserRepository userRepository;
+	private final ReplicaRouting replicaRouting;
+	private final Cache<String, Optional<UserCredentials>> principals;
+
+	public CachedUserDetailsService(
+			UserRepository userRepository,
+			ReplicaRouting replicaRouting,
+			MeterRegistry meterRegistry,
+			@Value("${schnack.security.principal-cache.maximum-size:10000}") long maximumSize,
+			@Value("${schnack.security.principal-cache.time-to-live:1m}") Duration timeToLive,
+			@Value("${schnack.security.principal-cache.negative-time-to-live:30s}") Duration negativeTimeToLive) {
+		this.userRepository = userRepository;
+		this.replicaRouting = replicaRouting;
+		this.principals = Caffeine
+				.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfter(new Expiry<String, Optional<UserCredentials>>() {
+					@Override
+					public long expireAfterCreate(String key, Optional<UserCredentials> value, long currentTime) {
+						return (value.isPresent() ? timeToLive : negativeTimeToLive).toNanos();
+					}
+
+					@Override
+					public long expireAfterUpdate(String key, Optional<UserCredentials> value, long currentTime, long currentDuration) {
+						return expireAfterCreate(key, value, currentTime);
+					}
+
+					@Override
+					public long expireAfterRead(String key, Optional<UserCredentials> value, long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, principals, "user-details");
+	}
+
+	/* Lädt den Benutzer aus dem Cache. Nur wenn kein Eintrag vorhanden ist, wird die Datenbank abgefragt.
+	 * Spring Security übergibt als username die E-Mail-Adresse, beim Login wie auch aus dem Subject des JWT. */
+	@Override
+	public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+		return principals
+				.get(email, key -> replicaRouting.read("user:" + key, () -> userRepository.findByEmail(key).map(UserCredentials::of)))
+				.orElseThrow(() -> new UsernameNotFoundException("User not found."));
+	}
+
+	/* Entfernt den Eintrag eines Benutzers aus dem Cache. Diese Methode muss aufgerufen werden, sobald sich
+	 * die Daten eines Benutzers (z.B. Rolle oder Passwort) ändern oder ein neuer Benutzer registriert wird. */
+	public void evict(String email) {
+		if (email != null) {
+			principals.invalidate(email);
+			replicaRouting.markWritten("user:" + email);
+		}
+	}
+
+	/* Wurde die E-Mail-Adresse geändert, werden die alte und die neue entfernt. */
+	public void evict(User user) {
+		evict(user.getEmail());
+		if (user.getLoadedEmail() != null && !user.getLoadedEmail().equals(user.getEmail())) {
+			evict(user.getLoadedEmail());
+		}
+	}
+
+	/* Gibt die Treffer- und Fehlzugriffszähler des Caches zurück. */
+	public CacheStats getCacheStats() {
+		return principals.stats();
+	}
+}
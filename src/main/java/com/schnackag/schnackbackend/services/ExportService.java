@@ -0,0 +1,249 @@
+package com.schnackag.schnackbackend.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.schnackag.schnackbackend.exceptions.ThreadNotFoundException;
+import com.schnackag.schnackbackend.exceptions.UserNotFoundException;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/* Dieser Service exportiert die Posts eines Threads sowie alle Posts und Threads eines Benutzers als NDJSON oder CSV.
+ * Statt die Listen User.posts bzw. User.threads zu laden, werden die Zeilen als Stream von DTO-Projektionen gelesen
+ * (siehe PostRepository.streamByThread) und sofort in den OutputStream geschrieben. Es werden keine Entitäten
+ * geladen, der Persistence Context bleibt also leer und muss nicht geleert werden. Der Speicherbedarf hängt damit nur
+ * von der Fetch-Size und den Puffern ab, nicht von der Größe des Exports.
+ *
+ * Mit Sharding werden die Exporte eines Benutzers Shard für Shard geschrieben, jeder Shard in einer eigenen
+ * Transaktion. Die Zeilen sind dann nur innerhalb eines Shards nach dem Zeitpunkt sortiert. */
+@Slf4j
+@Lazy
+@Service
+public class ExportService {
+	public enum Format {
+		NDJSON("application/x-ndjson", "ndjson"),
+		CSV("text/csv", "csv");
+
+		private final String contentType;
+		private final String extension;
+
+		Format(String contentType, String extension) {
+			this.contentType = contentType;
+			this.extension = extension;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public String getExtension() {
+			return extension;
+		}
+	}
+
+	private static final String[] POST_COLUMNS = {"id", "thread_id", "author", "created_at", "content"};
+	private static final String[] THREAD_COLUMNS = {"id", "title", "owner", "created_at", "post_count", "last_post_at", "last_post_author"};
+	private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+	private final PostRepository postRepository;
+	private final ThreadRepository threadRepository;
+	private final UserRepository userRepository;
+	private final ShardRouting shardRouting;
+	private final ObjectMapper objectMapper;
+	private final TransactionTemplate transactionTemplate;
+
+	public ExportService(
+			PostRepository postRepository,
+			ThreadRepository threadRepository,
+			UserRepository userRepository,
+			ShardRouting shardRouting,
+			ObjectMapper objectMapper,
+			PlatformTransactionManager transactionManager) {
+		this.postRepository = postRepository;
+		this.threadRepository = threadRepository;
+		this.userRepository = userRepository;
+		this.shardRouting = shardRouting;
+		this.objectMapper = objectMapper;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+	}
+
+	/* Die Prüfungen werden vor dem Export aufgerufen, damit ein unbekannter Thread oder Benutzer noch mit 404
+	 * beantwortet werden kann, bevor die ersten Bytes gesendet wurden. */
+	public void checkThread(UUID threadId) {
+		if (!threadRepository.existsById(threadId)) {
+			throw new ThreadNotFoundException();
+		}
+	}
+
+	public void checkUser(UUID userId) {
+		if (!userRepository.existsById(userId)) {
+			throw new UserNotFoundException();
+		}
+	}
+
+	public long exportThreadPosts(UUID threadId, Format format, OutputStream output) throws IOException {
+		return export(List.of(shardRouting.shardOf(threadId)), () -> postRepository.streamByThread(threadId), PostResponse.class, format, POST_COLUMNS, ExportService::postColumns, output);
+	}
+
+	public long exportUserPosts(UUID userId, Format format, OutputStream output) throws IOException {
+		return export(shardRouting.getShards(), () -> postRepository.streamByAuthor(userId), PostResponse.class, format, POST_COLUMNS, ExportService::postColumns, output);
+	}
+
+	public long exportUserThreads(UUID userId, Format format, OutputStream output) throws IOException {
+		return export(shardRouting.getShards(), () -> threadRepository.streamByOwner(userId), ThreadResponse.class, format, THREAD_COLUMNS, ExportService::threadColumns, output);
+	}
+
+	/* Liest den Stream jedes Shards in einer read-only Transaktion und schreibt jede Zeile sofort. Bricht der Client
+	 * die Verbindung ab, endet der Export mit einer IOException und der Stream wird geschlossen. */
+	private <T> long export(
+			List<String> shards,
+			Supplier<Stream<T>> query,
+			Class<T> type,
+			Format format,
+			String[] header,
+			Function<T, Object[]> columns,
+			OutputStream output) throws IOException {
+		long start = System.nanoTime();
+		long rows = 0;
+
+		try (RowWriter<T> writer = switch (format) {
+			case NDJSON -> new NdjsonWriter<>(objectMapper, type, output);
+			case CSV -> new CsvWriter<>(header, columns, output);
+		}) {
+			for (String shard : shards) {
+				rows += shardRouting.onShard(shard, () -> transactionTemplate.execute(status -> {
+					try (Stream<T> stream = query.get()) {
+						long count = 0;
+						Iterator<T> iterator = stream.iterator();
+						while (iterator.hasNext()) {
+							writer.write(iterator.next());
+							count++;
+						}
+						return count;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}));
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		log.info("Exported {} {} rows as {} in {} ms.", rows, type.getSimpleName(), format, (System.nanoTime() - start) / 1_000_000);
+		return rows;
+	}
+
+	/* Schreibt die Zeilen eines Exports, auch über mehrere Shards hinweg. close() schließt nur den Writer, nicht den
+	 * OutputStream. */
+	private interface RowWriter<T> extends Closeable {
+		void write(T row) throws IOException;
+	}
+
+	private static class NdjsonWriter<T> implements RowWriter<T> {
+		private final ObjectWriter writer;
+		private final JsonGenerator generator;
+
+		NdjsonWriter(ObjectMapper objectMapper, Class<T> type, OutputStream output) throws IOException {
+			this.writer = objectMapper.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			this.generator = writer.createGenerator(output);
+			// Jede Zeile endet mit einem Zeilenumbruch, das Leerzeichen zwischen zwei Werten entfällt.
+			generator.setRootValueSeparator(null);
+		}
+
+		@Override
+		public void write(T row) throws IOException {
+			writer.writeValue(generator, row);
+			generator.writeRaw('\n');
+		}
+
+		@Override
+		public void close() throws IOException {
+			generator.close();
+		}
+	}
+
+	private static class CsvWriter<T> implements RowWriter<T> {
+		private final Function<T, Object[]> columns;
+		private final Writer writer;
+
+		CsvWriter(String[] header, Function<T, Object[]> columns, OutputStream output) throws IOException {
+			this.columns = columns;
+			this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+			writeCsvLine(writer, header);
+		}
+
+		@Override
+		public void write(T row) throws IOException {
+			writeCsvLine(writer, columns.apply(row));
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.flush();
+		}
+	}
+
+	/* Schreibt eine Zeile nach RFC 4180. Felder mit Trennzeichen, Anführungszeichen oder Zeilenumbrüchen werden in
+	 * Anführungszeichen gesetzt, enthaltene Anführungszeichen verdoppelt. Texte, die mit =, +, -, @, Tab oder
+	 * Wagenrücklauf beginnen, würde eine Tabellenkalkulation als Formel ausführen (CSV-Injection). Ihnen wird ein '
+	 * vorangestellt, sie erscheinen dann als Text. IDs, Zeitpunkte und Zahlen bleiben unverändert. */
+	private static void writeCsvLine(Writer writer, Object[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+
+			String value = values[i] == null ? "" : values[i].toString();
+			if (values[i] instanceof String && !value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+				value = "'" + value;
+			}
+			if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+				writer.write('"');
+				writer.write(value.replace("\"", "\"\""));
+				writer.write('"');
+			} else {
+				writer.write(value);
+			}
+		}
+		writer.write("\r\n");
+	}
+
+	private static Object[] postColumns(PostResponse post) {
+		return new Object[] {post.getId(), post.getThreadId(), post.getAuthor(), post.getCreatedAt(), post.getContent()};
+	}
+
+	private static Object[] threadColumns(ThreadResponse thread) {
+		return new Object[] {
+				thread.getId(),
+				thread.getTitle(),
+				thread.getOwner(),
+				thread.getCreatedAt(),
+				thread.getPostCount(),
+				thread.getLastPostAt(),
+				thread.getLastPostAuthor()};
+	}
+}
@@ -0,0 +1,82 @@
+package com.schnackag.schnackbackend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Token-Buckets im Speicher dieser Instanz. Jeder Bucket besteht aus einem einzigen AtomicLong und wird ohne Locks
+ * per Compare-and-Set aktualisiert (Generic Cell Rate Algorithm): Gespeichert wird der Zeitpunkt, zu dem der Bucket
+ * wieder voll wäre. Jedes entnommene Token schiebt diesen Zeitpunkt um period / capacity nach hinten. Liegt er mehr
+ * als period in der Zukunft, ist der Bucket leer.
+ *
+ * Ein voller Bucket verhält sich genauso wie ein fehlender. Die Buckets liegen deshalb in einem Caffeine-Cache und
+ * verfallen period nach dem letzten Zugriff, dann sind sie sicher wieder voll. Zusätzlich ist der Cache auf
+ * maximum-buckets Einträge begrenzt. Caffeine entfernt überzählige Einträge in amortisiert konstanter Zeit, der
+ * Speicherbedarf bleibt also auch bei sehr vielen Schlüsseln begrenzt. Wird dabei ein noch nicht voller Bucket
+ * entfernt, beginnt dieser Schlüssel wieder mit einem vollen Bucket. */
+@Service
+public class InMemoryRateLimitStore implements RateLimitStore {
+	private final Cache<String, Bucket> buckets;
+
+	public InMemoryRateLimitStore(@Value("${schnack.security.rate-limit.maximum-buckets:100000}") long maximumBuckets) {
+		this.buckets = Caffeine
+				.newBuilder()
+				.maximumSize(maximumBuckets)
+				.expireAfter(new Expiry<String, Bucket>() {
+					@Override
+					public long expireAfterCreate(String key, Bucket value, long currentTime) {
+						return value.period;
+					}
+
+					@Override
+					public long expireAfterUpdate(String key, Bucket value, long currentTime, long currentDuration) {
+						return value.period;
+					}
+
+					@Override
+					public long expireAfterRead(String key, Bucket value, long currentTime, long currentDuration) {
+						return value.period;
+					}
+				})
+				.build();
+	}
+
+	@Override
+	public boolean tryConsume(String key, long capacity, Duration period) {
+		long now = System.nanoTime();
+		long interval = period.toNanos() / capacity;
+
+		Bucket bucket = buckets.get(key, k -> new Bucket(now, period.toNanos()));
+		while (true) {
+			long fullAt = bucket.get();
+			long next = Math.max(fullAt, now) + interval;
+
+			if (next - now > bucket.period) {
+				return false;
+			}
+			if (bucket.compareAndSet(fullAt, next)) {
+				return true;
+			}
+		}
+	}
+
+	public long getBucketCount() {
+		buckets.cleanUp();
+		return buckets.estimatedSize();
+	}
+
+	/* Der Zeitpunkt, zu dem der Bucket wieder voll ist, und die Dauer, nach der er spätestens voll ist. */
+	private static final class Bucket extends AtomicLong {
+		private final long period;
+
+		private Bucket(long fullAt, long period) {
+			super(fullAt);
+			this.period = period;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.schnackag.schnackbackend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Platzhalter für einen gemeinsamen Cache, der nur im Speicher dieser Instanz liegt. Er verhält sich wie ein
+ * entfernter Cache mit begrenzter Größe und Ablaufzeit und dient zur Entwicklung und zum Testen der zweiten Stufe.
+ * Aktiviert wird er mit schnack.threads.cache.shared=in-memory. */
+@Service
+@ConditionalOnProperty(name = "schnack.threads.cache.shared", havingValue = "in-memory")
+public class InMemorySharedCache implements SharedCache {
+	private final Cache<String, Object> values;
+	private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+	public InMemorySharedCache(
+			@Value("${schnack.threads.cache.shared-maximum-size:100000}") long maximumSize,
+			@Value("${schnack.threads.cache.shared-time-to-live:10m}") Duration timeToLive) {
+		this.values = Caffeine
+				.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(timeToLive)
+				.build();
+	}
+
+	@Override
+	public Object get(String key) {
+		return values.getIfPresent(key);
+	}
+
+	@Override
+	public void put(String key, Object value) {
+		values.put(key, value);
+	}
+
+	@Override
+	public long getCounter(String key) {
+		AtomicLong counter = counters.get(key);
+		return counter != null ? counter.get() : 0;
+	}
+
+	@Override
+	public long increment(String key) {
+		return counters.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+	}
+}
@@ -0,0 +1,62 @@
+package com.schnackag.schnackbackend.services;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/* Die Authentication einer Anfrage mit gültigem JWT. Anders als UsernamePasswordAuthenticationToken kopiert sie die
+ * Berechtigungen nicht in eine neue Liste, sondern gibt die vorab erstellten der Rolle des Principals zurück. */
+@EqualsAndHashCode
+@ToString
+public final class JwtAuthentication implements Authentication {
+	private final AuthenticatedUser principal;
+	private final Object details;
+	private boolean authenticated = true;
+
+	public JwtAuthentication(AuthenticatedUser principal, Object details) {
+		this.principal = principal;
+		this.details = details;
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return principal.getAuthorities();
+	}
+
+	@Override
+	public Object getCredentials() {
+		return null;
+	}
+
+	@Override
+	public Object getDetails() {
+		return details;
+	}
+
+	@Override
+	public AuthenticatedUser getPrincipal() {
+		return principal;
+	}
+
+	@Override
+	public boolean isAuthenticated() {
+		return authenticated;
+	}
+
+	/* Wie bei UsernamePasswordAuthenticationToken kann die Authentifizierung nur entzogen, aber nicht gesetzt werden. */
+	@Override
+	public void setAuthenticated(boolean authenticated) {
+		if (authenticated) {
+			throw new IllegalArgumentException("Cannot set this token to trusted.");
+		}
+		this.authenticated = false;
+	}
+
+	@Override
+	public String getName() {
+		return principal.getUsername();
+	}
+}
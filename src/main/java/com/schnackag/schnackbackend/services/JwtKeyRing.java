@@ -0,0 +1,62 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.configurations.JwtProperties;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import lombok.Getter;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.security.Key;
+import java.util.HashMap;
+import java.util.Map;
+
+/* Der JwtKeyRing lädt alle konfigurierten Schlüssel einmal beim Start und hält sie als fertige SecretKey-Objekte.
+ * SecretKeys sind unveränderlich und können von allen Threads gleichzeitig verwendet werden, beim Signieren und
+ * Prüfen wird also kein Schlüssel mehr dekodiert oder erzeugt.
+ *
+ * Als Locator wird der KeyRing direkt vom JwtParser verwendet: Für jedes Token wird der Schlüssel über die ID im
+ * Header (kid) mit einem Zugriff auf eine HashMap gefunden. Tokens ohne kid stammen aus der Zeit vor der Einführung
+ * des KeyRings und werden mit dem aktiven Schlüssel geprüft. */
+@Service
+public class JwtKeyRing extends LocatorAdapter<Key> {
+	private final Map<String, SecretKey> keys;
+
+	@Getter
+	private final String activeKeyId;
+
+	@Getter
+	private final SecretKey activeKey;
+
+	public JwtKeyRing(JwtProperties properties) {
+		Map<String, SecretKey> loadedKeys = new HashMap<>();
+		for (JwtProperties.Key key : properties.getKeys()) {
+			loadedKeys.put(key.getId(), Keys.hmacShaKeyFor(Decoders.BASE64.decode(key.getSecret())));
+		}
+
+		this.keys = Map.copyOf(loadedKeys);
+		this.activeKeyId = properties.getActiveKeyId();
+		this.activeKey = keys.get(activeKeyId);
+
+		if (activeKey == null) {
+			throw new IllegalStateException("The active JWT key '" + activeKeyId + "' is not configured.");
+		}
+	}
+
+	@Override
+	protected Key locate(JwsHeader header) {
+		String keyId = header.getKeyId();
+		if (keyId == null) {
+			return activeKey;
+		}
+
+		SecretKey key = keys.get(keyId);
+		if (key == null) {
+			throw new JwtException("Unknown JWT key id.");
+		}
+		return key;
+	}
+}
@@ -1,89 +1,200 @@
 package com.schnackag.schnackbackend.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
-import org.springframework.security.core.userdetails.UserDetails;
+import io.jsonwebtoken.MissingClaimException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
-	private static final String SECRET_KEY = "ad7646d529b1c1a8a90850522750a3c8d797f557a6de45c1c3c16ff3418cc8df";
+	/* Namen der zusätzlichen Claims, die beim Login und bei der Registrierung in das JWT geschrieben werden. */
+	public static final String ROLE_CLAIM = "role";
+	public static final String USER_ID_CLAIM = "id";
+	public static final String USERNAME_CLAIM = "name";
+
+	/* Der Claim typ unterscheidet kurzlebige Access-Tokens von langlebigen Refresh-Tokens.
+	 * Ein Refresh-Token kann nur am Endpunkt /refresh verwendet werden, nicht für andere Anfragen. */
+	public static final String TOKEN_TYPE_CLAIM = "typ";
+	public static final String ACCESS_TOKEN_TYPE = "access";
+	public static final String REFRESH_TOKEN_TYPE = "refresh";
+
+	/* Die Schlüssel und der Parser sind unveränderlich und threadsicher.
+	 * Sie werden deshalb nur einmal erstellt und nicht bei jedem Aufruf neu aufgebaut.
+	 * Der Parser findet den Schlüssel eines Tokens über dessen kid im JwtKeyRing. */
+	private final JwtKeyRing keyRing;
+	private final JwtParser jwtParser;
+
+	/* Cache für bereits geprüfte Tokens. Als Schlüssel dient der SHA-256 Hash des Tokens,
+	 * damit die Größe eines Eintrags nicht von der Länge des Tokens abhängt.
+	 * Jeder Eintrag wird zum Ablaufzeitpunkt (exp) des Tokens aus dem Cache entfernt. */
+	private final Cache<String, VerifiedToken> verifiedTokens;
+
+	private final Duration accessTokenExpiration;
+	private final Duration refreshTokenExpiration;
+	private final AuthenticationMetrics authenticationMetrics;
+
+	public JwtService(
+			JwtKeyRing keyRing,
+			AuthenticationMetrics authenticationMetrics,
+			MeterRegistry meterRegistry,
+			@Value("${schnack.jwt.cache.maximum-size:10000}") long cacheMaximumSize,
+			@Value("${schnack.jwt.access-token.expiration:15m}") Duration accessTokenExpiration,
+			@Value("${schnack.jwt.refresh-token.expiration:14d}") Duration refreshTokenExpiration) {
+		this.keyRing = keyRing;
+		this.authenticationMetrics = authenticationMetrics;
+		this.accessTokenExpiration = accessTokenExpiration;
+		this.refreshTokenExpiration = refreshTokenExpiration;
+		this.jwtParser = Jwts.parser().keyLocator(keyRing).build();
+		this.verifiedTokens = Caffeine
+				.newBuilder()
+				.maximumSize(cacheMaximumSize)
+				.expireAfter(new Expiry<String, VerifiedToken>() {
+					@Override
+					public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+						long millis = value.getExpiration().getTime() - System.currentTimeMillis();
+						return TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+					}
+
+					@Override
+					public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+
+					@Override
+					public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt-verified-tokens");
+	}
+
+	/* Diese Methode prüft ein JWT genau einmal und gibt das Ergebnis als VerifiedToken zurück.
+	 * Wurde das Token bereits geprüft und ist es noch nicht abgelaufen, wird das Ergebnis aus dem Cache
+	 * zurückgegeben, ohne die Signatur erneut zu berechnen. Ist das Token ungültig oder abgelaufen,
+	 * wirft der Parser eine JwtException. Ungültige Tokens werden nicht im Cache abgelegt.
+	 * Tokens ohne exp werden ebenfalls abgelehnt, da ihr Cache-Eintrag sonst nie abliefe.
+	 * Gemessen wird nur die Prüfung bei einem Fehlzugriff, Treffer zählen die Metriken des Caches. */
+	public VerifiedToken verifyToken(String token) {
+		return verifiedTokens.get(digest(token), key -> {
+			long start = authenticationMetrics.start();
+			try {
+				return new VerifiedToken(extractAllClaims(token));
+			} finally {
+				authenticationMetrics.stop(AuthenticationMetrics.Operation.TOKEN_VERIFICATION, start);
+			}
+		});
+	}
+
+	/* Gibt die Treffer- und Fehlzugriffszähler des Token-Caches zurück. */
+	public CacheStats getTokenCacheStats() {
+		return verifiedTokens.stats();
+	}
 
 	/* Diese Methode nimmt ein JWT als String und gibt die Claim-Daten in Form
 	 * eines Claims-Objekts zurück. Ein Claim in JWT ist eine Aussage über einen Benutzer,
 	 * die Daten über den Benutzer und zusätzliche Metadaten enthält.
-	 * Diese Methode verwendet das Keys.hmacShaKeyFor()-Verfahren und den Schlüssel,
+	 * Diese Methode verwendet den vorbereiteten Parser und den passenden Schlüssel aus dem JwtKeyRing,
 	 * um das Token zu entschlüsseln und die Ansprüche zu extrahieren.*/
 	private Claims extractAllClaims(String token) {
-		return Jwts
-				.parser()
-				.verifyWith(getSignInKey())
-				.build()
-				.parseSignedClaims(token)
-				.getPayload();
+		Jws<Claims> jws = jwtParser.parseSignedClaims(token);
+		Claims claims = jws.getPayload();
+		if (claims.getExpiration() == null) {
+			throw new MissingClaimException(jws.getHeader(), claims, Claims.EXPIRATION, null, "JWT has no expiration (exp) claim.");
+		}
+		return claims;
 	}
 
 	/* Diese Methode dient zum Extrahieren eines spezifischen Claims aus dem Token.
 	 * Sie nimmt eine Funktion als Parameter, die angibt, welcher Claim extrahiert werden soll. */
 	public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-		final Claims claims = extractAllClaims(token);
+		final Claims claims = verifyToken(token).getClaims();
 		return claimsResolver.apply(claims);
 	}
 
-	/* Diese Methode verwendet die extractClaim()-Methode zur Extrahierung des Ablaufdatums des Tokens. */
-	private Date extractExpiration(String token) {
-		return extractClaim(token, Claims::getExpiration);
-	}
-
-	/* Diese Methode, verwendet die extractClaim()-Methode zur Extrahierung des Benutzernamens aus dem Token. */
+	/* Diese Methode, verwendet die extractClaim()-Methode zur Extrahierung der E-Mail-Adresse (Subject) aus dem Token. */
 	public String extractUsername(String token) {
 		return extractClaim(token, Claims::getSubject);
 	}
 
-	/* generateToken(UserDetails userDetails) und generateToken(Map<String, Object> extraClaims, UserDetails userDetails):
-	 * Diese Methoden werden verwendet, um ein neues JWT zu erstellen. Sie nehmen ein UserDetails-Objekt und ggf.
-	 * eine Map von zusätzlichen Claims als Parameter. Das Token wird verschlüsselt und als String zurückgegeben. */
-	public String generateToken(UserDetails userDetails) {
-		return generateToken(new HashMap<>(), userDetails);
+	/* generateToken(UserCredentials user) und generateToken(Map<String, Object> extraClaims, UserCredentials user):
+	 * Diese Methoden werden verwendet, um ein neues Access-Token zu erstellen. Sie nehmen einen Benutzer und ggf.
+	 * eine Map von zusätzlichen Claims als Parameter. Das Token wird mit dem aktiven Schlüssel signiert,
+	 * dessen ID als kid im Header steht, und als String zurückgegeben. */
+	public String generateToken(UserCredentials user) {
+		return generateToken(new HashMap<>(), user);
 	}
 
-	public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
-		return Jwts
-				.builder()
-				.claims().empty().add(extraClaims).and()
-				.subject(userDetails.getUsername())
-				.issuedAt(new Date(System.currentTimeMillis()))
-				.expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 24))
-				.signWith(getSignInKey())
-				.compact();
+	public String generateToken(Map<String, Object> extraClaims, UserCredentials user) {
+		return buildToken(extraClaims, user, ACCESS_TOKEN_TYPE, accessTokenExpiration);
+	}
+
+	/* Erstellt ein Refresh-Token, mit dem am Endpunkt /refresh ohne Passwort ein neues Tokenpaar angefordert werden kann. */
+	public String generateRefreshToken(Map<String, Object> extraClaims, UserCredentials user) {
+		return buildToken(extraClaims, user, REFRESH_TOKEN_TYPE, refreshTokenExpiration);
+	}
+
+	/* Jedes Token erhält eine zufällige ID (jti), über die es widerrufen werden kann. Subject ist die E-Mail-Adresse,
+	 * da der UserDetailsService den Benutzer über sie lädt. Der Benutzername ist nur ein Anzeigename. */
+	private String buildToken(Map<String, Object> extraClaims, UserCredentials user, String type, Duration expiration) {
+		long now = System.currentTimeMillis();
+		long start = authenticationMetrics.start();
+
+		try {
+			return Jwts
+					.builder()
+					.header().keyId(keyRing.getActiveKeyId()).and()
+					.claims().empty().add(extraClaims).add(TOKEN_TYPE_CLAIM, type).and()
+					.id(UUID.randomUUID().toString())
+					.subject(user.getEmail())
+					.issuedAt(new Date(now))
+					.expiration(new Date(now + expiration.toMillis()))
+					.signWith(keyRing.getActiveKey())
+					.compact();
+		} finally {
+			authenticationMetrics.stop(AuthenticationMetrics.Operation.TOKEN_SIGNING, start);
+		}
 	}
 
-	/* Diese Methode konvertiert den gegebenen Schlüssel (als Base64-String) in ein SecretKey-Objekt,
-	 * das zum Verschlüsseln und Entschlüsseln des JWT verwendet wird. */
-	private SecretKey getSignInKey() {
-		byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-		return Keys.hmacShaKeyFor(keyBytes);
+	/* Diese Methode berechnet den SHA-256 Hash des Tokens, der als Schlüssel für den Token-Cache dient. */
+	private static String digest(String token) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
 	}
 
-	/* Diese Methode prüft, ob das Token abgelaufen ist,
-	 * indem sie das Ablaufdatum des Tokens mit dem aktuellen Datum vergleicht. */
-	private boolean isTokenExpired(String token) {
-		return extractExpiration(token).before(new Date());
+	/* Diese Methode prüft das Token einmal und gibt true zurück, wenn die Benutzer-ID des Tokens
+	 * der ID des übergebenen Benutzers entspricht und das Token nicht abgelaufen ist. */
+	public boolean isTokenValid(String token, AuthenticatedUser user) {
+		return isTokenValid(verifyToken(token), user);
 	}
 
-	/* Diese Methode verwendet extractUsername() und isTokenExpired() zur Überprüfung der Gültigkeit des Tokens.
-	 * Sie gibt true zurück, wenn der Benutzername des Tokens dem Benutzernamen
-	 * des übergebenen UserDetails-Objekts entspricht und das Token nicht abgelaufen ist. */
-	public boolean isTokenValid(String token, UserDetails userDetails) {
-		final String username = extractUsername(token);
-		return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+	public boolean isTokenValid(VerifiedToken token, AuthenticatedUser user) {
+		return user.getId().toString().equals(token.getUserId()) && !token.isExpired();
 	}
 }
@@ -0,0 +1,35 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.exceptions.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/* Ein KeysetCursor zeigt auf den letzten Eintrag einer Seite. Die nächste Seite beginnt direkt nach dem Schlüssel
+ * (createdAt, id) dieses Eintrags. Nach außen wird der Cursor als undurchsichtiger Base64-String weitergegeben. */
+@Getter
+@AllArgsConstructor
+public class KeysetCursor {
+	private final Instant createdAt;
+	private final UUID id;
+
+	public String encode() {
+		String value = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static KeysetCursor decode(String cursor) {
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+			return new KeysetCursor(
+					Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1])),
+					UUID.fromString(parts[2]));
+		} catch (RuntimeException e) {
+			throw new InvalidCursorException(e);
+		}
+	}
+}
@@ -0,0 +1,395 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/* Ein unveränderliches Segment auf der Festplatte. Es besteht aus drei Dateien, die per Memory-Mapping gelesen werden
+ * und damit nicht im Heap liegen:
+ *
+ * .doc: Ein Eintrag fester Länge pro Dokument (Typ, ID, Thread-ID, Länge), das Ordinal ist also die Position.
+ * .trm: Die Begriffe in sortierter Reihenfolge, jeweils mit Anzahl der Dokumente und Position der Postings.
+ *       Im Heap wird nur jeder 64. Begriff gehalten, die übrigen werden ab dort linear gesucht.
+ * .pst: Die Postings aller Begriffe. Die Ordinals sind als Differenz zum vorherigen Ordinal gespeichert,
+ *       Differenz und Häufigkeit als Varint, d.h. meist nur ein Byte pro Wert. */
+public class MappedSearchSegment implements SearchSegment {
+	private static final int DOCUMENT_SIZE = 1 + 16 + 16 + 4;
+	private static final int TERM_INDEX_INTERVAL = 64;
+
+	private final Path directory;
+	private final String name;
+	private final ByteBuffer documents;
+	private final ByteBuffer terms;
+	private final ByteBuffer postings;
+	private final int documentCount;
+	private final long totalLength;
+	private final String[] indexTerms;
+	private final int[] indexPositions;
+
+	private MappedSearchSegment(Path directory, String name) throws IOException {
+		this.directory = directory;
+		this.name = name;
+		this.documents = map(directory.resolve(name + ".doc"));
+		this.terms = map(directory.resolve(name + ".trm"));
+		this.postings = map(directory.resolve(name + ".pst"));
+		this.documentCount = documents.capacity() / DOCUMENT_SIZE;
+
+		long length = 0;
+		for (int ordinal = 0; ordinal < documentCount; ordinal++) {
+			length += getLength(ordinal);
+		}
+		this.totalLength = length;
+
+		/* Der Index über jeden 64. Begriff wird beim Öffnen mit einem Durchlauf über die Begriffe aufgebaut. */
+		List<String> sampledTerms = new ArrayList<>();
+		List<Integer> sampledPositions = new ArrayList<>();
+		TermIterator iterator = new TermIterator(this);
+		for (int i = 0; iterator.next(); i++) {
+			if (i % TERM_INDEX_INTERVAL == 0) {
+				sampledTerms.add(iterator.term);
+				sampledPositions.add(iterator.entryPosition);
+			}
+		}
+		this.indexTerms = sampledTerms.toArray(String[]::new);
+		this.indexPositions = sampledPositions.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	public static MappedSearchSegment open(Path directory, String name) throws IOException {
+		return new MappedSearchSegment(directory, name);
+	}
+
+	/* Führt mehrere Segmente zu einem neuen zusammen. current gibt für jedes Dokument zurück, wie es geschrieben wird,
+	 * gelöschte Dokumente (null) werden dabei entfernt.
+	 * Die Begriffe werden per k-Wege-Merge über die sortierten Begriffslisten gelesen, es liegt also nie ein
+	 * ganzes Segment im Heap. */
+	public static MappedSearchSegment merge(List<MappedSearchSegment> segments, Path directory, String name, UnaryOperator<SearchDocument> current) throws IOException {
+		try (Writer writer = new Writer(directory, name)) {
+			int[][] ordinals = new int[segments.size()][];
+			int next = 0;
+
+			for (int s = 0; s < segments.size(); s++) {
+				MappedSearchSegment segment = segments.get(s);
+				ordinals[s] = new int[segment.documentCount];
+				for (int ordinal = 0; ordinal < segment.documentCount; ordinal++) {
+					SearchDocument document = current.apply(segment.getDocument(ordinal));
+					if (document == null) {
+						ordinals[s][ordinal] = -1;
+					} else {
+						writer.addDocument(document);
+						ordinals[s][ordinal] = next++;
+					}
+				}
+			}
+
+			/* Bei gleichen Begriffen kommt das ältere Segment zuerst, damit die neuen Ordinals aufsteigend bleiben. */
+			PriorityQueue<TermIterator> queue = new PriorityQueue<>(Comparator
+					.comparing((TermIterator iterator) -> iterator.term)
+					.thenComparingInt(iterator -> iterator.segmentIndex));
+			for (int s = 0; s < segments.size(); s++) {
+				TermIterator iterator = new TermIterator(segments.get(s));
+				iterator.segmentIndex = s;
+				if (iterator.next()) {
+					queue.add(iterator);
+				}
+			}
+
+			while (!queue.isEmpty()) {
+				String term = queue.peek().term;
+				writer.startTerm(term);
+
+				while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+					TermIterator iterator = queue.poll();
+					PostingsCursor cursor = iterator.postings();
+					int[] segmentOrdinals = ordinals[iterator.segmentIndex];
+
+					while (cursor.next()) {
+						int ordinal = segmentOrdinals[cursor.doc()];
+						if (ordinal >= 0) {
+							writer.addPosting(ordinal, cursor.freq());
+						}
+					}
+
+					if (iterator.next()) {
+						queue.add(iterator);
+					}
+				}
+				writer.finishTerm();
+			}
+		}
+
+		return open(directory, name);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getSizeInBytes() {
+		return (long) documents.capacity() + terms.capacity() + postings.capacity();
+	}
+
+	/* Löscht die Dateien des Segments. Ein bestehendes Mapping bleibt gültig, bis es vom GC freigegeben wird. */
+	public void delete() throws IOException {
+		for (String extension : List.of(".doc", ".trm", ".pst")) {
+			Files.deleteIfExists(directory.resolve(name + extension));
+		}
+	}
+
+	@Override
+	public int getDocumentCount() {
+		return documentCount;
+	}
+
+	@Override
+	public long getTotalLength() {
+		return totalLength;
+	}
+
+	@Override
+	public PostingsCursor getPostings(String term) {
+		int index = Arrays.binarySearch(indexTerms, term);
+		if (index < 0) {
+			index = -index - 2;
+			if (index < 0) {
+				return null;
+			}
+		}
+
+		TermIterator iterator = new TermIterator(this);
+		iterator.position = indexPositions[index];
+		for (int i = 0; i < TERM_INDEX_INTERVAL && iterator.next(); i++) {
+			int comparison = iterator.term.compareTo(term);
+			if (comparison == 0) {
+				return iterator.postings();
+			}
+			if (comparison > 0) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int getLength(int ordinal) {
+		return documents.getInt(ordinal * DOCUMENT_SIZE + 33);
+	}
+
+	@Override
+	public UUID getId(int ordinal) {
+		int offset = ordinal * DOCUMENT_SIZE;
+		return new UUID(documents.getLong(offset + 1), documents.getLong(offset + 9));
+	}
+
+	@Override
+	public SearchHitResponse.Type getType(int ordinal) {
+		return SearchHitResponse.Type.values()[documents.get(ordinal * DOCUMENT_SIZE)];
+	}
+
+	@Override
+	public SearchDocument getDocument(int ordinal) {
+		int offset = ordinal * DOCUMENT_SIZE;
+		return new SearchDocument(
+				SearchHitResponse.Type.values()[documents.get(offset)],
+				new UUID(documents.getLong(offset + 1), documents.getLong(offset + 9)),
+				new UUID(documents.getLong(offset + 17), documents.getLong(offset + 25)),
+				documents.getInt(offset + 33));
+	}
+
+	private static ByteBuffer map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/* Alle Lesezugriffe verwenden absolute Positionen, damit mehrere Threads denselben Buffer lesen können. */
+	private static int readVarInt(ByteBuffer buffer, int[] position) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get(position[0]++);
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	/* Liest die Begriffsliste sequentiell ab einer Position. */
+	private static class TermIterator {
+		private final MappedSearchSegment segment;
+		private int segmentIndex;
+		private int position;
+		private int entryPosition;
+		private String term;
+		private int documentFrequency;
+		private int postingsOffset;
+
+		private TermIterator(MappedSearchSegment segment) {
+			this.segment = segment;
+		}
+
+		private boolean next() {
+			if (position >= segment.terms.capacity()) {
+				return false;
+			}
+
+			int[] cursor = {position};
+			entryPosition = position;
+			int length = readVarInt(segment.terms, cursor);
+			byte[] bytes = new byte[length];
+			segment.terms.get(cursor[0], bytes);
+			cursor[0] += length;
+			term = new String(bytes, StandardCharsets.UTF_8);
+			documentFrequency = readVarInt(segment.terms, cursor);
+			postingsOffset = readVarInt(segment.terms, cursor);
+			position = cursor[0];
+			return true;
+		}
+
+		private PostingsCursor postings() {
+			return new MappedPostingsCursor(segment.postings, postingsOffset, documentFrequency);
+		}
+	}
+
+	private static class MappedPostingsCursor implements PostingsCursor {
+		private final ByteBuffer postings;
+		private final int documentFrequency;
+		private final int[] position;
+		private int remaining;
+		private int doc = -1;
+		private int last;
+		private int freq;
+
+		private MappedPostingsCursor(ByteBuffer postings, int offset, int documentFrequency) {
+			this.postings = postings;
+			this.documentFrequency = documentFrequency;
+			this.position = new int[]{offset};
+			this.remaining = documentFrequency;
+		}
+
+		@Override
+		public int getDocumentFrequency() {
+			return documentFrequency;
+		}
+
+		@Override
+		public boolean next() {
+			if (remaining == 0) {
+				doc = Integer.MAX_VALUE;
+				return false;
+			}
+			remaining--;
+			last += readVarInt(postings, position);
+			freq = readVarInt(postings, position);
+			doc = last;
+			return true;
+		}
+
+		@Override
+		public int doc() {
+			return doc;
+		}
+
+		@Override
+		public int freq() {
+			return freq;
+		}
+	}
+
+	/* Schreibt ein neues Segment. Die Dokumente müssen vor den Begriffen hinzugefügt werden,
+	 * die Begriffe in sortierter Reihenfolge und ihre Postings mit aufsteigenden Ordinals. */
+	public static class Writer implements Closeable {
+		private final DataOutputStream documents;
+		private final DataOutputStream terms;
+		private final DataOutputStream postings;
+		private String term;
+		private int termOffset;
+		private int documentFrequency;
+		private int lastOrdinal;
+
+		public Writer(Path directory, String name) throws IOException {
+			Files.createDirectories(directory);
+			this.documents = open(directory.resolve(name + ".doc"));
+			this.terms = open(directory.resolve(name + ".trm"));
+			this.postings = open(directory.resolve(name + ".pst"));
+		}
+
+		public void addDocument(SearchDocument document) throws IOException {
+			documents.writeByte(document.getType().ordinal());
+			documents.writeLong(document.getId().getMostSignificantBits());
+			documents.writeLong(document.getId().getLeastSignificantBits());
+			documents.writeLong(document.getThreadId().getMostSignificantBits());
+			documents.writeLong(document.getThreadId().getLeastSignificantBits());
+			documents.writeInt(document.getLength());
+		}
+
+		public void startTerm(String term) {
+			this.term = term;
+			this.termOffset = postings.size();
+			this.documentFrequency = 0;
+			this.lastOrdinal = 0;
+		}
+
+		public void addPosting(int ordinal, int frequency) throws IOException {
+			writeVarInt(postings, ordinal - lastOrdinal);
+			writeVarInt(postings, frequency);
+			lastOrdinal = ordinal;
+			documentFrequency++;
+
+			// DataOutputStream.size() bleibt bei Integer.MAX_VALUE stehen, größere Segmente werden nicht unterstützt.
+			if (postings.size() == Integer.MAX_VALUE) {
+				throw new IOException("Search segment exceeds 2 GB.");
+			}
+		}
+
+		/* Begriffe, deren Dokumente alle gelöscht wurden, werden nicht geschrieben. */
+		public void finishTerm() throws IOException {
+			if (documentFrequency == 0) {
+				return;
+			}
+
+			byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(terms, bytes.length);
+			terms.write(bytes);
+			writeVarInt(terms, documentFrequency);
+			writeVarInt(terms, termOffset);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try (documents; terms; postings) {
+				documents.flush();
+				terms.flush();
+				postings.flush();
+			}
+		}
+
+		private static DataOutputStream open(Path file) throws IOException {
+			return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+		}
+
+		private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				out.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.writeByte(value);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/* Das veränderliche Segment, in das neue Dokumente geschrieben werden. Es liegt im Heap und wird vom SearchIndex
+ * regelmäßig als MappedSearchSegment auf die Festplatte geschrieben. Die Postings werden als Paare (Ordinal, Häufigkeit)
+ * in wachsenden int-Arrays gespeichert, nicht als Objekte. Der Zugriff wird vom SearchIndex synchronisiert. */
+public class MemorySearchSegment implements SearchSegment {
+	private final List<SearchDocument> documents = new ArrayList<>();
+	private final Map<String, Postings> postings = new HashMap<>();
+	private long totalLength;
+
+	public void add(SearchDocument document, Map<String, Integer> termFrequencies) {
+		int ordinal = documents.size();
+		documents.add(document);
+		totalLength += document.getLength();
+		termFrequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, t -> new Postings()).add(ordinal, frequency));
+	}
+
+	public boolean isEmpty() {
+		return documents.isEmpty();
+	}
+
+	/* Schreibt das Segment, die Begriffe in sortierter Reihenfolge. current gibt für jedes Dokument zurück, wie es
+	 * geschrieben wird, oder null, wenn es gelöscht wurde. */
+	public void writeTo(MappedSearchSegment.Writer writer, UnaryOperator<SearchDocument> current) throws IOException {
+		int[] ordinals = new int[documents.size()];
+		int next = 0;
+
+		for (int ordinal = 0; ordinal < documents.size(); ordinal++) {
+			SearchDocument document = current.apply(documents.get(ordinal));
+			if (document == null) {
+				ordinals[ordinal] = -1;
+			} else {
+				writer.addDocument(document);
+				ordinals[ordinal] = next++;
+			}
+		}
+
+		for (String term : postings.keySet().stream().sorted().toList()) {
+			Postings termPostings = postings.get(term);
+			writer.startTerm(term);
+			for (int i = 0; i < termPostings.size; i += 2) {
+				int ordinal = ordinals[termPostings.values[i]];
+				if (ordinal >= 0) {
+					writer.addPosting(ordinal, termPostings.values[i + 1]);
+				}
+			}
+			writer.finishTerm();
+		}
+	}
+
+	@Override
+	public int getDocumentCount() {
+		return documents.size();
+	}
+
+	@Override
+	public long getTotalLength() {
+		return totalLength;
+	}
+
+	@Override
+	public PostingsCursor getPostings(String term) {
+		Postings termPostings = postings.get(term);
+		return termPostings != null ? new ArrayPostingsCursor(termPostings.values, termPostings.size) : null;
+	}
+
+	@Override
+	public int getLength(int ordinal) {
+		return documents.get(ordinal).getLength();
+	}
+
+	@Override
+	public UUID getId(int ordinal) {
+		return documents.get(ordinal).getId();
+	}
+
+	@Override
+	public SearchHitResponse.Type getType(int ordinal) {
+		return documents.get(ordinal).getType();
+	}
+
+	@Override
+	public SearchDocument getDocument(int ordinal) {
+		return documents.get(ordinal);
+	}
+
+	private static class Postings {
+		private int[] values = new int[4];
+		private int size;
+
+		private void add(int ordinal, int frequency) {
+			if (size + 2 > values.length) {
+				int[] grown = new int[values.length * 2];
+				System.arraycopy(values, 0, grown, 0, size);
+				values = grown;
+			}
+			values[size++] = ordinal;
+			values[size++] = frequency;
+		}
+	}
+
+	private static class ArrayPostingsCursor implements PostingsCursor {
+		private final int[] values;
+		private final int size;
+		private int index = -2;
+
+		private ArrayPostingsCursor(int[] values, int size) {
+			this.values = values;
+			this.size = size;
+		}
+
+		@Override
+		public int getDocumentFrequency() {
+			return size / 2;
+		}
+
+		@Override
+		public boolean next() {
+			if (index + 2 >= size) {
+				index = size;
+				return false;
+			}
+			index += 2;
+			return true;
+		}
+
+		@Override
+		public int doc() {
+			return index < 0 ? -1 : index >= size ? Integer.MAX_VALUE : values[index];
+		}
+
+		@Override
+		public int freq() {
+			return values[index + 1];
+		}
+	}
+}
@@ -0,0 +1,376 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.exceptions.InvalidModerationRequestException;
+import com.schnackag.schnackbackend.exceptions.ModerationJobNotFoundException;
+import com.schnackag.schnackbackend.exceptions.ThreadNotFoundException;
+import com.schnackag.schnackbackend.repositories.PostReference;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.requests.ModerationRequest;
+import com.schnackag.schnackbackend.responses.ModerationJobResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Dieser Service führt Massenoperationen der Moderation aus (Posts löschen oder verschieben, Threads löschen).
+ * Eine Operation läuft im Hintergrund in Stücken von chunk-size Posts, jedes Stück in einer eigenen Transaktion:
+ * Die IDs werden über den Index des Autors bzw. Threads gelesen und mit einem DELETE bzw. UPDATE ... WHERE id IN
+ * geändert, ohne Entitäten zu laden. Eine Transaktion sperrt also nur chunk-size Zeilen für kurze Zeit, auch wenn
+ * eine Million Posts eines Benutzers gelöscht werden. Gelöschte und verschobene Posts passen nicht mehr zur
+ * Bedingung, das nächste Stück beginnt deshalb wieder am Anfang des Index.
+ *
+ * Die Zähler der Threads und Benutzer werden in derselben Transaktion wie das Stück geändert. Nach dem Commit
+ * werden die betroffenen Threads im ThreadCache invalidiert und der Suchindex angepasst. Verschobene Posts melden
+ * sich nicht über das PostsCreatedEvent, das die Zähler ein zweites Mal erhöhen und die Posts erneut indexieren
+ * würde. Der TimelineService wird stattdessen direkt benachrichtigt. Zwischen zwei Stücken wird geprüft, ob die
+ * Operation abgebrochen wurde. Bereits geschriebene Stücke bleiben dabei erhalten.
+ *
+ * Mit Sharding läuft eine Operation ohne Thread nacheinander auf allen Shards. Liegt beim Verschieben der Ziel-Thread
+ * auf einem anderen Shard, wird ein Stück zuerst in den Ziel-Shard kopiert und danach auf dem Quell-Shard gelöscht,
+ * jeweils in einer eigenen Transaktion. Bricht die Operation dazwischen ab, überspringt die Wiederholung die bereits
+ * kopierten Posts. Die Zähler korrigiert in diesem Fall der Abgleich des PostCounterService.
+ *
+ * Es läuft immer nur eine Operation gleichzeitig, weitere warten in der Warteschlange. Der Status liegt nur im
+ * Speicher dieser Instanz und wird job-retention nach dem Ende entfernt.
+ *
+ * Wie der ModerationController wird der Service erst bei der ersten Anfrage erstellt (@Lazy). Erst dann wird auch
+ * removeFinishedJobs geplant, vorher gibt es keine Jobs. */
+@Slf4j
+@Lazy
+@Service
+public class ModerationService {
+	private final PostRepository postRepository;
+	private final ThreadRepository threadRepository;
+	private final ShardRouting shardRouting;
+	private final PostCounterService postCounterService;
+	private final ThreadCache threadCache;
+	private final SearchService searchService;
+	private final TimelineService timelineService;
+	private final TransactionTemplate transactionTemplate;
+	private final ExecutorService executor;
+	private final int chunkSize;
+	private final Duration chunkPause;
+	private final Duration jobRetention;
+
+	private final Map<UUID, Job> jobs = new ConcurrentHashMap<>();
+
+	public ModerationService(
+			PostRepository postRepository,
+			ThreadRepository threadRepository,
+			ShardRouting shardRouting,
+			PostCounterService postCounterService,
+			ThreadCache threadCache,
+			SearchService searchService,
+			TimelineService timelineService,
+			PlatformTransactionManager transactionManager,
+			@Value("${schnack.moderation.chunk-size:1000}") int chunkSize,
+			@Value("${schnack.moderation.chunk-pause:0ms}") Duration chunkPause,
+			@Value("${schnack.moderation.job-retention:1h}") Duration jobRetention) {
+		this.postRepository = postRepository;
+		this.threadRepository = threadRepository;
+		this.shardRouting = shardRouting;
+		this.postCounterService = postCounterService;
+		this.threadCache = threadCache;
+		this.searchService = searchService;
+		this.timelineService = timelineService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "moderation");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.chunkSize = chunkSize;
+		this.chunkPause = chunkPause;
+		this.jobRetention = jobRetention;
+	}
+
+	/* Prüft die Anfrage und stellt die Operation in die Warteschlange. total ist die Anzahl der Posts zu diesem
+	 * Zeitpunkt. */
+	public ModerationJobResponse submit(ModerationRequest request, AuthenticatedUser moderator) {
+		validate(request);
+
+		Job job = new Job(UUID.randomUUID(), request, moderator.getUsername(), count(request));
+		jobs.put(job.id, job);
+		executor.execute(() -> run(job));
+
+		log.info("Moderation job {} ({}) submitted by {}.", job.id, request.getType(), job.requestedBy);
+		return job.toResponse();
+	}
+
+	public ModerationJobResponse getJob(UUID jobId) {
+		return find(jobId).toResponse();
+	}
+
+	/* Bricht eine Operation ab. Ein laufendes Stück wird noch geschrieben. */
+	public ModerationJobResponse cancel(UUID jobId) {
+		Job job = find(jobId);
+		job.cancelled = true;
+		return job.toResponse();
+	}
+
+	/* Entfernt beendete Operationen, die älter als job-retention sind. */
+	@Scheduled(fixedDelayString = "${schnack.moderation.cleanup-interval:PT10M}")
+	public void removeFinishedJobs() {
+		Instant expiry = Instant.now().minus(jobRetention);
+		jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(expiry));
+	}
+
+	/* Beim Herunterfahren werden alle Operationen nach dem aktuellen Stück abgebrochen. */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		jobs.values().forEach(job -> job.cancelled = true);
+		executor.shutdown();
+		executor.awaitTermination(30, TimeUnit.SECONDS);
+	}
+
+	private void run(Job job) {
+		job.status = ModerationJobResponse.Status.RUNNING;
+		try {
+			ModerationRequest request = job.request;
+			List<String> shards = request.getThreadId() == null ? shardRouting.getShards() : List.of(shardRouting.shardOf(request.getThreadId()));
+			String targetShard = request.getType() == ModerationRequest.Type.MOVE_POSTS ? shardRouting.shardOf(request.getTargetThreadId()) : null;
+			for (String shard : shards) {
+				while (!job.cancelled) {
+					List<PostReference> chunk = shardRouting.write(() -> targetShard == null || targetShard.equals(shard)
+							? shardRouting.onShard(shard, () -> transactionTemplate.execute(status -> processChunk(request)))
+							: moveChunk(request, shard, targetShard));
+					if (chunk.isEmpty()) {
+						break;
+					}
+					afterCommit(request, chunk);
+					job.processed.addAndGet(chunk.size());
+					pause();
+				}
+			}
+
+			if (job.cancelled) {
+				job.finish(ModerationJobResponse.Status.CANCELLED, null);
+				log.info("Moderation job {} cancelled after {} posts.", job.id, job.processed.get());
+				return;
+			}
+
+			if (request.getType() == ModerationRequest.Type.DELETE_THREAD) {
+				shardRouting.write(() -> transactionTemplate.execute(status -> threadRepository.deleteThread(request.getThreadId())));
+				threadCache.invalidate(request.getThreadId());
+				searchService.delete(request.getThreadId());
+			}
+
+			job.finish(ModerationJobResponse.Status.COMPLETED, null);
+			log.info("Moderation job {} completed, {} posts processed.", job.id, job.processed.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			job.finish(ModerationJobResponse.Status.CANCELLED, null);
+		} catch (RuntimeException e) {
+			log.error("Moderation job {} failed after {} posts.", job.id, job.processed.get(), e);
+			job.finish(ModerationJobResponse.Status.FAILED, e.getMessage());
+		}
+	}
+
+	/* Liest und ändert ein Stück von höchstens chunk-size Posts samt den Zählern. Läuft in einer Transaktion. */
+	private List<PostReference> processChunk(ModerationRequest request) {
+		List<PostReference> chunk = findChunk(request);
+		if (chunk.isEmpty()) {
+			return chunk;
+		}
+
+		List<UUID> ids = chunk.stream().map(PostReference::getId).toList();
+		Map<UUID, Long> threadChanges = new HashMap<>();
+		Map<UUID, Long> userChanges = new HashMap<>();
+		for (PostReference post : chunk) {
+			threadChanges.merge(post.getThreadId(), -1L, Long::sum);
+		}
+
+		if (request.getType() == ModerationRequest.Type.MOVE_POSTS) {
+			postRepository.moveAllByIds(ids, threadRepository.getReferenceById(request.getTargetThreadId()));
+			threadChanges.merge(request.getTargetThreadId(), (long) chunk.size(), Long::sum);
+		} else {
+			postRepository.deleteAllByIds(ids);
+			for (PostReference post : chunk) {
+				userChanges.merge(post.getAuthorId(), -1L, Long::sum);
+			}
+		}
+
+		postCounterService.adjust(threadChanges, userChanges);
+		return chunk;
+	}
+
+	/* Verschiebt ein Stück in einen Thread auf einem anderen Shard: zuerst kopieren, dann löschen. */
+	private List<PostReference> moveChunk(ModerationRequest request, String source, String target) {
+		List<PostReference> chunk = shardRouting.onShard(source, () -> findChunk(request));
+		if (chunk.isEmpty()) {
+			return chunk;
+		}
+
+		List<UUID> ids = chunk.stream().map(PostReference::getId).toList();
+		List<PostResponse> posts = shardRouting.onShard(source, () -> postRepository.findResponsesByIds(ids));
+		Map<UUID, Long> addedByUser = new HashMap<>();
+		Map<UUID, Long> removedByUser = new HashMap<>();
+		for (PostReference post : chunk) {
+			if (post.getAuthorId() != null) {
+				addedByUser.merge(post.getAuthorId(), 1L, Long::sum);
+				removedByUser.merge(post.getAuthorId(), -1L, Long::sum);
+			}
+		}
+
+		shardRouting.onShard(target, () -> transactionTemplate.execute(status -> {
+			int inserted = shardRouting.insertPosts(target, request.getTargetThreadId(), posts);
+			postCounterService.adjust(Map.of(request.getTargetThreadId(), (long) inserted), addedByUser);
+			return null;
+		}));
+		shardRouting.onShard(source, () -> transactionTemplate.execute(status -> {
+			postRepository.deleteAllByIds(ids);
+			postCounterService.adjust(Map.of(request.getThreadId(), (long) -chunk.size()), removedByUser);
+			return null;
+		}));
+		return chunk;
+	}
+
+	private List<PostReference> findChunk(ModerationRequest request) {
+		Limit limit = Limit.of(chunkSize);
+		if (request.getThreadId() == null) {
+			return postRepository.findReferencesByAuthor(request.getAuthorId(), limit);
+		}
+		if (request.getAuthorId() == null) {
+			return postRepository.findReferencesByThread(request.getThreadId(), limit);
+		}
+		return postRepository.findReferencesByThreadAndAuthor(request.getThreadId(), request.getAuthorId(), limit);
+	}
+
+	/* Verschobene Posts ändern die Reihenfolge im Ziel-Thread, dort werden deshalb auch volle Seiten invalidiert. */
+	private void afterCommit(ModerationRequest request, List<PostReference> chunk) {
+		Set<UUID> threadIds = new HashSet<>();
+		for (PostReference post : chunk) {
+			threadIds.add(post.getThreadId());
+			if (request.getType() == ModerationRequest.Type.MOVE_POSTS) {
+				searchService.move(post.getId(), request.getTargetThreadId());
+			} else {
+				searchService.delete(post.getId());
+			}
+		}
+		if (request.getType() == ModerationRequest.Type.MOVE_POSTS) {
+			threadIds.add(request.getTargetThreadId());
+			timelineService.onPostsMoved(request.getThreadId(), request.getTargetThreadId(), chunk);
+		}
+		threadIds.forEach(threadCache::invalidate);
+	}
+
+	private void pause() throws InterruptedException {
+		if (!chunkPause.isZero()) {
+			Thread.sleep(chunkPause.toMillis());
+		}
+	}
+
+	private void validate(ModerationRequest request) {
+		if (request.getType() == null) {
+			throw new InvalidModerationRequestException("The type of the moderation job is missing.");
+		}
+
+		switch (request.getType()) {
+			case DELETE_POSTS -> {
+				if (request.getAuthorId() == null && request.getThreadId() == null) {
+					throw new InvalidModerationRequestException("Either an author or a thread is required.");
+				}
+			}
+			case MOVE_POSTS -> {
+				if (request.getThreadId() == null || request.getTargetThreadId() == null) {
+					throw new InvalidModerationRequestException("A thread and a target thread are required.");
+				}
+				if (request.getThreadId().equals(request.getTargetThreadId())) {
+					throw new InvalidModerationRequestException("The target thread must differ from the thread.");
+				}
+				if (!threadRepository.existsById(request.getTargetThreadId())) {
+					throw new ThreadNotFoundException();
+				}
+			}
+			case DELETE_THREAD -> {
+				if (request.getThreadId() == null || request.getAuthorId() != null) {
+					throw new InvalidModerationRequestException("A thread and no author are required.");
+				}
+			}
+		}
+
+		if (request.getThreadId() != null && !threadRepository.existsById(request.getThreadId())) {
+			throw new ThreadNotFoundException();
+		}
+	}
+
+	private long count(ModerationRequest request) {
+		if (request.getThreadId() == null) {
+			return shardRouting.scatter(() -> postRepository.countByAuthor(request.getAuthorId())).stream().mapToLong(Long::longValue).sum();
+		}
+		if (request.getAuthorId() == null) {
+			return postRepository.countByThread(request.getThreadId());
+		}
+		return postRepository.countByThreadAndAuthor(request.getThreadId(), request.getAuthorId());
+	}
+
+	private Job find(UUID jobId) {
+		Job job = jobs.get(jobId);
+		if (job == null) {
+			throw new ModerationJobNotFoundException();
+		}
+		return job;
+	}
+
+	private static class Job {
+		private final UUID id;
+		private final ModerationRequest request;
+		private final String requestedBy;
+		private final long total;
+		private final Instant createdAt = Instant.now();
+		private final AtomicLong processed = new AtomicLong();
+		private volatile ModerationJobResponse.Status status = ModerationJobResponse.Status.QUEUED;
+		private volatile boolean cancelled;
+		private volatile Instant finishedAt;
+		private volatile String error;
+
+		private Job(UUID id, ModerationRequest request, String requestedBy, long total) {
+			this.id = id;
+			this.request = request;
+			this.requestedBy = requestedBy;
+			this.total = total;
+		}
+
+		private void finish(ModerationJobResponse.Status status, String error) {
+			this.error = error;
+			this.status = status;
+			this.finishedAt = Instant.now();
+		}
+
+		private ModerationJobResponse toResponse() {
+			return ModerationJobResponse
+					.builder()
+					.id(id)
+					.request(request)
+					.requestedBy(requestedBy)
+					.status(status)
+					.total(total)
+					.processed(processed.get())
+					.createdAt(createdAt)
+					.finishedAt(finishedAt)
+					.error(error)
+					.build();
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+/* Der DaoAuthenticationProvider ruft diesen Service nach einem erfolgreichen Login auf, wenn der PasswordEncoder
+ * meldet, dass der gespeicherte Hash mit einem anderen Kostenfaktor erstellt wurde. Das Passwort wurde dann bereits
+ * mit dem aktuellen Kostenfaktor neu gehasht und wird hier gespeichert. Der UserCacheInvalidationListener
+ * entfernt den Benutzer dabei aus dem Cache. */
+@Service
+@RequiredArgsConstructor
+public class PasswordUpgradeService implements UserDetailsPasswordService {
+	private final UserRepository userRepository;
+
+	@Override
+	public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+		User user = userRepository.findById(((UserCredentials) userDetails).getPrincipal().getId())
+				.orElseThrow(() -> new UsernameNotFoundException("User not found."));
+		user.setPassword(newPassword);
+		return UserCredentials.of(userRepository.save(user));
+	}
+}
@@ -0,0 +1,281 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.configurations.ShardRoutingDataSource;
+import com.schnackag.schnackbackend.events.PostsCreatedEvent;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.repositories.UserPostCount;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Dieser Service pflegt die denormalisierten Zähler der Threads und Benutzer (Anzahl der Posts, letzter Post).
+ * Neue Posts erhöhen nur einen Zähler im Speicher. Alle flush-interval werden die Zähler gesammelt geschrieben:
+ * Threads und Benutzer mit derselben Erhöhung werden in einem UPDATE zusammengefasst, statt jede Zeile einzeln zu
+ * laden und zu speichern. Erhöhen und Entfernen eines Zählers sind atomare Operationen der ConcurrentHashMap, eine
+ * Erhöhung landet also entweder im geschriebenen oder in einem neuen Zähler.
+ *
+ * Die Zähler sind deshalb höchstens flush-interval veraltet. Schlägt das Schreiben fehl, werden die Erhöhungen
+ * zurückgelegt und beim nächsten Mal geschrieben. Zähler, die bei einem Absturz oder von einer anderen Instanz nicht
+ * geschrieben wurden, korrigiert der Abgleich, der alle reconciliation-interval die Zähler aus den Posts neu berechnet.
+ * Der Abgleich zieht dabei die noch nicht geschriebenen Erhöhungen dieser Instanz ab, auch viel beschriebene Threads
+ * werden also korrigiert. Ein Post zwischen seinem Commit und seiner Erhöhung kann einen Zähler bis zum nächsten
+ * Abgleich um eins verfälschen.
+ *
+ * Mit Sharding werden die Zähler jedes Shards in einer eigenen Transaktion geschrieben. Die Benutzer eines Shards sind
+ * Kopien (siehe UserRepository.insertReplica), deren Zähler nur die Posts dieses Shards zählen. Der Abgleich fasst sie
+ * danach für die globale Datenbank zusammen. */
+@Slf4j
+@Service
+public class PostCounterService {
+	private final ThreadRepository threadRepository;
+	private final UserRepository userRepository;
+	private final ShardRouting shardRouting;
+	private final ThreadCache threadCache;
+	private final TransactionTemplate transactionTemplate;
+	private final int batchSize;
+
+	private final Map<UUID, Long> threadCounters = new ConcurrentHashMap<>();
+	/* Die Zähler der Benutzer je Shard, da ein Benutzer auf jedem Shard eine eigene Zeile hat. */
+	private final Map<String, Map<UUID, Long>> userCounters = new ConcurrentHashMap<>();
+
+	public PostCounterService(
+			ThreadRepository threadRepository,
+			UserRepository userRepository,
+			ShardRouting shardRouting,
+			ThreadCache threadCache,
+			PlatformTransactionManager transactionManager,
+			@Value("${schnack.counters.batch-size:500}") int batchSize) {
+		this.threadRepository = threadRepository;
+		this.userRepository = userRepository;
+		this.shardRouting = shardRouting;
+		this.threadCache = threadCache;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.batchSize = batchSize;
+	}
+
+	@EventListener
+	public void onPostsCreated(PostsCreatedEvent event) {
+		for (PostResponse post : event.getPosts()) {
+			threadCounters.merge(post.getThreadId(), 1L, Long::sum);
+			if (post.getAuthorId() != null) {
+				userCounters
+						.computeIfAbsent(shardRouting.shardOf(post.getThreadId()), shard -> new ConcurrentHashMap<>())
+						.merge(post.getAuthorId(), 1L, Long::sum);
+			}
+		}
+	}
+
+	/* Schreibt alle gesammelten Erhöhungen in einer Transaktion je Shard. Läuft nie gleichzeitig mit einer Seite des
+	 * Abgleichs, der die noch nicht geschriebenen Erhöhungen liest. */
+	@Scheduled(fixedDelayString = "${schnack.counters.flush-interval:PT1S}")
+	@PreDestroy
+	public synchronized void flush() {
+		Map<String, Map<Long, List<UUID>>> threadDeltas = new HashMap<>();
+		drain(threadCounters).forEach((delta, ids) -> ids.forEach(id -> threadDeltas
+				.computeIfAbsent(shardRouting.shardOf(id), shard -> new HashMap<>())
+				.computeIfAbsent(delta, key -> new ArrayList<>())
+				.add(id)));
+		Map<String, Map<Long, List<UUID>>> userDeltas = new HashMap<>();
+		userCounters.forEach((shard, counters) -> {
+			Map<Long, List<UUID>> deltas = drain(counters);
+			if (!deltas.isEmpty()) {
+				userDeltas.put(shard, deltas);
+			}
+		});
+
+		List<UUID> updatedThreads = new ArrayList<>();
+		for (String shard : shardRouting.getShards()) {
+			Map<Long, List<UUID>> shardThreadDeltas = threadDeltas.getOrDefault(shard, Map.of());
+			Map<Long, List<UUID>> shardUserDeltas = userDeltas.getOrDefault(shard, Map.of());
+			if (shardThreadDeltas.isEmpty() && shardUserDeltas.isEmpty()) {
+				continue;
+			}
+
+			try {
+				shardRouting.onShard(shard, () -> transactionTemplate.execute(status -> {
+					write(shardThreadDeltas, shardUserDeltas);
+					return null;
+				}));
+			} catch (RuntimeException e) {
+				log.warn("Could not write post counters of shard {}, retrying with the next flush.", shard, e);
+				restore(threadCounters, shardThreadDeltas);
+				if (!shardUserDeltas.isEmpty()) {
+					restore(userCounters.computeIfAbsent(shard, key -> new ConcurrentHashMap<>()), shardUserDeltas);
+				}
+				continue;
+			}
+			shardThreadDeltas.values().forEach(updatedThreads::addAll);
+		}
+
+		if (!updatedThreads.isEmpty()) {
+			threadCache.onCountersUpdated(updatedThreads);
+		}
+	}
+
+	/* Ändert die Zähler sofort in der Transaktion des Aufrufers, z.B. wenn Posts gelöscht oder verschoben werden.
+	 * Die Änderung wird mit der Transaktion des Aufrufers geschrieben oder verworfen. Der Aufrufer muss den
+	 * ThreadCache nach dem Commit selbst invalidieren. */
+	public void adjust(Map<UUID, Long> threadChanges, Map<UUID, Long> userChanges) {
+		write(group(threadChanges), group(userChanges));
+	}
+
+	/* Berechnet die Zähler aller Threads und Benutzer seitenweise neu, jede Seite in einer eigenen Transaktion.
+	 * Die Erhöhungen, die noch im Speicher liegen, werden abgezogen, da sie der nächste Flush noch einmal addiert. */
+	@Scheduled(
+			initialDelayString = "${schnack.counters.reconciliation-interval:PT1H}",
+			fixedDelayString = "${schnack.counters.reconciliation-interval:PT1H}")
+	public void reconcile() {
+		List<UUID> updatedThreads = new ArrayList<>();
+		int threads = 0;
+		int users = 0;
+
+		for (String shard : shardRouting.getShards()) {
+			threads += shardRouting.onShard(shard, () -> reconcileThreads(updatedThreads));
+			users += shardRouting.onShard(shard, () -> reconcileUsers(shard));
+		}
+		if (shardRouting.isSharded()) {
+			users = aggregateUsers();
+		}
+
+		threadCache.onCountersUpdated(updatedThreads);
+		log.info("Reconciled post counters of {} threads and {} users.", threads, users);
+	}
+
+	private int reconcileThreads(List<UUID> updatedThreads) {
+		int threads = 0;
+		UUID after = new UUID(0, 0);
+		List<UUID> ids;
+		while (!(ids = threadRepository.findIdsAfter(after, Limit.of(batchSize))).isEmpty()) {
+			List<UUID> batch = ids;
+			synchronized (this) {
+				threads += transactionTemplate.execute(status -> {
+					int updated = threadRepository.reconcilePostCounts(batch);
+					write(pending(threadCounters, batch), Map.of());
+					return updated;
+				});
+			}
+			updatedThreads.addAll(batch);
+			after = ids.get(ids.size() - 1);
+		}
+		return threads;
+	}
+
+	private int reconcileUsers(String shard) {
+		int users = 0;
+		UUID after = new UUID(0, 0);
+		List<UUID> ids;
+		while (!(ids = userRepository.findIdsAfter(after, Limit.of(batchSize))).isEmpty()) {
+			List<UUID> batch = ids;
+			synchronized (this) {
+				users += transactionTemplate.execute(status -> {
+					int updated = userRepository.reconcilePostCounts(batch);
+					write(Map.of(), pending(userCounters.getOrDefault(shard, Map.of()), batch));
+					return updated;
+				});
+			}
+			after = ids.get(ids.size() - 1);
+		}
+		return users;
+	}
+
+	/* Setzt die Zähler der Benutzer in der globalen Datenbank auf die Summe der Zähler ihrer Kopien auf den Shards. */
+	private int aggregateUsers() {
+		int users = 0;
+		UUID after = new UUID(0, 0);
+		List<UUID> ids;
+		while (!(ids = findGlobalUserIdsAfter(after)).isEmpty()) {
+			List<UUID> batch = ids;
+			Map<UUID, Long> postCounts = new HashMap<>();
+			Map<UUID, Instant> lastPostAts = new HashMap<>();
+			for (List<UserPostCount> counts : shardRouting.scatter(() -> userRepository.findPostCounts(batch))) {
+				for (UserPostCount count : counts) {
+					postCounts.merge(count.getId(), count.getPostCount(), Long::sum);
+					if (count.getLastPostAt() != null) {
+						lastPostAts.merge(count.getId(), count.getLastPostAt(), (a, b) -> a.isAfter(b) ? a : b);
+					}
+				}
+			}
+
+			users += shardRouting.onShard(ShardRoutingDataSource.GLOBAL, () -> transactionTemplate.execute(status -> {
+				int updated = 0;
+				for (UUID id : batch) {
+					updated += userRepository.updatePostCounts(id, postCounts.getOrDefault(id, 0L), lastPostAts.get(id));
+				}
+				return updated;
+			}));
+			after = ids.get(ids.size() - 1);
+		}
+		return users;
+	}
+
+	private List<UUID> findGlobalUserIdsAfter(UUID after) {
+		return shardRouting.onShard(ShardRoutingDataSource.GLOBAL, () -> userRepository.findIdsAfter(after, Limit.of(batchSize)));
+	}
+
+	/* Entfernt alle Zähler und gruppiert die IDs nach ihrer Erhöhung. */
+	private static Map<Long, List<UUID>> drain(Map<UUID, Long> counters) {
+		Map<Long, List<UUID>> deltas = new HashMap<>();
+		for (UUID id : counters.keySet()) {
+			Long delta = counters.remove(id);
+			if (delta != null && delta != 0) {
+				deltas.computeIfAbsent(delta, key -> new ArrayList<>()).add(id);
+			}
+		}
+		return deltas;
+	}
+
+	/* Die noch nicht geschriebenen Erhöhungen der IDs, negiert und nach ihrem Wert gruppiert. */
+	private static Map<Long, List<UUID>> pending(Map<UUID, Long> counters, List<UUID> ids) {
+		Map<UUID, Long> changes = new HashMap<>();
+		for (UUID id : ids) {
+			Long delta = counters.get(id);
+			if (delta != null) {
+				changes.put(id, -delta);
+			}
+		}
+		return group(changes);
+	}
+
+	private static Map<Long, List<UUID>> group(Map<UUID, Long> changes) {
+		Map<Long, List<UUID>> deltas = new HashMap<>();
+		changes.forEach((id, delta) -> {
+			if (delta != 0) {
+				deltas.computeIfAbsent(delta, key -> new ArrayList<>()).add(id);
+			}
+		});
+		return deltas;
+	}
+
+	private void write(Map<Long, List<UUID>> threadDeltas, Map<Long, List<UUID>> userDeltas) {
+		threadDeltas.forEach((delta, ids) -> partition(ids).forEach(batch -> threadRepository.incrementPostCounts(batch, delta)));
+		userDeltas.forEach((delta, ids) -> partition(ids).forEach(batch -> userRepository.incrementPostCounts(batch, delta)));
+	}
+
+	private static void restore(Map<UUID, Long> counters, Map<Long, List<UUID>> deltas) {
+		deltas.forEach((delta, ids) -> ids.forEach(id -> counters.merge(id, delta, Long::sum)));
+	}
+
+	private List<List<UUID>> partition(List<UUID> ids) {
+		List<List<UUID>> batches = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i += batchSize) {
+			batches.add(ids.subList(i, Math.min(i + batchSize, ids.size())));
+		}
+		return batches;
+	}
+}
@@ -0,0 +1,280 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.Post;
+import com.schnackag.schnackbackend.events.PostsCreatedEvent;
+import com.schnackag.schnackbackend.exceptions.InvalidPostException;
+import com.schnackag.schnackbackend.exceptions.PostIngestionRejectedException;
+import com.schnackag.schnackbackend.exceptions.ThreadNotFoundException;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/* Dieser Service nimmt neue Posts entgegen und schreibt sie gesammelt in die Datenbank (Write-Behind).
+ * Die Posts werden in einer begrenzten Warteschlange gesammelt und von einem eigenen Thread in Batches geschrieben.
+ * Ein Batch wird geschrieben, sobald er batch-size Posts enthält oder seit dem ersten Post linger vergangen ist.
+ * Alle Posts eines Batches (mit Sharding: eines Shards) werden in einer Transaktion als JDBC-Batch eingefügt.
+ *
+ * Der Aufrufer erhält ein CompletableFuture, das erst nach dem Commit der Transaktion erfüllt wird. Ein bestätigter
+ * Post ist also dauerhaft gespeichert. Ist die Warteschlange voll, wartet der Aufrufer höchstens offer-timeout
+ * und erhält danach eine PostIngestionRejectedException (Backpressure).
+ * Nach jedem Commit wird ein PostsCreatedEvent mit den gespeicherten Posts veröffentlicht. */
+@Slf4j
+@Service
+public class PostIngestionService {
+	private final PostRepository postRepository;
+	private final ThreadRepository threadRepository;
+	private final UserRepository userRepository;
+	private final ShardRouting shardRouting;
+	private final TransactionTemplate transactionTemplate;
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final BlockingQueue<PendingPost> queue;
+	private final int batchSize;
+	private final Duration linger;
+	private final Duration offerTimeout;
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	public PostIngestionService(
+			PostRepository postRepository,
+			ThreadRepository threadRepository,
+			UserRepository userRepository,
+			ShardRouting shardRouting,
+			PlatformTransactionManager transactionManager,
+			ApplicationEventPublisher eventPublisher,
+			@Value("${schnack.posts.ingestion.queue-capacity:10000}") int queueCapacity,
+			@Value("${schnack.posts.ingestion.batch-size:100}") int batchSize,
+			@Value("${schnack.posts.ingestion.linger:10ms}") Duration linger,
+			@Value("${schnack.posts.ingestion.offer-timeout:100ms}") Duration offerTimeout) {
+		this.postRepository = postRepository;
+		this.threadRepository = threadRepository;
+		this.userRepository = userRepository;
+		this.shardRouting = shardRouting;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.eventPublisher = eventPublisher;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.batchSize = batchSize;
+		this.linger = linger;
+		this.offerTimeout = offerTimeout;
+		this.worker = new Thread(this::run, "post-ingestion");
+	}
+
+	@PostConstruct
+	public void start() {
+		worker.start();
+	}
+
+	/* Beim Herunterfahren werden keine neuen Posts mehr angenommen und die Warteschlange wird noch geleert. */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		worker.interrupt();
+		worker.join(TimeUnit.SECONDS.toMillis(30));
+	}
+
+	/* Stellt einen neuen Post in die Warteschlange. Das zurückgegebene Future wird nach dem Commit erfüllt. */
+	public CompletableFuture<PostResponse> submit(UUID threadId, AuthenticatedUser author, String content) {
+		PendingPost pendingPost = new PendingPost(threadId, author.getId(), author.getUsername(), content, new CompletableFuture<>());
+
+		try {
+			if (!running || !queue.offer(pendingPost, offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+				throw new PostIngestionRejectedException();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PostIngestionRejectedException();
+		}
+
+		return pendingPost.result;
+	}
+
+	private void run() {
+		List<PendingPost> batch = new ArrayList<>(batchSize);
+
+		while (running || !queue.isEmpty()) {
+			try {
+				PendingPost first = queue.poll(1, TimeUnit.SECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+
+				/* Weitere Posts werden gesammelt, bis der Batch voll ist oder die Wartezeit abgelaufen ist. */
+				long deadline = System.nanoTime() + linger.toNanos();
+				while (batch.size() < batchSize) {
+					queue.drainTo(batch, batchSize - batch.size());
+					long remaining = deadline - System.nanoTime();
+					if (batch.size() >= batchSize || remaining <= 0) {
+						break;
+					}
+					PendingPost next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next != null) {
+						batch.add(next);
+					}
+				}
+			} catch (InterruptedException e) {
+				// Wird beim Herunterfahren unterbrochen, die restlichen Posts werden noch geschrieben.
+				queue.drainTo(batch, batchSize - batch.size());
+			}
+
+			if (!batch.isEmpty()) {
+				try {
+					flush(batch);
+				} catch (RuntimeException e) {
+					// Nur dieser Batch schlägt fehl, der Schreib-Thread nimmt weiter Posts an.
+					log.error("Could not store {} posts.", batch.size(), e);
+					batch.forEach(pendingPost -> pendingPost.result.completeExceptionally(e));
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	/* Schreibt alle Posts in einer Transaktion. Mit Sharding wird der Batch nach den Shards der Threads aufgeteilt,
+	 * jeder Teil in einer eigenen Transaktion. Schlägt ein Teil fehl, z.B. weil ein Thread nicht existiert, wird jeder
+	 * seiner Posts einzeln geschrieben, damit nur die fehlerhaften Posts abgelehnt werden. */
+	private void flush(List<PendingPost> batch) {
+		List<PostResponse> created = new ArrayList<>(batch.size());
+
+		shardRouting.write(() -> {
+			Map<String, List<PendingPost>> shards = new LinkedHashMap<>();
+			for (PendingPost pendingPost : batch) {
+				shards.computeIfAbsent(shardRouting.shardOf(pendingPost.threadId), shard -> new ArrayList<>()).add(pendingPost);
+			}
+			shards.forEach((shard, posts) -> flush(shard, posts, created));
+			return null;
+		});
+
+		if (!created.isEmpty()) {
+			try {
+				eventPublisher.publishEvent(new PostsCreatedEvent(created));
+			} catch (RuntimeException e) {
+				// Ein fehlerhafter Listener darf den Schreib-Thread nicht beenden, die Posts sind bereits gespeichert.
+				log.error("Could not publish created posts.", e);
+			}
+		}
+	}
+
+	private void flush(String shard, List<PendingPost> batch, List<PostResponse> created) {
+		try {
+			Map<UUID, String> authors = new HashMap<>();
+			batch.forEach(pendingPost -> authors.put(pendingPost.authorId, pendingPost.authorName));
+			shardRouting.replicateUsers(shard, authors);
+		} catch (RuntimeException e) {
+			log.error("Could not replicate the authors of {} posts to shard {}.", batch.size(), shard, e);
+			batch.forEach(pendingPost -> pendingPost.result.completeExceptionally(e));
+			return;
+		}
+
+		List<PendingPost> missingThreads = new ArrayList<>();
+		shardRouting.onShard(shard, () -> {
+			try {
+				List<Post> posts = transactionTemplate.execute(status -> postRepository.saveAll(batch.stream().map(this::toPost).toList()));
+				for (int i = 0; i < batch.size(); i++) {
+					created.add(batch.get(i).complete(posts.get(i)));
+				}
+			} catch (RuntimeException batchException) {
+				for (PendingPost pendingPost : batch) {
+					try {
+						created.add(pendingPost.complete(transactionTemplate.execute(status -> postRepository.save(toPost(pendingPost)))));
+					} catch (DataIntegrityViolationException e) {
+						RuntimeException exception = toPostException(e);
+						if (exception instanceof ThreadNotFoundException) {
+							missingThreads.add(pendingPost);
+						} else {
+							pendingPost.result.completeExceptionally(exception);
+						}
+					} catch (RuntimeException e) {
+						log.error("Could not store post.", e);
+						pendingPost.result.completeExceptionally(e);
+					}
+				}
+			}
+			return null;
+		});
+		relocate(shard, missingThreads, created);
+	}
+
+	/* Ein Thread, den das Rebalancing einer anderen Instanz verschoben hat, steht bis zu location-cache-period noch
+	 * unter seinem alten Shard in ShardRouting. Liegt er inzwischen auf einem anderen Shard, werden seine Posts dort
+	 * geschrieben, sonst existiert er nicht. */
+	private void relocate(String shard, List<PendingPost> missingThreads, List<PostResponse> created) {
+		Map<String, List<PendingPost>> relocated = new LinkedHashMap<>();
+		for (PendingPost pendingPost : missingThreads) {
+			String current = shardRouting.relocate(pendingPost.threadId, shard);
+			if (current == null) {
+				pendingPost.result.completeExceptionally(new ThreadNotFoundException());
+			} else {
+				relocated.computeIfAbsent(current, key -> new ArrayList<>()).add(pendingPost);
+			}
+		}
+		relocated.forEach((relocatedShard, posts) -> flush(relocatedShard, posts, created));
+	}
+
+	/* Eine verletzte Integritätsbedingung (SQLState 23xxx) ist der Fremdschlüssel auf den Thread, der Thread existiert
+	 * also nicht. Alle anderen Fehler, z.B. ein zu langer Inhalt (22001), lehnen den Post selbst ab. */
+	private static RuntimeException toPostException(DataIntegrityViolationException e) {
+		if (e.getMostSpecificCause() instanceof SQLException sqlException
+				&& sqlException.getSQLState() != null
+				&& sqlException.getSQLState().startsWith("23")) {
+			return new ThreadNotFoundException();
+		}
+		return new InvalidPostException();
+	}
+
+	/* Thread und Autor werden nur als Referenz gesetzt, sie werden dafür nicht aus der Datenbank geladen. */
+	private Post toPost(PendingPost pendingPost) {
+		Post post = new Post();
+		post.setContent(pendingPost.content);
+		post.setThread(threadRepository.getReferenceById(pendingPost.threadId));
+		post.setAuthor(userRepository.getReferenceById(pendingPost.authorId));
+		return post;
+	}
+
+	@AllArgsConstructor
+	private static class PendingPost {
+		private final UUID threadId;
+		private final UUID authorId;
+		private final String authorName;
+		private final String content;
+		private final CompletableFuture<PostResponse> result;
+
+		private PostResponse complete(Post post) {
+			PostResponse response = PostResponse
+					.builder()
+					.id(post.getId())
+					.threadId(threadId)
+					.content(content)
+					.author(authorName)
+					.createdAt(post.getCreatedAt())
+					.authorId(authorId)
+					.build();
+			result.complete(response);
+			return response;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.exceptions.RateLimitExceededException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/* Dieser Service begrenzt die Anzahl der Login- und Registrierungsversuche, jeweils getrennt pro IP-Adresse und
+ * pro E-Mail-Adresse. Die Prüfung erfolgt, bevor BCrypt oder die Datenbank verwendet werden. So kann eine Welle von
+ * Credential-Stuffing-Anfragen nicht alle Kerne mit Passwort-Hashing belegen. */
+@Service
+public class RateLimitService {
+	private final RateLimitStore store;
+	private final AuthenticationMetrics authenticationMetrics;
+	private final long addressCapacity;
+	private final Duration addressPeriod;
+	private final long emailCapacity;
+	private final Duration emailPeriod;
+
+	public RateLimitService(
+			RateLimitStore store,
+			AuthenticationMetrics authenticationMetrics,
+			@Value("${schnack.security.rate-limit.address.capacity:20}") long addressCapacity,
+			@Value("${schnack.security.rate-limit.address.period:1m}") Duration addressPeriod,
+			@Value("${schnack.security.rate-limit.email.capacity:5}") long emailCapacity,
+			@Value("${schnack.security.rate-limit.email.period:1m}") Duration emailPeriod) {
+		this.store = store;
+		this.authenticationMetrics = authenticationMetrics;
+		this.addressCapacity = addressCapacity;
+		this.addressPeriod = addressPeriod;
+		this.emailCapacity = emailCapacity;
+		this.emailPeriod = emailPeriod;
+	}
+
+	/* Gibt false zurück, wenn von dieser IP-Adresse zu viele Versuche kamen. */
+	public boolean tryAddress(String address) {
+		if (store.tryConsume("address:" + address, addressCapacity, addressPeriod)) {
+			return true;
+		}
+		authenticationMetrics.failure(AuthenticationMetrics.Failure.RATE_LIMITED);
+		return false;
+	}
+
+	/* Wirft eine RateLimitExceededException, wenn für diese E-Mail-Adresse zu viele Versuche unternommen wurden. */
+	public void checkEmail(String email) {
+		if (email != null && !store.tryConsume("email:" + email.toLowerCase(Locale.ROOT), emailCapacity, emailPeriod)) {
+			authenticationMetrics.failure(AuthenticationMetrics.Failure.RATE_LIMITED);
+			throw new RateLimitExceededException();
+		}
+	}
+}
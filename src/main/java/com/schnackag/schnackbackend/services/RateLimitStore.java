@@ -0,0 +1,13 @@
+package com.schnackag.schnackbackend.services;
+
+import java.time.Duration;
+
+/* Ein RateLimitStore verwaltet Token-Buckets. Jeder Schlüssel (z.B. eine IP-Adresse oder eine E-Mail-Adresse) hat
+ * einen eigenen Bucket mit capacity Tokens, der sich innerhalb von period vollständig wieder auffüllt.
+ * Die In-Memory-Implementierung gilt nur für eine Instanz. Für mehrere Instanzen kann eine Implementierung mit
+ * gemeinsamem Zustand (z.B. Redis) als @Primary Bean bereitgestellt werden. */
+public interface RateLimitStore {
+
+	/* Entnimmt ein Token aus dem Bucket des Schlüssels. Gibt false zurück, wenn der Bucket leer ist. */
+	boolean tryConsume(String key, long capacity, Duration period);
+}
@@ -0,0 +1,53 @@
+package com.schnackag.schnackbackend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.schnackag.schnackbackend.configurations.ReplicaRoutingDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/* Read-your-writes für die Lese-Replikate. Wer Daten ändert, markiert sie mit markWritten(). Lesezugriffe über
+ * read() mit demselben Schlüssel gehen dann für sticky-period auf das Primärsystem, danach wieder auf die
+ * Replikate. sticky-period sollte deshalb mindestens schnack.datasource.maximum-lag betragen.
+ *
+ * Nur read-only Transaktionen lesen von den Replikaten. read() führt den Loader deshalb in einer read-only
+ * Transaktion aus, abgeleitete Abfragen der Repositories (z.B. findByEmail) liefen sonst ohne Transaktion und damit
+ * immer auf dem Primärsystem.
+ *
+ * Die Markierungen gelten nur auf dieser Instanz. Ohne konfigurierte Replikate lesen ohnehin alle Zugriffe vom
+ * Primärsystem. */
+@Service
+public class ReplicaRouting {
+	private final Cache<String, Boolean> written;
+	private final TransactionTemplate readOnly;
+
+	public ReplicaRouting(
+			PlatformTransactionManager transactionManager,
+			@Value("${schnack.datasource.sticky-maximum-size:100000}") long maximumSize,
+			@Value("${schnack.datasource.sticky-period:10s}") Duration stickyPeriod) {
+		this.readOnly = new TransactionTemplate(transactionManager);
+		this.readOnly.setReadOnly(true);
+		this.written = Caffeine
+				.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(stickyPeriod)
+				.build();
+	}
+
+	public void markWritten(String key) {
+		written.put(key, Boolean.TRUE);
+	}
+
+	/* Lädt vom Primärsystem, wenn key vor weniger als sticky-period geändert wurde, sonst von einem Replikat. */
+	public <T> T read(String key, Supplier<T> loader) {
+		if (written.getIfPresent(key) != null) {
+			return ReplicaRoutingDataSource.onPrimary(() -> readOnly.execute(status -> loader.get()));
+		}
+		return readOnly.execute(status -> loader.get());
+	}
+}
@@ -0,0 +1,37 @@
+package com.schnackag.schnackbackend.services;
+
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/* Prüft für @Secured und @RolesAllowed, ob der Benutzer eine der geforderten Berechtigungen hat. Die Berechtigungen
+ * einer Methode liest Spring einmal aus den Annotationen und hält sie in einem Set. Bei einem AuthenticatedUser ist
+ * die Prüfung damit ein Set.contains mit dem Namen der Rolle, die Entscheidungen sind Konstanten. Anders als der
+ * AuthoritiesAuthorizationManager von Spring wird bei keiner Prüfung ein Objekt erzeugt. */
+public class RoleAuthorizationManager implements AuthorizationManager<Collection<String>> {
+	private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+	private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+	@Override
+	public AuthorizationDecision check(Supplier<Authentication> authentication, Collection<String> authorities) {
+		Authentication current = authentication.get();
+		if (current == null) {
+			return DENIED;
+		}
+
+		if (current.getPrincipal() instanceof AuthenticatedUser user) {
+			return authorities.contains(user.getRole().name()) ? GRANTED : DENIED;
+		}
+
+		for (GrantedAuthority authority : current.getAuthorities()) {
+			if (authorities.contains(authority.getAuthority())) {
+				return GRANTED;
+			}
+		}
+		return DENIED;
+	}
+}
@@ -0,0 +1,18 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/* Ein Dokument im Suchindex, also ein Thread-Titel oder der Inhalt eines Posts.
+ * Die Länge ist die Anzahl der Begriffe und wird für die Bewertung (BM25) benötigt. */
+@Getter
+@AllArgsConstructor
+public class SearchDocument {
+	private final SearchHitResponse.Type type;
+	private final UUID id;
+	private final UUID threadId;
+	private final int length;
+}
@@ -0,0 +1,410 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/* Ein invertierter Index über Thread-Titel und Post-Inhalte. Neue Dokumente landen im MemorySearchSegment und werden
+ * ab flush-threshold Dokumenten als unveränderliches MappedSearchSegment auf die Festplatte geschrieben. Sind mehr als
+ * merge-factor Segmente vorhanden, werden die kleinsten zusammengeführt, damit eine Suche nicht beliebig viele
+ * Segmente lesen muss.
+ *
+ * Gelöschte und verschobene Dokumente werden mit der Generation vermerkt, ab der neue Segmente die Änderung enthalten.
+ * Ist kein älteres Segment mehr vorhanden, wird der Eintrag entfernt, die Vermerke wachsen also nicht unbegrenzt.
+ *
+ * Schreibende Methoden (add, flush, merge) dürfen nur von einem Thread aufgerufen werden. Die Suche kann von
+ * beliebig vielen Threads gleichzeitig ausgeführt werden. Sie hält das Lese-Lock, damit Segmente nicht während
+ * einer Suche ausgetauscht werden.
+ *
+ * Alle Begriffe der Suche müssen in einem Dokument vorkommen. Die Treffer werden mit BM25 bewertet,
+ * Thread-Titel erhalten einen Bonus. */
+public class SearchIndex {
+	private static final float K1 = 1.2f;
+	private static final float B = 0.75f;
+	private static final float THREAD_BOOST = 1.5f;
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	private final Path directory;
+	private final int flushThreshold;
+	private final int mergeFactor;
+	private final long maximumSegmentSize;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<UUID, Long> deleted = new ConcurrentHashMap<>();
+	private final Map<UUID, Move> moved = new ConcurrentHashMap<>();
+	private volatile List<MappedSearchSegment> segments = List.of();
+	private MemorySearchSegment buffer = new MemorySearchSegment();
+	private long bufferGeneration;
+	private volatile long generation;
+
+	/* Der Index wird beim Start aus der Datenbank aufgebaut, vorhandene Segmente werden deshalb gelöscht. */
+	public SearchIndex(Path directory, int flushThreshold, int mergeFactor, long maximumSegmentSize) throws IOException {
+		this.directory = directory;
+		this.flushThreshold = flushThreshold;
+		this.mergeFactor = mergeFactor;
+		this.maximumSegmentSize = maximumSegmentSize;
+
+		Files.createDirectories(directory);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	public void add(SearchHitResponse.Type type, UUID id, UUID threadId, String text) throws IOException {
+		List<String> terms = SearchTokenizer.tokenize(text);
+		Map<String, Integer> termFrequencies = new HashMap<>();
+		for (String term : terms) {
+			termFrequencies.merge(term, 1, Integer::sum);
+		}
+
+		lock.writeLock().lock();
+		try {
+			buffer.add(new SearchDocument(type, id, threadId, terms.size()), termFrequencies);
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		if (buffer.getDocumentCount() >= flushThreshold) {
+			flush();
+		}
+	}
+
+	/* Gelöschte Dokumente werden bei der Suche übersprungen und beim nächsten Flush oder Merge entfernt.
+	 * Der Eintrag wird zuerst ohne Generation sichtbar gemacht: Ein Segment, das danach benannt wird, enthält das
+	 * Dokument also sicher nicht mehr. Die Generation wird erst danach gelesen. */
+	public void delete(UUID id) {
+		deleted.put(id, Long.MAX_VALUE);
+		deleted.put(id, generation);
+		moved.remove(id);
+	}
+
+	/* Verschobene Posts behalten bis zum nächsten Flush oder Merge ihren alten Thread in den Segmenten, bis dahin
+	 * wird nur der Thread des Treffers ersetzt. */
+	public void move(UUID id, UUID threadId) {
+		moved.put(id, new Move(threadId, Long.MAX_VALUE));
+		moved.put(id, new Move(threadId, generation));
+	}
+
+	/* Schreibt das MemorySearchSegment als neues Segment. Das Schreiben erfolgt ohne Lock, da nur dieser Thread das
+	 * MemorySearchSegment verändert. Nur der Austausch der Segmente erfolgt unter dem Schreib-Lock. */
+	public void flush() throws IOException {
+		if (buffer.isEmpty()) {
+			return;
+		}
+
+		String name = nextSegmentName();
+		try (MappedSearchSegment.Writer writer = new MappedSearchSegment.Writer(directory, name)) {
+			buffer.writeTo(writer, this::current);
+		}
+		MappedSearchSegment segment = MappedSearchSegment.open(directory, name);
+
+		lock.writeLock().lock();
+		try {
+			List<MappedSearchSegment> flushed = new ArrayList<>(segments);
+			flushed.add(segment);
+			segments = List.copyOf(flushed);
+			buffer = new MemorySearchSegment();
+			bufferGeneration = generation;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		prune();
+	}
+
+	/* Führt die kleinsten Segmente zusammen, solange mehr als merge-factor Segmente vorhanden sind.
+	 * Segmente über maximum-segment-size werden nicht mehr zusammengeführt, sie würden die Vermerke zu gelöschten und
+	 * verschobenen Dokumenten aber unbegrenzt festhalten. Ab flush-threshold Vermerken werden deshalb die ältesten
+	 * Segmente einzeln neu geschrieben. */
+	public void merge() throws IOException {
+		while (segments.size() > mergeFactor) {
+			List<MappedSearchSegment> candidates = segments
+					.stream()
+					.filter(segment -> segment.getSizeInBytes() < maximumSegmentSize)
+					.sorted(Comparator.comparingLong(MappedSearchSegment::getSizeInBytes))
+					.limit(mergeFactor)
+					.toList();
+
+			long size = candidates.stream().mapToLong(MappedSearchSegment::getSizeInBytes).sum();
+			if (candidates.size() < 2 || size > maximumSegmentSize) {
+				break;
+			}
+
+			/* Die Reihenfolge der Segmente bleibt erhalten, ältere Dokumente behalten also kleinere Ordinals. */
+			replace(segments.stream().filter(candidates::contains).toList());
+		}
+
+		List<MappedSearchSegment> oldestFirst = segments.stream().sorted(Comparator.comparingLong(SearchIndex::generationOf)).toList();
+		for (MappedSearchSegment segment : oldestFirst) {
+			if (getPendingChangeCount() < flushThreshold) {
+				return;
+			}
+			replace(List.of(segment));
+		}
+	}
+
+	/* Schreibt die Segmente als ein neues Segment an der Stelle des ersten. */
+	private void replace(List<MappedSearchSegment> ordered) throws IOException {
+		MappedSearchSegment merged = MappedSearchSegment.merge(ordered, directory, nextSegmentName(), this::current);
+
+		lock.writeLock().lock();
+		try {
+			List<MappedSearchSegment> remaining = new ArrayList<>();
+			boolean added = false;
+			for (MappedSearchSegment segment : segments) {
+				if (!ordered.contains(segment)) {
+					remaining.add(segment);
+				} else if (!added) {
+					remaining.add(merged);
+					added = true;
+				}
+			}
+			segments = List.copyOf(remaining);
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		for (MappedSearchSegment segment : ordered) {
+			segment.delete();
+		}
+		prune();
+	}
+
+	/* Gibt die besten limit Treffer zurück, die alle Begriffe der Suche enthalten. Ein Dokument, das doppelt
+	 * hinzugefügt wurde, erscheint nur einmal mit seiner besten Bewertung und belegt nur einen der limit Plätze. */
+	public List<SearchHitResponse> search(List<String> terms, int limit) {
+		if (terms.isEmpty() || limit <= 0) {
+			return List.of();
+		}
+
+		lock.readLock().lock();
+		try {
+			List<SearchSegment> searched = new ArrayList<>(segments);
+			searched.add(buffer);
+
+			/* Im ersten Durchlauf werden die Postings aller Segmente gesucht und daraus die Statistiken für BM25
+			 * berechnet. Im zweiten Durchlauf werden die Dokumente bewertet. */
+			long documentCount = 0;
+			long totalLength = 0;
+			long[] documentFrequencies = new long[terms.size()];
+			List<SearchSegment.PostingsCursor[]> cursors = new ArrayList<>(searched.size());
+
+			for (SearchSegment segment : searched) {
+				documentCount += segment.getDocumentCount();
+				totalLength += segment.getTotalLength();
+
+				SearchSegment.PostingsCursor[] segmentCursors = new SearchSegment.PostingsCursor[terms.size()];
+				for (int i = 0; i < terms.size(); i++) {
+					segmentCursors[i] = segment.getPostings(terms.get(i));
+					if (segmentCursors[i] != null) {
+						documentFrequencies[i] += segmentCursors[i].getDocumentFrequency();
+					}
+				}
+				cursors.add(segmentCursors);
+			}
+
+			if (documentCount == 0) {
+				return List.of();
+			}
+
+			float averageLength = Math.max(1f, (float) totalLength / documentCount);
+			float[] idf = new float[terms.size()];
+			for (int i = 0; i < terms.size(); i++) {
+				idf[i] = (float) Math.log(1 + (documentCount - documentFrequencies[i] + 0.5) / (documentFrequencies[i] + 0.5));
+			}
+
+			TopDocuments best = new TopDocuments(limit);
+			for (int s = 0; s < searched.size(); s++) {
+				collect(searched.get(s), cursors.get(s), idf, averageLength, best);
+			}
+
+			List<ScoredDocument> sorted = new ArrayList<>(best.byId.values());
+			sorted.sort(Comparator.comparingDouble((ScoredDocument scored) -> scored.score).reversed());
+
+			List<SearchHitResponse> hits = new ArrayList<>(sorted.size());
+			for (ScoredDocument scored : sorted) {
+				SearchDocument document = scored.segment.getDocument(scored.ordinal);
+				Move move = moved.get(document.getId());
+				hits.add(SearchHitResponse
+						.builder()
+						.type(document.getType())
+						.id(document.getId())
+						.threadId(move != null ? move.threadId : document.getThreadId())
+						.score(scored.score)
+						.build());
+			}
+			return hits;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/* Schnittmenge der Postings per Leapfrog: Die seltenste Liste gibt das Ziel vor, alle anderen springen dorthin.
+	 * Liegt eine Liste dahinter, springt die seltenste Liste auf deren Ordinal und es wird erneut verglichen. */
+	private void collect(SearchSegment segment, SearchSegment.PostingsCursor[] cursors, float[] idf, float averageLength,
+						 TopDocuments best) {
+		Integer[] order = new Integer[cursors.length];
+		for (int i = 0; i < cursors.length; i++) {
+			if (cursors[i] == null) {
+				return;
+			}
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingInt(i -> cursors[i].getDocumentFrequency()));
+
+		SearchSegment.PostingsCursor lead = cursors[order[0]];
+		if (!lead.next()) {
+			return;
+		}
+		int target = lead.doc();
+
+		candidates:
+		while (true) {
+			for (int o = 1; o < order.length; o++) {
+				SearchSegment.PostingsCursor cursor = cursors[order[o]];
+				if (!cursor.advance(target)) {
+					return;
+				}
+				if (cursor.doc() > target) {
+					if (!lead.advance(cursor.doc())) {
+						return;
+					}
+					target = lead.doc();
+					continue candidates;
+				}
+			}
+
+			UUID id = segment.getId(target);
+			if (deleted.isEmpty() || !deleted.containsKey(id)) {
+				float lengthNormalization = K1 * (1 - B + B * segment.getLength(target) / averageLength);
+				float score = 0;
+				for (int i = 0; i < cursors.length; i++) {
+					int freq = cursors[i].freq();
+					score += idf[i] * freq * (K1 + 1) / (freq + lengthNormalization);
+				}
+
+				if (segment.getType(target) == SearchHitResponse.Type.THREAD) {
+					score *= THREAD_BOOST;
+				}
+
+				best.offer(new ScoredDocument(id, segment, target, score));
+			}
+
+			if (!lead.next()) {
+				return;
+			}
+			target = lead.doc();
+		}
+	}
+
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	/* Die Anzahl der gelöschten und verschobenen Dokumente, die noch nicht in allen Segmenten angewendet sind. */
+	public int getPendingChangeCount() {
+		return deleted.size() + moved.size();
+	}
+
+	/* Das Dokument, wie es in ein neues Segment geschrieben wird, oder null, wenn es gelöscht wurde. */
+	private SearchDocument current(SearchDocument document) {
+		if (!deleted.isEmpty() && deleted.containsKey(document.getId())) {
+			return null;
+		}
+		Move move = moved.isEmpty() ? null : moved.get(document.getId());
+		if (move == null) {
+			return document;
+		}
+		return new SearchDocument(document.getType(), document.getId(), move.threadId, document.getLength());
+	}
+
+	/* Entfernt die Vermerke, die in allen Segmenten und im MemorySearchSegment bereits angewendet sind. */
+	private void prune() {
+		long oldest = bufferGeneration;
+		for (MappedSearchSegment segment : segments) {
+			oldest = Math.min(oldest, generationOf(segment));
+		}
+
+		long applied = oldest;
+		deleted.values().removeIf(stamp -> stamp < applied);
+		moved.values().removeIf(move -> move.generation < applied);
+	}
+
+	private String nextSegmentName() {
+		return String.format("%s%08d", SEGMENT_PREFIX, ++generation);
+	}
+
+	private static long generationOf(MappedSearchSegment segment) {
+		return Long.parseLong(segment.getName().substring(SEGMENT_PREFIX.length()));
+	}
+
+	private static class Move {
+		private final UUID threadId;
+		private final long generation;
+
+		private Move(UUID threadId, long generation) {
+			this.threadId = threadId;
+			this.generation = generation;
+		}
+	}
+
+	/* Die besten limit Dokumente, je ID nur das am besten bewertete. */
+	private static class TopDocuments {
+		private final int limit;
+		private final PriorityQueue<ScoredDocument> queue;
+		private final Map<UUID, ScoredDocument> byId = new HashMap<>();
+
+		private TopDocuments(int limit) {
+			this.limit = limit;
+			this.queue = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(scored -> scored.score));
+		}
+
+		private void offer(ScoredDocument scored) {
+			ScoredDocument existing = byId.get(scored.id);
+			if (existing != null) {
+				if (scored.score > existing.score) {
+					queue.remove(existing);
+					queue.add(scored);
+					byId.put(scored.id, scored);
+				}
+				return;
+			}
+
+			if (queue.size() < limit || scored.score > queue.peek().score) {
+				queue.add(scored);
+				byId.put(scored.id, scored);
+				if (queue.size() > limit) {
+					byId.remove(queue.poll().id);
+				}
+			}
+		}
+	}
+
+	private static class ScoredDocument {
+		private final UUID id;
+		private final SearchSegment segment;
+		private final int ordinal;
+		private final float score;
+
+		private ScoredDocument(UUID id, SearchSegment segment, int ordinal, float score) {
+			this.id = id;
+			this.segment = segment;
+			this.ordinal = ordinal;
+			this.score = score;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+
+import java.util.UUID;
+
+/* Ein Segment ist ein Teil des Suchindex. Jedes Dokument hat innerhalb seines Segments eine fortlaufende Nummer
+ * (Ordinal). Zu jedem Begriff gibt es eine Postings-Liste mit den Ordinals der Dokumente, die den Begriff enthalten,
+ * aufsteigend sortiert und mit der Häufigkeit des Begriffs im Dokument. */
+public interface SearchSegment {
+
+	int getDocumentCount();
+
+	/* Summe der Längen aller Dokumente, daraus wird die durchschnittliche Länge für BM25 berechnet. */
+	long getTotalLength();
+
+	/* Gibt einen Cursor über die Postings des Begriffs zurück oder null, wenn der Begriff nicht vorkommt. */
+	PostingsCursor getPostings(String term);
+
+	int getLength(int ordinal);
+
+	UUID getId(int ordinal);
+
+	SearchHitResponse.Type getType(int ordinal);
+
+	SearchDocument getDocument(int ordinal);
+
+	/* Ein Cursor steht zu Beginn vor dem ersten Posting. */
+	interface PostingsCursor {
+
+		int getDocumentFrequency();
+
+		boolean next();
+
+		int doc();
+
+		int freq();
+
+		/* Bewegt den Cursor zum ersten Posting mit einem Ordinal größer oder gleich target. */
+		default boolean advance(int target) {
+			while (doc() < target) {
+				if (!next()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
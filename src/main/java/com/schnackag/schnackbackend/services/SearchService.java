@@ -0,0 +1,235 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import com.schnackag.schnackbackend.events.PostsCreatedEvent;
+import com.schnackag.schnackbackend.events.ThreadCreatedEvent;
+import com.schnackag.schnackbackend.exceptions.InvalidCursorException;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/* Dieser Service hält den SearchIndex aktuell und stellt die Suche bereit. Alle Änderungen am Index laufen über
+ * einen eigenen Thread (search-indexer), die Events von Threads und Posts werden also nicht durch das Indexieren
+ * verzögert. Beim Start wird der Index in einem weiteren Thread seitenweise aus der Datenbank aufgebaut.
+ * Bis dahin liefert die Suche nur die bereits indexierten Dokumente.
+ *
+ * Ein Dokument, das während des Aufbaus erstellt wird, kommt sowohl aus der Datenbank als auch über ein Event.
+ * Neue IDs sind UUIDv7, der Indexer merkt sich bis zum Ende des Aufbaus deshalb nur die IDs ab kurz vor dem Start und
+ * überspringt sie beim zweiten Mal. Doppelte Dokumente würden sonst die Statistiken für BM25 verfälschen. IDs aus der
+ * Zeit vor dem UuidV7Generator sind UUIDv4 ohne Zeitstempel. Sie stammen nie aus einem Event und werden nicht gemerkt. */
+@Slf4j
+@Service
+public class SearchService {
+	public static final int MAXIMUM_RESULTS = 1000;
+	private static final int MAXIMUM_QUERY_TERMS = 8;
+	private static final Duration REBUILD_OVERLAP = Duration.ofMinutes(1);
+
+	private final ThreadRepository threadRepository;
+	private final PostRepository postRepository;
+	private final ShardRouting shardRouting;
+	private final SearchIndex index;
+	private final ExecutorService indexer;
+	private final int rebuildBatchSize;
+	private final long rebuildOverlapStart = System.currentTimeMillis() - REBUILD_OVERLAP.toMillis();
+
+	/* Nur vom search-indexer verwendet, nach dem Aufbau null. */
+	private Set<UUID> indexedDuringRebuild = new HashSet<>();
+
+	public SearchService(
+			ThreadRepository threadRepository,
+			PostRepository postRepository,
+			ShardRouting shardRouting,
+			@Value("${schnack.search.directory:${java.io.tmpdir}/schnack-search}") Path directory,
+			@Value("${schnack.search.flush-threshold:10000}") int flushThreshold,
+			@Value("${schnack.search.merge-factor:8}") int mergeFactor,
+			@Value("${schnack.search.maximum-segment-size:1GB}") DataSize maximumSegmentSize,
+			@Value("${schnack.search.rebuild-batch-size:1000}") int rebuildBatchSize) throws IOException {
+		this.threadRepository = threadRepository;
+		this.postRepository = postRepository;
+		this.shardRouting = shardRouting;
+		this.index = new SearchIndex(directory, flushThreshold, mergeFactor, maximumSegmentSize.toBytes());
+		this.indexer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "search-indexer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.rebuildBatchSize = rebuildBatchSize;
+	}
+
+	/* Gibt eine Seite der Treffer zurück. Der Cursor ist die Position des ersten Treffers der Seite.
+	 * Es werden höchstens MAXIMUM_RESULTS Treffer geliefert. */
+	public PageResponse<SearchHitResponse> search(String query, String cursor, int size) {
+		int offset = decodeCursor(cursor);
+		int pageSize = Math.max(1, Math.min(size, ThreadService.MAXIMUM_PAGE_SIZE));
+		List<String> terms = SearchTokenizer.tokenize(query).stream().distinct().limit(MAXIMUM_QUERY_TERMS).toList();
+
+		int end = Math.min(offset + pageSize, MAXIMUM_RESULTS);
+		List<SearchHitResponse> hits = offset < end ? index.search(terms, end + 1) : List.of();
+
+		return PageResponse
+				.<SearchHitResponse>builder()
+				.items(hits.subList(Math.min(offset, hits.size()), Math.min(end, hits.size())))
+				.nextCursor(hits.size() > end && end < MAXIMUM_RESULTS ? String.valueOf(end) : null)
+				.build();
+	}
+
+	/* Löscht ein Dokument aus dem Index, z.B. wenn ein Post entfernt wurde. */
+	public void delete(UUID id) {
+		index.delete(id);
+	}
+
+	/* Ordnet einen Post im Index einem anderen Thread zu. */
+	public void move(UUID id, UUID threadId) {
+		index.move(id, threadId);
+	}
+
+	@EventListener
+	public void onPostsCreated(PostsCreatedEvent event) {
+		indexer.execute(() -> indexPosts(event.getPosts()));
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onThreadCreated(ThreadCreatedEvent event) {
+		indexer.execute(() -> indexThreads(List.of(event.getThread())));
+	}
+
+	/* Baut den Index beim Start aus der Datenbank auf. Die Seiten werden in der Reihenfolge des Primärschlüssels
+	 * gelesen. Es wird immer nur eine Seite im Voraus gelesen, damit der Aufbau nicht die ganze Datenbank in
+	 * die Warteschlange des Indexers lädt. Mit Sharding wird ein Shard nach dem anderen gelesen. */
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		Thread rebuild = new Thread(() -> {
+			long start = System.nanoTime();
+			try {
+				long threads = 0;
+				long posts = 0;
+				for (String shard : shardRouting.getShards()) {
+					threads += shardRouting.onShard(shard, () -> rebuild(threadRepository::findAllAfter, ThreadResponse::getId, this::indexThreads));
+					posts += shardRouting.onShard(shard, () -> rebuild(postRepository::findAllAfter, PostResponse::getId, this::indexPosts));
+				}
+				log.info("Search index rebuilt with {} threads and {} posts in {} ms.", threads, posts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			} catch (RuntimeException e) {
+				log.error("Could not rebuild search index.", e);
+			} finally {
+				indexer.execute(() -> indexedDuringRebuild = null);
+			}
+		}, "search-rebuild");
+		rebuild.setDaemon(true);
+		rebuild.start();
+	}
+
+	@Scheduled(fixedDelayString = "${schnack.search.flush-interval:PT1M}")
+	public void flush() {
+		indexer.execute(() -> {
+			try {
+				index.flush();
+				index.merge();
+			} catch (IOException e) {
+				log.error("Could not write search segment.", e);
+			}
+		});
+	}
+
+	public int getSegmentCount() {
+		return index.getSegmentCount();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		indexer.shutdownNow();
+	}
+
+	private <T> long rebuild(PageLoader<T> loader, Function<T, UUID> idOf, Consumer<List<T>> indexPage) {
+		UUID last = new UUID(0, 0);
+		long count = 0;
+		CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
+		while (true) {
+			List<T> page = loader.load(last, Limit.of(rebuildBatchSize));
+			pending.join();
+			if (page.isEmpty()) {
+				return count;
+			}
+
+			pending = CompletableFuture.runAsync(() -> indexPage.accept(page), indexer);
+			count += page.size();
+			last = idOf.apply(page.get(page.size() - 1));
+		}
+	}
+
+	private void indexThreads(List<ThreadResponse> threads) {
+		for (ThreadResponse thread : threads) {
+			add(SearchHitResponse.Type.THREAD, thread.getId(), thread.getId(), thread.getTitle());
+		}
+	}
+
+	private void indexPosts(List<PostResponse> posts) {
+		for (PostResponse post : posts) {
+			add(SearchHitResponse.Type.POST, post.getId(), post.getThreadId(), post.getContent());
+		}
+	}
+
+	private void add(SearchHitResponse.Type type, UUID id, UUID threadId, String text) {
+		if (indexedDuringRebuild != null
+				&& id.version() == 7
+				&& UuidV7Generator.timestampOf(id) >= rebuildOverlapStart
+				&& !indexedDuringRebuild.add(id)) {
+			return;
+		}
+
+		try {
+			index.add(type, id, threadId, text);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static int decodeCursor(String cursor) {
+		if (cursor == null) {
+			return 0;
+		}
+
+		try {
+			int offset = Integer.parseInt(cursor);
+			if (offset < 0) {
+				throw new NumberFormatException("Negative offset.");
+			}
+			return offset;
+		} catch (NumberFormatException e) {
+			throw new InvalidCursorException(e);
+		}
+	}
+
+	@FunctionalInterface
+	private interface PageLoader<T> {
+		List<T> load(UUID after, Limit limit);
+	}
+}
@@ -0,0 +1,50 @@
+package com.schnackag.schnackbackend.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* Zerlegt einen Text in Suchbegriffe. Ein Begriff ist eine Folge von Buchstaben und Ziffern in Kleinbuchstaben.
+ * Begriffe mit nur einem Zeichen werden ignoriert, sehr lange Begriffe werden abgeschnitten.
+ * Der gleiche Tokenizer wird beim Indexieren und bei der Suche verwendet. */
+public final class SearchTokenizer {
+	public static final int MINIMUM_TERM_LENGTH = 2;
+	public static final int MAXIMUM_TERM_LENGTH = 40;
+
+	private SearchTokenizer() {
+	}
+
+	public static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<>();
+		if (text == null) {
+			return terms;
+		}
+
+		StringBuilder term = new StringBuilder();
+		int length = 0;
+
+		for (int i = 0; i < text.length(); ) {
+			int codePoint = text.codePointAt(i);
+			i += Character.charCount(codePoint);
+
+			if (Character.isLetterOrDigit(codePoint)) {
+				if (length < MAXIMUM_TERM_LENGTH) {
+					term.appendCodePoint(Character.toLowerCase(codePoint));
+				}
+				length++;
+			} else {
+				addTerm(terms, term, length);
+				term.setLength(0);
+				length = 0;
+			}
+		}
+		addTerm(terms, term, length);
+
+		return terms;
+	}
+
+	private static void addTerm(List<String> terms, StringBuilder term, int length) {
+		if (length >= MINIMUM_TERM_LENGTH) {
+			terms.add(term.toString());
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.exceptions.ShardingNotConfiguredException;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.RebalancingResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Dieser Service verschiebt nach einer Änderung der Shards (siehe ShardRouting) alle Threads auf den Shard, dem sie
+ * nach dem aktuellen Ring gehören, während die Anwendung weiterläuft. Die Threads jedes Shards werden seitenweise in
+ * der Reihenfolge ihrer ID gelesen. Ein Thread eines anderen Shards wird verschoben:
+ *
+ * 1. Reste eines abgebrochenen Laufs auf dem Ziel-Shard werden gelöscht.
+ * 2. Der Thread wird mit unveränderter ID auf den Ziel-Shard kopiert, danach seine Posts in Seiten von batch-size,
+ *    jede Seite in einer eigenen Transaktion. Neue Posts landen währenddessen weiter auf dem Quell-Shard.
+ * 3. Unter der Schreibsperre von ShardRouting werden die restlichen Posts kopiert und die Zähler auf dem Ziel-Shard
+ *    gesetzt. Danach wird der Thread auf dem Quell-Shard per SELECT ... FOR UPDATE gesperrt, seine Posts gezählt und
+ *    Posts und Thread in derselben Transaktion gelöscht. Erst ab diesem Commit liegt der Thread auf dem Ziel-Shard.
+ *    Die Schreibsperre gilt nur auf dieser Instanz, Posts anderer Instanzen hält die Zeilensperre auf: Ein Post, der
+ *    vor der Sperre committet wurde, fällt beim Zählen auf. Der Thread wird dann nicht gelöscht und beim nächsten Lauf
+ *    erneut verschoben. Ein späterer Post wartet unter InnoDB beim Prüfen seines Fremdschlüssels auf die Sperre und
+ *    schlägt nach dem Löschen fehl, statt unbemerkt mitgelöscht zu werden. Der PostIngestionService schreibt ihn dann
+ *    auf den neuen Shard (siehe ShardRouting.relocate).
+ *
+ * Ein abgebrochener oder fehlgeschlagener Lauf kann also jederzeit wiederholt werden. Die Zähler der Benutzer-Kopien
+ * korrigiert der nächste Abgleich des PostCounterService. Es läuft
+ * immer nur ein Rebalancing, der Status liegt nur im Speicher dieser Instanz. Sind alle Threads verschoben, kann
+ * schnack.sharding.previous-shards entfernt werden. */
+@Slf4j
+@Lazy
+@Service
+public class ShardRebalancingService {
+	private final ThreadRepository threadRepository;
+	private final PostRepository postRepository;
+	private final ShardRouting shardRouting;
+	private final ThreadCache threadCache;
+	private final TransactionTemplate transactionTemplate;
+	private final ExecutorService executor;
+	private final int batchSize;
+
+	private volatile Run current;
+
+	public ShardRebalancingService(
+			ThreadRepository threadRepository,
+			PostRepository postRepository,
+			ShardRouting shardRouting,
+			ThreadCache threadCache,
+			PlatformTransactionManager transactionManager,
+			@Value("${schnack.sharding.rebalancing-batch-size:1000}") int batchSize) {
+		this.threadRepository = threadRepository;
+		this.postRepository = postRepository;
+		this.shardRouting = shardRouting;
+		this.threadCache = threadCache;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "shard-rebalancing");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.batchSize = batchSize;
+	}
+
+	public synchronized RebalancingResponse start(AuthenticatedUser administrator) {
+		if (!shardRouting.isSharded()) {
+			throw new ShardingNotConfiguredException();
+		}
+		if (current != null && current.status == RebalancingResponse.Status.RUNNING) {
+			return current.toResponse();
+		}
+
+		Run run = new Run(administrator.getUsername());
+		current = run;
+		executor.execute(() -> run(run));
+
+		log.info("Shard rebalancing started by {}.", run.requestedBy);
+		return run.toResponse();
+	}
+
+	public RebalancingResponse getStatus() {
+		Run run = current;
+		return run == null ? RebalancingResponse.builder().status(RebalancingResponse.Status.IDLE).build() : run.toResponse();
+	}
+
+	/* Bricht das Rebalancing nach dem aktuellen Thread ab. */
+	public RebalancingResponse cancel() {
+		Run run = current;
+		if (run == null) {
+			return getStatus();
+		}
+		run.cancelled = true;
+		return run.toResponse();
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		Run run = current;
+		if (run != null) {
+			run.cancelled = true;
+		}
+		executor.shutdown();
+		executor.awaitTermination(30, TimeUnit.SECONDS);
+	}
+
+	private void run(Run run) {
+		try {
+			for (String shard : shardRouting.getShards()) {
+				UUID after = new UUID(0, 0);
+				List<UUID> ids;
+				while (!run.cancelled && !(ids = findThreadIds(shard, after)).isEmpty()) {
+					for (UUID threadId : ids) {
+						if (run.cancelled) {
+							break;
+						}
+						run.scanned.incrementAndGet();
+						String owner = shardRouting.getOwner(threadId);
+						if (!owner.equals(shard)) {
+							move(run, threadId, shard, owner);
+						}
+					}
+					after = ids.get(ids.size() - 1);
+				}
+			}
+
+			if (run.cancelled) {
+				run.finish(RebalancingResponse.Status.CANCELLED, null);
+				log.info("Shard rebalancing cancelled after {} threads, {} moved.", run.scanned.get(), run.moved.get());
+				return;
+			}
+			run.finish(RebalancingResponse.Status.COMPLETED, null);
+			log.info("Shard rebalancing completed, {} threads scanned, {} moved, {} failed.", run.scanned.get(), run.moved.get(), run.failed.get());
+		} catch (RuntimeException e) {
+			log.error("Shard rebalancing failed after {} threads.", run.scanned.get(), e);
+			run.finish(RebalancingResponse.Status.FAILED, e.getMessage());
+		}
+	}
+
+	private List<UUID> findThreadIds(String shard, UUID after) {
+		return shardRouting.onShard(shard, () -> threadRepository.findIdsAfter(after, Limit.of(batchSize)));
+	}
+
+	/* Ein fehlgeschlagener Thread bricht den Lauf nicht ab, er bleibt auf dem Quell-Shard. */
+	private void move(Run run, UUID threadId, String source, String target) {
+		long start = System.nanoTime();
+		try {
+			if (moveThread(threadId, source, target)) {
+				run.moved.incrementAndGet();
+				log.debug("Moved thread {} from shard {} to {} in {} ms.", threadId, source, target, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			}
+		} catch (RuntimeException e) {
+			run.failed.incrementAndGet();
+			log.warn("Could not move thread {} from shard {} to {}.", threadId, source, target, e);
+		}
+	}
+
+	private boolean moveThread(UUID threadId, String source, String target) {
+		shardRouting.onShard(target, () -> transactionTemplate.execute(status -> {
+			postRepository.deleteAllByThread(threadId);
+			return threadRepository.deleteThread(threadId);
+		}));
+
+		Optional<ThreadResponse> thread = shardRouting.onShard(source, () -> threadRepository.findResponseById(threadId));
+		if (thread.isEmpty()) {
+			// Der Thread wurde inzwischen gelöscht.
+			return false;
+		}
+		UUID ownerId = shardRouting.onShard(source, () -> threadRepository.findOwnerId(threadId)).orElse(null);
+		if (ownerId != null) {
+			shardRouting.replicateUsers(target, Map.of(ownerId, thread.get().getOwner()));
+		}
+		shardRouting.onShard(target, () -> transactionTemplate.execute(status -> threadRepository.insertThread(
+				threadId,
+				thread.get().getTitle(),
+				thread.get().getCreatedAt(),
+				ownerId)));
+
+		Cursor cursor = new Cursor();
+		copyPosts(threadId, source, target, cursor);
+
+		shardRouting.move(threadId, target, () -> {
+			copyPosts(threadId, source, target, cursor);
+			shardRouting.onShard(target, () -> transactionTemplate.execute(status ->
+					threadRepository.incrementPostCounts(List.of(threadId), postRepository.countByThread(threadId))));
+			boolean deleted = shardRouting.onShard(source, () -> transactionTemplate.execute(status -> {
+				if (threadRepository.lockById(threadId).isEmpty()) {
+					return false;
+				}
+				long count = postRepository.countByThread(threadId);
+				if (count != cursor.copied) {
+					throw new IllegalStateException("Thread has " + count + " posts on shard " + source + ", but " + cursor.copied + " were copied.");
+				}
+				postRepository.deleteAllByThread(threadId);
+				threadRepository.deleteThread(threadId);
+				return true;
+			}));
+			if (!deleted) {
+				// Ohne den Thread auf dem Quell-Shard wäre die Kopie sichtbar, ein gelöschter Thread käme also zurück.
+				shardRouting.onShard(target, () -> transactionTemplate.execute(status -> {
+					postRepository.deleteAllByThread(threadId);
+					return threadRepository.deleteThread(threadId);
+				}));
+				throw new IllegalStateException("Thread was deleted on shard " + source + " while it was moved.");
+			}
+		});
+		threadCache.invalidate(threadId);
+		return true;
+	}
+
+	/* Kopiert die Posts ab dem Cursor in der Reihenfolge, in der sie geschrieben wurden. */
+	private void copyPosts(UUID threadId, String source, String target, Cursor cursor) {
+		List<PostResponse> page;
+		do {
+			page = shardRouting.onShard(source, () -> cursor.last == null
+					? postRepository.findByThread(threadId, Limit.of(batchSize))
+					: postRepository.findByThreadAfter(threadId, cursor.last.getCreatedAt(), cursor.last.getId(), Limit.of(batchSize)));
+			if (page.isEmpty()) {
+				return;
+			}
+
+			List<PostResponse> posts = page;
+			shardRouting.onShard(target, () -> transactionTemplate.execute(status -> shardRouting.insertPosts(target, threadId, posts)));
+			cursor.copied += page.size();
+			cursor.last = page.get(page.size() - 1);
+		} while (page.size() == batchSize);
+	}
+
+	private static class Cursor {
+		private PostResponse last;
+		private long copied;
+	}
+
+	private static class Run {
+		private final String requestedBy;
+		private final Instant startedAt = Instant.now();
+		private final AtomicLong scanned = new AtomicLong();
+		private final AtomicLong moved = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private volatile RebalancingResponse.Status status = RebalancingResponse.Status.RUNNING;
+		private volatile boolean cancelled;
+		private volatile Instant finishedAt;
+		private volatile String error;
+
+		private Run(String requestedBy) {
+			this.requestedBy = requestedBy;
+		}
+
+		private void finish(RebalancingResponse.Status status, String error) {
+			this.error = error;
+			this.status = status;
+			this.finishedAt = Instant.now();
+		}
+
+		private RebalancingResponse toResponse() {
+			return RebalancingResponse
+					.builder()
+					.status(status)
+					.requestedBy(requestedBy)
+					.scanned(scanned.get())
+					.moved(moved.get())
+					.failed(failed.get())
+					.startedAt(startedAt)
+					.finishedAt(finishedAt)
+					.error(error)
+					.build();
+		}
+	}
+}
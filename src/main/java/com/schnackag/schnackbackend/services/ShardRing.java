@@ -0,0 +1,97 @@
+package com.schnackag.schnackbackend.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/* Ein Hash-Ring für Consistent Hashing. Jeder Shard erhält virtualNodes Punkte auf dem Ring, ein Thread gehört dem
+ * Shard des ersten Punkts, der auf den Hash seiner ID folgt. Kommt ein Shard hinzu oder fällt einer weg, wechseln
+ * deshalb nur etwa 1/n der Threads den Shard, nicht fast alle wie bei hash % n. Die Punkte liegen sortiert in einem
+ * long-Array, ein Thread wird per binärer Suche ohne Objekte gefunden.
+ *
+ * Die Punkte hängen nur von den Namen der Shards ab, nicht von ihrer Reihenfolge oder ihren URLs. Ein Shard darf
+ * also umziehen, solange er seinen Namen behält. Hash-Funktion und Punkte dürfen sich nicht ändern, sonst liegen die
+ * Threads auf dem falschen Shard. */
+public class ShardRing {
+	private final List<String> shards;
+	private final long[] points;
+	private final int[] owners;
+
+	public ShardRing(List<String> shards, int virtualNodes) {
+		if (shards.isEmpty() || virtualNodes < 1) {
+			throw new IllegalArgumentException("A shard ring needs at least one shard and one virtual node.");
+		}
+		if (shards.stream().distinct().count() != shards.size()) {
+			throw new IllegalArgumentException("Shard names must be unique: " + shards);
+		}
+
+		this.shards = List.copyOf(shards);
+		int size = shards.size() * virtualNodes;
+		long[] unsortedPoints = new long[size];
+		Integer[] order = new Integer[size];
+		for (int shard = 0; shard < shards.size(); shard++) {
+			for (int node = 0; node < virtualNodes; node++) {
+				int index = shard * virtualNodes + node;
+				unsortedPoints[index] = hash(shards.get(shard) + "#" + node);
+				order[index] = index;
+			}
+		}
+		// Gleiche Punkte (praktisch ausgeschlossen) werden über den Namen des Shards eindeutig sortiert.
+		Arrays.sort(order, (a, b) -> unsortedPoints[a] != unsortedPoints[b]
+				? Long.compare(unsortedPoints[a], unsortedPoints[b])
+				: shards.get(a / virtualNodes).compareTo(shards.get(b / virtualNodes)));
+
+		this.points = new long[size];
+		this.owners = new int[size];
+		for (int i = 0; i < size; i++) {
+			points[i] = unsortedPoints[order[i]];
+			owners[i] = order[i] / virtualNodes;
+		}
+	}
+
+	public List<String> getShards() {
+		return shards;
+	}
+
+	public String shardOf(UUID id) {
+		long hash = hash(id);
+		int low = 0;
+		int high = points.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (points[middle] < hash) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		// Hinter dem letzten Punkt geht es am Anfang des Rings weiter.
+		return shards.get(owners[low == points.length ? 0 : low]);
+	}
+
+	/* Die oberen Bits einer UUIDv7 sind der Zeitstempel. Beide Hälften werden deshalb mit dem Finalizer von
+	 * MurmurHash3 gemischt, damit auch zeitlich nahe Threads gleichmäßig verteilt werden. */
+	private static long hash(UUID id) {
+		return mix(id.getLeastSignificantBits() ^ mix(id.getMostSignificantBits()));
+	}
+
+	/* FNV-1a mit dem Finalizer von MurmurHash3, wie im BloomFilter. */
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b;
+			hash *= 0x100000001b3L;
+		}
+		return mix(hash);
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,320 @@
+package com.schnackag.schnackbackend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.schnackag.schnackbackend.configurations.ShardRoutingDataSource;
+import com.schnackag.schnackbackend.configurations.ShardingProperties;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/* Ordnet Threads und ihre Posts den Shards zu (siehe ShardingConfiguration). Ohne konfigurierte Shards gibt es nur
+ * den Shard global, alle Methoden führen den Aufruf dann einfach aus. Die Services können deshalb ohne
+ * Fallunterscheidung über getShards() iterieren oder scatter() aufrufen.
+ *
+ * Ein Thread gehört dem Shard, den der Hash-Ring der aktiven Shards für seine ID liefert. Solange das Rebalancing nach
+ * einer Änderung der Shards nicht abgeschlossen ist (previous-shards gesetzt), kann ein Thread noch auf dem Shard
+ * des vorherigen Rings liegen. Für diese Threads wird einmal nachgesehen und das Ergebnis für location-cache-period
+ * gemerkt. Verschiebt das Rebalancing dieser Instanz einen Thread, wird der neue Shard sofort eingetragen. Andere
+ * Instanzen verwenden bis zu location-cache-period weiter den vorherigen Shard und finden den Thread dort nicht mehr:
+ * Lesezugriffe, Moderation und Exporte antworten in dieser Zeit mit 404. Nur neue Posts sucht der
+ * PostIngestionService nach einem verletzten Fremdschlüssel mit relocate() erneut und schreibt sie auf den neuen Shard.
+ *
+ * Abfragen über alle Shards (scatter) laufen parallel auf scatter-threads Threads, jede in der Transaktion ihres
+ * Repositorys. Die sortierten Teilergebnisse werden mit merge() zusammengeführt. */
+@Slf4j
+@Service
+public class ShardRouting {
+	private final List<String> shards;
+	private final ShardRing ring;
+	private final ShardRing previousRing;
+	private final ThreadRepository threadRepository;
+	private final PostRepository postRepository;
+	private final UserRepository userRepository;
+	private final TransactionTemplate newTransaction;
+	private final Cache<String, Boolean> replicatedUsers;
+	private final Cache<UUID, String> locations;
+	private final ReadWriteLock writeFence = new ReentrantReadWriteLock();
+	private final ExecutorService scatterExecutor;
+
+	public ShardRouting(
+			ShardingProperties properties,
+			ThreadRepository threadRepository,
+			PostRepository postRepository,
+			UserRepository userRepository,
+			PlatformTransactionManager transactionManager,
+			@Value("${schnack.sharding.scatter-threads:16}") int scatterThreads,
+			@Value("${schnack.sharding.replicated-users-maximum-size:100000}") long replicatedUsersMaximumSize,
+			@Value("${schnack.sharding.location-cache-maximum-size:100000}") long locationCacheMaximumSize,
+			@Value("${schnack.sharding.location-cache-period:10s}") Duration locationCachePeriod) {
+		this.threadRepository = threadRepository;
+		this.postRepository = postRepository;
+		this.userRepository = userRepository;
+		this.newTransaction = new TransactionTemplate(transactionManager);
+		this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.replicatedUsers = Caffeine
+				.newBuilder()
+				.maximumSize(replicatedUsersMaximumSize)
+				.build();
+		this.locations = Caffeine
+				.newBuilder()
+				.maximumSize(locationCacheMaximumSize)
+				.expireAfterWrite(locationCachePeriod)
+				.build();
+
+		if (properties.getShards().isEmpty()) {
+			this.shards = List.of(ShardRoutingDataSource.GLOBAL);
+			this.ring = null;
+			this.previousRing = null;
+			this.scatterExecutor = null;
+			return;
+		}
+
+		this.shards = properties.getShards().stream().map(ShardingProperties.Shard::getName).toList();
+		List<String> active = properties.getShards().stream().filter(ShardingProperties.Shard::isActive).map(ShardingProperties.Shard::getName).toList();
+		if (active.isEmpty()) {
+			throw new IllegalStateException("At least one shard must be active.");
+		}
+		if (!shards.containsAll(properties.getPreviousShards())) {
+			throw new IllegalStateException("Previous shards " + properties.getPreviousShards() + " must be configured in schnack.sharding.shards.");
+		}
+		this.ring = new ShardRing(active, properties.getVirtualNodes());
+		this.previousRing = properties.getPreviousShards().isEmpty() ? null : new ShardRing(properties.getPreviousShards(), properties.getVirtualNodes());
+		this.scatterExecutor = Executors.newFixedThreadPool(scatterThreads, runnable -> {
+			Thread thread = new Thread(runnable, "shard-scatter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		log.info("Threads are sharded across {} ({} active){}.", shards, active, previousRing == null ? "" : ", rebalancing from " + properties.getPreviousShards());
+	}
+
+	public boolean isSharded() {
+		return ring != null;
+	}
+
+	/* Alle Shards, auch inaktive, auf denen noch Threads liegen können. */
+	public List<String> getShards() {
+		return shards;
+	}
+
+	/* Der Shard, dem ein Thread nach dem aktuellen Ring gehört, unabhängig davon, wo er gerade liegt. */
+	public String getOwner(UUID threadId) {
+		return ring == null ? ShardRoutingDataSource.GLOBAL : ring.shardOf(threadId);
+	}
+
+	/* Der Shard, auf dem ein Thread liegt. */
+	public String shardOf(UUID threadId) {
+		String owner = getOwner(threadId);
+		if (previousRing == null) {
+			return owner;
+		}
+
+		String previous = previousRing.shardOf(threadId);
+		if (previous.equals(owner)) {
+			return owner;
+		}
+		// Eigene Transaktion, damit die Transaktion des Aufrufers nicht an den vorherigen Shard gebunden wird.
+		return locations.get(threadId, id -> Boolean.TRUE.equals(newTransaction.execute(status ->
+				onShard(previous, () -> threadRepository.existsById(id)))) ? previous : owner);
+	}
+
+	/* Vergisst den gemerkten Shard eines Threads und sucht ihn erneut, z.B. wenn ein Schreibzugriff auf shard den
+	 * Thread nicht gefunden hat. Gibt den neuen Shard zurück oder null, wenn der Thread nicht umgezogen ist. */
+	public String relocate(UUID threadId, String shard) {
+		if (previousRing == null) {
+			return null;
+		}
+		locations.invalidate(threadId);
+		String current = shardOf(threadId);
+		return current.equals(shard) ? null : current;
+	}
+
+	public <T> T onShard(String shard, Supplier<T> loader) {
+		if (ring == null) {
+			return loader.get();
+		}
+		return ShardRoutingDataSource.onShard(shard, loader);
+	}
+
+	public <T> T onThread(UUID threadId, Supplier<T> loader) {
+		return onShard(shardOf(threadId), loader);
+	}
+
+	/* Führt query auf allen Shards aus, den letzten im aufrufenden Thread. Schlägt ein Shard fehl, schlägt die ganze
+	 * Abfrage fehl. Das Ergebnis enthält ein Element je Shard in der Reihenfolge von getShards(). */
+	public <T> List<T> scatter(Supplier<T> query) {
+		List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+		for (int i = 0; i < shards.size() - 1; i++) {
+			String shard = shards.get(i);
+			futures.add(CompletableFuture.supplyAsync(() -> onShard(shard, query), scatterExecutor));
+		}
+		T last = onShard(shards.get(shards.size() - 1), query);
+
+		List<T> results = new ArrayList<>(shards.size());
+		try {
+			for (CompletableFuture<T> future : futures) {
+				results.add(future.join());
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+		results.add(last);
+		return results;
+	}
+
+	/* Führt die nach order sortierten Teilergebnisse zusammen und gibt die ersten limit Einträge zurück. */
+	public static <T> List<T> merge(List<List<T>> results, Comparator<T> order, int limit) {
+		if (results.size() == 1) {
+			List<T> result = results.get(0);
+			return result.size() <= limit ? result : result.subList(0, limit);
+		}
+
+		// Je Teilergebnis steht dessen nächster Eintrag in der Queue: {Teilergebnis, Position}.
+		PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> order.compare(results.get(a[0]).get(a[1]), results.get(b[0]).get(b[1])));
+		for (int i = 0; i < results.size(); i++) {
+			if (!results.get(i).isEmpty()) {
+				heads.add(new int[] {i, 0});
+			}
+		}
+
+		List<T> merged = new ArrayList<>(limit);
+		while (merged.size() < limit && !heads.isEmpty()) {
+			int[] head = heads.poll();
+			List<T> result = results.get(head[0]);
+			merged.add(result.get(head[1]));
+			if (++head[1] < result.size()) {
+				heads.add(head);
+			}
+		}
+		return merged;
+	}
+
+	/* Legt auf shard die Kopien der Benutzer an, die dort noch fehlen (ID auf Benutzername). Läuft in einer eigenen
+	 * Transaktion, damit eine Kopie auch bestehen bleibt, wenn die Transaktion des Aufrufers zurückgerollt wird. */
+	public void replicateUsers(String shard, Map<UUID, String> usernames) {
+		if (ring == null) {
+			return;
+		}
+
+		Map<UUID, String> missing = new HashMap<>();
+		usernames.forEach((id, username) -> {
+			if (replicatedUsers.getIfPresent(shard + ":" + id) == null) {
+				missing.put(id, username);
+			}
+		});
+		if (missing.isEmpty()) {
+			return;
+		}
+
+		try {
+			newTransaction.executeWithoutResult(status -> onShard(shard, () -> {
+				Set<UUID> existing = new HashSet<>();
+				userRepository.findPostCounts(missing.keySet()).forEach(user -> existing.add(user.getId()));
+				missing.forEach((id, username) -> {
+					if (!existing.contains(id)) {
+						userRepository.insertReplica(id, username);
+					}
+				});
+				return null;
+			}));
+		} catch (DataIntegrityViolationException e) {
+			// Eine andere Instanz hat die Kopie gleichzeitig angelegt. Beim nächsten Aufruf wird erneut geprüft.
+			log.debug("Users were replicated to shard {} concurrently.", shard, e);
+			return;
+		}
+		missing.keySet().forEach(id -> replicatedUsers.put(shard + ":" + id, Boolean.TRUE));
+	}
+
+	/* Schreibt Kopien von Posts mit unveränderter ID und Zeitpunkt in einen Thread auf shard. Läuft in der Transaktion
+	 * des Aufrufers, die dabei an shard gebunden wird. Bereits vorhandene Posts werden übersprungen, ein
+	 * abgebrochener Kopiervorgang kann also wiederholt werden. */
+	public int insertPosts(String shard, UUID threadId, List<PostResponse> posts) {
+		if (posts.isEmpty()) {
+			return 0;
+		}
+
+		Map<UUID, String> authors = new HashMap<>();
+		posts.stream().filter(post -> post.getAuthorId() != null).forEach(post -> authors.put(post.getAuthorId(), post.getAuthor()));
+		replicateUsers(shard, authors);
+
+		return onShard(shard, () -> {
+			Set<UUID> existing = new HashSet<>(postRepository.findExistingIds(posts.stream().map(PostResponse::getId).toList()));
+			int inserted = 0;
+			for (PostResponse post : posts) {
+				if (!existing.contains(post.getId())) {
+					inserted += postRepository.insertPost(
+							post.getId(),
+							post.getContent(),
+							post.getCreatedAt(),
+							post.getAuthorId(),
+							threadId);
+				}
+			}
+			return inserted;
+		});
+	}
+
+	/* Schreibzugriffe auf Threads und Posts laufen unter der Lesesperre. Das Rebalancing hält die Schreibsperre,
+	 * während es einen Thread umstellt, damit kein Post mehr auf dem alten Shard landet. Die Sperre gilt nur auf
+	 * dieser Instanz. */
+	public <T> T write(Supplier<T> writer) {
+		if (ring == null) {
+			return writer.get();
+		}
+
+		writeFence.readLock().lock();
+		try {
+			return writer.get();
+		} finally {
+			writeFence.readLock().unlock();
+		}
+	}
+
+	/* Hält alle Schreibzugriffe dieser Instanz an, während mover läuft. Danach liegt threadId auf shard. */
+	public void move(UUID threadId, String shard, Runnable mover) {
+		writeFence.writeLock().lock();
+		try {
+			mover.run();
+			locations.put(threadId, shard);
+		} finally {
+			writeFence.writeLock().unlock();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (scatterExecutor != null) {
+			scatterExecutor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package com.schnackag.schnackbackend.services;
+
+/* Ein Cache, den sich alle Instanzen teilen (z.B. Redis), als zweite Stufe hinter dem lokalen Cache des ThreadCache.
+ * Implementierungen für entfernte Speicher müssen die Werte selbst serialisieren.
+ * Die Zähler werden für die Invalidierung verwendet und dürfen deshalb nicht verdrängt werden. */
+public interface SharedCache {
+
+	/* Gibt den Wert zurück oder null, wenn der Schlüssel nicht (mehr) vorhanden ist. */
+	Object get(String key);
+
+	void put(String key, Object value);
+
+	/* Gibt den aktuellen Wert des Zählers zurück, 0 wenn er noch nicht existiert. */
+	long getCounter(String key);
+
+	/* Erhöht den Zähler atomar um eins und gibt den neuen Wert zurück. */
+	long increment(String key);
+}
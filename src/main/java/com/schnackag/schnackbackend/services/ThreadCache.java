@@ -0,0 +1,295 @@
+package com.schnackag.schnackbackend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.schnackag.schnackbackend.events.PostsCreatedEvent;
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/* Dieser Cache liegt vor den Lese-Operationen des ThreadService für Thread-Metadaten und Seiten von Posts.
+ * Die erste Stufe ist ein lokaler Caffeine-Cache (W-TinyLFU), der die häufig gelesenen Threads hält, auch wenn viele
+ * selten gelesene Threads dazwischen abgefragt werden. Die optionale zweite Stufe ist ein SharedCache, den sich alle
+ * Instanzen teilen. Der Cache wird außerhalb einer Transaktion gelesen, ein Treffer belegt also keine DB-Verbindung.
+ *
+ * Invalidierung: Jeder Thread hat zwei Versionen. version ändert sich, wenn sich bestehende Daten ändern (z.B. ein
+ * Post gelöscht wird), appendVersion, wenn ein Post hinzukommt. Da Posts aufsteigend sortiert sind, verändert ein
+ * neuer Post nur die letzte Seite (ohne nextCursor). Volle Seiten bleiben deshalb beim Schreiben gültig. Die
+ * Metadaten eines Threads enthalten die Zähler der Posts und werden deshalb wie die letzte Seite behandelt.
+ * Der PostCounterService erhöht die appendVersion ein weiteres Mal, nachdem er die Zähler geschrieben hat.
+ * Jeder Eintrag merkt sich die Versionen, die vor dem Laden gelesen wurden, und ist ungültig, sobald eine neuere
+ * Version existiert. Alle lokalen Versionen stammen aus einem gemeinsamen, steigenden Zähler, damit eine verdrängte
+ * und neu angelegte Version nie einer alten gleicht.
+ *
+ * Request Coalescing: Bei einem Fehlzugriff wird ein Future in den Cache gelegt, bevor die Datenbank gefragt wird.
+ * Alle gleichzeitigen Anfragen für denselben Schlüssel warten auf dieses Future, es gibt also nur eine Abfrage.
+ *
+ * Jede Invalidierung erhöht zusätzlich die gemeinsamen Zähler im SharedCache. Einträge beider Stufen merken sich auch
+ * diese und werden bei jedem Lesen damit verglichen, Änderungen anderer Instanzen gelten also sofort. Ein Treffer der
+ * ersten Stufe kostet dafür zwei Zugriffe auf den SharedCache, spart aber weiterhin die Datenbank und das
+ * Serialisieren. Ohne SharedCache erfährt eine Instanz nichts von den Änderungen der anderen, ihre Einträge sind dann
+ * höchstens time-to-live veraltet.
+ *
+ * Jeder Eintrag speichert einen ETag, der beim Laden einmal berechnet wird. Der ThreadController beantwortet
+ * Anfragen mit passendem If-None-Match so mit 304, ohne die Datenbank zu lesen oder die Antwort zu serialisieren.
+ *
+ * Ein gerade invalidierter Thread wird über ReplicaRouting vom Primärsystem geladen. Sonst könnte ein Replikat,
+ * das den neuen Post noch nicht kennt, den alten Stand unter der neuen Version in den Cache legen. */
+@Service
+public class ThreadCache {
+	private static final String VERSION_PREFIX = "thread-version:";
+	private static final String APPEND_VERSION_PREFIX = "thread-append-version:";
+
+	private final ThreadService threadService;
+	private final SharedCache sharedCache;
+	private final ReplicaRouting replicaRouting;
+	private final ObjectMapper objectMapper;
+	private final AsyncCache<String, CachedValue> local;
+	private final Cache<UUID, ThreadVersion> versions;
+	private final AtomicLong versionSequence = new AtomicLong();
+
+	public ThreadCache(
+			ThreadService threadService,
+			ObjectProvider<SharedCache> sharedCache,
+			ReplicaRouting replicaRouting,
+			ObjectMapper objectMapper,
+			@Value("${schnack.threads.cache.maximum-size:10000}") long maximumSize,
+			@Value("${schnack.threads.cache.time-to-live:1m}") Duration timeToLive) {
+		this.threadService = threadService;
+		this.sharedCache = sharedCache.getIfAvailable();
+		this.replicaRouting = replicaRouting;
+		this.objectMapper = objectMapper;
+		this.local = Caffeine
+				.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(timeToLive)
+				.recordStats()
+				.buildAsync();
+		this.versions = Caffeine
+				.newBuilder()
+				.maximumSize(maximumSize)
+				.build();
+	}
+
+	public ThreadResponse getThread(UUID threadId) {
+		return getThreadEntry(threadId).getValue();
+	}
+
+	public PageResponse<PostResponse> getPosts(UUID threadId, String cursor, int size) {
+		return getPostsEntry(threadId, cursor, size).getValue();
+	}
+
+	/* Wie getThread, zusätzlich mit dem beim Laden berechneten ETag. */
+	public Entry<ThreadResponse> getThreadEntry(UUID threadId) {
+		return get("thread:" + threadId, threadId, () -> threadService.getThread(threadId));
+	}
+
+	/* Die Größe wird vor dem Schlüssel begrenzt, sonst legt jede Größe über dem Maximum dieselbe Seite erneut ab. */
+	public Entry<PageResponse<PostResponse>> getPostsEntry(UUID threadId, String cursor, int size) {
+		int pageSize = ThreadService.clampPageSize(size);
+		return get("posts:" + threadId + ":" + cursor + ":" + pageSize, threadId, () -> threadService.getPosts(threadId, cursor, pageSize));
+	}
+
+	/* Neue Posts machen nur die letzte Seite ihres Threads ungültig. */
+	@EventListener
+	public void onPostsCreated(PostsCreatedEvent event) {
+		event.getPosts().stream().map(PostResponse::getThreadId).distinct().forEach(this::invalidateAppended);
+	}
+
+	/* Wird aufgerufen, nachdem die Zähler dieser Threads in der Datenbank aktualisiert wurden. */
+	public void onCountersUpdated(Collection<UUID> threadIds) {
+		threadIds.forEach(this::invalidateAppended);
+	}
+
+	/* Macht alle Einträge eines Threads ungültig, z.B. wenn ein Post oder der Thread gelöscht wurde. */
+	public void invalidate(UUID threadId) {
+		replicaRouting.markWritten("thread:" + threadId);
+		version(threadId).version.set(versionSequence.incrementAndGet());
+		if (sharedCache != null) {
+			sharedCache.increment(VERSION_PREFIX + threadId);
+		}
+	}
+
+	private void invalidateAppended(UUID threadId) {
+		replicaRouting.markWritten("thread:" + threadId);
+		version(threadId).appendVersion.set(versionSequence.incrementAndGet());
+		if (sharedCache != null) {
+			sharedCache.increment(APPEND_VERSION_PREFIX + threadId);
+		}
+	}
+
+	public CacheStats getStats() {
+		return local.synchronous().stats();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> Entry<T> get(String key, UUID threadId, Supplier<T> loader) {
+		ThreadVersion version = version(threadId);
+		long currentVersion = version.version.get();
+		long currentAppendVersion = version.appendVersion.get();
+		long currentSharedVersion = sharedCache != null ? sharedCache.getCounter(VERSION_PREFIX + threadId) : 0;
+		long currentSharedAppendVersion = sharedCache != null ? sharedCache.getCounter(APPEND_VERSION_PREFIX + threadId) : 0;
+
+		while (true) {
+			CompletableFuture<CachedValue> cached = local.getIfPresent(key);
+
+			if (cached == null) {
+				CompletableFuture<CachedValue> loading = new CompletableFuture<>();
+				cached = local.asMap().putIfAbsent(key, loading);
+
+				if (cached == null) {
+					try {
+						Object loaded = loadShared(key, threadId, loader, currentSharedVersion, currentSharedAppendVersion);
+						CachedValue value = new CachedValue(
+								loaded,
+								eTag(loaded),
+								currentVersion,
+								currentAppendVersion,
+								currentSharedVersion,
+								currentSharedAppendVersion);
+						loading.complete(value);
+						return new Entry<>((T) value.value, value.eTag);
+					} catch (RuntimeException e) {
+						// Fehler werden nicht gecacht, wartende Anfragen erhalten dieselbe Exception.
+						local.asMap().remove(key, loading);
+						loading.completeExceptionally(e);
+						throw e;
+					}
+				}
+			}
+
+			CachedValue value;
+			try {
+				value = cached.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException cause) {
+					throw cause;
+				}
+				throw e;
+			}
+
+			if (value.isValid(currentVersion, currentAppendVersion)
+					&& value.isSharedValid(currentSharedVersion, currentSharedAppendVersion)) {
+				return new Entry<>((T) value.value, value.eTag);
+			}
+			local.asMap().remove(key, cached);
+		}
+	}
+
+	/* Fragt die zweite Stufe, bevor die Datenbank gelesen wird. Deren Einträge werden mit den gemeinsamen
+	 * Versionen geprüft, die vor dem Lesen der ersten Stufe gelesen wurden. */
+	private Object loadShared(String key, UUID threadId, Supplier<?> loader, long sharedVersion, long sharedAppendVersion) {
+		if (sharedCache == null) {
+			return load(threadId, loader);
+		}
+
+		if (sharedCache.get(key) instanceof CachedValue value && value.isSharedValid(sharedVersion, sharedAppendVersion)) {
+			return value.value;
+		}
+
+		Object value = load(threadId, loader);
+		sharedCache.put(key, new CachedValue(value, null, 0, 0, sharedVersion, sharedAppendVersion));
+		return value;
+	}
+
+	private Object load(UUID threadId, Supplier<?> loader) {
+		return replicaRouting.read("thread:" + threadId, loader);
+	}
+
+	/* Der ETag ist ein Hash des JSON-Inhalts und hängt damit nicht von den Versionen dieser Instanz ab. Er ist schwach
+	 * (W/), da er für alle Kodierungen (JSON, CBOR, Smile, komprimiert) derselbe ist. */
+	private String eTag(Object value) {
+		try {
+			return "W/\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(value)) + "\"";
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private ThreadVersion version(UUID threadId) {
+		return versions.get(threadId, id -> new ThreadVersion(versionSequence.incrementAndGet()));
+	}
+
+	private static class ThreadVersion {
+		private final AtomicLong version;
+		private final AtomicLong appendVersion;
+
+		private ThreadVersion(long initial) {
+			this.version = new AtomicLong(initial);
+			this.appendVersion = new AtomicLong(initial);
+		}
+	}
+
+	public static class Entry<T> {
+		private final T value;
+		private final String eTag;
+
+		private Entry(T value, String eTag) {
+			this.value = value;
+			this.eTag = eTag;
+		}
+
+		public T getValue() {
+			return value;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+	}
+
+	private static class CachedValue {
+		private final Object value;
+		private final String eTag;
+		private final long version;
+		private final long appendVersion;
+		private final long sharedVersion;
+		private final long sharedAppendVersion;
+
+		/* Einträge der zweiten Stufe haben keine lokalen Versionen (0), ohne SharedCache sind die gemeinsamen 0. */
+		private CachedValue(Object value, String eTag, long version, long appendVersion, long sharedVersion, long sharedAppendVersion) {
+			this.value = value;
+			this.eTag = eTag;
+			this.version = version;
+			this.appendVersion = appendVersion;
+			this.sharedVersion = sharedVersion;
+			this.sharedAppendVersion = sharedAppendVersion;
+		}
+
+		private boolean isValid(long currentVersion, long currentAppendVersion) {
+			return isValid(version, appendVersion, currentVersion, currentAppendVersion);
+		}
+
+		private boolean isSharedValid(long currentSharedVersion, long currentSharedAppendVersion) {
+			return isValid(sharedVersion, sharedAppendVersion, currentSharedVersion, currentSharedAppendVersion);
+		}
+
+		/* Die appendVersion ist nur für die letzte Seite und die Metadaten eines Threads relevant. */
+		private boolean isValid(long version, long appendVersion, long currentVersion, long currentAppendVersion) {
+			if (version < currentVersion) {
+				return false;
+			}
+			if (value instanceof PageResponse<?> page && page.getNextCursor() != null) {
+				return true;
+			}
+			return appendVersion >= currentAppendVersion;
+		}
+	}
+}
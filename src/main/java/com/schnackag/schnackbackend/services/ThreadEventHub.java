@@ -0,0 +1,229 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.events.PostsCreatedEvent;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Der ThreadEventHub verteilt neue Posts per Server-Sent Events an alle Clients, die einen Thread abonniert haben.
+ * Eine Verbindung belegt keinen eigenen Thread: Der SseEmitter hält nur die asynchrone Anfrage offen und gesendet
+ * wird von einem gemeinsamen Thread-Pool. So können zehntausende inaktive Verbindungen offen bleiben.
+ *
+ * Jede Verbindung hat einen begrenzten Puffer. Kommt ein Client mit dem Lesen nicht hinterher und ist sein Puffer
+ * voll, wird die Verbindung geschlossen (Slow-Consumer-Dropping). Der Client kann sich danach neu verbinden und
+ * die verpassten Posts über die Keyset-Pagination nachladen.
+ *
+ * SseEmitter.send() schreibt blockierend. Liest ein Client gar nicht mehr, blockiert der sendende Thread, bis Tomcat
+ * nach server.tomcat.connection-timeout aufgibt. Damit ein solcher Client nicht die übrigen aufhält, wächst der Pool
+ * bei Bedarf bis auf sender-threads Threads. Dauert ein Schreibvorgang länger als send-timeout, wird die Verbindung
+ * als hängend geschlossen und erhält keine weiteren Posts. Pro Verbindung liegt höchstens eine Aufgabe im Pool, auch
+ * der Heartbeat wird nur vermerkt und vom nächsten Durchlauf gesendet. Der Event-Listener selbst ruft nie den
+ * SseEmitter auf und kann deshalb nicht blockieren. */
+@Slf4j
+@Service
+public class ThreadEventHub {
+	private final Map<UUID, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+	private final AtomicInteger subscriptionCount = new AtomicInteger();
+	private final ThreadPoolExecutor sender;
+	private final int bufferSize;
+	private final Duration timeout;
+	private final long sendTimeout;
+
+	public ThreadEventHub(
+			@Value("${schnack.threads.events.sender-threads:32}") int senderThreads,
+			@Value("${schnack.threads.events.buffer-size:64}") int bufferSize,
+			@Value("${schnack.threads.events.timeout:30m}") Duration timeout,
+			@Value("${schnack.threads.events.send-timeout:PT10S}") Duration sendTimeout) {
+		AtomicInteger threadNumber = new AtomicInteger();
+		/* Unbenutzte Threads werden nach einer Minute beendet. Die Warteschlange ist durch die Anzahl der
+		 * Verbindungen begrenzt, da jede Verbindung höchstens eine Aufgabe einreiht. */
+		this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "thread-events-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.sender.allowCoreThreadTimeOut(true);
+		this.bufferSize = bufferSize;
+		this.timeout = timeout;
+		this.sendTimeout = sendTimeout.toNanos();
+	}
+
+	/* Erstellt ein neues Abonnement für einen Thread. Die Authentifizierung erfolgt einmal beim Verbindungsaufbau
+	 * durch den JwtAuthenticationFilter, danach werden auf der Verbindung nur noch Events gesendet. */
+	public SseEmitter subscribe(UUID threadId) {
+		SseEmitter emitter = new SseEmitter(timeout.toMillis());
+		Subscription subscription = new Subscription(threadId, emitter, new ArrayBlockingQueue<>(bufferSize));
+
+		subscriptions.compute(threadId, (id, threadSubscriptions) -> {
+			Set<Subscription> result = threadSubscriptions != null ? threadSubscriptions : ConcurrentHashMap.newKeySet();
+			result.add(subscription);
+			return result;
+		});
+		subscriptionCount.incrementAndGet();
+
+		emitter.onCompletion(() -> unsubscribe(subscription));
+		emitter.onTimeout(() -> unsubscribe(subscription));
+		emitter.onError(error -> unsubscribe(subscription));
+
+		return emitter;
+	}
+
+	/* Verteilt neu gespeicherte Posts an die Abonnenten ihres Threads. Hier wird nur in die Puffer geschrieben,
+	 * das eigentliche Senden übernimmt der Sender-Pool. */
+	@EventListener
+	public void onPostsCreated(PostsCreatedEvent event) {
+		long now = System.nanoTime();
+		for (PostResponse post : event.getPosts()) {
+			Set<Subscription> threadSubscriptions = subscriptions.get(post.getThreadId());
+			if (threadSubscriptions == null) {
+				continue;
+			}
+
+			for (Subscription subscription : threadSubscriptions) {
+				if (isStuck(subscription, now)) {
+					log.debug("Dropping stuck subscriber of thread {}.", subscription.threadId);
+					drop(subscription);
+				} else if (subscription.buffer.offer(post)) {
+					schedule(subscription);
+				} else {
+					log.debug("Dropping slow subscriber of thread {}.", subscription.threadId);
+					drop(subscription);
+				}
+			}
+		}
+	}
+
+	/* Sendet regelmäßig einen Kommentar an alle Verbindungen. Das hält Proxies davon ab, inaktive Verbindungen zu
+	 * schließen, und entfernt Verbindungen, deren Client nicht mehr erreichbar ist. */
+	@Scheduled(fixedDelayString = "${schnack.threads.events.heartbeat-interval:PT30S}")
+	public void heartbeat() {
+		subscriptions.values().forEach(threadSubscriptions -> threadSubscriptions.forEach(subscription -> {
+			subscription.heartbeatDue = true;
+			schedule(subscription);
+		}));
+	}
+
+	/* Schließt alle Verbindungen, deren Schreibvorgang länger als send-timeout hängt. */
+	@Scheduled(fixedDelayString = "${schnack.threads.events.send-timeout:PT10S}")
+	public void dropStuckSubscribers() {
+		long now = System.nanoTime();
+		subscriptions.values().forEach(threadSubscriptions -> threadSubscriptions.forEach(subscription -> {
+			if (isStuck(subscription, now)) {
+				log.debug("Dropping stuck subscriber of thread {}.", subscription.threadId);
+				drop(subscription);
+			}
+		}));
+	}
+
+	public int getSubscriptionCount() {
+		return subscriptionCount.get();
+	}
+
+	private boolean isStuck(Subscription subscription, long now) {
+		long sendingSince = subscription.sendingSince;
+		return sendingSince != 0 && now - sendingSince > sendTimeout;
+	}
+
+	private void schedule(Subscription subscription) {
+		if (subscription.scheduled.compareAndSet(false, true)) {
+			sender.execute(() -> drain(subscription));
+		}
+	}
+
+	/* Sendet den fälligen Heartbeat und alle Posts aus dem Puffer einer Verbindung oder schließt sie, wenn sie
+	 * verworfen wurde. Pro Verbindung läuft höchstens ein drain() gleichzeitig. */
+	private void drain(Subscription subscription) {
+		try {
+			if (subscription.dropped) {
+				subscription.emitter.complete();
+				return;
+			}
+			if (subscription.heartbeatDue) {
+				subscription.heartbeatDue = false;
+				send(subscription, SseEmitter.event().comment("heartbeat"));
+			}
+			PostResponse post;
+			while (!subscription.dropped && (post = subscription.buffer.poll()) != null) {
+				send(subscription, SseEmitter.event().name("post").id(post.getId().toString()).data(post));
+			}
+		} catch (IOException | IllegalStateException e) {
+			unsubscribe(subscription);
+			return;
+		} finally {
+			subscription.scheduled.set(false);
+		}
+
+		// Posts, die während des Sendens angekommen sind, werden in einem neuen Durchlauf gesendet.
+		if (subscription.dropped || subscription.heartbeatDue || !subscription.buffer.isEmpty()) {
+			schedule(subscription);
+		}
+	}
+
+	private void send(Subscription subscription, SseEmitter.SseEventBuilder event) throws IOException {
+		subscription.sendingSince = System.nanoTime();
+		try {
+			subscription.emitter.send(event);
+		} finally {
+			subscription.sendingSince = 0;
+		}
+	}
+
+	/* Die Verbindung erhält keine Posts mehr und wird vom Sender-Pool geschlossen. Hängt gerade ein Schreibvorgang,
+	 * geschieht das erst, wenn er zurückkehrt. */
+	private void drop(Subscription subscription) {
+		subscription.dropped = true;
+		unsubscribe(subscription);
+		schedule(subscription);
+	}
+
+	private void unsubscribe(Subscription subscription) {
+		Set<Subscription> threadSubscriptions = subscriptions.get(subscription.threadId);
+		if (threadSubscriptions != null && threadSubscriptions.remove(subscription)) {
+			subscriptionCount.decrementAndGet();
+			subscriptions.computeIfPresent(subscription.threadId, (id, set) -> set.isEmpty() ? null : set);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		subscriptions.values().forEach(threadSubscriptions -> threadSubscriptions.forEach(subscription -> subscription.emitter.complete()));
+		sender.shutdown();
+	}
+
+	private static class Subscription {
+		private final UUID threadId;
+		private final SseEmitter emitter;
+		private final BlockingQueue<PostResponse> buffer;
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private volatile boolean heartbeatDue;
+		private volatile boolean dropped;
+
+		/* System.nanoTime() zu Beginn des laufenden Schreibvorgangs oder 0. */
+		private volatile long sendingSince;
+
+		private Subscription(UUID threadId, SseEmitter emitter, BlockingQueue<PostResponse> buffer) {
+			this.threadId = threadId;
+			this.emitter = emitter;
+			this.buffer = buffer;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import com.schnackag.schnackbackend.events.ThreadCreatedEvent;
+import com.schnackag.schnackbackend.exceptions.ThreadNotFoundException;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/* Dieser Service stellt die Lese-Operationen für Threads und Posts sowie das Erstellen von Threads bereit.
+ * Neue Posts werden über den PostIngestionService gesammelt geschrieben. */
+@Service
+@RequiredArgsConstructor
+public class ThreadService {
+	public static final int DEFAULT_PAGE_SIZE = 50;
+	public static final int MAXIMUM_PAGE_SIZE = 100;
+
+	private static final Comparator<ThreadResponse> NEWEST_FIRST = Comparator
+			.comparing(ThreadResponse::getCreatedAt)
+			.thenComparing(ThreadResponse::getId)
+			.reversed();
+
+	private final ThreadRepository threadRepository;
+	private final PostRepository postRepository;
+	private final ShardRouting shardRouting;
+	private final ApplicationEventPublisher eventPublisher;
+
+	/* Erstellt einen neuen Thread. Die ID wird vorher erzeugt, da sie mit Sharding den Shard bestimmt. Der Ersteller
+	 * wird nur über seine ID gesetzt und nicht aus der Datenbank geladen. Listener des ThreadCreatedEvent erhalten den
+	 * Thread nach dem Commit. */
+	@Transactional
+	public ThreadResponse createThread(AuthenticatedUser owner, String title) {
+		UUID threadId = UuidV7Generator.generate();
+		// Wie @CreationTimestamp, auf die Genauigkeit von datetime(6) gekürzt, damit der Cursor zur Datenbank passt.
+		Instant createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+		shardRouting.replicateUsers(shardRouting.shardOf(threadId), Map.of(owner.getId(), owner.getUsername()));
+		threadRepository.insertThread(threadId, title, createdAt, owner.getId());
+
+		ThreadResponse response = ThreadResponse
+				.builder()
+				.id(threadId)
+				.title(title)
+				.owner(owner.getUsername())
+				.createdAt(createdAt)
+				.build();
+		eventPublisher.publishEvent(new ThreadCreatedEvent(response, owner.getId()));
+		return response;
+	}
+
+	/* Gibt eine Seite der Thread-Liste zurück, die neuesten Threads zuerst. Mit Sharding liest jeder Shard eine ganze
+	 * Seite ab dem Cursor, daraus werden die neuesten limit Threads zusammengeführt. Jeder Shard liest in der
+	 * Transaktion des Repositorys. */
+	public PageResponse<ThreadResponse> getThreads(String cursor, int size) {
+		Limit limit = Limit.of(clampPageSize(size));
+		List<List<ThreadResponse>> pages;
+
+		if (cursor == null) {
+			pages = shardRouting.scatter(() -> threadRepository.findLatest(limit));
+		} else {
+			KeysetCursor keysetCursor = KeysetCursor.decode(cursor);
+			pages = shardRouting.scatter(() -> threadRepository.findLatestBefore(keysetCursor.getCreatedAt(), keysetCursor.getId(), limit));
+		}
+		List<ThreadResponse> threads = ShardRouting.merge(pages, NEWEST_FIRST, limit.max());
+
+		return page(threads, limit, thread -> new KeysetCursor(thread.getCreatedAt(), thread.getId()));
+	}
+
+	@Transactional(readOnly = true)
+	public ThreadResponse getThread(UUID threadId) {
+		return threadRepository.findResponseById(threadId)
+				.orElseThrow(ThreadNotFoundException::new);
+	}
+
+	/* Gibt eine Seite der Posts eines Threads zurück, in der Reihenfolge, in der sie geschrieben wurden. Ob der Thread
+	 * existiert, wird nur bei einer leeren Seite geprüft, mit und ohne Cursor. Eine Seite mit Posts belegt das bereits. */
+	@Transactional(readOnly = true)
+	public PageResponse<PostResponse> getPosts(UUID threadId, String cursor, int size) {
+		Limit limit = Limit.of(clampPageSize(size));
+		List<PostResponse> posts;
+
+		if (cursor == null) {
+			posts = postRepository.findByThread(threadId, limit);
+		} else {
+			KeysetCursor keysetCursor = KeysetCursor.decode(cursor);
+			posts = postRepository.findByThreadAfter(threadId, keysetCursor.getCreatedAt(), keysetCursor.getId(), limit);
+		}
+		if (posts.isEmpty() && !threadRepository.existsById(threadId)) {
+			throw new ThreadNotFoundException();
+		}
+
+		return page(posts, limit, post -> new KeysetCursor(post.getCreatedAt(), post.getId()));
+	}
+
+	/* Ist die Seite voll, zeigt der nächste Cursor auf ihren letzten Eintrag. Andernfalls gibt es keine weitere Seite. */
+	private static <T> PageResponse<T> page(List<T> items, Limit limit, Function<T, KeysetCursor> cursorOf) {
+		String nextCursor = null;
+
+		if (items.size() == limit.max()) {
+			nextCursor = cursorOf.apply(items.get(items.size() - 1)).encode();
+		}
+
+		return PageResponse
+				.<T>builder()
+				.items(items)
+				.nextCursor(nextCursor)
+				.build();
+	}
+
+	static int clampPageSize(int size) {
+		return Math.max(1, Math.min(size, MAXIMUM_PAGE_SIZE));
+	}
+}
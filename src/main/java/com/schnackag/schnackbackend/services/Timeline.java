@@ -0,0 +1,278 @@
+package com.schnackag.schnackbackend.services;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/* Die Timeline eines Benutzers: die zuletzt aktiven Threads, die er erstellt oder in denen er geschrieben hat. Die
+ * Einträge liegen in einem Ringpuffer aus long-Arrays (die UUID als zwei longs, die Aktivität in Epoch-Nanosekunden),
+ * nicht als Objekte. Die Arrays wachsen bis capacity, danach verdrängt ein neuer Eintrag den ältesten. Ein Thread steht
+ * höchstens einmal im Ring, neue Aktivität verschiebt ihn an das Ende. Die Aktivität steigt im Ring streng monoton,
+ * eine Seite wird deshalb per binärer Suche gefunden.
+ *
+ * Threads mit sehr vielen Beteiligten (hot) stehen nicht im Ring, sondern in einer kleinen Liste von höchstens
+ * maximumHotThreads Threads. Deren Aktivität liest der TimelineService beim Lesen aus seiner eigenen Tabelle.
+ * Alle Methoden sind synchronisiert, geschrieben wird vom TimelineService, gelesen von den Anfragen. */
+public class Timeline {
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final int capacity;
+	private final int maximumHotThreads;
+	private final long createdAt;
+	private long[] mostSignificantBits;
+	private long[] leastSignificantBits;
+	private long[] activities;
+	private int start;
+	private int size;
+	private long[] hotThreads = new long[0];
+	private int hotSize;
+	private long hotVersion;
+
+	public Timeline(int capacity, int maximumHotThreads, long createdAt) {
+		this.capacity = capacity;
+		this.maximumHotThreads = maximumHotThreads;
+		this.createdAt = createdAt;
+		int initialCapacity = Math.min(capacity, INITIAL_CAPACITY);
+		this.mostSignificantBits = new long[initialCapacity];
+		this.leastSignificantBits = new long[initialCapacity];
+		this.activities = new long[initialCapacity];
+	}
+
+	/* Der Zeitpunkt (Epoch-Millisekunden), zu dem die Timeline aus der Datenbank aufgebaut wurde. */
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	public synchronized int size() {
+		return size + hotSize / 2;
+	}
+
+	/* Setzt einen Thread mit neuer Aktivität an das Ende. Ist die Aktivität nicht neuer als der letzte Eintrag
+	 * (z.B. bei abweichenden Uhren), wird sie knapp dahinter einsortiert, damit der Ring sortiert bleibt. */
+	public synchronized void add(UUID threadId, long activity) {
+		long msb = threadId.getMostSignificantBits();
+		long lsb = threadId.getLeastSignificantBits();
+		if (indexOfHot(msb, lsb) >= 0) {
+			return;
+		}
+
+		int index = indexOf(msb, lsb);
+		if (index >= 0) {
+			removeAt(index);
+		}
+
+		if (size > 0) {
+			activity = Math.max(activity, activities[physical(size - 1)] + 1);
+		}
+		if (size == capacity) {
+			start = (start + 1) % mostSignificantBits.length;
+			size--;
+		} else if (size == mostSignificantBits.length) {
+			grow();
+		}
+
+		int position = physical(size++);
+		mostSignificantBits[position] = msb;
+		leastSignificantBits[position] = lsb;
+		activities[position] = activity;
+	}
+
+	/* Verschiebt einen Thread aus dem Ring in die Liste der hot Threads. Ist die Liste voll, wird der am längsten
+	 * darin stehende Thread verdrängt. */
+	public synchronized void addHot(UUID threadId) {
+		long msb = threadId.getMostSignificantBits();
+		long lsb = threadId.getLeastSignificantBits();
+		int index = indexOf(msb, lsb);
+		if (index >= 0) {
+			removeAt(index);
+		}
+		if (indexOfHot(msb, lsb) >= 0 || maximumHotThreads == 0) {
+			return;
+		}
+
+		if (hotSize == 2 * maximumHotThreads) {
+			System.arraycopy(hotThreads, 2, hotThreads, 0, hotSize - 2);
+			hotSize -= 2;
+		} else if (hotSize == hotThreads.length) {
+			hotThreads = Arrays.copyOf(hotThreads, Math.min(2 * maximumHotThreads, Math.max(2, hotThreads.length * 2)));
+		}
+		hotThreads[hotSize++] = msb;
+		hotThreads[hotSize++] = lsb;
+	}
+
+	/* Entfernt einen Thread, z.B. wenn er gelöscht wurde. */
+	public synchronized void remove(UUID threadId) {
+		long msb = threadId.getMostSignificantBits();
+		long lsb = threadId.getLeastSignificantBits();
+		int index = indexOf(msb, lsb);
+		if (index >= 0) {
+			removeAt(index);
+		}
+
+		int hotIndex = indexOfHot(msb, lsb);
+		if (hotIndex >= 0) {
+			System.arraycopy(hotThreads, hotIndex + 2, hotThreads, hotIndex, hotSize - hotIndex - 2);
+			hotSize -= 2;
+		}
+	}
+
+	/* Gibt höchstens limit Einträge des Rings zurück, die in der Sortierung (Aktivität, ID) absteigend nach dem
+	 * Schlüssel (beforeActivity, beforeId) kommen. */
+	public synchronized List<Entry> read(long beforeActivity, UUID beforeId, int limit) {
+		// Anzahl der Einträge vor dem Schlüssel. Da die Aktivität streng monoton steigt, reicht bei Gleichheit die ID.
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int position = physical(middle);
+			long activity = activities[position];
+			boolean before = activity < beforeActivity || (activity == beforeActivity
+					&& new UUID(mostSignificantBits[position], leastSignificantBits[position]).compareTo(beforeId) < 0);
+			if (before) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		List<Entry> entries = new ArrayList<>(Math.min(low, limit));
+		for (int i = low - 1; i >= 0 && entries.size() < limit; i--) {
+			int position = physical(i);
+			entries.add(new Entry(new UUID(mostSignificantBits[position], leastSignificantBits[position]), activities[position]));
+		}
+		return entries;
+	}
+
+	public synchronized List<UUID> getHotThreads() {
+		List<UUID> threads = new ArrayList<>(hotSize / 2);
+		for (int i = 0; i < hotSize; i += 2) {
+			threads.add(new UUID(hotThreads[i], hotThreads[i + 1]));
+		}
+		return threads;
+	}
+
+	/* Verschiebt alle Threads des Rings, die seit dem letzten Aufruf hot geworden sind, in die Liste der hot Threads.
+	 * Der Ring wird nur durchsucht, wenn sich version geändert hat. */
+	public synchronized void refreshHot(long version, Predicate<UUID> isHot) {
+		if (hotVersion == version) {
+			return;
+		}
+
+		List<UUID> hot = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			int position = physical(i);
+			UUID threadId = new UUID(mostSignificantBits[position], leastSignificantBits[position]);
+			if (isHot.test(threadId)) {
+				hot.add(threadId);
+			}
+		}
+		hot.forEach(this::addHot);
+		hotVersion = version;
+	}
+
+	/* Schreibt die Timeline für den Snapshot des TimelineService, die Einträge des Rings vom ältesten zum neuesten. */
+	public synchronized void writeTo(DataOutput output) throws IOException {
+		output.writeLong(createdAt);
+		output.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			int position = physical(i);
+			output.writeLong(mostSignificantBits[position]);
+			output.writeLong(leastSignificantBits[position]);
+			output.writeLong(activities[position]);
+		}
+		output.writeInt(hotSize / 2);
+		for (int i = 0; i < hotSize; i++) {
+			output.writeLong(hotThreads[i]);
+		}
+	}
+
+	/* Liest eine mit writeTo geschriebene Timeline. Ist capacity inzwischen kleiner, fallen die ältesten Einträge weg. */
+	public static Timeline readFrom(DataInput input, int capacity, int maximumHotThreads) throws IOException {
+		Timeline timeline = new Timeline(capacity, maximumHotThreads, input.readLong());
+		int size = input.readInt();
+		for (int i = 0; i < size; i++) {
+			timeline.add(new UUID(input.readLong(), input.readLong()), input.readLong());
+		}
+		int hotSize = input.readInt();
+		for (int i = 0; i < hotSize; i++) {
+			timeline.addHot(new UUID(input.readLong(), input.readLong()));
+		}
+		return timeline;
+	}
+
+	private int physical(int index) {
+		return (start + index) % mostSignificantBits.length;
+	}
+
+	/* Sucht vom neuesten Eintrag aus, da aktive Threads meist am Ende stehen. */
+	private int indexOf(long msb, long lsb) {
+		for (int i = size - 1; i >= 0; i--) {
+			int position = physical(i);
+			if (mostSignificantBits[position] == msb && leastSignificantBits[position] == lsb) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int indexOfHot(long msb, long lsb) {
+		for (int i = 0; i < hotSize; i += 2) {
+			if (hotThreads[i] == msb && hotThreads[i + 1] == lsb) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/* Schiebt alle neueren Einträge um eine Position nach vorne. */
+	private void removeAt(int index) {
+		for (int i = index; i < size - 1; i++) {
+			int to = physical(i);
+			int from = physical(i + 1);
+			mostSignificantBits[to] = mostSignificantBits[from];
+			leastSignificantBits[to] = leastSignificantBits[from];
+			activities[to] = activities[from];
+		}
+		size--;
+	}
+
+	private void grow() {
+		int length = Math.min(capacity, mostSignificantBits.length * 2);
+		long[] newMostSignificantBits = new long[length];
+		long[] newLeastSignificantBits = new long[length];
+		long[] newActivities = new long[length];
+		for (int i = 0; i < size; i++) {
+			int position = physical(i);
+			newMostSignificantBits[i] = mostSignificantBits[position];
+			newLeastSignificantBits[i] = leastSignificantBits[position];
+			newActivities[i] = activities[position];
+		}
+		mostSignificantBits = newMostSignificantBits;
+		leastSignificantBits = newLeastSignificantBits;
+		activities = newActivities;
+		start = 0;
+	}
+
+	public static class Entry {
+		private final UUID threadId;
+		private final long activity;
+
+		public Entry(UUID threadId, long activity) {
+			this.threadId = threadId;
+			this.activity = activity;
+		}
+
+		public UUID getThreadId() {
+			return threadId;
+		}
+
+		public long getActivity() {
+			return activity;
+		}
+	}
+}
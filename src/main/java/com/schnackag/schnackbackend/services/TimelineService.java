@@ -0,0 +1,463 @@
+package com.schnackag.schnackbackend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.schnackag.schnackbackend.events.PostsCreatedEvent;
+import com.schnackag.schnackbackend.events.ThreadCreatedEvent;
+import com.schnackag.schnackbackend.exceptions.ThreadNotFoundException;
+import com.schnackag.schnackbackend.repositories.PostReference;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadActivity;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/* Dieser Service hält für jeden Benutzer eine Timeline der zuletzt aktiven Threads, die er erstellt oder in denen er
+ * geschrieben hat (Fan-out-on-write). Jeder neue Post wird über einen eigenen Thread (timeline-fan-out) in die
+ * Timelines aller Beteiligten des Threads geschrieben. Die Beteiligten eines Threads werden beim ersten Post nach dem
+ * Start einmal aus der Datenbank gelesen und danach im Speicher fortgeschrieben. Eine Seite der Timeline wird ohne
+ * SQL aus dem Ringpuffer gelesen, die Threads selbst kommen aus dem ThreadCache.
+ *
+ * Hat ein Thread mehr als fan-out-limit Beteiligte, wird er hot: Neue Posts schreiben dann nur noch seine Aktivität
+ * in eine gemeinsame Tabelle, statt alle Timelines zu ändern. Die Timelines der Beteiligten enthalten nur noch einen
+ * Verweis auf den Thread, dessen Aktivität beim Lesen eingemischt wird (Fan-out-on-read).
+ *
+ * Verschiebt die Moderation Posts, ändern sich die Beteiligten und die Aktivität beider Threads. Die Timelines aller
+ * Beteiligten werden dann verworfen und beim nächsten Lesen neu aufgebaut, statt jeden Ring einzeln zu korrigieren.
+ *
+ * Es werden nur die Timelines von maximum-users Benutzern gehalten. Ist eine Timeline nicht im Speicher, wird sie beim
+ * Lesen aus der Datenbank aufgebaut. Wie beim ThreadCache sehen die Timelines nur die Posts dieser Instanz und werden
+ * deshalb nach time-to-live neu aufgebaut. Alle snapshot-interval und beim Herunterfahren werden die Timelines in eine
+ * Datei geschrieben und beim nächsten Start daraus gelesen, sofern sie jünger als time-to-live sind. */
+@Slf4j
+@Service
+public class TimelineService {
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final UUID MAXIMUM_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+	private static final Comparator<Timeline.Entry> NEWEST_FIRST = Comparator
+			.comparingLong(Timeline.Entry::getActivity)
+			.thenComparing(Timeline.Entry::getThreadId)
+			.reversed();
+	private static final Comparator<ThreadActivity> MOST_ACTIVE_FIRST = Comparator
+			.comparing(ThreadActivity::getActivity)
+			.thenComparing(ThreadActivity::getId)
+			.reversed();
+
+	private final ThreadRepository threadRepository;
+	private final PostRepository postRepository;
+	private final ThreadCache threadCache;
+	private final ShardRouting shardRouting;
+	private final TransactionTemplate transactionTemplate;
+	private final Cache<UUID, Timeline> timelines;
+	private final Cache<UUID, Participants> participants;
+	private final Map<UUID, AtomicLong> hotThreads = new ConcurrentHashMap<>();
+	private final AtomicLong hotVersion = new AtomicLong();
+	private final ExecutorService fanOut;
+	private final int capacity;
+	private final int maximumHotThreads;
+	private final int fanOutLimit;
+	private final Duration timeToLive;
+	private final Path snapshot;
+
+	public TimelineService(
+			ThreadRepository threadRepository,
+			PostRepository postRepository,
+			ThreadCache threadCache,
+			ShardRouting shardRouting,
+			PlatformTransactionManager transactionManager,
+			@Value("${schnack.timeline.capacity:200}") int capacity,
+			@Value("${schnack.timeline.maximum-hot-threads:32}") int maximumHotThreads,
+			@Value("${schnack.timeline.fan-out-limit:1000}") int fanOutLimit,
+			@Value("${schnack.timeline.maximum-users:20000}") long maximumUsers,
+			@Value("${schnack.timeline.maximum-threads:20000}") long maximumThreads,
+			@Value("${schnack.timeline.time-to-live:1h}") Duration timeToLive,
+			@Value("${schnack.timeline.snapshot:${java.io.tmpdir}/schnack-timelines.bin}") Path snapshot) {
+		this.threadRepository = threadRepository;
+		this.postRepository = postRepository;
+		this.threadCache = threadCache;
+		this.shardRouting = shardRouting;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		this.timelines = Caffeine
+				.newBuilder()
+				.maximumSize(maximumUsers)
+				.expireAfter(new Expiry<UUID, Timeline>() {
+					// Die Timeline wird nach dem Aufbau nur verändert, nicht ersetzt. Sie läuft also time-to-live nach dem
+					// Aufbau ab, bei einem Snapshot entsprechend früher.
+					@Override
+					public long expireAfterCreate(UUID userId, Timeline timeline, long currentTime) {
+						return timeToLive.toNanos();
+					}
+
+					@Override
+					public long expireAfterUpdate(UUID userId, Timeline timeline, long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+
+					@Override
+					public long expireAfterRead(UUID userId, Timeline timeline, long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.build();
+		this.participants = Caffeine
+				.newBuilder()
+				.maximumSize(maximumThreads)
+				.build();
+		this.fanOut = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "timeline-fan-out");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.capacity = Math.max(1, capacity);
+		this.maximumHotThreads = maximumHotThreads;
+		this.fanOutLimit = fanOutLimit;
+		this.timeToLive = timeToLive;
+		this.snapshot = snapshot;
+		readSnapshot();
+	}
+
+	/* Gibt eine Seite der Timeline zurück, die zuletzt aktiven Threads zuerst. Der Cursor ist ein KeysetCursor über
+	 * (Aktivität, Thread-ID). Gelöschte Threads werden übersprungen und aus der Timeline entfernt. */
+	public PageResponse<ThreadResponse> getTimeline(UUID userId, String cursor, int size) {
+		int pageSize = Math.max(1, Math.min(size, ThreadService.MAXIMUM_PAGE_SIZE));
+		long beforeActivity = Long.MAX_VALUE;
+		UUID beforeId = MAXIMUM_ID;
+		if (cursor != null) {
+			KeysetCursor keysetCursor = KeysetCursor.decode(cursor);
+			beforeActivity = epochNanos(keysetCursor.getCreatedAt());
+			beforeId = keysetCursor.getId();
+		}
+
+		Timeline timeline = timelines.get(userId, this::loadTimeline);
+		timeline.refreshHot(hotVersion.get(), hotThreads::containsKey);
+
+		// Die Seite aus dem Ring wird mit den hot Threads zusammengeführt, davon gibt es höchstens maximum-hot-threads.
+		List<Timeline.Entry> entries = new ArrayList<>(timeline.read(beforeActivity, beforeId, pageSize + 1));
+		for (UUID threadId : timeline.getHotThreads()) {
+			AtomicLong activity = hotThreads.get(threadId);
+			if (activity != null) {
+				Timeline.Entry entry = new Timeline.Entry(threadId, activity.get());
+				if (NEWEST_FIRST.compare(entry, new Timeline.Entry(beforeId, beforeActivity)) > 0) {
+					entries.add(entry);
+				}
+			}
+		}
+		entries.sort(NEWEST_FIRST);
+
+		List<ThreadResponse> threads = new ArrayList<>(pageSize);
+		for (Timeline.Entry entry : entries.subList(0, Math.min(pageSize, entries.size()))) {
+			try {
+				threads.add(threadCache.getThread(entry.getThreadId()));
+			} catch (ThreadNotFoundException e) {
+				timeline.remove(entry.getThreadId());
+			}
+		}
+
+		String nextCursor = null;
+		if (entries.size() > pageSize) {
+			Timeline.Entry last = entries.get(pageSize - 1);
+			nextCursor = new KeysetCursor(instant(last.getActivity()), last.getThreadId()).encode();
+		}
+		return PageResponse.<ThreadResponse>builder().items(threads).nextCursor(nextCursor).build();
+	}
+
+	@EventListener
+	public void onPostsCreated(PostsCreatedEvent event) {
+		fanOut.execute(() -> event.getPosts().forEach(this::fanOut));
+	}
+
+	/* Wird von der Moderation nach dem Commit eines Stücks verschobener Posts aufgerufen. */
+	public void onPostsMoved(UUID sourceThreadId, UUID targetThreadId, List<PostReference> posts) {
+		fanOut.execute(() -> moved(sourceThreadId, targetThreadId, posts));
+	}
+
+	/* Der Ersteller ist der erste Beteiligte. Die Beteiligten eines neuen Threads müssen also nicht gelesen werden. */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onThreadCreated(ThreadCreatedEvent event) {
+		ThreadResponse thread = event.getThread();
+		fanOut.execute(() -> {
+			participants.asMap().computeIfAbsent(thread.getId(), threadId -> new Participants()).add(event.getOwnerId());
+			Timeline timeline = timelines.getIfPresent(event.getOwnerId());
+			if (timeline != null) {
+				timeline.add(thread.getId(), epochNanos(thread.getCreatedAt()));
+			}
+		});
+	}
+
+	@Scheduled(fixedDelayString = "${schnack.timeline.snapshot-interval:PT5M}", initialDelayString = "${schnack.timeline.snapshot-interval:PT5M}")
+	public void scheduleSnapshot() {
+		fanOut.execute(this::writeSnapshot);
+	}
+
+	/* Wartet auf die ausstehenden Posts, damit diese im Snapshot enthalten sind. */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		fanOut.shutdown();
+		if (!fanOut.awaitTermination(10, TimeUnit.SECONDS)) {
+			fanOut.shutdownNow();
+		}
+		writeSnapshot();
+	}
+
+	public long getTimelineCount() {
+		return timelines.estimatedSize();
+	}
+
+	public int getHotThreadCount() {
+		return hotThreads.size();
+	}
+
+	/* Läuft nur im Thread timeline-fan-out, die Beteiligten werden also nicht gleichzeitig verändert. */
+	private void fanOut(PostResponse post) {
+		UUID threadId = post.getThreadId();
+		long activity = epochNanos(post.getCreatedAt());
+
+		AtomicLong hotActivity = hotThreads.get(threadId);
+		if (hotActivity != null) {
+			hotActivity.accumulateAndGet(activity, Math::max);
+			Timeline timeline = timelines.getIfPresent(post.getAuthorId());
+			if (timeline != null) {
+				timeline.addHot(threadId);
+			}
+			return;
+		}
+
+		Participants threadParticipants = participants.get(threadId, this::loadParticipants);
+		threadParticipants.add(post.getAuthorId());
+		if (threadParticipants.size() > fanOutLimit) {
+			markHot(threadId, threadParticipants, activity);
+			return;
+		}
+
+		threadParticipants.forEach(userId -> {
+			Timeline timeline = timelines.getIfPresent(userId);
+			if (timeline != null) {
+				timeline.add(threadId, activity);
+			}
+		});
+	}
+
+	/* Läuft im Thread timeline-fan-out, nach dem Commit. Die Beteiligten beider Threads werden deshalb mit dem neuen
+	 * Stand aus der Datenbank gelesen, die Autoren der verschobenen Posts kommen dazu. Ein hot Ziel-Thread übernimmt die
+	 * Aktivität der verschobenen Posts, falls sie neuer ist. Die Aktivität eines hot Quell-Threads bleibt bis zum
+	 * Neustart bestehen, auch wenn sein neuester Post verschoben wurde. */
+	private void moved(UUID sourceThreadId, UUID targetThreadId, List<PostReference> posts) {
+		Set<UUID> users = new HashSet<>();
+		long activity = Long.MIN_VALUE;
+		for (PostReference post : posts) {
+			if (post.getAuthorId() != null) {
+				users.add(post.getAuthorId());
+			}
+			activity = Math.max(activity, epochNanos(post.getCreatedAt()));
+		}
+
+		AtomicLong hotActivity = hotThreads.get(targetThreadId);
+		if (hotActivity != null) {
+			hotActivity.accumulateAndGet(activity, Math::max);
+		}
+		for (UUID threadId : List.of(sourceThreadId, targetThreadId)) {
+			participants.invalidate(threadId);
+			if (!hotThreads.containsKey(threadId)) {
+				participants.get(threadId, this::loadParticipants).forEach(users::add);
+			}
+		}
+		timelines.invalidateAll(users);
+	}
+
+	/* Die Timelines der bekannten Beteiligten werden sofort umgestellt. Timelines, die den Thread aus der Datenbank
+	 * kennen, stellt refreshHot beim nächsten Lesen um. */
+	private void markHot(UUID threadId, Participants threadParticipants, long activity) {
+		hotThreads.put(threadId, new AtomicLong(activity));
+		participants.invalidate(threadId);
+		hotVersion.incrementAndGet();
+		threadParticipants.forEach(userId -> {
+			Timeline timeline = timelines.getIfPresent(userId);
+			if (timeline != null) {
+				timeline.addHot(threadId);
+			}
+		});
+		log.info("Thread {} has more than {} participants, timelines read its activity on demand.", threadId, fanOutLimit);
+	}
+
+	/* Liest höchstens fan-out-limit + 1 Beteiligte, mehr werden nicht benötigt, um einen Thread als hot zu erkennen. */
+	private Participants loadParticipants(UUID threadId) {
+		return transactionTemplate.execute(status -> {
+			Participants loaded = new Participants();
+			threadRepository.findOwnerId(threadId).ifPresent(loaded::add);
+			postRepository.findAuthorIdsByThread(threadId, Limit.of(fanOutLimit + 1)).forEach(loaded::add);
+			return loaded;
+		});
+	}
+
+	/* Mit Sharding werden die aktivsten Threads jedes Shards parallel gelesen und zusammengeführt. */
+	private Timeline loadTimeline(UUID userId) {
+		List<ThreadActivity> activities = ShardRouting.merge(
+				shardRouting.scatter(() -> transactionTemplate.execute(status -> threadRepository.findActivityByParticipant(userId, Limit.of(capacity)))),
+				MOST_ACTIVE_FIRST,
+				capacity);
+		Timeline timeline = new Timeline(capacity, maximumHotThreads, System.currentTimeMillis());
+
+		// Vom ältesten zum neuesten, da Timeline.add immer an das Ende schreibt.
+		for (int i = activities.size() - 1; i >= 0; i--) {
+			ThreadActivity thread = activities.get(i);
+			if (hotThreads.containsKey(thread.getId())) {
+				timeline.addHot(thread.getId());
+			} else {
+				timeline.add(thread.getId(), epochNanos(thread.getActivity()));
+			}
+		}
+		return timeline;
+	}
+
+	/* Schreibt zuerst in eine temporäre Datei, ein abgebrochener Snapshot ersetzt also nie den letzten vollständigen. */
+	private void writeSnapshot() {
+		long start = System.nanoTime();
+		Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+		List<Map.Entry<UUID, Timeline>> entries = new ArrayList<>(timelines.asMap().entrySet());
+		List<Map.Entry<UUID, AtomicLong>> hot = new ArrayList<>(hotThreads.entrySet());
+
+		try {
+			Files.createDirectories(snapshot.toAbsolutePath().getParent());
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				output.writeInt(SNAPSHOT_VERSION);
+				output.writeInt(hot.size());
+				for (Map.Entry<UUID, AtomicLong> entry : hot) {
+					writeId(output, entry.getKey());
+					output.writeLong(entry.getValue().get());
+				}
+				output.writeInt(entries.size());
+				for (Map.Entry<UUID, Timeline> entry : entries) {
+					writeId(output, entry.getKey());
+					entry.getValue().writeTo(output);
+				}
+			}
+			Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.debug("Wrote {} timelines to {} in {} ms.", entries.size(), snapshot, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		} catch (IOException e) {
+			log.error("Could not write timeline snapshot {}.", snapshot, e);
+		}
+	}
+
+	/* Timelines, die älter als time-to-live sind, werden verworfen und bei Bedarf neu aufgebaut. */
+	private void readSnapshot() {
+		if (!Files.exists(snapshot)) {
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		int restored = 0;
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+			if (input.readInt() != SNAPSHOT_VERSION) {
+				log.warn("Ignoring timeline snapshot {} with unknown version.", snapshot);
+				return;
+			}
+
+			int hotCount = input.readInt();
+			for (int i = 0; i < hotCount; i++) {
+				hotThreads.put(readId(input), new AtomicLong(input.readLong()));
+			}
+
+			int count = input.readInt();
+			for (int i = 0; i < count; i++) {
+				UUID userId = readId(input);
+				Timeline timeline = Timeline.readFrom(input, capacity, maximumHotThreads);
+				Duration remaining = timeToLive.minusMillis(now - timeline.getCreatedAt());
+				if (!remaining.isNegative() && !remaining.isZero()) {
+					timelines.policy().expireVariably().ifPresent(policy -> policy.put(userId, timeline, remaining));
+					restored++;
+				}
+			}
+			log.info("Restored {} timelines and {} hot threads from {}.", restored, hotCount, snapshot);
+		} catch (IOException e) {
+			log.warn("Could not read timeline snapshot {}, timelines are rebuilt from the database.", snapshot, e);
+			timelines.invalidateAll();
+			hotThreads.clear();
+		}
+	}
+
+	private static void writeId(DataOutputStream output, UUID id) throws IOException {
+		output.writeLong(id.getMostSignificantBits());
+		output.writeLong(id.getLeastSignificantBits());
+	}
+
+	private static UUID readId(DataInputStream input) throws IOException {
+		return new UUID(input.readLong(), input.readLong());
+	}
+
+	private static long epochNanos(Instant instant) {
+		return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+	}
+
+	private static Instant instant(long epochNanos) {
+		return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+	}
+
+	/* Die Beteiligten eines Threads als Paare (msb, lsb) in einem wachsenden long-Array. */
+	private static class Participants {
+		private long[] ids = new long[8];
+		private int size;
+
+		private void add(UUID userId) {
+			long msb = userId.getMostSignificantBits();
+			long lsb = userId.getLeastSignificantBits();
+			for (int i = 0; i < size; i += 2) {
+				if (ids[i] == msb && ids[i + 1] == lsb) {
+					return;
+				}
+			}
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, ids.length * 2);
+			}
+			ids[size++] = msb;
+			ids[size++] = lsb;
+		}
+
+		private int size() {
+			return size / 2;
+		}
+
+		private void forEach(Consumer<UUID> action) {
+			for (int i = 0; i < size; i += 2) {
+				action.accept(new UUID(ids[i], ids[i + 1]));
+			}
+		}
+	}
+}
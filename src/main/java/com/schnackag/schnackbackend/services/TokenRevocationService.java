@@ -0,0 +1,136 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.RevokedToken;
+import com.schnackag.schnackbackend.repositories.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Dieser Service verwaltet widerrufene Tokens. Die Prüfung im JwtAuthenticationFilter kommt ohne Datenbank aus:
+ * Zuerst wird ein Bloom-Filter gefragt, der für fast alle nicht widerrufenen Tokens sofort false liefert.
+ * Nur wenn der Bloom-Filter einen Treffer meldet, wird in der exakten Menge nachgesehen.
+ *
+ * Die Tabelle revoked_token ist die gemeinsame Quelle aller Instanzen. Jede Instanz liest regelmäßig nur die
+ * Widerrufe seit der letzten Abfrage (abzüglich poll-overlap, um Uhrenabweichungen und spät committete
+ * Transaktionen abzudecken). Eigene Widerrufe sind sofort wirksam, die anderer Instanzen nach poll-interval.
+ * Abgelaufene Tokens werden regelmäßig aus der Menge und der Tabelle entfernt und der Bloom-Filter neu aufgebaut.
+ *
+ * Schreibende Methoden sind synchronisiert, damit beim Neuaufbau des Bloom-Filters kein Widerruf verloren geht.
+ * Lesende Zugriffe sind ohne Locks. */
+@Slf4j
+@Service
+public class TokenRevocationService {
+	private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+	private final RevokedTokenRepository repository;
+	private final TransactionTemplate transactionTemplate;
+	private final Duration pollOverlap;
+
+	private final Map<String, Instant> revokedTokens = new ConcurrentHashMap<>();
+	private volatile BloomFilter bloomFilter;
+	private Instant lastPoll = Instant.EPOCH;
+
+	public TokenRevocationService(
+			RevokedTokenRepository repository,
+			PlatformTransactionManager transactionManager,
+			@Value("${schnack.jwt.revocation.expected-tokens:100000}") int expectedTokens,
+			@Value("${schnack.jwt.revocation.poll-overlap:30s}") Duration pollOverlap) {
+		this.repository = repository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.pollOverlap = pollOverlap;
+		this.bloomFilter = new BloomFilter(expectedTokens, FALSE_POSITIVE_PROBABILITY);
+	}
+
+	/* Gibt true zurück, wenn das Token mit dieser ID widerrufen wurde. */
+	public boolean isRevoked(String tokenId) {
+		return tokenId != null && bloomFilter.mightContain(tokenId) && revokedTokens.containsKey(tokenId);
+	}
+
+	/* Widerruft ein Token. Gibt false zurück, wenn das Token keine ID hat oder bereits widerrufen war.
+	 * Da die ID der Primärschlüssel ist, gelingt das bei gleichzeitigen Aufrufen nur genau einem. */
+	public boolean revoke(VerifiedToken token) {
+		String tokenId = token.getId();
+		Instant expiresAt = token.getExpiration().toInstant();
+
+		if (tokenId == null || isRevoked(tokenId)) {
+			return false;
+		}
+
+		try {
+			Boolean revoked = transactionTemplate.execute(status -> {
+				if (repository.existsById(tokenId)) {
+					return false;
+				}
+
+				repository.saveAndFlush(new RevokedToken(tokenId, expiresAt, Instant.now()));
+				return true;
+			});
+			add(tokenId, expiresAt);
+			return Boolean.TRUE.equals(revoked);
+		} catch (DataIntegrityViolationException e) {
+			// Das Token wurde zur gleichen Zeit von einer anderen Anfrage widerrufen.
+			add(tokenId, expiresAt);
+			return false;
+		}
+	}
+
+	/* Liest die neuen Widerrufe aus der Datenbank. Beim Start werden so alle noch gültigen Widerrufe geladen. */
+	@PostConstruct
+	@Scheduled(fixedDelayString = "${schnack.jwt.revocation.poll-interval:PT5S}")
+	public synchronized void poll() {
+		Instant now = Instant.now();
+
+		for (RevokedToken revokedToken : repository.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(lastPoll.minus(pollOverlap), now)) {
+			add(revokedToken.getId(), revokedToken.getExpiresAt());
+		}
+		lastPoll = now;
+	}
+
+	/* Entfernt abgelaufene Tokens aus der Menge und der Datenbank und baut den Bloom-Filter neu auf,
+	 * damit dessen Fehlerwahrscheinlichkeit nicht mit der Zeit steigt. */
+	@Scheduled(fixedDelayString = "${schnack.jwt.revocation.cleanup-interval:PT1H}")
+	public synchronized void cleanup() {
+		Instant now = Instant.now();
+
+		revokedTokens.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+		rebuild(bloomFilter.getExpectedInsertions());
+
+		Integer deleted = transactionTemplate.execute(status -> repository.deleteExpired(now));
+		log.debug("Removed {} expired revoked tokens.", deleted);
+	}
+
+	public int getRevokedTokenCount() {
+		return revokedTokens.size();
+	}
+
+	private synchronized void add(String tokenId, Instant expiresAt) {
+		if (expiresAt.isBefore(Instant.now()) || revokedTokens.putIfAbsent(tokenId, expiresAt) != null) {
+			return;
+		}
+
+		// Wächst die Menge über die geplante Größe, wird ein größerer Bloom-Filter erstellt.
+		if (revokedTokens.size() > bloomFilter.getExpectedInsertions()) {
+			rebuild(bloomFilter.getExpectedInsertions() * 2);
+		} else {
+			bloomFilter.put(tokenId);
+		}
+	}
+
+	private void rebuild(int expectedInsertions) {
+		BloomFilter rebuilt = new BloomFilter(expectedInsertions, FALSE_POSITIVE_PROBABILITY);
+		revokedTokens.keySet().forEach(rebuilt::put);
+		bloomFilter = rebuilt;
+	}
+}
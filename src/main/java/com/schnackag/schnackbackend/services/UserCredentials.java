@@ -0,0 +1,63 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.User;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+
+/* Der Eintrag des CachedUserDetailsService: der AuthenticatedUser eines Benutzers zusammen mit seiner E-Mail-Adresse
+ * und dem Hash seines Passworts. Anders als die User-Entität ist er unveränderlich und hat keine Lazy-Beziehungen,
+ * toString, equals und hashCode funktionieren also auch außerhalb einer Session. Er kann deshalb von allen Anfragen
+ * geteilt werden. Benutzername im Sinne von Spring Security ist die E-Mail-Adresse. CredentialsContainer wird
+ * bewusst nicht implementiert, sonst würde der ProviderManager nach dem Login den Hash im Cache löschen. */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public final class UserCredentials implements UserDetails {
+	private final AuthenticatedUser principal;
+
+	private final String email;
+
+	@ToString.Exclude
+	private final String password;
+
+	public static UserCredentials of(User user) {
+		return new UserCredentials(AuthenticatedUser.of(user), user.getEmail(), user.getPassword());
+	}
+
+	@Override
+	public String getUsername() {
+		return email;
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return principal.getAuthorities();
+	}
+
+	@Override
+	public boolean isAccountNonExpired() {
+		return true;
+	}
+
+	@Override
+	public boolean isAccountNonLocked() {
+		return true;
+	}
+
+	@Override
+	public boolean isCredentialsNonExpired() {
+		return true;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+}
@@ -0,0 +1,74 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.Role;
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Date;
+import java.util.UUID;
+
+/* Ein VerifiedToken ist das Ergebnis einer erfolgreichen Prüfung eines JWT durch den JwtService.
+ * Die Signatur und das Ablaufdatum wurden bereits geprüft, die Claims können also ohne erneutes
+ * Parsen des Tokens gelesen werden. Da Objekte dieser Klasse im Token-Cache zwischen mehreren
+ * Requests geteilt werden, sind sie unveränderlich. Nur der Principal aus den Claims wird beim ersten Aufruf
+ * erstellt und danach wiederverwendet. */
+@Getter
+@RequiredArgsConstructor
+public class VerifiedToken {
+	private final Claims claims;
+
+	private AuthenticatedUser claimsPrincipal;
+
+	public String getSubject() {
+		return claims.getSubject();
+	}
+
+	/* Die ID des Benutzers aus dem Claim id. */
+	public String getUserId() {
+		return claims.get(JwtService.USER_ID_CLAIM, String.class);
+	}
+
+	/* Die ID des Tokens (jti), über die es widerrufen werden kann. */
+	public String getId() {
+		return claims.getId();
+	}
+
+	/* Tokens ohne Typ stammen aus der Zeit vor den Refresh-Tokens und werden als Access-Tokens behandelt. */
+	public boolean isAccessToken() {
+		String type = claims.get(JwtService.TOKEN_TYPE_CLAIM, String.class);
+		return type == null || type.equals(JwtService.ACCESS_TOKEN_TYPE);
+	}
+
+	public boolean isRefreshToken() {
+		return JwtService.REFRESH_TOKEN_TYPE.equals(claims.get(JwtService.TOKEN_TYPE_CLAIM, String.class));
+	}
+
+	public Date getExpiration() {
+		return claims.getExpiration();
+	}
+
+	/* Gibt true zurück, wenn das Token zum aktuellen Zeitpunkt abgelaufen ist. */
+	public boolean isExpired() {
+		Date expiration = getExpiration();
+		return expiration == null || expiration.getTime() < System.currentTimeMillis();
+	}
+
+	/* Der Principal aus den Claims id, name und role oder null, wenn das Token einen davon nicht enthält.
+	 * Bei gleichzeitigen ersten Aufrufen wird er eventuell mehrfach erstellt. Da alle Felder des AuthenticatedUser
+	 * final sind, kann er trotzdem ohne Synchronisation geteilt werden. */
+	public AuthenticatedUser getClaimsPrincipal() {
+		AuthenticatedUser principal = claimsPrincipal;
+		if (principal == null) {
+			String id = getUserId();
+			String username = claims.get(JwtService.USERNAME_CLAIM, String.class);
+			String role = claims.get(JwtService.ROLE_CLAIM, String.class);
+			if (id == null || username == null || role == null) {
+				return null;
+			}
+			principal = new AuthenticatedUser(UUID.fromString(id), username, Role.valueOf(role));
+			claimsPrincipal = principal;
+		}
+		return principal;
+	}
+}
@@ -0,0 +1,61 @@
+-- Schema, wie es Hibernate mit spring.jpa.hibernate.ddl-auto=update für MySQL erzeugt hat. Bestehende Datenbanken
+-- werden über spring.flyway.baseline-on-migrate als Version 1 übernommen, ohne dieses Skript auszuführen.
+-- Änderungen an den Entitäten brauchen ab jetzt ein neues Skript V<n>__<beschreibung>.sql.
+
+create table bootstrap_flag (
+    claimed_at datetime(6),
+    name varchar(255) not null,
+    primary key (name)
+) engine=InnoDB;
+
+create table post (
+    created_at datetime(6),
+    author_id binary(16),
+    id binary(16) not null,
+    thread_id binary(16),
+    content varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table revoked_token (
+    expires_at datetime(6) not null,
+    revoked_at datetime(6) not null,
+    id varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table thread (
+    created_at datetime(6),
+    last_post_at datetime(6),
+    post_count bigint default 0 not null,
+    id binary(16) not null,
+    owner_id binary(16),
+    last_post_author varchar(255),
+    title varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table user (
+    last_post_at datetime(6),
+    post_count bigint default 0 not null,
+    id binary(16) not null,
+    email varchar(255),
+    password varchar(255),
+    username varchar(255),
+    role enum ('USER','MODERATOR','ADMINISTRATOR'),
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_post_thread_created_at_id on post (thread_id, created_at, id);
+
+create index idx_post_author_created_at on post (author_id, created_at);
+
+create index idx_revoked_token_revoked_at on revoked_token (revoked_at);
+
+create index idx_thread_created_at_id on thread (created_at, id);
+
+alter table post add constraint FK12njtf8e0jmyb45lqfpt6ad89 foreign key (author_id) references user (id);
+
+alter table post add constraint FKsq0vax8pchtnqe2fdwthd3xeu foreign key (thread_id) references thread (id);
+
+alter table thread add constraint FK7de9b1t0dkj1k4yukuncgfbmm foreign key (owner_id) references user (id);
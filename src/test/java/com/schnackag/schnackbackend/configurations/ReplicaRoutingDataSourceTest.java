@@ -0,0 +1,165 @@
+package com.schnackag.schnackbackend.configurations;
+
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.services.BootstrapService;
+import com.schnackag.schnackbackend.services.CachedUserDetailsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/* Das Replikat ist eine eigene In-Memory-Datenbank mit dem Schema, aber ohne die Daten des Primärsystems. Ein
+ * Lesezugriff zeigt also, woher er gelesen hat. Seine Verzögerung steht in der Tabelle replica_lag. */
+@SpringBootTest(properties = {
+		"schnack.datasource.lag-query=select lag as \"Seconds_Behind_Source\" from replica_lag",
+		"schnack.datasource.maximum-lag=5s",
+		"schnack.datasource.connection-timeout=250ms",
+		"schnack.datasource.check-interval=PT1H"
+})
+@ActiveProfiles({"h2", "test"})
+class ReplicaRoutingDataSourceTest {
+	private static final String REPLICA = "replica-" + UUID.randomUUID();
+	private static final String REPLICA_URL = "jdbc:h2:mem:" + REPLICA + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1";
+
+	@Autowired
+	private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+	@Autowired
+	private CachedUserDetailsService userDetailsService;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private Connection replica;
+
+	/* Mit IFEXISTS legt der Pool keine neue, leere Datenbank an, nachdem das Replikat heruntergefahren wurde. Die
+	 * Datenbank wird deshalb vor dem Start der Anwendung angelegt. */
+	@DynamicPropertySource
+	static void replica(DynamicPropertyRegistry registry) throws SQLException {
+		DriverManager.getConnection(REPLICA_URL, "sa", "").close();
+		registry.add("schnack.datasource.replicas[0].url", () -> REPLICA_URL + ";IFEXISTS=TRUE");
+		registry.add("schnack.datasource.replicas[0].username", () -> "sa");
+	}
+
+	@BeforeEach
+	void createReplica() throws SQLException {
+		replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+		try (Statement statement = replica.createStatement()) {
+			statement.execute("drop all objects");
+			for (String sql : jdbcTemplate.queryForList("script nodata", String.class)) {
+				statement.execute(sql);
+			}
+			statement.execute("create table replica_lag (lag bigint)");
+			statement.execute("insert into replica_lag values (0)");
+		}
+		replicaRoutingDataSource.checkLag();
+		assertThat(replicaRoutingDataSource.getAvailableReplicas()).containsExactly("replica-0");
+	}
+
+	@AfterEach
+	void closeReplica() throws SQLException {
+		replica.close();
+	}
+
+	@Test
+	void readOnlyTransactionsReadFromTheReplica() {
+		assertThat(readDatabase()).isEqualToIgnoringCase(REPLICA);
+		assertThat(jdbcTemplate.queryForObject("select database()", String.class)).isNotEqualToIgnoringCase(REPLICA);
+	}
+
+	@Test
+	void laggingReplicaFallsBackToThePrimary() throws SQLException {
+		setLag(60);
+		replicaRoutingDataSource.checkLag();
+		assertThat(replicaRoutingDataSource.getAvailableReplicas()).isEmpty();
+		assertThat(readDatabase()).isNotEqualToIgnoringCase(REPLICA);
+
+		setLag(1);
+		replicaRoutingDataSource.checkLag();
+		assertThat(readDatabase()).isEqualToIgnoringCase(REPLICA);
+	}
+
+	@Test
+	void stoppedReplicationFallsBackToThePrimary() throws SQLException {
+		try (Statement statement = replica.createStatement()) {
+			statement.execute("update replica_lag set lag = null");
+		}
+		replicaRoutingDataSource.checkLag();
+		assertThat(replicaRoutingDataSource.getAvailableReplicas()).isEmpty();
+	}
+
+	@Test
+	void unreachableReplicaIsMarkedUnavailable() throws SQLException, InterruptedException {
+		try (Statement statement = replica.createStatement()) {
+			statement.execute("shutdown");
+		}
+		// Hikari prüft eine Verbindung erst, wenn sie länger als 500 ms nicht verwendet wurde.
+		Thread.sleep(600);
+
+		// Der erste Zugriff wartet höchstens connection-timeout auf das Replikat und liest dann vom Primärsystem.
+		assertThat(readDatabase()).isNotEqualToIgnoringCase(REPLICA);
+		assertThat(replicaRoutingDataSource.getAvailableReplicas()).isEmpty();
+
+		replicaRoutingDataSource.checkLag();
+		assertThat(replicaRoutingDataSource.getAvailableReplicas()).isEmpty();
+	}
+
+	@Test
+	void lookupRightAfterRegisterReadsFromThePrimary() {
+		String registered = register();
+		assertThat(userDetailsService.loadUserByUsername(registered)).isNotNull();
+
+		// Ohne Markierung wird vom Replikat gelesen, dort gibt es den Benutzer noch nicht.
+		String unmarked = "unmarked-" + UUID.randomUUID() + "@schnack.local";
+		jdbcTemplate.update("""
+				insert into "user" (id, email, password, username, role) values (?, ?, 'unused', ?, 'USER')""",
+				UUID.randomUUID(), unmarked, unmarked);
+		assertThatThrownBy(() -> userDetailsService.loadUserByUsername(unmarked)).isInstanceOf(UsernameNotFoundException.class);
+	}
+
+	private String register() {
+		String name = "replica-" + UUID.randomUUID();
+		bootstrapService.register(User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build());
+		return name + "@schnack.local";
+	}
+
+	private String readDatabase() {
+		TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		return readOnly.execute(status -> jdbcTemplate.queryForObject("select database()", String.class));
+	}
+
+	private void setLag(long seconds) throws SQLException {
+		try (Statement statement = replica.createStatement()) {
+			statement.execute("update replica_lag set lag = " + seconds);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.Role;
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/* Registriert Benutzer direkt über den BootstrapService, also ohne das Hashen der Passwörter. Die Anzahl der Benutzer
+ * ist mit -Dschnack.test.bootstrap.users einstellbar, z.B. 1000000 für den Lasttest mit einer Million Benutzern. */
+@SpringBootTest
+@ActiveProfiles({"h2", "test"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BootstrapServiceTest {
+	private static final int USERS = Integer.getInteger("schnack.test.bootstrap.users", 10_000);
+	private static final int THREADS = 16;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Test
+	void concurrentRegistrationsCreateExactlyOneAdministrator() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Role>> roles = new ArrayList<>(USERS);
+			for (int i = 0; i < USERS; i++) {
+				int number = i;
+				roles.add(executor.submit(() -> bootstrapService.register(user("user-" + number)).getRole()));
+			}
+
+			int administrators = 0;
+			for (Future<Role> role : roles) {
+				if (role.get() == Role.ADMINISTRATOR) {
+					administrators++;
+				}
+			}
+			assertThat(administrators).isEqualTo(1);
+			assertThat(userRepository.count()).isEqualTo(USERS);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void failedRegistrationReleasesTheAdministratorFlag() {
+		assertThatThrownBy(() -> bootstrapService.register(user("x".repeat(300)))).isInstanceOf(DataAccessException.class);
+
+		assertThat(bootstrapService.register(user("first")).getRole()).isEqualTo(Role.ADMINISTRATOR);
+		assertThat(bootstrapService.register(user("second")).getRole()).isEqualTo(Role.USER);
+	}
+
+	private static User user(String name) {
+		return User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build();
+	}
+}
@@ -0,0 +1,69 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.Role;
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles({"h2", "test"})
+class CachedUserDetailsServiceTest {
+	@Autowired
+	private CachedUserDetailsService userDetailsService;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Test
+	void cachedUsersCanBeLoggedOutsideOfASession() {
+		String email = register();
+
+		UserCredentials credentials = (UserCredentials) userDetailsService.loadUserByUsername(email);
+		assertThat(userDetailsService.loadUserByUsername(email)).isSameAs(credentials).isEqualTo(credentials);
+		assertThat(credentials.toString()).contains(email).doesNotContain("unused");
+		assertThat(credentials.getUsername()).isEqualTo(email);
+		assertThat(credentials.getPassword()).isEqualTo("unused");
+	}
+
+	@Test
+	void changesEvictTheOldAndTheNewEmail() {
+		String email = register();
+		UserCredentials before = (UserCredentials) userDetailsService.loadUserByUsername(email);
+		String changed = "changed-" + email;
+		// Ein früherer Fehlzugriff auf die neue Adresse liegt als negativer Eintrag im Cache.
+		assertThatThrownBy(() -> userDetailsService.loadUserByUsername(changed)).isInstanceOf(UsernameNotFoundException.class);
+
+		User user = userRepository.findByEmail(email).orElseThrow();
+		user.setEmail(changed);
+		user.setRole(Role.MODERATOR);
+		userRepository.save(user);
+
+		assertThatThrownBy(() -> userDetailsService.loadUserByUsername(email)).isInstanceOf(UsernameNotFoundException.class);
+		UserCredentials after = (UserCredentials) userDetailsService.loadUserByUsername(changed);
+		assertThat(after.getPrincipal().getId()).isEqualTo(before.getPrincipal().getId());
+		assertThat(after.getPrincipal().getRole()).isEqualTo(Role.MODERATOR);
+	}
+
+	private String register() {
+		String name = "principal-" + UUID.randomUUID();
+		bootstrapService.register(User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build());
+		return name + "@schnack.local";
+	}
+}
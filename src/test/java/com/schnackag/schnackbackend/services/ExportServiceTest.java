@@ -0,0 +1,128 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* Läuft in einer eigenen JVM mit kleinem Heap (siehe pom.xml). Die Datenbank liegt deshalb in einer Datei statt im
+ * Heap. LAZY_QUERY_EXECUTION entspricht useCursorFetch des MySQL-Treibers: H2 liefert die Zeilen, während es sie
+ * liest, statt das ganze Ergebnis vorab zu erzeugen. */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:file:./target/test-export/${random.uuid};MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;LAZY_QUERY_EXECUTION=TRUE")
+@ActiveProfiles({"h2", "test"})
+class ExportServiceTest {
+	private static final int CONTENT_LENGTH = 255;
+	private static final int BATCH_SIZE = 10_000;
+
+	@Autowired
+	private ExportService exportService;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Autowired
+	private ThreadService threadService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private AuthenticatedUser author;
+	private UUID threadId;
+
+	@BeforeEach
+	void createThread() {
+		String name = "export-" + UUID.randomUUID();
+		author = AuthenticatedUser.of(bootstrapService.register(User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build()));
+		threadId = threadService.createThread(author, "export").getId();
+	}
+
+	/* Die Zahl der Posts richtet sich nach dem Heap: Allein ihre Inhalte sind größer als der ganze Heap. */
+	@Test
+	void exportOfMorePostsThanFitIntoTheHeapStreams() throws IOException {
+		long maxMemory = Runtime.getRuntime().maxMemory();
+		int posts = (int) (maxMemory / CONTENT_LENGTH);
+		String padding = "x".repeat(CONTENT_LENGTH);
+		Instant createdAt = Instant.now();
+		for (int batch = 0; batch < posts; batch += BATCH_SIZE) {
+			List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+			for (int i = batch; i < Math.min(batch + BATCH_SIZE, posts); i++) {
+				String content = (i + " " + padding).substring(0, CONTENT_LENGTH);
+				rows.add(new Object[] {UuidV7Generator.generate(), content, Timestamp.from(createdAt.plusMillis(i)), author.getId(), threadId});
+			}
+			insertPosts(rows);
+		}
+
+		for (ExportService.Format format : ExportService.Format.values()) {
+			CountingOutputStream output = new CountingOutputStream();
+			assertThat(exportService.exportThreadPosts(threadId, format, output)).isEqualTo(posts);
+			assertThat(output.count).isGreaterThan(maxMemory);
+		}
+	}
+
+	@Test
+	void csvCellsThatLookLikeFormulasAreWrittenAsText() throws IOException {
+		List<String> contents = List.of("=HYPERLINK(\"http://example.com\")", "+1", "-1", "@SUM(A1)", "\tx", "harmlos, mit = im Text");
+		Instant createdAt = Instant.now();
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < contents.size(); i++) {
+			rows.add(new Object[] {UuidV7Generator.generate(), contents.get(i), Timestamp.from(createdAt.plusMillis(i)), author.getId(), threadId});
+		}
+		insertPosts(rows);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		exportService.exportThreadPosts(threadId, ExportService.Format.CSV, output);
+
+		List<String> cells = output.toString(StandardCharsets.UTF_8)
+				.lines()
+				.skip(1)
+				.map(line -> line.substring(line.indexOf(',', line.lastIndexOf('Z')) + 1))
+				.toList();
+		assertThat(cells).containsExactly(
+				"\"'=HYPERLINK(\"\"http://example.com\"\")\"",
+				"'+1",
+				"'-1",
+				"'@SUM(A1)",
+				"'\tx",
+				"\"harmlos, mit = im Text\"");
+	}
+
+	private void insertPosts(List<Object[]> rows) {
+		jdbcTemplate.batchUpdate("insert into post (id, content, created_at, author_id, thread_id) values (?, ?, ?, ?, ?)", rows);
+	}
+
+	/* Verwirft den Export und zählt nur die Bytes. */
+	private static class CountingOutputStream extends OutputStream {
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.requests.ModerationRequest;
+import com.schnackag.schnackbackend.responses.ModerationJobResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/* Mit chunk-size 3 laufen alle Operationen über mehrere Stücke. Die Pause zwischen den Stücken lässt Zeit, eine
+ * Operation nach dem ersten Stück abzubrechen. */
+@SpringBootTest(properties = {"schnack.moderation.chunk-size=3", "schnack.moderation.chunk-pause=200ms"})
+@ActiveProfiles({"h2", "test"})
+class ModerationServiceTest {
+	@Autowired
+	private ModerationService moderationService;
+
+	@Autowired
+	private PostIngestionService postIngestionService;
+
+	@Autowired
+	private PostCounterService postCounterService;
+
+	@Autowired
+	private ThreadService threadService;
+
+	@Autowired
+	private ThreadCache threadCache;
+
+	@Autowired
+	private SearchService searchService;
+
+	@Autowired
+	private TimelineService timelineService;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Test
+	void purgeDeletesAllChunksOfAnAuthor() throws Exception {
+		AuthenticatedUser owner = register("owner");
+		AuthenticatedUser spammer = register("spammer");
+		String term = term();
+		UUID threadId = threadService.createThread(owner, "purge").getId();
+		PostResponse kept = post(threadId, owner, "bleibt");
+		post(threadId, spammer, 7, term);
+		awaitCounted(threadId, 8);
+		assertCached(threadId, 8, Instant.now());
+		await(() -> hits(term).size() == 7, 10);
+
+		ModerationJobResponse job = run(ModerationRequest
+				.builder()
+				.type(ModerationRequest.Type.DELETE_POSTS)
+				.authorId(spammer.getId())
+				.build(), owner);
+
+		assertThat(job.getStatus()).isEqualTo(ModerationJobResponse.Status.COMPLETED);
+		assertThat(job.getProcessed()).isEqualTo(7);
+		assertCached(threadId, 1, kept.getCreatedAt());
+		assertThat(threadCache.getPosts(threadId, null, 50).getItems()).extracting(PostResponse::getId).containsExactly(kept.getId());
+		assertThat(hits(term)).isEmpty();
+	}
+
+	@Test
+	void moveMovesAllChunksAndUpdatesTimelines() throws Exception {
+		AuthenticatedUser owner = register("owner");
+		AuthenticatedUser targetOwner = register("target");
+		AuthenticatedUser author = register("author");
+		String term = term();
+		UUID sourceId = threadService.createThread(owner, "source").getId();
+		UUID targetId = threadService.createThread(targetOwner, "target").getId();
+		PostResponse kept = post(sourceId, owner, "bleibt");
+		List<PostResponse> moved = post(sourceId, author, 5, term);
+		awaitCounted(sourceId, 6);
+		assertCached(sourceId, 6, Instant.now());
+		assertCached(targetId, 0, Instant.now());
+		assertThat(timeline(author)).containsExactly(sourceId);
+		assertThat(timeline(targetOwner)).containsExactly(targetId);
+		await(() -> hits(term).size() == 5, 10);
+
+		ModerationJobResponse job = run(ModerationRequest
+				.builder()
+				.type(ModerationRequest.Type.MOVE_POSTS)
+				.threadId(sourceId)
+				.authorId(author.getId())
+				.targetThreadId(targetId)
+				.build(), owner);
+
+		assertThat(job.getStatus()).isEqualTo(ModerationJobResponse.Status.COMPLETED);
+		assertThat(job.getProcessed()).isEqualTo(5);
+		assertCached(sourceId, 1, kept.getCreatedAt());
+		assertCached(targetId, 5, moved.get(4).getCreatedAt());
+		assertThat(threadCache.getPosts(sourceId, null, 50).getItems()).extracting(PostResponse::getId).containsExactly(kept.getId());
+		assertThat(threadCache.getPosts(targetId, null, 50).getItems())
+				.extracting(PostResponse::getId)
+				.containsExactlyElementsOf(moved.stream().map(PostResponse::getId).toList());
+		assertThat(hits(term)).extracting(SearchHitResponse::getThreadId).containsOnly(targetId).hasSize(5);
+		// Der Autor hat jetzt nur noch im Ziel-Thread geschrieben.
+		await(() -> timeline(author).equals(List.of(targetId)), 10);
+		assertThat(timeline(targetOwner)).containsExactly(targetId);
+		assertThat(timeline(owner)).containsExactly(sourceId);
+	}
+
+	@Test
+	void cancelKeepsTheWrittenChunks() throws Exception {
+		AuthenticatedUser owner = register("owner");
+		AuthenticatedUser spammer = register("spammer");
+		String term = term();
+		UUID threadId = threadService.createThread(owner, "cancel").getId();
+		post(threadId, spammer, 9, term);
+		awaitCounted(threadId, 9);
+		assertCached(threadId, 9, Instant.now());
+		await(() -> hits(term).size() == 9, 10);
+
+		ModerationJobResponse submitted = moderationService.submit(ModerationRequest
+				.builder()
+				.type(ModerationRequest.Type.DELETE_POSTS)
+				.threadId(threadId)
+				.build(), owner);
+		await(() -> moderationService.getJob(submitted.getId()).getProcessed() > 0, 10);
+		moderationService.cancel(submitted.getId());
+		ModerationJobResponse job = awaitFinished(submitted.getId());
+
+		assertThat(job.getStatus()).isEqualTo(ModerationJobResponse.Status.CANCELLED);
+		assertThat(job.getProcessed()).isIn(3L, 6L);
+		int remaining = (int) (9 - job.getProcessed());
+		assertThat(threadCache.getThread(threadId).getPostCount()).isEqualTo(remaining);
+		assertThat(threadCache.getPosts(threadId, null, 50).getItems()).hasSize(remaining);
+		assertThat(hits(term)).hasSize(remaining);
+	}
+
+	/* Das PostsCreatedEvent des letzten Posts kann nach dessen Future ankommen, es wird also mehrmals geschrieben. */
+	private void awaitCounted(UUID threadId, long postCount) throws InterruptedException {
+		await(() -> {
+			postCounterService.flush();
+			return threadCache.getThread(threadId).getPostCount() == postCount;
+		}, 10);
+	}
+
+	private void assertCached(UUID threadId, long postCount, Instant lastPostAt) {
+		ThreadResponse thread = threadCache.getThread(threadId);
+		assertThat(thread.getPostCount()).isEqualTo(postCount);
+		assertThat(threadCache.getPosts(threadId, null, 50).getItems()).hasSize((int) postCount);
+		if (postCount == 0) {
+			assertThat(thread.getLastPostAt()).isNull();
+		} else {
+			assertThat(thread.getLastPostAt()).isCloseTo(lastPostAt, within(1, ChronoUnit.SECONDS));
+		}
+	}
+
+	private ModerationJobResponse run(ModerationRequest request, AuthenticatedUser moderator) throws InterruptedException {
+		return awaitFinished(moderationService.submit(request, moderator).getId());
+	}
+
+	private ModerationJobResponse awaitFinished(UUID jobId) throws InterruptedException {
+		await(() -> moderationService.getJob(jobId).getFinishedAt() != null, 30);
+		return moderationService.getJob(jobId);
+	}
+
+	private List<UUID> timeline(AuthenticatedUser user) {
+		return timelineService.getTimeline(user.getId(), null, 50).getItems().stream().map(ThreadResponse::getId).toList();
+	}
+
+	private List<SearchHitResponse> hits(String term) {
+		return searchService.search(term, null, 50).getItems();
+	}
+
+	private PostResponse post(UUID threadId, AuthenticatedUser author, String content) throws Exception {
+		return postIngestionService.submit(threadId, author, content).get(10, TimeUnit.SECONDS);
+	}
+
+	/* Schreibt die Posts nacheinander, damit sie in dieser Reihenfolge im Thread stehen. */
+	private List<PostResponse> post(UUID threadId, AuthenticatedUser author, int count, String term) throws Exception {
+		List<PostResponse> posts = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			posts.add(post(threadId, author, term + " " + i));
+		}
+		return posts;
+	}
+
+	private AuthenticatedUser register(String prefix) {
+		String name = prefix + "-" + UUID.randomUUID();
+		return AuthenticatedUser.of(bootstrapService.register(User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build()));
+	}
+
+	/* Ein Suchbegriff, der nur in den Posts eines Tests vorkommt. */
+	private static String term() {
+		return "moderation" + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+	}
+
+	private static void await(BooleanSupplier condition, int seconds) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met within %d seconds", seconds).isLessThan(deadline);
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+	}
+}
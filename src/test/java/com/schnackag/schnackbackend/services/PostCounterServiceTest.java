@@ -0,0 +1,126 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.events.PostsCreatedEvent;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.repositories.UserPostCount;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* Der geplante Flush ist abgeschaltet, die Tests rufen flush und reconcile selbst auf. */
+@SpringBootTest(properties = "schnack.counters.flush-interval=PT1H")
+@ActiveProfiles({"h2", "test"})
+class PostCounterServiceTest {
+	private static final int WRITERS = 8;
+	private static final int POSTS_PER_WRITER = 20_000;
+
+	@Autowired
+	private PostCounterService postCounterService;
+
+	@Autowired
+	private PostIngestionService postIngestionService;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Autowired
+	private ThreadService threadService;
+
+	@Autowired
+	private ThreadRepository threadRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private AuthenticatedUser author;
+	private UUID threadId;
+
+	@BeforeEach
+	void createThread() {
+		String name = "counter-" + UUID.randomUUID();
+		author = AuthenticatedUser.of(bootstrapService.register(User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build()));
+		threadId = threadService.createThread(author, "counters").getId();
+	}
+
+	@Test
+	void noIncrementIsLostWhileFlushing() throws Exception {
+		ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+		AtomicBoolean writing = new AtomicBoolean(true);
+		CompletableFuture<Void> flusher = CompletableFuture.runAsync(() -> {
+			while (writing.get()) {
+				postCounterService.flush();
+			}
+		});
+
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int w = 0; w < WRITERS; w++) {
+				futures.add(writers.submit(() -> {
+					for (int i = 0; i < POSTS_PER_WRITER; i++) {
+						postCounterService.onPostsCreated(new PostsCreatedEvent(List.of(PostResponse
+								.builder()
+								.id(UUID.randomUUID())
+								.threadId(threadId)
+								.build())));
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			writing.set(false);
+			writers.shutdown();
+		}
+		flusher.get(1, TimeUnit.MINUTES);
+		postCounterService.flush();
+
+		assertThat(threadRepository.findResponseById(threadId).orElseThrow().getPostCount()).isEqualTo((long) WRITERS * POSTS_PER_WRITER);
+	}
+
+	@Test
+	void reconciliationCorrectsThreadsWithUnwrittenIncrements() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			postIngestionService.submit(threadId, author, "post " + i).get(10, TimeUnit.SECONDS);
+		}
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.executeWithoutResult(status -> {
+			threadRepository.incrementPostCounts(List.of(threadId), 37);
+			userRepository.incrementPostCounts(List.of(author.getId()), 37);
+		});
+
+		// Die fünf Posts liegen noch als Erhöhung im Speicher, der Abgleich darf sie nicht doppelt zählen.
+		postCounterService.reconcile();
+		postCounterService.flush();
+
+		assertThat(threadRepository.findResponseById(threadId).orElseThrow().getPostCount()).isEqualTo(5);
+		assertThat(userRepository.findPostCounts(List.of(author.getId()))).extracting(UserPostCount::getPostCount).containsExactly(5L);
+	}
+}
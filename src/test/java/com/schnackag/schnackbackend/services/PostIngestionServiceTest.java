@@ -0,0 +1,81 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.exceptions.InvalidPostException;
+import com.schnackag.schnackbackend.exceptions.ThreadNotFoundException;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest
+@ActiveProfiles({"h2", "test"})
+class PostIngestionServiceTest {
+	@Autowired
+	private PostIngestionService postIngestionService;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Autowired
+	private ThreadService threadService;
+
+	@SpyBean
+	private ShardRouting shardRouting;
+
+	private AuthenticatedUser author;
+	private UUID threadId;
+
+	@BeforeEach
+	void createThread() {
+		String name = "author-" + UUID.randomUUID();
+		author = AuthenticatedUser.of(bootstrapService.register(User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build()));
+		threadId = threadService.createThread(author, "ingestion").getId();
+	}
+
+	@Test
+	void postToMissingThreadIsNotFound() {
+		assertFailure(postIngestionService.submit(UUID.randomUUID(), author, "hallo"), ThreadNotFoundException.class);
+	}
+
+	@Test
+	void oversizedPostIsInvalid() {
+		assertFailure(postIngestionService.submit(threadId, author, "x".repeat(300)), InvalidPostException.class);
+	}
+
+	@Test
+	void failedBatchDoesNotStopIngestion() throws Exception {
+		doThrow(new IllegalStateException("Shard unavailable.")).doCallRealMethod().when(shardRouting).write(any());
+
+		assertFailure(postIngestionService.submit(threadId, author, "lost"), IllegalStateException.class);
+
+		PostResponse post = postIngestionService.submit(threadId, author, "stored").get(10, TimeUnit.SECONDS);
+		assertThat(post.getContent()).isEqualTo("stored");
+		assertThat(post.getThreadId()).isEqualTo(threadId);
+	}
+
+	private static void assertFailure(CompletableFuture<PostResponse> result, Class<? extends Throwable> type) {
+		assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+				.isInstanceOf(ExecutionException.class)
+				.cause()
+				.isInstanceOf(type);
+	}
+}
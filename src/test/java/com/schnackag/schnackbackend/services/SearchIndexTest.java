@@ -0,0 +1,111 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import com.schnackag.schnackbackend.responses.SearchHitResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchIndexTest {
+	private static final UUID THREAD = UuidV7Generator.generate();
+
+	@TempDir
+	private Path directory;
+
+	@Test
+	void deletedAndMovedPostsAreForgottenOnceMergedAway() throws IOException {
+		SearchIndex index = new SearchIndex(directory, Integer.MAX_VALUE, 2, Long.MAX_VALUE);
+		UUID deleted = add(index, "gelöscht");
+		UUID moved = add(index, "verschoben");
+		index.flush();
+
+		UUID target = UuidV7Generator.generate();
+		index.delete(deleted);
+		index.move(moved, target);
+		for (int segment = 0; segment < 2; segment++) {
+			for (int i = 0; i < 10; i++) {
+				add(index, "füllung " + i);
+			}
+			index.flush();
+		}
+		assertThat(index.getPendingChangeCount()).isEqualTo(2);
+		assertThat(index.search(List.of("gelöscht"), 10)).isEmpty();
+		assertThat(index.search(List.of("verschoben"), 10)).extracting(SearchHitResponse::getThreadId).containsExactly(target);
+
+		// Das kleinste Segment enthält beide Posts und wird mit einem der neueren zusammengeführt.
+		index.merge();
+		assertThat(index.getSegmentCount()).isEqualTo(2);
+		assertThat(index.getPendingChangeCount()).isZero();
+		assertThat(index.search(List.of("gelöscht"), 10)).isEmpty();
+		assertThat(index.search(List.of("verschoben"), 10)).extracting(SearchHitResponse::getThreadId).containsExactly(target);
+	}
+
+	@Test
+	void segmentsTooLargeToMergeAreRewrittenForPendingChanges() throws IOException {
+		SearchIndex index = new SearchIndex(directory, 2, 2, 1);
+		UUID deleted = add(index, "gelöscht");
+		UUID moved = add(index, "verschoben");
+		for (int i = 0; i < 4; i++) {
+			add(index, "füllung " + i);
+		}
+
+		UUID target = UuidV7Generator.generate();
+		index.delete(deleted);
+		index.move(moved, target);
+		add(index, "neu 1");
+		add(index, "neu 2");
+		index.merge();
+
+		assertThat(index.getSegmentCount()).isEqualTo(4);
+		assertThat(index.getPendingChangeCount()).isZero();
+		assertThat(index.search(List.of("gelöscht"), 10)).isEmpty();
+		assertThat(index.search(List.of("verschoben"), 10)).extracting(SearchHitResponse::getThreadId).containsExactly(target);
+	}
+
+	@Test
+	void changesInTheBufferAreForgottenAfterFlush() throws IOException {
+		SearchIndex index = new SearchIndex(directory, Integer.MAX_VALUE, 8, Long.MAX_VALUE);
+		UUID deleted = add(index, "gelöscht");
+		UUID moved = add(index, "verschoben");
+
+		UUID target = UuidV7Generator.generate();
+		index.delete(deleted);
+		index.move(moved, target);
+		index.flush();
+
+		assertThat(index.getPendingChangeCount()).isZero();
+		assertThat(index.search(List.of("gelöscht"), 10)).isEmpty();
+		assertThat(index.search(List.of("verschoben"), 10)).extracting(SearchHitResponse::getThreadId).containsExactly(target);
+	}
+
+	@Test
+	void duplicatesTakeOnlyOnePlace() throws IOException {
+		SearchIndex index = new SearchIndex(directory, Integer.MAX_VALUE, 8, Long.MAX_VALUE);
+		UUID duplicate = UuidV7Generator.generate();
+		for (int copy = 0; copy < 3; copy++) {
+			index.add(SearchHitResponse.Type.POST, duplicate, THREAD, "hallo");
+			index.flush();
+		}
+		index.add(SearchHitResponse.Type.POST, duplicate, THREAD, "hallo");
+		for (int i = 0; i < 5; i++) {
+			add(index, "hallo und noch mehr text " + i);
+		}
+
+		List<SearchHitResponse> hits = index.search(List.of("hallo"), 3);
+		assertThat(hits).hasSize(3);
+		assertThat(hits).extracting(SearchHitResponse::getId).doesNotHaveDuplicates();
+		assertThat(hits.get(0).getId()).isEqualTo(duplicate);
+	}
+
+	private static UUID add(SearchIndex index, String text) throws IOException {
+		UUID id = UuidV7Generator.generate();
+		index.add(SearchHitResponse.Type.POST, id, THREAD, text);
+		return id;
+	}
+}
@@ -0,0 +1,302 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.configurations.ShardingProperties;
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.repositories.UserPostCount;
+import com.schnackag.schnackbackend.repositories.UserRepository;
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.RebalancingResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* Drei H2-Datenbanken als Shards. shard-2 wurde gerade hinzugefügt, der vorherige Ring bestand aus shard-0 und
+ * shard-1. Threads, die nach dem neuen Ring auf shard-2 gehören, können also noch auf ihrem alten Shard liegen. */
+@SpringBootTest(properties = {
+		"schnack.sharding.shards[0].name=shard-0",
+		"schnack.sharding.shards[0].url=jdbc:h2:mem:shard-0-${random.uuid};MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER",
+		"schnack.sharding.shards[0].username=sa",
+		"schnack.sharding.shards[1].name=shard-1",
+		"schnack.sharding.shards[1].url=jdbc:h2:mem:shard-1-${random.uuid};MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER",
+		"schnack.sharding.shards[1].username=sa",
+		"schnack.sharding.shards[2].name=shard-2",
+		"schnack.sharding.shards[2].url=jdbc:h2:mem:shard-2-${random.uuid};MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER",
+		"schnack.sharding.shards[2].username=sa",
+		"schnack.sharding.previous-shards=shard-0,shard-1",
+		"schnack.sharding.rebalancing-batch-size=7"
+})
+@ActiveProfiles({"h2", "test"})
+class ShardRoutingTest {
+	private static final List<String> SHARDS = List.of("shard-0", "shard-1", "shard-2");
+	private static final int POSTS = 25;
+
+	@Autowired
+	private ShardRouting shardRouting;
+
+	@Autowired
+	private ShardRebalancingService shardRebalancingService;
+
+	@Autowired
+	private ShardingProperties shardingProperties;
+
+	@Autowired
+	private ThreadService threadService;
+
+	@Autowired
+	private PostIngestionService postIngestionService;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Autowired
+	private ThreadRepository threadRepository;
+
+	@Autowired
+	private PostRepository postRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+	private AuthenticatedUser owner;
+
+	@BeforeEach
+	void registerOwner() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		String name = "shard-" + UUID.randomUUID();
+		owner = AuthenticatedUser.of(bootstrapService.register(User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build()));
+	}
+
+	@Test
+	void threadsAreWrittenToAndReadFromTheirOwner() {
+		UUID threadId = threadService.createThread(owner, "routing").getId();
+		String shard = shardRouting.getOwner(threadId);
+
+		assertThat(shardRouting.shardOf(threadId)).isEqualTo(shard);
+		assertThat(shardsContaining(threadId)).containsExactly(shard);
+
+		// Die geerbten Methoden des ThreadRepository werden über die ID gelenkt, ohne @ShardKey.
+		assertThat(threadRepository.findById(threadId)).isPresent();
+		assertThat(threadRepository.existsById(threadId)).isTrue();
+		threadRepository.deleteById(threadId);
+		assertThat(shardsContaining(threadId)).isEmpty();
+	}
+
+	@Test
+	void globalRepositoriesRunOnTheShardOfTheTransaction() {
+		UUID threadId = threadService.createThread(owner, "global").getId();
+		String shard = shardRouting.getOwner(threadId);
+		String other = SHARDS.stream().filter(Predicate.not(shard::equals)).findFirst().orElseThrow();
+
+		// Auf dem Shard des Threads liegt eine Kopie des Erstellers, auf den anderen nicht.
+		assertThat(countsInTransactionOn(shard)).extracting(UserPostCount::getId).containsExactly(owner.getId());
+		assertThat(countsInTransactionOn(other)).isEmpty();
+
+		// Ohne Transaktion und ohne Shard liest ein globales Repository die globale Datenbank.
+		assertThat(userRepository.findById(owner.getId())).isPresent();
+	}
+
+	@Test
+	void threadsOnThePreviousRingAreFoundThere() {
+		UUID threadId = idMovedByNewRing();
+		String previous = previousRing().shardOf(threadId);
+		insertThread(previous, threadId, 3);
+
+		assertThat(shardRouting.getOwner(threadId)).isNotEqualTo(previous);
+		assertThat(shardRouting.shardOf(threadId)).isEqualTo(previous);
+		assertThat(threadService.getThread(threadId).getTitle()).isEqualTo("previous");
+		assertThat(threadService.getPosts(threadId, null, 10).getItems()).hasSize(3);
+	}
+
+	@Test
+	void threadListsOfAllShardsAreMergedNewestFirst() {
+		List<UUID> created = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			created.add(threadService.createThread(owner, "list " + i).getId());
+		}
+		assertThat(created.stream().map(shardRouting::getOwner).distinct()).hasSizeGreaterThan(1);
+
+		List<ThreadResponse> listed = new ArrayList<>();
+		String cursor = null;
+		do {
+			PageResponse<ThreadResponse> page = threadService.getThreads(cursor, 3);
+			listed.addAll(page.getItems());
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+
+		assertThat(listed).isSortedAccordingTo(Comparator
+				.comparing(ThreadResponse::getCreatedAt)
+				.thenComparing(ThreadResponse::getId)
+				.reversed());
+		assertThat(listed).extracting(ThreadResponse::getId).doesNotHaveDuplicates();
+		List<UUID> newestFirst = new ArrayList<>(created);
+		Collections.reverse(newestFirst);
+		assertThat(listed).extracting(ThreadResponse::getId).filteredOn(created::contains).containsExactlyElementsOf(newestFirst);
+	}
+
+	@Test
+	void mergeKeepsTheOrderAcrossPartialResults() {
+		List<List<Integer>> results = List.of(List.of(1, 4, 7), List.of(), List.of(2, 3, 8, 9), List.of(5));
+		assertThat(ShardRouting.merge(results, Comparator.naturalOrder(), 6)).containsExactly(1, 2, 3, 4, 5, 7);
+		assertThat(ShardRouting.merge(List.of(List.of(1, 2, 3)), Comparator.naturalOrder(), 2)).containsExactly(1, 2);
+	}
+
+	@Test
+	void rebalancingMovesThreadsWithTheirPostsToTheirOwner() {
+		UUID threadId = idMovedByNewRing();
+		String previous = previousRing().shardOf(threadId);
+		String target = shardRouting.getOwner(threadId);
+		List<PostResponse> posts = insertThread(previous, threadId, POSTS);
+
+		rebalance();
+
+		assertThat(shardsContaining(threadId)).containsExactly(target);
+		assertThat(shardRouting.shardOf(threadId)).isEqualTo(target);
+		assertThat(shardRouting.onShard(target, () -> postRepository.countByThread(threadId))).isEqualTo(POSTS);
+		assertThat(threadService.getThread(threadId).getPostCount()).isEqualTo(POSTS);
+		assertThat(threadService.getPosts(threadId, null, 100).getItems())
+				.extracting(PostResponse::getId)
+				.containsExactlyElementsOf(posts.stream().map(PostResponse::getId).toList());
+	}
+
+	/* Ein abgebrochener Lauf hat den Thread und einen Teil der Posts bereits auf den Ziel-Shard kopiert, der Thread
+	 * liegt aber noch auf dem Quell-Shard. Der nächste Lauf räumt die Reste auf und verschiebt ihn vollständig. */
+	@Test
+	void interruptedRebalancingIsCompletedByTheNextRun() {
+		UUID threadId = idMovedByNewRing();
+		String previous = previousRing().shardOf(threadId);
+		String target = shardRouting.getOwner(threadId);
+		List<PostResponse> posts = insertThread(previous, threadId, POSTS);
+
+		shardRouting.replicateUsers(target, Map.of(owner.getId(), owner.getUsername()));
+		transactionTemplate.executeWithoutResult(status -> shardRouting.onShard(target, () -> threadRepository.insertThread(
+				threadId, "previous", posts.get(0).getCreatedAt(), owner.getId())));
+		transactionTemplate.executeWithoutResult(status -> shardRouting.insertPosts(target, threadId, posts.subList(0, 10)));
+		assertThat(shardsContaining(threadId)).containsExactlyInAnyOrder(previous, target);
+		// Bis zum Abschluss gilt die Kopie auf dem Quell-Shard.
+		assertThat(shardRouting.shardOf(threadId)).isEqualTo(previous);
+
+		rebalance();
+
+		assertThat(shardsContaining(threadId)).containsExactly(target);
+		assertThat(shardRouting.onShard(target, () -> postRepository.countByThread(threadId))).isEqualTo(POSTS);
+		assertThat(shardRouting.onShard(previous, () -> postRepository.countByThread(threadId))).isZero();
+		assertThat(threadService.getThread(threadId).getPostCount()).isEqualTo(POSTS);
+	}
+
+	/* Eine andere Instanz hat den Thread verschoben, diese Instanz hat noch den vorherigen Shard gemerkt. Der neue Post
+	 * verletzt dort den Fremdschlüssel und wird auf den neuen Shard geschrieben. */
+	@Test
+	void postsForThreadsMovedByAnotherInstanceFollowTheThread() throws Exception {
+		UUID threadId = idMovedByNewRing();
+		String previous = previousRing().shardOf(threadId);
+		String target = shardRouting.getOwner(threadId);
+		insertThread(previous, threadId, 3);
+		assertThat(shardRouting.shardOf(threadId)).isEqualTo(previous);
+
+		insertThread(target, threadId, 3);
+		transactionTemplate.executeWithoutResult(status -> shardRouting.onShard(previous, () -> {
+			postRepository.deleteAllByThread(threadId);
+			return threadRepository.deleteThread(threadId);
+		}));
+
+		PostResponse post = postIngestionService.submit(threadId, owner, "neu").get(10, TimeUnit.SECONDS);
+
+		assertThat(post.getThreadId()).isEqualTo(threadId);
+		assertThat(shardRouting.shardOf(threadId)).isEqualTo(target);
+		assertThat(shardRouting.onShard(target, () -> postRepository.countByThread(threadId))).isEqualTo(4);
+	}
+
+	private void rebalance() {
+		shardRebalancingService.start(owner);
+		Instant deadline = Instant.now().plus(Duration.ofSeconds(30));
+		RebalancingResponse status;
+		while ((status = shardRebalancingService.getStatus()).getStatus() == RebalancingResponse.Status.RUNNING) {
+			assertThat(Instant.now()).isBefore(deadline);
+			Thread.onSpinWait();
+		}
+		assertThat(status.getStatus()).isEqualTo(RebalancingResponse.Status.COMPLETED);
+		assertThat(status.getFailed()).isZero();
+	}
+
+	/* Legt einen Thread mit count Posts direkt auf shard an, wie vor der Änderung der Shards. */
+	private List<PostResponse> insertThread(String shard, UUID threadId, int count) {
+		Instant createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+		List<PostResponse> posts = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			posts.add(PostResponse
+					.builder()
+					.id(UuidV7Generator.generate())
+					.threadId(threadId)
+					.content("post " + i)
+					.author(owner.getUsername())
+					.authorId(owner.getId())
+					.createdAt(createdAt.plus(i, ChronoUnit.MILLIS))
+					.build());
+		}
+
+		shardRouting.replicateUsers(shard, Map.of(owner.getId(), owner.getUsername()));
+		transactionTemplate.executeWithoutResult(status -> shardRouting.onShard(shard, () -> threadRepository.insertThread(
+				threadId, "previous", createdAt, owner.getId())));
+		transactionTemplate.executeWithoutResult(status -> shardRouting.insertPosts(shard, threadId, posts));
+		return posts;
+	}
+
+	private List<String> shardsContaining(UUID threadId) {
+		return SHARDS.stream().filter(shard -> shardRouting.onShard(shard, () -> threadRepository.existsById(threadId))).toList();
+	}
+
+	private List<UserPostCount> countsInTransactionOn(String shard) {
+		return transactionTemplate.execute(status -> {
+			// Der erste Zugriff bindet die Transaktion an shard, der Zugriff des globalen Repositories folgt ihr.
+			shardRouting.onShard(shard, () -> threadRepository.existsById(UUID.randomUUID()));
+			return userRepository.findPostCounts(List.of(owner.getId()));
+		});
+	}
+
+	/* Eine ID, die nach dem vorherigen Ring auf einem anderen Shard lag als nach dem aktuellen. */
+	private UUID idMovedByNewRing() {
+		ShardRing previous = previousRing();
+		while (true) {
+			UUID id = UuidV7Generator.generate();
+			if (!previous.shardOf(id).equals(shardRouting.getOwner(id))) {
+				return id;
+			}
+		}
+	}
+
+	private ShardRing previousRing() {
+		return new ShardRing(shardingProperties.getPreviousShards(), shardingProperties.getVirtualNodes());
+	}
+}
@@ -0,0 +1,88 @@
+package com.schnackag.schnackbackend.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "schnack.threads.cache.shared=in-memory")
+@ActiveProfiles({"h2", "test"})
+class ThreadCacheTest {
+	@Autowired
+	private ThreadCache threadCache;
+
+	@Autowired
+	private ThreadService threadService;
+
+	@Autowired
+	private PostIngestionService postIngestionService;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Autowired
+	private ApplicationContext applicationContext;
+
+	private AuthenticatedUser author;
+	private UUID threadId;
+
+	@BeforeEach
+	void createThread() {
+		String name = "cache-" + UUID.randomUUID();
+		author = AuthenticatedUser.of(bootstrapService.register(User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build()));
+		threadId = threadService.createThread(author, "cache").getId();
+	}
+
+	@Test
+	void pageSizesAboveTheMaximumShareOneEntry() {
+		PageResponse<PostResponse> maximum = threadCache.getPosts(threadId, null, ThreadService.MAXIMUM_PAGE_SIZE);
+
+		assertThat(threadCache.getPosts(threadId, null, ThreadService.MAXIMUM_PAGE_SIZE + 1)).isSameAs(maximum);
+		assertThat(threadCache.getPosts(threadId, null, Integer.MAX_VALUE)).isSameAs(maximum);
+	}
+
+	@Test
+	void otherInstancesSeeNewPostsBeforeTheirTimeToLive() throws Exception {
+		// Eine zweite Instanz mit eigener erster Stufe, die sich den SharedCache mit dieser Instanz teilt.
+		ThreadCache other = new ThreadCache(
+				threadService,
+				applicationContext.getBeanProvider(SharedCache.class),
+				applicationContext.getBean(ReplicaRouting.class),
+				applicationContext.getBean(ObjectMapper.class),
+				100,
+				Duration.ofHours(1));
+		assertThat(other.getPosts(threadId, null, 10).getItems()).isEmpty();
+		assertThat(other.getPosts(threadId, null, 10).getItems()).isEmpty();
+
+		postIngestionService.submit(threadId, author, "neu").get(10, TimeUnit.SECONDS);
+
+		await(() -> other.getPosts(threadId, null, 10).getItems().size() == 1, 10);
+		assertThat(other.getStats().hitCount()).isGreaterThanOrEqualTo(1);
+	}
+
+	private static void await(BooleanSupplier condition, int seconds) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met within %d seconds", seconds).isLessThan(deadline);
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+	}
+}
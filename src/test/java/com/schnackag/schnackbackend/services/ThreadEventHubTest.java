@@ -0,0 +1,141 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.events.PostsCreatedEvent;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* Soak-Test für Server-Sent Events: Einige Clients lesen nie, die übrigen lesen laufend. Die hängenden Verbindungen
+ * dürfen die übrigen nicht aufhalten und müssen nach send-timeout geschlossen werden, lange bevor Tomcat den
+ * Schreibvorgang nach connection-timeout abbricht. Die Anzahl der Posts ist mit -Dschnack.test.events.posts
+ * einstellbar. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"schnack.threads.events.sender-threads=8",
+		"schnack.threads.events.buffer-size=50000",
+		"schnack.threads.events.send-timeout=PT1S",
+		"server.tomcat.connection-timeout=5m"
+})
+@ActiveProfiles({"h2", "test"})
+class ThreadEventHubTest {
+	private static final int POSTS = Integer.getInteger("schnack.test.events.posts", 10_000);
+	private static final int STUCK_CLIENTS = 4;
+	private static final int READING_CLIENTS = 4;
+	private static final String CONTENT = "x".repeat(1000);
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private ThreadEventHub threadEventHub;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Autowired
+	private ThreadService threadService;
+
+	@Autowired
+	private JwtService jwtService;
+
+	private final List<Socket> stuckClients = new ArrayList<>();
+
+	@AfterEach
+	void closeStuckClients() throws IOException {
+		for (Socket socket : stuckClients) {
+			socket.close();
+		}
+	}
+
+	@Test
+	void stuckClientsDoNotDelayReadingClients() throws Exception {
+		User user = bootstrapService.register(User
+				.builder()
+				.username("soak")
+				.email("soak@schnack.local")
+				.password("unused")
+				.build());
+		String token = jwtService.generateToken(Map.of(
+				JwtService.ROLE_CLAIM, user.getRole(),
+				JwtService.USER_ID_CLAIM, user.getId().toString(),
+				JwtService.USERNAME_CLAIM, user.getUsername()), UserCredentials.of(user));
+		UUID threadId = threadService.createThread(AuthenticatedUser.of(user), "soak").getId();
+		String path = "/api/v1/threads/" + threadId + "/events";
+
+		// Diese Clients lesen nie, ihr Empfangspuffer ist nach wenigen Posts voll.
+		for (int i = 0; i < STUCK_CLIENTS; i++) {
+			Socket socket = new Socket();
+			socket.setReceiveBufferSize(4096);
+			socket.connect(new InetSocketAddress("localhost", port));
+			OutputStream out = socket.getOutputStream();
+			out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\nAuthorization: Bearer " + token + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			stuckClients.add(socket);
+		}
+
+		HttpClient client = HttpClient.newHttpClient();
+		HttpRequest request = HttpRequest
+				.newBuilder(URI.create("http://localhost:" + port + path))
+				.header("Accept", "text/event-stream")
+				.header("Authorization", "Bearer " + token)
+				.build();
+		List<AtomicInteger> received = new ArrayList<>();
+		for (int i = 0; i < READING_CLIENTS; i++) {
+			AtomicInteger count = new AtomicInteger();
+			received.add(count);
+			CompletableFuture<HttpResponse<Stream<String>>> response = client.sendAsync(request, HttpResponse.BodyHandlers.ofLines());
+			response.thenAcceptAsync(lines -> lines.body().forEach(line -> {
+				if (line.equals("event:post")) {
+					count.incrementAndGet();
+				}
+			}));
+		}
+		await(() -> threadEventHub.getSubscriptionCount() == STUCK_CLIENTS + READING_CLIENTS, 10);
+
+		for (int sent = 0; sent < POSTS; sent += 100) {
+			List<PostResponse> batch = new ArrayList<>(100);
+			for (int i = 0; i < 100 && sent + i < POSTS; i++) {
+				batch.add(new PostResponse(UUID.randomUUID(), threadId, CONTENT, "soak", Instant.now(), user.getId()));
+			}
+			threadEventHub.onPostsCreated(new PostsCreatedEvent(batch));
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+
+		await(() -> threadEventHub.getSubscriptionCount() == READING_CLIENTS, 10);
+		await(() -> received.stream().allMatch(count -> count.get() == POSTS), 30);
+	}
+
+	private static void await(BooleanSupplier condition, int seconds) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met within %d seconds", seconds).isLessThan(deadline);
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+	}
+}
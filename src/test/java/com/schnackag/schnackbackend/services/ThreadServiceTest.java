@@ -0,0 +1,50 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.User;
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import com.schnackag.schnackbackend.exceptions.ThreadNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles({"h2", "test"})
+class ThreadServiceTest {
+	@Autowired
+	private ThreadService threadService;
+
+	@Autowired
+	private BootstrapService bootstrapService;
+
+	@Test
+	void unknownThreadsAreNotFoundWithAndWithoutCursor() {
+		UUID unknown = UuidV7Generator.generate();
+		String cursor = new KeysetCursor(Instant.now(), UuidV7Generator.generate()).encode();
+
+		assertThatThrownBy(() -> threadService.getPosts(unknown, null, 10)).isInstanceOf(ThreadNotFoundException.class);
+		assertThatThrownBy(() -> threadService.getPosts(unknown, cursor, 10)).isInstanceOf(ThreadNotFoundException.class);
+	}
+
+	@Test
+	void threadsWithoutFurtherPostsReturnAnEmptyPage() {
+		String name = "thread-" + UUID.randomUUID();
+		AuthenticatedUser owner = AuthenticatedUser.of(bootstrapService.register(User
+				.builder()
+				.username(name)
+				.email(name + "@schnack.local")
+				.password("unused")
+				.build()));
+		UUID threadId = threadService.createThread(owner, "leer").getId();
+		String cursor = new KeysetCursor(Instant.now(), UuidV7Generator.generate()).encode();
+
+		assertThat(threadService.getPosts(threadId, null, 10).getItems()).isEmpty();
+		assertThat(threadService.getPosts(threadId, cursor, 10).getItems()).isEmpty();
+	}
+}
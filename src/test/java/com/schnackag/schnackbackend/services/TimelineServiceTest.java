@@ -0,0 +1,140 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import com.schnackag.schnackbackend.events.PostsCreatedEvent;
+import com.schnackag.schnackbackend.repositories.PostRepository;
+import com.schnackag.schnackbackend.repositories.ThreadActivity;
+import com.schnackag.schnackbackend.repositories.ThreadRepository;
+import com.schnackag.schnackbackend.responses.PageResponse;
+import com.schnackag.schnackbackend.responses.PostResponse;
+import com.schnackag.schnackbackend.responses.ThreadResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/* Der TimelineService ohne Spring-Kontext: Die Repositories liefern feste Daten, die Threads kommen aus einem
+ * ThreadCache, der nur die ID kennt. */
+class TimelineServiceTest {
+	private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+	@TempDir
+	private Path directory;
+
+	private final ThreadRepository threadRepository = mock(ThreadRepository.class);
+	private final PostRepository postRepository = mock(PostRepository.class);
+	private final ThreadCache threadCache = mock(ThreadCache.class);
+	private final ShardRouting shardRouting = mock(ShardRouting.class);
+
+	private final UUID owner = UuidV7Generator.generate();
+	private final UUID hot = UuidV7Generator.generate();
+	private final UUID quiet = UuidV7Generator.generate();
+
+	@BeforeEach
+	void mockRepositories() {
+		when(shardRouting.scatter(any())).thenAnswer(invocation -> List.of(invocation.<Supplier<?>>getArgument(0).get()));
+		when(threadCache.getThread(any())).thenAnswer(invocation -> ThreadResponse.builder().id(invocation.getArgument(0)).build());
+		when(threadRepository.findOwnerId(hot)).thenReturn(Optional.of(owner));
+		when(postRepository.findAuthorIdsByThread(eq(hot), any())).thenReturn(List.of());
+		// Der Ersteller hat zuletzt in quiet geschrieben und hot davor erstellt.
+		when(threadRepository.findActivityByParticipant(eq(owner), any())).thenReturn(List.of(
+				new ThreadActivity(quiet, START.plusSeconds(100)),
+				new ThreadActivity(hot, START.plusSeconds(50))));
+	}
+
+	@Test
+	void threadsAboveTheFanOutLimitAreMergedOnRead() throws InterruptedException {
+		TimelineService timelineService = timelineService(2);
+		assertThat(timeline(timelineService, owner)).containsExactly(quiet, hot);
+
+		// Mit dem Ersteller hat hot nach dem ersten Post zwei Beteiligte, das ist noch Fan-out-on-write.
+		post(timelineService, hot, UuidV7Generator.generate(), 110);
+		await(() -> timeline(timelineService, owner).equals(List.of(hot, quiet)));
+		post(timelineService, hot, UuidV7Generator.generate(), 120);
+		await(() -> timelineService.getHotThreadCount() == 1);
+		post(timelineService, quiet, owner, 130);
+		await(() -> timeline(timelineService, owner).equals(List.of(quiet, hot)));
+
+		// Neue Aktivität von hot landet nur in dessen Tabelle und wird beim Lesen eingemischt, auch seitenweise.
+		post(timelineService, hot, UuidV7Generator.generate(), 200);
+		await(() -> timeline(timelineService, owner).equals(List.of(hot, quiet)));
+		PageResponse<ThreadResponse> first = timelineService.getTimeline(owner, null, 1);
+		assertThat(first.getItems()).extracting(ThreadResponse::getId).containsExactly(hot);
+		PageResponse<ThreadResponse> second = timelineService.getTimeline(owner, first.getNextCursor(), 1);
+		assertThat(second.getItems()).extracting(ThreadResponse::getId).containsExactly(quiet);
+		assertThat(second.getNextCursor()).isNull();
+		timelineService.shutdown();
+	}
+
+	@Test
+	void snapshotRestoresTimelinesAndHotThreads() throws InterruptedException {
+		TimelineService written = timelineService(1);
+		assertThat(timeline(written, owner)).containsExactly(quiet, hot);
+		post(written, hot, UuidV7Generator.generate(), 300);
+		await(() -> written.getHotThreadCount() == 1);
+		written.shutdown();
+
+		TimelineService restored = timelineService(1);
+		assertThat(restored.getTimelineCount()).isEqualTo(1);
+		assertThat(restored.getHotThreadCount()).isEqualTo(1);
+		assertThat(timeline(restored, owner)).containsExactly(hot, quiet);
+		verify(threadRepository, times(1)).findActivityByParticipant(eq(owner), any());
+		restored.shutdown();
+	}
+
+	private TimelineService timelineService(int fanOutLimit) {
+		return new TimelineService(
+				threadRepository,
+				postRepository,
+				threadCache,
+				shardRouting,
+				mock(PlatformTransactionManager.class),
+				200,
+				32,
+				fanOutLimit,
+				1000,
+				1000,
+				Duration.ofHours(1),
+				directory.resolve("timelines.bin"));
+	}
+
+	private void post(TimelineService timelineService, UUID threadId, UUID authorId, long seconds) {
+		timelineService.onPostsCreated(new PostsCreatedEvent(List.of(PostResponse
+				.builder()
+				.id(UuidV7Generator.generate())
+				.threadId(threadId)
+				.createdAt(START.plusSeconds(seconds))
+				.authorId(authorId)
+				.build())));
+	}
+
+	private static List<UUID> timeline(TimelineService timelineService, UUID userId) {
+		return timelineService.getTimeline(userId, null, 50).getItems().stream().map(ThreadResponse::getId).toList();
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met within 10 seconds").isLessThan(deadline);
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+	}
+}
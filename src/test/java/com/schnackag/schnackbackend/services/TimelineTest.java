@@ -0,0 +1,104 @@
+package com.schnackag.schnackbackend.services;
+
+import com.schnackag.schnackbackend.entities.UuidV7Generator;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class TimelineTest {
+	private static final UUID MAXIMUM_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+	@Test
+	void pagesAreReadNewestFirstAcrossTheRingBoundary() {
+		Timeline timeline = new Timeline(4, 2, 0);
+		List<UUID> threads = threads(6);
+		for (int i = 0; i < threads.size(); i++) {
+			timeline.add(threads.get(i), 10 * (i + 1));
+		}
+
+		// Die ersten beiden Threads wurden verdrängt, der Anfang des Rings liegt jetzt mitten im Array.
+		assertThat(timeline.size()).isEqualTo(4);
+		List<Timeline.Entry> first = timeline.read(Long.MAX_VALUE, MAXIMUM_ID, 3);
+		assertThat(first).extracting(Timeline.Entry::getThreadId).containsExactly(threads.get(5), threads.get(4), threads.get(3));
+		Timeline.Entry last = first.get(2);
+		assertThat(timeline.read(last.getActivity(), last.getThreadId(), 3))
+				.extracting(Timeline.Entry::getThreadId)
+				.containsExactly(threads.get(2));
+
+		// Neue Aktivität verschiebt einen Thread an das Ende, auch wenn sie älter als der letzte Eintrag ist.
+		timeline.add(threads.get(2), 70);
+		timeline.add(threads.get(4), 65);
+		assertThat(timeline.read(Long.MAX_VALUE, MAXIMUM_ID, 10))
+				.extracting(Timeline.Entry::getThreadId, Timeline.Entry::getActivity)
+				.containsExactly(
+						tuple(threads.get(4), 71L),
+						tuple(threads.get(2), 70L),
+						tuple(threads.get(5), 60L),
+						tuple(threads.get(3), 40L));
+	}
+
+	@Test
+	void hotThreadsLeaveTheRing() {
+		Timeline timeline = new Timeline(10, 2, 0);
+		List<UUID> threads = threads(4);
+		for (int i = 0; i < threads.size(); i++) {
+			timeline.add(threads.get(i), i + 1);
+		}
+
+		timeline.addHot(threads.get(0));
+		timeline.add(threads.get(0), 100);
+		assertThat(timeline.getHotThreads()).containsExactly(threads.get(0));
+		assertThat(timeline.read(Long.MAX_VALUE, MAXIMUM_ID, 10)).extracting(Timeline.Entry::getThreadId).doesNotContain(threads.get(0));
+
+		// refreshHot durchsucht den Ring nur bei einer neuen Version, die Liste verdrängt den ältesten hot Thread.
+		timeline.refreshHot(1, threads.subList(1, 3)::contains);
+		timeline.refreshHot(1, threads::contains);
+		assertThat(timeline.getHotThreads()).containsExactly(threads.get(1), threads.get(2));
+		assertThat(timeline.read(Long.MAX_VALUE, MAXIMUM_ID, 10)).extracting(Timeline.Entry::getThreadId).containsExactly(threads.get(3));
+		assertThat(timeline.size()).isEqualTo(3);
+	}
+
+	@Test
+	void snapshotRoundTripKeepsTheNewestEntries() throws IOException {
+		Timeline timeline = new Timeline(5, 2, 1234);
+		List<UUID> threads = threads(6);
+		for (int i = 0; i < 5; i++) {
+			timeline.add(threads.get(i), 10 * (i + 1));
+		}
+		timeline.addHot(threads.get(5));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		timeline.writeTo(new DataOutputStream(bytes));
+
+		Timeline restored = Timeline.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 5, 2);
+		assertThat(restored.getCreatedAt()).isEqualTo(1234);
+		assertThat(restored.getHotThreads()).containsExactly(threads.get(5));
+		assertThat(restored.read(Long.MAX_VALUE, MAXIMUM_ID, 10))
+				.usingRecursiveFieldByFieldElementComparator()
+				.containsExactlyElementsOf(timeline.read(Long.MAX_VALUE, MAXIMUM_ID, 10));
+
+		// Mit kleinerer capacity fallen die ältesten Einträge weg.
+		Timeline smaller = Timeline.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 2, 2);
+		assertThat(smaller.read(Long.MAX_VALUE, MAXIMUM_ID, 10))
+				.extracting(Timeline.Entry::getThreadId)
+				.containsExactly(threads.get(4), threads.get(3));
+	}
+
+	private static List<UUID> threads(int count) {
+		List<UUID> threads = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			threads.add(UuidV7Generator.generate());
+		}
+		return threads;
+	}
+}